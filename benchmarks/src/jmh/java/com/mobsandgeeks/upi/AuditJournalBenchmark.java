@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import com.mobsandgeeks.upi.audit.AuditJournal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of journaling a handled URI. {@code append} is the part that runs on the
+ * thread that handles URIs, measured on batches that fit in the buffer. {@code appendAndFlush}
+ * adds the work of the journal's thread, hashing, encoding, writing and forcing the batch to
+ * storage, which runs in the background in an app.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AuditJournalBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private File directory;
+    private AuditJournal journal;
+    private String[] uris;
+    private UpiResult[] results;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = File.createTempFile("upi-audit", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        journal = new AuditJournal(directory, BATCH_SIZE * 2, AuditJournal.DEFAULT_SEGMENT_SIZE);
+        String[] corpus = UpiUriCorpus.get(UpiUriCorpus.MERCHANT);
+        uris = new String[BATCH_SIZE];
+        results = new UpiResult[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            uris[i] = corpus[i % corpus.length];
+            results[i] = UpiUriParser.parse(uris[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void drain() throws IOException {
+        journal.flush();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        for (File segment : journal.getCompletedSegments()) {
+            segment.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean append() {
+        boolean appended = true;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            appended &= journal.append(uris[i], results[i]);
+        }
+        return appended;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean appendAndFlush() throws IOException {
+        boolean appended = append();
+        journal.flush();
+        return appended;
+    }
+
+}
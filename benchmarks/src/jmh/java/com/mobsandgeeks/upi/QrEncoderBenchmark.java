@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+import com.google.zxing.qrcode.encoder.ByteMatrix;
+import com.google.zxing.qrcode.encoder.Encoder;
+import com.mobsandgeeks.upi.qr.QrCode;
+import com.mobsandgeeks.upi.qr.QrEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link QrEncoder} with ZXing, the general-purpose barcode library, on URIs generated
+ * from the corpora in {@link UpiUriCorpus}. Both encode at error correction level M and rasterize
+ * into a reused pixel buffer with 4 pixels per module.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QrEncoderBenchmark {
+
+    private static final int MODULE_SIZE = 4;
+    private static final int QUIET_ZONE = 4;
+    private static final int DARK = 0xFF000000;
+    private static final int LIGHT = 0xFFFFFFFF;
+
+    @Param({ UpiUriCorpus.MINIMAL, UpiUriCorpus.MERCHANT })
+    public String corpus;
+
+    private final QrEncoder encoder = new QrEncoder(QrCode.ERROR_CORRECTION_MEDIUM);
+    private final Map<EncodeHintType, Object> hints =
+            Collections.<EncodeHintType, Object>singletonMap(EncodeHintType.CHARACTER_SET, "UTF-8");
+    private final int[] pixels = new int[177 * 177 * MODULE_SIZE * MODULE_SIZE * 2];
+    private UpiPayload[] payloads;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        String[] uris = UpiUriCorpus.get(corpus);
+        payloads = new UpiPayload[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            payloads[i] = UpiUriParser.parse(uris[i]).getPayload();
+        }
+    }
+
+    @Benchmark
+    public int qrEncoder() {
+        QrCode qrCode = encoder.encode(nextPayload(), null);
+        qrCode.toPixels(pixels, MODULE_SIZE, QUIET_ZONE, DARK, LIGHT);
+        return qrCode.getSize();
+    }
+
+    @Benchmark
+    public int zxing() throws WriterException {
+        String uri = UpiUriEncoder.encode(nextPayload());
+        ByteMatrix matrix = Encoder.encode(uri, ErrorCorrectionLevel.M, hints).getMatrix();
+        int size = matrix.getWidth();
+        int width = (size + 2 * QUIET_ZONE) * MODULE_SIZE;
+        for (int y = 0; y < width; y++) {
+            int moduleY = y / MODULE_SIZE - QUIET_ZONE;
+            for (int x = 0; x < width; x++) {
+                int moduleX = x / MODULE_SIZE - QUIET_ZONE;
+                boolean dark = moduleX >= 0 && moduleY >= 0 && moduleX < size && moduleY < size
+                        && matrix.get(moduleX, moduleY) == 1;
+                pixels[y * width + x] = dark ? DARK : LIGHT;
+            }
+        }
+        return size;
+    }
+
+    private UpiPayload nextPayload() {
+        UpiPayload payload = payloads[index];
+        index = (index + 1) % payloads.length;
+        return payload;
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+import com.mobsandgeeks.upi.qr.QrCode;
+import com.mobsandgeeks.upi.qr.QrEncoder;
+import com.mobsandgeeks.upi.qr.QrScanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link QrScanner} with ZXing on 640x480 NV21 preview frames. Frames hold a QR code of
+ * a merchant URI from {@link UpiUriCorpus}, slightly rotated, with a lighting gradient and sensor
+ * noise, or nothing but noise, which is what most preview frames look like before the camera is
+ * pointed at a code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QrScannerBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAME_COUNT = 8;
+    private static final int NOISE = 8;
+
+    @Param({ "code", "empty" })
+    public String frame;
+
+    private final QrScanner scanner = new QrScanner();
+    private final QRCodeReader reader = new QRCodeReader();
+    private byte[][] frames;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        String[] uris = UpiUriCorpus.get(UpiUriCorpus.MERCHANT);
+        QrEncoder encoder = new QrEncoder(QrCode.ERROR_CORRECTION_MEDIUM);
+        Random random = new Random(42);
+        frames = new byte[FRAME_COUNT][];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            QrCode qrCode = "code".equals(frame) ? encoder.encode(uris[i]) : null;
+            frames[i] = render(qrCode, (random.nextDouble() - 0.5) * 0.5, random);
+        }
+    }
+
+    @Benchmark
+    public Object qrScanner() {
+        return scanner.scan(nextFrame(), WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public Object zxing() throws ReaderException {
+        PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(nextFrame(), WIDTH, HEIGHT,
+                0, 0, WIDTH, HEIGHT, false);
+        try {
+            String text = reader.decode(new BinaryBitmap(new HybridBinarizer(source))).getText();
+            return text.regionMatches(true, 0, "upi:", 0, 4) ? UpiUriParser.parse(text) : null;
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private byte[] nextFrame() {
+        byte[] next = frames[index];
+        index = (index + 1) % frames.length;
+        return next;
+    }
+
+    private static byte[] render(QrCode qrCode, double angle, Random random) {
+        // Y plane followed by the interleaved VU plane
+        byte[] nv21 = new byte[WIDTH * HEIGHT * 3 / 2];
+        int size = qrCode != null ? qrCode.getSize() : 1;
+        double moduleSize = HEIGHT * 0.6 / (size + 8);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double dx = x - WIDTH / 2;
+                double dy = y - HEIGHT / 2;
+                int u = (int) Math.floor((cos * dx + sin * dy) / moduleSize + size / 2.0);
+                int v = (int) Math.floor((cos * dy - sin * dx) / moduleSize + size / 2.0);
+                boolean dark = qrCode != null && u >= 0 && v >= 0 && u < size && v < size
+                        && qrCode.isDark(u, v);
+                nv21[y * WIDTH + x] = (byte) ((dark ? 40 : 190) + 40 * x / WIDTH
+                        + random.nextInt(NOISE * 2 + 1) - NOISE);
+            }
+        }
+        return nv21;
+    }
+
+}
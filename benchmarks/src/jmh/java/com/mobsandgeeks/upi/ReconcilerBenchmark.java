@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import com.mobsandgeeks.upi.reconcile.Reconciler;
+import com.mobsandgeeks.upi.reconcile.ReconciliationListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a request and its response streaming through a {@link Reconciler} that holds about
+ * 100,000 requests, expiring one old request for every new one. Transaction reference IDs are
+ * created up front, so the reconciler should not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReconcilerBenchmark {
+
+    private static final int IDS = 1 << 20;
+    private static final int IN_FLIGHT = 100000;
+
+    private String[] ids;
+    private Reconciler reconciler;
+    private long results;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        ids = new String[IDS];
+        for (int i = 0; i < IDS; i++) {
+            ids[i] = "ORD-2017-" + i;
+        }
+        // One request per millisecond, responses to nine out of ten
+        reconciler = new Reconciler(2 * IN_FLIGHT, IN_FLIGHT / 2, TimeUnit.MILLISECONDS,
+                new ReconciliationListener() {
+                    @Override
+                    public void onResult(int result, CharSequence transactionReferenceId,
+                            long requestedAmountPaise, long respondedAmountPaise) {
+                        results += result;
+                    }
+                });
+    }
+
+    @Benchmark
+    public long requestAndResponse() {
+        int i = index++;
+        String id = ids[i & (IDS - 1)];
+        // IDs repeat after a million requests, long after they have expired
+        reconciler.addRequest(id, 10000, i);
+        if (i % 10 != 0) {
+            reconciler.addResponse(id, 10000, i);
+        }
+        return results;
+    }
+
+}
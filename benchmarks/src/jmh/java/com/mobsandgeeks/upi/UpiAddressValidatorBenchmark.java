@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures {@link UpiAddressValidator#validate(CharSequence)} against a regular expression and a
+ * {@link HashMap} of handles, the obvious way to do the same checks. The validator should not
+ * allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpiAddressValidatorBenchmark {
+
+    private static final String[] HANDLES = { "ybl", "okhdfcbank", "sbi", "icici", "nobank" };
+    private static final Pattern ADDRESS = Pattern.compile("[A-Za-z0-9._-]+@([A-Za-z0-9]+)");
+
+    private final UpiAddressValidator validator = new UpiAddressValidator();
+    private final Map<String, String> providersByHandle = new HashMap<String, String>();
+    private String[] addresses;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        addresses = new String[1024];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = "store" + i + "@" + HANDLES[i % HANDLES.length];
+        }
+        for (String handle : HANDLES) {
+            providersByHandle.put(handle, validator.getProvider("a@" + handle));
+        }
+        providersByHandle.remove("nobank");
+    }
+
+    @Benchmark
+    public int validate() {
+        return validator.validate(next());
+    }
+
+    @Benchmark
+    public boolean regexAndHashMap() {
+        Matcher matcher = ADDRESS.matcher(next());
+        return matcher.matches()
+                && providersByHandle.containsKey(matcher.group(1).toLowerCase(Locale.US));
+    }
+
+    private String next() {
+        index = (index + 1) & (addresses.length - 1);
+        return addresses[index];
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a URI and looking up its merchant category, in the built-in table and in a
+ * {@link HashMap} keyed by the {@code mc} string. Parsing takes most of the time in both, the
+ * difference is the string the map needs to be decoded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpiMerchantCategoryTableBenchmark {
+
+    private static final int[] CODES = { 5411, 5812, 5541, 4829, 7995, 5732, 1234 };
+
+    private final UpiMerchantCategoryTable table = UpiMerchantCategoryTable.getBuiltIn();
+    private final Map<String, UpiMerchantCategory> categoriesByCode =
+            new HashMap<String, UpiMerchantCategory>();
+    private String[] uris;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        for (UpiMerchantCategory category : table.getCategories()) {
+            categoriesByCode.put(String.format("%04d", category.getCode()), category);
+        }
+        uris = new String[1024];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = "upi://pay?pa=store" + i + "@ybl&pn=Store&mc=" + CODES[i % CODES.length];
+        }
+    }
+
+    @Benchmark
+    public UpiMerchantCategory table() {
+        return table.get(next().getMerchantCategoryCode());
+    }
+
+    @Benchmark
+    public UpiMerchantCategory hashMap() {
+        return categoriesByCode.get(next().getMerchantCode());
+    }
+
+    private UpiPayload next() {
+        index = (index + 1) & (uris.length - 1);
+        return UpiUriParser.parse(uris[index]).getPayload();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of {@link UpiMetrics#record(UpiResult, long)}, alone and with threads that
+ * record at the same time. Compare the scores with {@link UpiUriParserBenchmark}, recording should
+ * add a small fraction to the time it takes to parse a URI.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpiMetricsBenchmark {
+
+    private final UpiMetrics metrics = new UpiMetrics();
+    private UpiResult[] results;
+
+    @Setup
+    public void setUp() {
+        String[] uris = UpiUriCorpus.get(UpiUriCorpus.MERCHANT);
+        results = new UpiResult[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            results[i] = UpiUriParser.parse(uris[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void record(ThreadIndex index) {
+        metrics.record(results[index.next(results.length)], index.latency());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended(ThreadIndex index) {
+        metrics.record(results[index.next(results.length)], index.latency());
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadIndex {
+
+        private int index;
+
+        int next(int length) {
+            index = (index + 1) % length;
+            return index;
+        }
+
+        long latency() {
+            return 2000 + index * 37;
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing UPI app responses, one at a time, in a batch, and with the {@code split("&")}
+ * parser that integrators tend to write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpiResponseParserBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    private String[] responses;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        responses = new String[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            responses[i] = "txnId=YBL" + (100000000L + i) + "&responseCode=" + (i % 7 == 0
+                    ? "ZD&Status=FAILURE" : "00&Status=SUCCESS") + "&txnRef=ORD-2017-" + i
+                    + "&ApprovalRefNo=" + (700000 + i);
+        }
+    }
+
+    @Benchmark
+    public int parse() {
+        UpiResponse response = UpiResponseParser.parse(next());
+        return response.getStatus() + response.getNumericResponseCode();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int parseAll() {
+        return UpiResponseParser.parseAll(responses).getSuccessCount();
+    }
+
+    @Benchmark
+    public int split() {
+        Map<String, String> fields = new HashMap<String, String>();
+        for (String pair : next().split("&")) {
+            String[] keyAndValue = pair.split("=");
+            fields.put(keyAndValue[0].toLowerCase(), keyAndValue.length > 1 ? keyAndValue[1] : "");
+        }
+        return ("SUCCESS".equalsIgnoreCase(fields.get("status")) ? 0 : 1)
+                + Integer.parseInt("00".equals(fields.get("responsecode")) ? "0" : "1");
+    }
+
+    private String next() {
+        index = (index + 1) & (BATCH_SIZE - 1);
+        return responses[index];
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares verifying the signature of a URI that was verified before, which is a SHA-256 digest
+ * and a lookup, with verifying a URI for the first time using a 2048-bit RSA key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UpiSignatureVerifierBenchmark {
+
+    // More URIs than the uncached verifier remembers, so that each one is verified again
+    private static final int URIS = 1024;
+
+    private String[] signedUris;
+    private UpiSignatureVerifier cached;
+    private UpiSignatureVerifier uncached;
+    private int index;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keys = generator.generateKeyPair();
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keys.getPrivate());
+
+        signedUris = new String[URIS];
+        for (int i = 0; i < URIS; i++) {
+            String uri = "upi://pay?pa=store@ybl&pn=Sharma%20General%20Store&mc=5411"
+                    + "&tr=ORD-2017-" + i + "&am=1499.50&cu=INR&orgid=159001";
+            signer.update(uri.getBytes(Charset.forName("UTF-8")));
+            String signature = base64(signer.sign());
+            signedUris[i] = uri + "&sign=" + signature.replace("+", "%2B").replace("/", "%2F")
+                    .replace("=", "%3D");
+        }
+
+        cached = new UpiSignatureVerifier();
+        cached.putPublicKey("159001", keys.getPublic());
+        uncached = new UpiSignatureVerifier(null, 1, false);
+        uncached.putPublicKey("159001", keys.getPublic());
+    }
+
+    @Benchmark
+    public int cachedUri() {
+        return cached.verify(signedUris[0]);
+    }
+
+    @Benchmark
+    public int newUri() {
+        return uncached.verify(signedUris[index++ & (URIS - 1)]);
+    }
+
+    private static String base64(byte[] bytes) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < bytes.length; i += 3) {
+            int group = (bytes[i] & 0xff) << 16;
+            group |= i + 1 < bytes.length ? (bytes[i + 1] & 0xff) << 8 : 0;
+            group |= i + 2 < bytes.length ? bytes[i + 2] & 0xff : 0;
+            for (int j = 0; j < 4; j++) {
+                encoded.append(i + j - 1 < bytes.length
+                        ? alphabet.charAt((group >> (18 - 6 * j)) & 0x3f) : '=');
+            }
+        }
+        return encoded.toString();
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * UPI URIs used as inputs by the benchmarks. Each corpus has a few variations so that branch
+ * predictors and string caches don't see the same input on every invocation.
+ */
+final class UpiUriCorpus {
+
+    static final String MINIMAL = "minimal";
+    static final String MERCHANT = "merchant";
+    static final String EXTRAS = "extras";
+    static final String DEVANAGARI = "devanagari";
+    static final String MALFORMED_AMOUNT = "malformedAmount";
+
+    private static final int SIZE = 64;
+
+    private UpiUriCorpus() { /* No instances. */ }
+
+    static String[] get(String name) {
+        return get(name, SIZE);
+    }
+
+    static String[] get(String name, int size) {
+        String[] uris = new String[size];
+        for (int i = 0; i < size; i++) {
+            uris[i] = create(name, i);
+        }
+        return uris;
+    }
+
+    private static String create(String name, int i) {
+        switch (name) {
+            case MINIMAL:
+                return "upi://pay?pa=payee" + i + "@okbank&pn=Payee%20" + i;
+
+            case MERCHANT:
+                return "upi://pay?pa=store" + i + "@ybl&pn=Sharma%20General%20Store"
+                        + "&mc=5411&tid=YBL" + (100000000L + i) + "&tr=ORD-2017-" + i
+                        + "&tn=Order%20" + i + "%20groceries&am=" + (i + 1) + "49.50&mam=100"
+                        + "&cu=INR&url=https%3A%2F%2Fshop.example.com%2Forders%2F" + i;
+
+            case EXTRAS:
+                StringBuilder builder = new StringBuilder("upi://pay?pa=partner")
+                        .append(i).append("@icici&pn=Partner&am=250.00");
+                for (int e = 0; e < 24; e++) {
+                    builder.append("&utm_").append(e).append('=').append("campaign-")
+                            .append(i).append('-').append(e);
+                }
+                return builder.toString();
+
+            case DEVANAGARI:
+                return "upi://pay?pa=mandir" + i + "@sbi&pn=" + encode("श्री गणेश मंदिर ट्रस्ट")
+                        + "&tn=" + encode("दान - पूजा सामग्री " + i) + "&am=501&cu=INR";
+
+            case MALFORMED_AMOUNT:
+                String[] amounts = { "1,000.00", "12.3.4", "-50", "1e400", "₹100", "NaN", "" };
+                return "upi://pay?pa=fraud" + i + "@upi&pn=Fraud&am="
+                        + encode(amounts[i % amounts.length]) + "&mam=" + encode("abc" + i);
+
+            default:
+                throw new IllegalArgumentException("Unknown corpus: " + name);
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
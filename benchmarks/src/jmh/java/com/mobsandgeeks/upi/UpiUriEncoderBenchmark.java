@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link UpiUriEncoder} with building the URI by concatenating values escaped with
+ * {@link URLEncoder}, which is how a server would write it without the encoder. Payloads are
+ * parsed from the corpora in {@link UpiUriCorpus}. The comparison with {@code Uri.Builder} needs
+ * the Android framework and lives in the sdk's instrumentation tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpiUriEncoderBenchmark {
+
+    private static final String UTF_8 = "UTF-8";
+
+    @Param({
+            UpiUriCorpus.MINIMAL,
+            UpiUriCorpus.MERCHANT,
+            UpiUriCorpus.EXTRAS,
+            UpiUriCorpus.DEVANAGARI
+    })
+    public String corpus;
+
+    private UpiPayload[] payloads;
+    private Map<String, String>[] extras;
+    private final StringBuilder builder = new StringBuilder(256);
+    private int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        String[] uris = UpiUriCorpus.get(corpus);
+        payloads = new UpiPayload[uris.length];
+        extras = new Map[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            UpiResult result = UpiUriParser.parse(uris[i]);
+            payloads[i] = result.getPayload();
+            extras[i] = result.getExtras();
+        }
+    }
+
+    @Benchmark
+    public String encode() {
+        int i = nextIndex();
+        return UpiUriEncoder.encode(payloads[i], extras[i]);
+    }
+
+    /**
+     * Encodes into a reused builder, the way a server would write URIs into a response buffer.
+     */
+    @Benchmark
+    public int encodeToReusedBuilder() {
+        int i = nextIndex();
+        builder.setLength(0);
+        return UpiUriEncoder.encodeTo(payloads[i], extras[i], builder).length();
+    }
+
+    @Benchmark
+    public String urlEncoderConcatenation() throws UnsupportedEncodingException {
+        int i = nextIndex();
+        UpiPayload payload = payloads[i];
+        String uri = "upi://pay?pa=" + URLEncoder.encode(payload.getPayeeAddress(), UTF_8)
+                + "&pn=" + URLEncoder.encode(payload.getPayeeName(), UTF_8);
+        uri = append(uri, "mc", payload.getMerchantCode());
+        uri = append(uri, "tid", payload.getTransactionId());
+        uri = append(uri, "tr", payload.getTransactionReferenceId());
+        uri = append(uri, "tn", payload.getTransactionNote());
+        if (payload.getPayeeAmount() != null) {
+            uri += "&am=" + payload.getPayeeAmount().toPlainString();
+        }
+        if (payload.getMinimumAmount() != null) {
+            uri += "&mam=" + payload.getMinimumAmount().toPlainString();
+        }
+        uri = append(uri, "cu", payload.getCurrencyCode());
+        uri = append(uri, "url", payload.getReferenceUrl());
+        for (Map.Entry<String, String> extra : extras[i].entrySet()) {
+            uri = append(uri, URLEncoder.encode(extra.getKey(), UTF_8), extra.getValue());
+        }
+        return uri;
+    }
+
+    private static String append(String uri, String name, String value)
+            throws UnsupportedEncodingException {
+        return value != null ? uri + "&" + name + "=" + URLEncoder.encode(value, UTF_8) : uri;
+    }
+
+    private int nextIndex() {
+        int i = index;
+        index = (index + 1) % payloads.length;
+        return i;
+    }
+
+}
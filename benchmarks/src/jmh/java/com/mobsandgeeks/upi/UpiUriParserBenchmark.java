@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the parse path taken by {@code UpiDelegate#handle(Intent, UpiCallback)} for each
+ * corpus in {@link UpiUriCorpus}. Run with {@code ./gradlew :benchmarks:jmh}, the GC
+ * profiler reports bytes allocated per parse as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UpiUriParserBenchmark {
+
+    @Param({
+            UpiUriCorpus.MINIMAL,
+            UpiUriCorpus.MERCHANT,
+            UpiUriCorpus.EXTRAS,
+            UpiUriCorpus.DEVANAGARI,
+            UpiUriCorpus.MALFORMED_AMOUNT
+    })
+    public String corpus;
+
+    private String[] uris;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        uris = UpiUriCorpus.get(corpus);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        blackhole.consume(UpiUriParser.parse(nextUri(), builder));
+        blackhole.consume(builder.build());
+    }
+
+    /**
+     * Most callers only read the payee address and the amount, the other fields are decoded on
+     * first access.
+     */
+    @Benchmark
+    public void parseAndReadAddressAndAmount(Blackhole blackhole) {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse(nextUri(), builder);
+        UpiPayload payload = builder.build();
+        blackhole.consume(payload.getPayeeAddress());
+        blackhole.consume(payload.getPayeeAmountPaise());
+    }
+
+    @Benchmark
+    public String decodeQuery() {
+        String uri = nextUri();
+        return UpiUriParser.decode(uri, uri.indexOf('?') + 1, uri.length());
+    }
+
+    private String nextUri() {
+        String uri = uris[index];
+        index = (index + 1) % uris.length;
+        return uri;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import com.mobsandgeeks.upi.flow.Flow;
+import com.mobsandgeeks.upi.flow.UpiUriProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a burst of 64 scans, eight codes that are each read eight times in a row, going
+ * through an {@link UpiUriProcessor} with parsing every scan. The processor coalesces the repeats,
+ * so only the eight codes are parsed and delivered.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UpiUriProcessorBenchmark {
+
+    private static final int CODES = 8;
+    private static final int READS = 8;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private String[] scans;
+    private long delivered;
+
+    @Setup
+    public void setUp() {
+        scans = new String[CODES * READS];
+        for (int i = 0; i < scans.length; i++) {
+            int code = i / READS;
+            scans[i] = "upi://pay?pa=store" + code + "@ybl&pn=Store%20" + code
+                    + "&tr=ORD-" + code + "&am=" + (code + 1) + "0.00&cu=INR";
+        }
+    }
+
+    @Benchmark
+    public long processor() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        processor.subscribe(new Flow.Subscriber<UpiResult>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(UpiResult item) {
+                delivered++;
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        for (String scan : scans) {
+            processor.offer(scan);
+        }
+        return delivered;
+    }
+
+    @Benchmark
+    public long parseEveryScan() {
+        for (String scan : scans) {
+            if (UpiUriParser.parse(scan).getPayload() != null) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+}
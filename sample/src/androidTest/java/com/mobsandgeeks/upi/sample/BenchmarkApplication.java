@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi.sample;
+
+import android.app.Application;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.upi.UpiCallback;
+import com.mobsandgeeks.upi.UpiPayload;
+
+import java.util.Map;
+
+/**
+ * Receives the results that {@link MainActivity} shows, and passes them on to the listener set by
+ * the running test.
+ */
+public class BenchmarkApplication extends Application implements UpiCallback {
+
+    @Nullable private volatile UpiCallback listener;
+
+    void setListener(@Nullable UpiCallback listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onSuccess(UpiPayload payload, Map<String, String> extras, Uri upiUri) {
+        UpiCallback listener = this.listener;
+        if (listener != null) {
+            listener.onSuccess(payload, extras, upiUri);
+        }
+    }
+
+    @Override
+    public void onFailure(int errorCode, Uri upiUri) {
+        UpiCallback listener = this.listener;
+        if (listener != null) {
+            listener.onFailure(errorCode, upiUri);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi.sample;
+
+import android.app.Application;
+import android.content.Context;
+import android.support.test.runner.AndroidJUnitRunner;
+
+/**
+ * Runs the instrumented tests with {@link BenchmarkApplication}, so that tests can observe the
+ * results that {@link MainActivity} shows.
+ */
+public class BenchmarkRunner extends AndroidJUnitRunner {
+
+    @Override
+    public Application newApplication(ClassLoader classLoader, String className, Context context)
+            throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+        return super.newApplication(classLoader, BenchmarkApplication.class.getName(), context);
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.sample;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.net.Uri;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.mobsandgeeks.upi.UpiCallback;
+import com.mobsandgeeks.upi.UpiPayload;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures the time from starting {@link MainActivity} with a UPI deep link to its
+ * {@code onSuccess}, for the first deep link in a fresh process and for later ones. The first
+ * launch runs the intake path interpreted unless the SDK's baseline profile was applied, so run
+ * this test once per compilation state and compare. The state is passed as the
+ * {@code compilation} instrumentation argument, only to label the results, which are logged under
+ * the {@value #TAG} tag. Results are observed through {@link BenchmarkApplication}, which
+ * {@link BenchmarkRunner} installs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeepLinkStartupBenchmark {
+
+    private static final String TAG = "UpiStartupBenchmark";
+    private static final int WARM_LAUNCHES = 10;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private static final String UPI_URI = "upi://pay?pa=store@ybl&pn=Sharma%20General%20Store"
+            + "&tr=ORD-2017-42&tn=Order%2042%20groceries&am=1499.50&cu=INR";
+
+    @Test
+    public void deepLinkToOnSuccess() throws InterruptedException {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        String compilation = InstrumentationRegistry.getArguments()
+                .getString("compilation", "unknown");
+
+        long firstNanos = launch(instrumentation);
+        long[] warmNanos = new long[WARM_LAUNCHES];
+        for (int i = 0; i < WARM_LAUNCHES; i++) {
+            warmNanos[i] = launch(instrumentation);
+        }
+        Arrays.sort(warmNanos);
+
+        Log.i(TAG, "Deep link to onSuccess (" + compilation + "): first = "
+                + TimeUnit.NANOSECONDS.toMicros(firstNanos) + " us, warm median = "
+                + TimeUnit.NANOSECONDS.toMicros(warmNanos[WARM_LAUNCHES / 2]) + " us");
+    }
+
+    private static long launch(Instrumentation instrumentation) throws InterruptedException {
+        BenchmarkApplication application = (BenchmarkApplication) instrumentation
+                .getTargetContext().getApplicationContext();
+        final CountDownLatch shown = new CountDownLatch(1);
+        final long[] successNanos = new long[1];
+        application.setListener(new UpiCallback() {
+            @Override
+            public void onSuccess(UpiPayload payload, Map<String, String> extras, Uri upiUri) {
+                successNanos[0] = System.nanoTime();
+                shown.countDown();
+            }
+
+            @Override
+            public void onFailure(int errorCode, Uri upiUri) {
+                shown.countDown();
+            }
+        });
+
+        Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(UPI_URI))
+                .setClass(instrumentation.getTargetContext(), MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        long start = System.nanoTime();
+        Activity activity = instrumentation.startActivitySync(intent);
+        try {
+            assertTrue("No result within " + TIMEOUT_SECONDS + " s",
+                    shown.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertTrue("The deep link failed to parse", successNanos[0] != 0);
+            return successNanos[0] - start;
+        } finally {
+            application.setListener(null);
+            activity.finish();
+            instrumentation.waitForIdleSync();
+        }
+    }
+
+}
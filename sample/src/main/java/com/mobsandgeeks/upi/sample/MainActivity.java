@@ -15,6 +15,7 @@
 package com.mobsandgeeks.upi.sample;
 
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
 import android.widget.Toast;
@@ -23,29 +24,72 @@ import com.mobsandgeeks.upi.UpiCallback;
 import com.mobsandgeeks.upi.UpiDelegate;
 import com.mobsandgeeks.upi.UpiDelegate.UpiError;
 import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiTask;
 
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity implements UpiCallback {
 
+    private static final Executor PARSE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private UpiTask upiTask;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
-        if (UpiDelegate.isUpiIntent(getIntent())) {
-            new UpiDelegate().handle(getIntent(), this);
+        upiTask = (UpiTask) getLastCustomNonConfigurationInstance();
+        if (upiTask != null) {
+            upiTask.attach(this);
+        } else if (UpiDelegate.isUpiIntent(getIntent())) {
+            upiTask = new UpiDelegate().handleAsync(getIntent(), PARSE_EXECUTOR, this);
+        }
+    }
+
+    @Override
+    public Object onRetainCustomNonConfigurationInstance() {
+        return upiTask;
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (upiTask != null) {
+            if (isChangingConfigurations()) {
+                upiTask.detach();
+            } else {
+                upiTask.cancel();
+            }
         }
     }
 
     @Override
     public void onSuccess(UpiPayload payload, Map<String, String> extras, Uri upiUri) {
         Toast.makeText(this, payload.getPayeeName(), Toast.LENGTH_SHORT).show();
+        onResultShown();
+        // Instrumented tests run with an Application that observes the results
+        if (getApplication() instanceof UpiCallback) {
+            ((UpiCallback) getApplication()).onSuccess(payload, extras, upiUri);
+        }
     }
 
     @Override
     public void onFailure(@UpiError int errorCode, Uri upiUri) {
         Toast.makeText(this, "Bummer!", Toast.LENGTH_SHORT).show();
+        onResultShown();
+        if (getApplication() instanceof UpiCallback) {
+            ((UpiCallback) getApplication()).onFailure(errorCode, upiUri);
+        }
+    }
+
+    private void onResultShown() {
+        // Marks the end of a deep link launch for "am start -W" and startup traces
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            reportFullyDrawn();
+        }
     }
 
 }
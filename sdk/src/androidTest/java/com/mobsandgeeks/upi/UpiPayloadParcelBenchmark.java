@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.os.Parcel;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the size and round trip time of the compact {@link ParcelableUpiPayload} parcel
+ * layout with the previous layout, which wrote amounts using {@link Parcel#writeSerializable}.
+ * Results are logged under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UpiPayloadParcelBenchmark {
+
+    private static final String TAG = "UpiParcelBenchmark";
+    private static final int WARM_UP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 20_000;
+
+    private final UpiPayload payload = UpiPayload.builder("Sharma General Store", "store@ybl")
+            .merchantCode("5411")
+            .transactionId("YBL100000042")
+            .transactionReferenceId("ORD-2017-42")
+            .transactionNote("Order 42 groceries")
+            .payeeAmount(149_950, 2)
+            .minimumAmount(10_000, 0)
+            .currencyCode("INR")
+            .referenceUrl("https://shop.example.com/orders/42")
+            .build();
+    private final ParcelableUpiPayload parcelable = new ParcelableUpiPayload(payload);
+
+    @Test
+    public void compactLayoutIsSmallerThanLegacyLayout() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcelable.writeToParcel(parcel, 0);
+            int compactSize = parcel.dataSize();
+
+            parcel.setDataPosition(0);
+            parcel.setDataSize(0);
+            writeLegacy(payload, parcel);
+            int legacySize = parcel.dataSize();
+
+            Log.i(TAG, "Parcel size: compact = " + compactSize + " bytes, legacy = "
+                    + legacySize + " bytes");
+            assertTrue(compactSize < legacySize);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void compactLayoutRoundTrip() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                roundTripCompact(parcel);
+                roundTripLegacy(parcel);
+            }
+
+            long start = SystemClock.elapsedRealtimeNanos();
+            UpiPayload copy = null;
+            for (int i = 0; i < ITERATIONS; i++) {
+                copy = roundTripCompact(parcel);
+            }
+            long compactNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+            start = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < ITERATIONS; i++) {
+                roundTripLegacy(parcel);
+            }
+            long legacyNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+            Log.i(TAG, "Round trip: compact = " + compactNanos + " ns, legacy = "
+                    + legacyNanos + " ns");
+            assertEquals(payload.getPayeeAmount(), copy.getPayeeAmount());
+            assertEquals(payload.getMinimumAmount(), copy.getMinimumAmount());
+            assertEquals(payload.getReferenceUrl(), copy.getReferenceUrl());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private UpiPayload roundTripCompact(Parcel parcel) {
+        parcel.setDataPosition(0);
+        parcel.setDataSize(0);
+        parcelable.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        return ParcelableUpiPayload.CREATOR.createFromParcel(parcel).getPayload();
+    }
+
+    private void roundTripLegacy(Parcel parcel) {
+        parcel.setDataPosition(0);
+        parcel.setDataSize(0);
+        writeLegacy(payload, parcel);
+        parcel.setDataPosition(0);
+        readLegacy(parcel);
+    }
+
+    private static void writeLegacy(UpiPayload payload, Parcel dest) {
+        dest.writeString(payload.getPayeeName());
+        dest.writeString(payload.getPayeeAddress());
+        dest.writeString(payload.getMerchantCode());
+        dest.writeString(payload.getTransactionId());
+        dest.writeString(payload.getTransactionReferenceId());
+        dest.writeString(payload.getTransactionNote());
+        dest.writeSerializable(payload.getPayeeAmount());
+        dest.writeSerializable(payload.getMinimumAmount());
+        dest.writeString(payload.getCurrencyCode());
+        dest.writeString(payload.getReferenceUrl());
+    }
+
+    private static void readLegacy(Parcel in) {
+        for (int i = 0; i < 6; i++) {
+            in.readString();
+        }
+        in.readSerializable();
+        in.readSerializable();
+        in.readString();
+        in.readString();
+    }
+
+}
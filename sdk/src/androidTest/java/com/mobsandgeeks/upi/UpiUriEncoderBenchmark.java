@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the time taken to generate a UPI URI with {@link UpiUriEncoder} and with
+ * {@link Uri.Builder}. Results are logged under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UpiUriEncoderBenchmark {
+
+    private static final String TAG = "UpiEncoderBenchmark";
+    private static final int WARM_UP_ITERATIONS = 2_000;
+    private static final int ITERATIONS = 20_000;
+
+    private final UpiPayload payload = UpiPayload.builder("Sharma General Store", "store@ybl")
+            .merchantCode("5411")
+            .transactionId("YBL100000042")
+            .transactionReferenceId("ORD-2017-42")
+            .transactionNote("Order 42 groceries")
+            .payeeAmount(149_950)
+            .currencyCode("INR")
+            .referenceUrl("https://shop.example.com/orders/42")
+            .build();
+
+    @Test
+    public void encoderIsFasterThanUriBuilder() {
+        StringBuilder builder = new StringBuilder(256);
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            encode(builder);
+            buildUri();
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encode(builder);
+        }
+        long encoderNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        start = SystemClock.elapsedRealtimeNanos();
+        String uri = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            uri = buildUri();
+        }
+        long uriBuilderNanos = (SystemClock.elapsedRealtimeNanos() - start) / ITERATIONS;
+
+        Log.i(TAG, "Encode: UpiUriEncoder = " + encoderNanos + " ns, Uri.Builder = "
+                + uriBuilderNanos + " ns");
+        UpiPayload parsed = UpiUriParser.parse(uri).getPayload();
+        UpiPayload encoded = UpiUriParser.parse(encode(builder)).getPayload();
+        assertEquals(parsed.getTransactionNote(), encoded.getTransactionNote());
+        assertEquals(parsed.getReferenceUrl(), encoded.getReferenceUrl());
+    }
+
+    private String encode(StringBuilder builder) {
+        builder.setLength(0);
+        return UpiUriEncoder.encodeTo(payload, null, builder).toString();
+    }
+
+    private String buildUri() {
+        return new Uri.Builder()
+                .scheme("upi")
+                .authority("pay")
+                .appendQueryParameter("pa", payload.getPayeeAddress())
+                .appendQueryParameter("pn", payload.getPayeeName())
+                .appendQueryParameter("mc", payload.getMerchantCode())
+                .appendQueryParameter("tid", payload.getTransactionId())
+                .appendQueryParameter("tr", payload.getTransactionReferenceId())
+                .appendQueryParameter("tn", payload.getTransactionNote())
+                .appendQueryParameter("am", payload.getPayeeAmount().toPlainString())
+                .appendQueryParameter("cu", payload.getCurrencyCode())
+                .appendQueryParameter("url", payload.getReferenceUrl())
+                .build()
+                .toString();
+    }
+
+}
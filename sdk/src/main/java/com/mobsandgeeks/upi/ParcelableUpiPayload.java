@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link Parcelable} wrapper for {@link UpiPayload}, used to pass payloads through
+ * {@code Bundle}s, saved instance state and Binder calls.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class ParcelableUpiPayload implements Parcelable {
+
+    /*
+     * Parcel layout. A header int holds the layout version in the top byte, scales of both amounts
+     * and a bitmask of the optional fields that follow. Absent fields take no space and amounts
+     * are written as their unscaled long values.
+     */
+    private static final int PARCEL_VERSION = 2;
+    private static final int PARCEL_VERSION_SHIFT = 24;
+    private static final int PAYEE_AMOUNT_SCALE_SHIFT = 16;
+    private static final int MINIMUM_AMOUNT_SCALE_SHIFT = 18;
+    private static final int SCALE_MASK = 0x3;
+    private static final int HAS_MERCHANT_CODE = 1;
+    private static final int HAS_TRANSACTION_ID = 1 << 1;
+    private static final int HAS_TRANSACTION_REFERENCE_ID = 1 << 2;
+    private static final int HAS_TRANSACTION_NOTE = 1 << 3;
+    private static final int HAS_PAYEE_AMOUNT = 1 << 4;
+    private static final int HAS_MINIMUM_AMOUNT = 1 << 5;
+    private static final int HAS_CURRENCY_CODE = 1 << 6;
+    private static final int HAS_REFERENCE_URL = 1 << 7;
+    private static final int HAS_MODE = 1 << 8;
+    private static final int HAS_PURPOSE = 1 << 9;
+    private static final int HAS_ORGANIZATION_ID = 1 << 10;
+    private static final int HAS_SIGNATURE = 1 << 11;
+    private static final int HAS_MERCHANT_ID = 1 << 12;
+    private static final int HAS_MERCHANT_STORE_ID = 1 << 13;
+    private static final int HAS_MERCHANT_TERMINAL_ID = 1 << 14;
+    private static final int HAS_QR_MEDIUM = 1 << 15;
+
+    @NonNull private final UpiPayload payload;
+
+    public ParcelableUpiPayload(@NonNull UpiPayload payload) {
+        this.payload = payload;
+    }
+
+    private ParcelableUpiPayload(Parcel in) {
+        int header = in.readInt();
+        int version = header >>> PARCEL_VERSION_SHIFT;
+        if (version < 1 || version > PARCEL_VERSION) {
+            throw new BadParcelableException("Unsupported UpiPayload parcel version: " + version);
+        }
+
+        int payeeAmountScale = (header >>> PAYEE_AMOUNT_SCALE_SHIFT) & SCALE_MASK;
+        int minimumAmountScale = (header >>> MINIMUM_AMOUNT_SCALE_SHIFT) & SCALE_MASK;
+        UpiPayload.Builder builder = UpiPayload.builder(in.readString(), in.readString())
+                .merchantCode(readString(in, header, HAS_MERCHANT_CODE))
+                .transactionId(readString(in, header, HAS_TRANSACTION_ID))
+                .transactionReferenceId(readString(in, header, HAS_TRANSACTION_REFERENCE_ID))
+                .transactionNote(readString(in, header, HAS_TRANSACTION_NOTE));
+        if ((header & HAS_PAYEE_AMOUNT) != 0) {
+            builder.payeeAmount(UpiAmount.toPaise(in.readLong(), payeeAmountScale),
+                    payeeAmountScale);
+        }
+        if ((header & HAS_MINIMUM_AMOUNT) != 0) {
+            builder.minimumAmount(UpiAmount.toPaise(in.readLong(), minimumAmountScale),
+                    minimumAmountScale);
+        }
+        this.payload = builder.currencyCode(readString(in, header, HAS_CURRENCY_CODE))
+                .referenceUrl(readString(in, header, HAS_REFERENCE_URL))
+                .mode(readString(in, header, HAS_MODE))
+                .purpose(readString(in, header, HAS_PURPOSE))
+                .organizationId(readString(in, header, HAS_ORGANIZATION_ID))
+                .signature(readString(in, header, HAS_SIGNATURE))
+                .merchantId(readString(in, header, HAS_MERCHANT_ID))
+                .merchantStoreId(readString(in, header, HAS_MERCHANT_STORE_ID))
+                .merchantTerminalId(readString(in, header, HAS_MERCHANT_TERMINAL_ID))
+                .qrMedium(readString(in, header, HAS_QR_MEDIUM))
+                .build();
+    }
+
+    private static String readString(Parcel in, int header, int flag) {
+        return (header & flag) != 0 ? in.readString() : null;
+    }
+
+    /**
+     * @return The wrapped payload.
+     */
+    @NonNull
+    public UpiPayload getPayload() {
+        return payload;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        String merchantCode = payload.getMerchantCode();
+        String transactionId = payload.getTransactionId();
+        String transactionReferenceId = payload.getTransactionReferenceId();
+        String transactionNote = payload.getTransactionNote();
+        String currencyCode = payload.getCurrencyCode();
+        String referenceUrl = payload.getReferenceUrl();
+        String mode = payload.getMode();
+        String purpose = payload.getPurpose();
+        String organizationId = payload.getOrganizationId();
+        String signature = payload.getSignature();
+        String merchantId = payload.getMerchantId();
+        String merchantStoreId = payload.getMerchantStoreId();
+        String merchantTerminalId = payload.getMerchantTerminalId();
+        String qrMedium = payload.getQrMedium();
+        long payeeAmountPaise = payload.getPayeeAmountPaise();
+        int payeeAmountScale = payload.getPayeeAmountScale();
+        long minimumAmountPaise = payload.getMinimumAmountPaise();
+        int minimumAmountScale = payload.getMinimumAmountScale();
+        boolean hasPayeeAmount = payeeAmountPaise != UpiPayload.NO_AMOUNT;
+        boolean hasMinimumAmount = minimumAmountPaise != UpiPayload.NO_AMOUNT;
+        int header = PARCEL_VERSION << PARCEL_VERSION_SHIFT
+                | payeeAmountScale << PAYEE_AMOUNT_SCALE_SHIFT
+                | minimumAmountScale << MINIMUM_AMOUNT_SCALE_SHIFT
+                | (merchantCode != null ? HAS_MERCHANT_CODE : 0)
+                | (transactionId != null ? HAS_TRANSACTION_ID : 0)
+                | (transactionReferenceId != null ? HAS_TRANSACTION_REFERENCE_ID : 0)
+                | (transactionNote != null ? HAS_TRANSACTION_NOTE : 0)
+                | (hasPayeeAmount ? HAS_PAYEE_AMOUNT : 0)
+                | (hasMinimumAmount ? HAS_MINIMUM_AMOUNT : 0)
+                | (currencyCode != null ? HAS_CURRENCY_CODE : 0)
+                | (referenceUrl != null ? HAS_REFERENCE_URL : 0)
+                | (mode != null ? HAS_MODE : 0)
+                | (purpose != null ? HAS_PURPOSE : 0)
+                | (organizationId != null ? HAS_ORGANIZATION_ID : 0)
+                | (signature != null ? HAS_SIGNATURE : 0)
+                | (merchantId != null ? HAS_MERCHANT_ID : 0)
+                | (merchantStoreId != null ? HAS_MERCHANT_STORE_ID : 0)
+                | (merchantTerminalId != null ? HAS_MERCHANT_TERMINAL_ID : 0)
+                | (qrMedium != null ? HAS_QR_MEDIUM : 0);
+
+        dest.writeInt(header);
+        dest.writeString(payload.getPayeeName());
+        dest.writeString(payload.getPayeeAddress());
+        writeOptionalString(dest, merchantCode);
+        writeOptionalString(dest, transactionId);
+        writeOptionalString(dest, transactionReferenceId);
+        writeOptionalString(dest, transactionNote);
+        if (hasPayeeAmount) {
+            dest.writeLong(UpiAmount.unscaledValue(payeeAmountPaise, payeeAmountScale));
+        }
+        if (hasMinimumAmount) {
+            dest.writeLong(UpiAmount.unscaledValue(minimumAmountPaise, minimumAmountScale));
+        }
+        writeOptionalString(dest, currencyCode);
+        writeOptionalString(dest, referenceUrl);
+        writeOptionalString(dest, mode);
+        writeOptionalString(dest, purpose);
+        writeOptionalString(dest, organizationId);
+        writeOptionalString(dest, signature);
+        writeOptionalString(dest, merchantId);
+        writeOptionalString(dest, merchantStoreId);
+        writeOptionalString(dest, merchantTerminalId);
+        writeOptionalString(dest, qrMedium);
+    }
+
+    private static void writeOptionalString(Parcel dest, String value) {
+        if (value != null) {
+            dest.writeString(value);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<ParcelableUpiPayload> CREATOR =
+            new Creator<ParcelableUpiPayload>() {
+        @Override
+        public ParcelableUpiPayload createFromParcel(Parcel source) {
+            return new ParcelableUpiPayload(source);
+        }
+
+        @Override
+        public ParcelableUpiPayload[] newArray(int size) {
+            return new ParcelableUpiPayload[size];
+        }
+    };
+
+}
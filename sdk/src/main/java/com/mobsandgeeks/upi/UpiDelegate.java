@@ -16,29 +16,21 @@ package com.mobsandgeeks.upi;
 
 import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.text.TextUtils;
-
-import java.math.BigDecimal;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
-
-import static com.mobsandgeeks.upi.UpiParam.ALL_PARAMETERS;
-import static com.mobsandgeeks.upi.UpiParam.AMOUNT;
-import static com.mobsandgeeks.upi.UpiParam.CURRENCY_CODE;
-import static com.mobsandgeeks.upi.UpiParam.MERCHANT_CODE;
-import static com.mobsandgeeks.upi.UpiParam.MINIMUM_AMOUNT;
-import static com.mobsandgeeks.upi.UpiParam.PAYEE_ADDRESS;
-import static com.mobsandgeeks.upi.UpiParam.PAYEE_NAME;
-import static com.mobsandgeeks.upi.UpiParam.REFERENCE_URL;
-import static com.mobsandgeeks.upi.UpiParam.TRANSACTION_ID;
-import static com.mobsandgeeks.upi.UpiParam.TRANSACTION_NOTE;
-import static com.mobsandgeeks.upi.UpiParam.TRANSACTION_REFERENCE_ID;
+import android.util.LruCache;
+
+import com.mobsandgeeks.upi.audit.AuditJournal;
+import com.mobsandgeeks.upi.flow.UpiUriProcessor;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class is useful to detect and handle UPI URIs and intents.
@@ -51,19 +43,108 @@ public class UpiDelegate {
      * Missing Payee Address in URI.
      */
     @SuppressWarnings("WeakerAccess")
-    public static final int ERROR_MISSING_PAYEE_ADDRESS = 100;
+    public static final int ERROR_MISSING_PAYEE_ADDRESS = UpiResult.ERROR_MISSING_PAYEE_ADDRESS;
 
     /**
      * Missing Payee Address in URI.
      */
     @SuppressWarnings("WeakerAccess")
-    public static final int ERROR_MISSING_PAYEE_NAME = 101;
+    public static final int ERROR_MISSING_PAYEE_NAME = UpiResult.ERROR_MISSING_PAYEE_NAME;
+
+    /**
+     * Transaction amount in URI is not a valid amount.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_INVALID_AMOUNT = UpiResult.ERROR_INVALID_AMOUNT;
+
+    /**
+     * Minimum amount in URI is not a valid amount.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_INVALID_MINIMUM_AMOUNT = UpiResult.ERROR_INVALID_MINIMUM_AMOUNT;
+
+    /**
+     * The transaction in the URI was already handled, reported when a {@link UpiReplayGuard} is
+     * set.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_DUPLICATE_TRANSACTION = UpiResult.ERROR_DUPLICATE_TRANSACTION;
+
+    /**
+     * Payee Address in URI is not a valid virtual payment address, reported when a
+     * {@link UpiAddressValidator} is set.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_INVALID_PAYEE_ADDRESS = UpiResult.ERROR_INVALID_PAYEE_ADDRESS;
+
+    /**
+     * The handle of the Payee Address in URI is not known, reported when a
+     * {@link UpiAddressValidator} with a handle index is set.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_UNKNOWN_PAYEE_HANDLE = UpiResult.ERROR_UNKNOWN_PAYEE_HANDLE;
+
+    /**
+     * The URI is not signed, or its signature could not be verified, reported when a
+     * {@link UpiSignatureVerifier} is set.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public static final int ERROR_INVALID_SIGNATURE = UpiResult.ERROR_INVALID_SIGNATURE;
 
     private static final String UPI_SCHEME = "upi";
+    private static final String EXTRA_RESPONSE = "response";
 
-    @IntDef({ ERROR_MISSING_PAYEE_ADDRESS, ERROR_MISSING_PAYEE_NAME })
+    @IntDef({ ERROR_MISSING_PAYEE_ADDRESS, ERROR_MISSING_PAYEE_NAME, ERROR_INVALID_AMOUNT,
+            ERROR_INVALID_MINIMUM_AMOUNT, ERROR_DUPLICATE_TRANSACTION, ERROR_INVALID_PAYEE_ADDRESS,
+            ERROR_UNKNOWN_PAYEE_HANDLE, ERROR_INVALID_SIGNATURE })
     public @interface UpiError {}
 
+    @Nullable private final LruCache<String, UpiResult> cache;
+    @Nullable private final UpiMetrics metrics;
+    @Nullable private final AuditJournal journal;
+    @Nullable private final UpiReplayGuard replayGuard;
+    @Nullable private final UpiAddressValidator addressValidator;
+    @Nullable private final UpiSignatureVerifier signatureVerifier;
+
+    /**
+     * Creates a delegate that parses every URI it handles.
+     */
+    public UpiDelegate() {
+        this(0);
+    }
+
+    /**
+     * Creates a delegate that keeps the results of the most recently handled URIs. Static
+     * merchant QR codes are scanned over and over again, and a cache hit skips parsing altogether.
+     *
+     * @param cacheSize Maximum number of parsed URIs to keep, or {@code 0} to disable the cache.
+     */
+    public UpiDelegate(int cacheSize) {
+        this(new Builder().cacheSize(cacheSize));
+    }
+
+    private UpiDelegate(Builder builder) {
+        this.cache = builder.cacheSize > 0
+                ? new LruCache<String, UpiResult>(builder.cacheSize)
+                : null;
+        this.metrics = builder.metrics;
+        this.journal = builder.journal;
+        this.replayGuard = builder.replayGuard;
+        this.addressValidator = builder.addressValidator;
+        this.signatureVerifier = builder.signatureVerifier;
+    }
+
+    /**
+     * Creates a builder for delegates with metrics, an audit journal or extra checks.
+     *
+     * @return A builder for a delegate without a cache, that only does the checks of
+     *         {@link #UpiDelegate()}.
+     */
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * Checks if an Intent is a UPI intent.
      *
@@ -98,69 +179,315 @@ public class UpiDelegate {
      */
     public void handle(@NonNull Intent upiIntent, @NonNull UpiCallback callback) {
         Uri upiUri = upiIntent.getData();
+        deliver(parse(upiUri.toString()), callback, upiUri);
+    }
 
-        // Mandatory fields
-        String payeeName = upiUri.getQueryParameter(PAYEE_NAME);
-        String payeeAddress = upiUri.getQueryParameter(PAYEE_ADDRESS);
+    /**
+     * Handles the UPI intent on a background thread, and notifies results on the main thread.
+     * Make sure to check if the intent is a valid UPI intent using the
+     * {@link #isUpiIntent(Intent)} method before calling this method.
+     *
+     * <p>The returned task can be retained across configuration changes. Detach the callback
+     * when the {@code Activity} is destroyed for a configuration change and attach the new
+     * {@code Activity} when it is created, results that arrive in between are held by the task.
+     * Cancel the task if the results are no longer needed.
+     *
+     * @param upiIntent The UPI intent to be handled.
+     * @param executor An executor that parses the URI, this is usually a background executor.
+     * @param callback A callback to notify results on the main thread.
+     * @return A task that delivers the results.
+     */
+    @NonNull
+    public UpiTask handleAsync(@NonNull Intent upiIntent, @NonNull Executor executor,
+            @NonNull UpiCallback callback) {
+        UpiTask task = new UpiTask(this, upiIntent.getData(), callback);
+        task.executeOn(executor);
+        return task;
+    }
 
-        // Check for missing mandatory fields and throw an error
-        @UpiError int error = -1;
-        if (payeeName == null || TextUtils.isEmpty(payeeName.trim())) {
-            error = ERROR_MISSING_PAYEE_NAME;
-        } else if (payeeAddress == null || TextUtils.isEmpty(payeeAddress.trim())) {
-            error = ERROR_MISSING_PAYEE_ADDRESS;
-        } // FIXME: 05/01/17 What if both are missing?
+    /**
+     * Creates a processor for a continuous stream of UPI URIs, such as scans on kiosks and point
+     * of sale terminals. URIs are parsed by this delegate on the thread that offers them, so they
+     * go through the same cache, validation, metrics and journal as intents that are handled.
+     * Results are delivered on the main thread, as the subscriber requests them.
+     *
+     * @param capacity Number of results that can wait for the subscriber.
+     * @param coalescingWindow How long a repeated URI is coalesced after its previous arrival.
+     * @param unit Unit of {@code coalescingWindow}.
+     * @return A processor, to be subscribed to.
+     * @see UpiUriProcessor
+     */
+    @NonNull
+    public UpiUriProcessor newProcessor(int capacity, long coalescingWindow,
+            @NonNull TimeUnit unit) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Executor mainThread = new Executor() {
+            @Override
+            public void execute(@NonNull Runnable runnable) {
+                mainHandler.post(runnable);
+            }
+        };
+        return new UpiUriProcessor(capacity, coalescingWindow, unit, mainThread,
+                new UpiUriProcessor.Parser() {
+                    @NonNull
+                    @Override
+                    public UpiResult parse(@NonNull String upiUri) {
+                        return UpiDelegate.this.parse(upiUri);
+                    }
+                });
+    }
 
-        // noinspection WrongConstant
-        if (error != -1) {
-            callback.onFailure(error, upiUri);
-            return;
+    /**
+     * Parses and validates a batch of UPI URIs, for bulk jobs like reconciliation. The batch
+     * bypasses the cache and blocks until every URI is parsed, so call this method on a
+     * background thread. URIs are parsed in parallel from API level 21, which added
+     * {@code ForkJoinPool}, and one after another on older versions.
+     *
+     * @param upiUris UPI URIs to parse.
+     * @return Results in the same order as the input.
+     * @see UpiBatchParser
+     */
+    @NonNull
+    public static UpiBatchResult parseAll(@NonNull List<? extends CharSequence> upiUris) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return UpiBatchParser.parseAll(upiUris);
         }
+        return UpiBatchParser.parseAllSequentially(upiUris);
+    }
 
-        // Success call
-        UpiPayload payload = getPayload(upiUri, UpiPayload.builder(payeeName, payeeAddress));
-        Map<String, String> extras = getExtras(upiUri);
-        callback.onSuccess(payload, extras, upiUri);
+    /**
+     * Parses the response of the UPI app that handled a payment, from the intent passed to
+     * {@code onActivityResult}. Apps put the response into the {@code response} extra. For apps
+     * that put its fields into separate extras instead, the fields are read from those.
+     *
+     * @param data The result intent, {@code null} if the user backed out of the app.
+     * @return The response, or {@code null} if the intent doesn't have one.
+     * @see UpiResponseParser
+     */
+    @Nullable
+    public static UpiResponse parseResponse(@Nullable Intent data) {
+        if (data == null) {
+            return null;
+        }
+        String response = data.getStringExtra(EXTRA_RESPONSE);
+        if (response == null) {
+            response = joinExtras(data.getExtras());
+        }
+        return response != null ? UpiResponseParser.parse(response) : null;
     }
 
-    private UpiPayload getPayload(Uri upiUri, UpiPayload.Builder builder) {
-        return builder.transactionReferenceId(upiUri.getQueryParameter(TRANSACTION_REFERENCE_ID))
-                .merchantCode(upiUri.getQueryParameter(MERCHANT_CODE))
-                .transactionId(upiUri.getQueryParameter(TRANSACTION_ID))
-                .transactionNote(upiUri.getQueryParameter(TRANSACTION_NOTE))
-                .currencyCode(upiUri.getQueryParameter(CURRENCY_CODE))
-                .referenceUrl(upiUri.getQueryParameter(REFERENCE_URL))
-                .payeeAmount(toBigDecimal(upiUri.getQueryParameter(AMOUNT)))
-                .minimumAmount(toBigDecimal(upiUri.getQueryParameter(MINIMUM_AMOUNT)))
-                .build();
+    /**
+     * Parses and validates a UPI URI. This method is safe to call from any thread.
+     */
+    @NonNull
+    UpiResult parse(@NonNull String uriString) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        UpiResult result = parseOrGetCached(uriString);
+        // Checked before the replay guard, so that rejected addresses aren't remembered
+        if (addressValidator != null && result.isSuccess()) {
+            int errorCode = addressValidator.validate(result.getPayload());
+            if (errorCode != UpiResult.NO_ERROR) {
+                result = new UpiResult(errorCode);
+            }
+        }
+        // Verified after the cheaper checks, and before the replay guard so that forged URIs
+        // aren't remembered
+        if (signatureVerifier != null && result.isSuccess()
+                && !signatureVerifier.isTrusted(uriString)) {
+            result = new UpiResult(UpiResult.ERROR_INVALID_SIGNATURE);
+        }
+        // Cached results are checked too, a cache hit is how a replayed URI usually shows up
+        if (replayGuard != null && result.isSuccess()
+                && replayGuard.isReplay(result.getPayload())) {
+            result = new UpiResult(UpiResult.ERROR_DUPLICATE_TRANSACTION);
+        }
+        if (metrics != null) {
+            metrics.record(result, System.nanoTime() - start);
+        }
+        if (journal != null) {
+            journal.append(uriString, result);
+        }
+        return result;
     }
 
+    private UpiResult parseOrGetCached(String uriString) {
+        UpiResult cached = cache != null ? cache.get(uriString) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        UpiResult result = UpiUriParser.parse(uriString);
+        if (cache != null && result.isSuccess()) {
+            cache.put(uriString, result);
+        }
+        return result;
+    }
+
+    /**
+     * Joins string extras into a query string, the parser picks the fields it knows.
+     */
     @Nullable
-    private Map<String, String> getExtras(Uri upiUri) {
-        Set<String> queryParameterNames = new HashSet<>(upiUri.getQueryParameterNames());
-        queryParameterNames.removeAll(ALL_PARAMETERS);
-
-        Map<String, String> extras;
-        if (queryParameterNames.size() > 0) {
-            extras = new HashMap<>();
-            for (String name : queryParameterNames) {
-                extras.put(name, upiUri.getQueryParameter(name));
+    private static String joinExtras(@Nullable Bundle extras) {
+        if (extras == null) {
+            return null;
+        }
+        StringBuilder response = new StringBuilder();
+        for (String key : extras.keySet()) {
+            Object value = extras.get(key);
+            if (value instanceof CharSequence) {
+                if (response.length() > 0) {
+                    response.append('&');
+                }
+                response.append(Uri.encode(key)).append('=').append(Uri.encode(value.toString()));
             }
-            extras = Collections.unmodifiableMap(extras);
+        }
+        return response.length() > 0 ? response.toString() : null;
+    }
+
+    static void deliver(UpiResult result, UpiCallback callback, Uri upiUri) {
+        if (result.isSuccess()) {
+            callback.onSuccess(result.getPayload(), result.getExtras(), upiUri);
         } else {
-            extras = Collections.emptyMap();
+            // noinspection WrongConstant
+            callback.onFailure(result.getErrorCode(), upiUri);
         }
+    }
 
-        return extras;
+    /**
+     * @return Number of times a handled URI was found in the cache.
+     */
+    public int getCacheHitCount() {
+        return cache != null ? cache.hitCount() : 0;
     }
 
-    @Nullable
-    private BigDecimal toBigDecimal(String amount) {
-        try {
-            return amount != null ? new BigDecimal(amount) : null;
-        } catch (Exception e) {
-            return null;
+    /**
+     * @return Number of times a handled URI was not found in the cache and had to be parsed.
+     */
+    public int getCacheMissCount() {
+        return cache != null ? cache.missCount() : 0;
+    }
+
+    /**
+     * @return Number of parsed URIs that were evicted to make room for newer ones.
+     */
+    public int getCacheEvictionCount() {
+        return cache != null ? cache.evictionCount() : 0;
+    }
+
+    /**
+     * Removes all parsed URIs from the cache.
+     */
+    public void clearCache() {
+        if (cache != null) {
+            cache.evictAll();
         }
     }
 
+    /**
+     * Builds delegates, see {@link UpiDelegate#builder()}.
+     */
+    public static final class Builder {
+
+        private int cacheSize;
+        @Nullable private UpiMetrics metrics;
+        @Nullable private AuditJournal journal;
+        @Nullable private UpiReplayGuard replayGuard;
+        @Nullable private UpiAddressValidator addressValidator;
+        @Nullable private UpiSignatureVerifier signatureVerifier;
+
+        Builder() {
+        }
+
+        /**
+         * Keeps the results of the most recently handled URIs, see
+         * {@link UpiDelegate#UpiDelegate(int)}.
+         *
+         * @param cacheSize Maximum number of parsed URIs to keep, or {@code 0} to disable the
+         *         cache.
+         */
+        @NonNull
+        public Builder cacheSize(int cacheSize) {
+            if (cacheSize < 0) {
+                throw new IllegalArgumentException("cacheSize must be >= 0, but was "
+                        + cacheSize);
+            }
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /**
+         * Records the latency and the result of every URI that is handled. Cache hits are
+         * recorded too, with their own, shorter latencies.
+         *
+         * @param metrics Metrics to record into, or {@code null} to disable recording.
+         */
+        @NonNull
+        public Builder metrics(@Nullable UpiMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Records every URI that is handled, and its result, in an audit journal. Recording only
+         * copies a few values into the journal's buffer, files are written on the journal's own
+         * thread.
+         *
+         * @param journal Journal to record handled URIs in, or {@code null} to disable the
+         *         journal.
+         */
+        @NonNull
+        public Builder journal(@Nullable AuditJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Fails URIs of transactions that were already handled with
+         * {@link UpiDelegate#ERROR_DUPLICATE_TRANSACTION}, e.g. after a double tap or a replayed
+         * deep link.
+         *
+         * @param replayGuard Guard that remembers handled transactions, or {@code null} to allow
+         *         duplicates.
+         */
+        @NonNull
+        public Builder replayGuard(@Nullable UpiReplayGuard replayGuard) {
+            this.replayGuard = replayGuard;
+            return this;
+        }
+
+        /**
+         * Fails URIs with malformed payee addresses with
+         * {@link UpiDelegate#ERROR_INVALID_PAYEE_ADDRESS}, and payee addresses of unknown payment
+         * service providers with {@link UpiDelegate#ERROR_UNKNOWN_PAYEE_HANDLE}.
+         *
+         * @param addressValidator Validator for payee addresses, or {@code null} to only check
+         *         that the address is not blank.
+         */
+        @NonNull
+        public Builder addressValidator(@Nullable UpiAddressValidator addressValidator) {
+            this.addressValidator = addressValidator;
+            return this;
+        }
+
+        /**
+         * Fails signed URIs whose signature can't be verified, and unsigned URIs if the verifier
+         * requires signatures, with {@link UpiDelegate#ERROR_INVALID_SIGNATURE}. Repeated URIs
+         * are usually verified from the verifier's cache, without public key cryptography.
+         *
+         * @param signatureVerifier Verifier for signed URIs, or {@code null} to ignore
+         *         signatures.
+         */
+        @NonNull
+        public Builder signatureVerifier(@Nullable UpiSignatureVerifier signatureVerifier) {
+            this.signatureVerifier = signatureVerifier;
+            return this;
+        }
+
+        @NonNull
+        public UpiDelegate build() {
+            return new UpiDelegate(this);
+        }
+
+    }
+
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A UPI intent that is being handled in the background, returned by
+ * {@link UpiDelegate#handleAsync(android.content.Intent, Executor, UpiCallback)}. Results are
+ * delivered exactly once, on the main thread, to the callback that is attached at that time.
+ *
+ * <p>All methods must be called on the main thread.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiTask {
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private final UpiDelegate delegate;
+    private final Uri upiUri;
+
+    // Confined to the main thread
+    @Nullable private UpiCallback callback;
+    @Nullable private UpiResult result;
+    private boolean delivered;
+
+    // Read by the background thread to skip parsing
+    private volatile boolean cancelled;
+
+    UpiTask(UpiDelegate delegate, Uri upiUri, UpiCallback callback) {
+        this.delegate = delegate;
+        this.upiUri = upiUri;
+        this.callback = callback;
+    }
+
+    void executeOn(Executor executor) {
+        final String uriString = upiUri.toString();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) {
+                    return;
+                }
+                final UpiResult result = delegate.parse(uriString);
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onResult(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Attaches a callback, usually an {@code Activity} that was recreated after a configuration
+     * change. If the results arrived while no callback was attached, they are delivered right
+     * away.
+     *
+     * @param callback A callback to notify results.
+     */
+    @MainThread
+    public void attach(@NonNull UpiCallback callback) {
+        this.callback = callback;
+        deliverIfReady();
+    }
+
+    /**
+     * Detaches the current callback, so that it can be garbage collected. Results that arrive
+     * after this call are held until a callback is attached.
+     */
+    @MainThread
+    public void detach() {
+        this.callback = null;
+    }
+
+    /**
+     * Cancels this task. Results will not be delivered after this call, and parsing is skipped
+     * if it hasn't started yet.
+     */
+    @MainThread
+    public void cancel() {
+        cancelled = true;
+        callback = null;
+        result = null;
+    }
+
+    /**
+     * @return {@code true} if this task was cancelled.
+     */
+    @MainThread
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return {@code true} if results were delivered to a callback.
+     */
+    @MainThread
+    public boolean isDone() {
+        return delivered;
+    }
+
+    private void onResult(UpiResult result) {
+        if (cancelled) {
+            return;
+        }
+        this.result = result;
+        deliverIfReady();
+    }
+
+    private void deliverIfReady() {
+        if (delivered || cancelled || result == null || callback == null) {
+            return;
+        }
+        delivered = true;
+        UpiResult result = this.result;
+        this.result = null;
+        UpiDelegate.deliver(result, callback, upiUri);
+    }
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.cli;
+
+import com.mobsandgeeks.upi.UpiResult;
+import com.mobsandgeeks.upi.UpiUriParser;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates a file of newline-delimited UPI URIs. The file is split into chunks that start on
+ * line boundaries, and each chunk is memory-mapped and scanned for lines by a worker thread.
+ * Lines are validated with the same rules as {@code UpiDelegate#handle}, empty lines are skipped.
+ * Each worker decodes lines into one reused buffer, so validating a line doesn't allocate.
+ *
+ * @author Ragunath Jawahar
+ */
+final class DumpValidator {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte LF = '\n';
+    private static final byte CR = '\r';
+
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BOUNDARY_SCAN_SIZE = 8 * 1024;
+
+    // Each rejected line is recorded as line number, offset, length and error code
+    private static final int REJECT_STRIDE = 4;
+
+    private final int threads;
+    private final int maxChunkSize;
+
+    /**
+     * @param threads Number of worker threads.
+     * @param maxChunkSize Maximum number of bytes mapped by a worker at a time, a chunk can't be
+     *         larger than {@link Integer#MAX_VALUE} bytes.
+     */
+    DumpValidator(int threads, int maxChunkSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1, but was " + threads);
+        }
+        if (maxChunkSize < 1) {
+            throw new IllegalArgumentException("maxChunkSize must be >= 1, but was "
+                    + maxChunkSize);
+        }
+        this.threads = threads;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Validates every line of the input file.
+     *
+     * @param input A file with one UPI URI per line.
+     * @param rejected A file to write the rejected lines to, or {@code null}. Each rejected line
+     *         is written as its line number, the error and the line, separated by tabs.
+     * @return Line counts per result.
+     */
+    Report validate(Path input, Path rejected) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, rejected != null);
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Chunk>> futures = executor.invokeAll(chunks);
+                for (Future<Chunk> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while validating " + input, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to validate " + input, cause);
+            } finally {
+                executor.shutdown();
+            }
+
+            Report report = new Report();
+            for (Chunk chunk : chunks) {
+                report.add(chunk);
+            }
+            if (rejected != null) {
+                writeRejected(chunks, rejected);
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Splits the file into chunks of roughly equal size that start at the beginning of a line.
+     */
+    private List<Chunk> split(FileChannel channel, boolean recordRejects) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.min(maxChunkSize,
+                Math.max(MIN_CHUNK_SIZE, size / ((long) threads * CHUNKS_PER_THREAD)));
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        ByteBuffer scanBuffer = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize >= size
+                    ? size
+                    : nextLineStart(channel, start + chunkSize, size, scanBuffer);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line at offset " + start + " is too long");
+            }
+            chunks.add(new Chunk(channel, start, (int) (end - start), recordRejects));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * @return Offset of the first line that starts at or after the position.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size,
+            ByteBuffer scanBuffer) throws IOException {
+        long offset = position - 1;
+        while (offset < size) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scanBuffer.get(i) == LF) {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private static void writeRejected(List<Chunk> chunks, Path rejected) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(rejected))) {
+            long firstLine = 1;
+            byte[] line = new byte[256];
+            for (Chunk chunk : chunks) {
+                int[] rejects = chunk.rejects;
+                for (int i = 0; i < chunk.rejectedCount * REJECT_STRIDE; i += REJECT_STRIDE) {
+                    int length = rejects[i + 2];
+                    if (line.length < length) {
+                        line = new byte[Math.max(length, line.length * 2)];
+                    }
+                    chunk.buffer.position(rejects[i + 1]);
+                    chunk.buffer.get(line, 0, length);
+
+                    out.write(Long.toString(firstLine + rejects[i]).getBytes(UTF_8));
+                    out.write('\t');
+                    out.write(Report.errorName(rejects[i + 3]).getBytes(UTF_8));
+                    out.write('\t');
+                    out.write(line, 0, length);
+                    out.write(LF);
+                }
+                firstLine += chunk.lineCount;
+            }
+        }
+    }
+
+    /**
+     * A range of the file that is scanned by one worker.
+     */
+    private static final class Chunk implements Callable<Chunk> {
+
+        private final FileChannel channel;
+        private final long start;
+        private final int length;
+        private final boolean recordRejects;
+
+        // Written by the worker, read after the worker's future completes
+        MappedByteBuffer buffer;
+        CharsetDecoder decoder;
+        CharBuffer line;
+        int lineCount;
+        int uriCount;
+        int rejectedCount;
+        int[] rejects;
+        int[] errorCodes = new int[0];
+        int[] errorCounts = new int[0];
+
+        Chunk(FileChannel channel, long start, int length, boolean recordRejects) {
+            this.channel = channel;
+            this.start = start;
+            this.length = length;
+            this.recordRejects = recordRejects;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            // Malformed input is replaced the same way new String(bytes, UTF_8) does
+            decoder = UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            line = CharBuffer.allocate(256);
+            ByteBuffer bytes = buffer.duplicate();
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == LF) {
+                    validateLine(bytes, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < length) {
+                validateLine(bytes, lineStart, length);
+            }
+
+            // The rejected lines are copied out of the mapping later
+            this.buffer = recordRejects && rejectedCount > 0 ? buffer : null;
+            this.decoder = null;
+            this.line = null;
+            return this;
+        }
+
+        private void validateLine(ByteBuffer bytes, int start, int end) {
+            int lineNumber = lineCount++;
+            bytes.limit(end);
+            bytes.position(start);
+            if (end > start && bytes.get(end - 1) == CR) {
+                end--;
+                bytes.limit(end);
+            }
+            int length = end - start;
+            if (length == 0) {
+                return;
+            }
+
+            // UTF-8 never decodes to more chars than bytes, so the line always fits
+            if (line.capacity() < length) {
+                line = CharBuffer.allocate(Math.max(length, line.capacity() * 2));
+            }
+            line.clear();
+            decoder.reset();
+            decoder.decode(bytes, line, true);
+            decoder.flush(line);
+            line.flip();
+
+            uriCount++;
+            int errorCode = UpiUriParser.validate(line);
+            if (errorCode == UpiResult.NO_ERROR) {
+                return;
+            }
+
+            countError(errorCode);
+            if (recordRejects) {
+                int offset = rejectedCount * REJECT_STRIDE;
+                if (rejects == null) {
+                    rejects = new int[16 * REJECT_STRIDE];
+                } else if (offset == rejects.length) {
+                    rejects = Arrays.copyOf(rejects, offset * 2);
+                }
+                rejects[offset] = lineNumber;
+                rejects[offset + 1] = start;
+                rejects[offset + 2] = length;
+                rejects[offset + 3] = errorCode;
+            }
+            rejectedCount++;
+        }
+
+        private void countError(int errorCode) {
+            for (int i = 0; i < errorCodes.length; i++) {
+                if (errorCodes[i] == errorCode) {
+                    errorCounts[i]++;
+                    return;
+                }
+            }
+            errorCodes = Arrays.copyOf(errorCodes, errorCodes.length + 1);
+            errorCounts = Arrays.copyOf(errorCounts, errorCounts.length + 1);
+            errorCodes[errorCodes.length - 1] = errorCode;
+            errorCounts[errorCounts.length - 1] = 1;
+        }
+
+    }
+
+    /**
+     * Number of URIs in the file, by result.
+     */
+    static final class Report {
+
+        private final SortedMap<Integer, Long> errorCounts = new TreeMap<Integer, Long>();
+        private long uriCount;
+        private long rejectedCount;
+
+        void add(Chunk chunk) {
+            uriCount += chunk.uriCount;
+            rejectedCount += chunk.rejectedCount;
+            for (int i = 0; i < chunk.errorCodes.length; i++) {
+                Long count = errorCounts.get(chunk.errorCodes[i]);
+                errorCounts.put(chunk.errorCodes[i],
+                        (count != null ? count : 0L) + chunk.errorCounts[i]);
+            }
+        }
+
+        /**
+         * @return Number of non-empty lines.
+         */
+        long getUriCount() {
+            return uriCount;
+        }
+
+        long getValidCount() {
+            return uriCount - rejectedCount;
+        }
+
+        long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * @return Number of rejected lines, by error code in ascending order.
+         */
+        SortedMap<Integer, Long> getErrorCounts() {
+            return errorCounts;
+        }
+
+        static String errorName(int errorCode) {
+            switch (errorCode) {
+                case UpiResult.ERROR_MISSING_PAYEE_ADDRESS:
+                    return "ERROR_MISSING_PAYEE_ADDRESS";
+                case UpiResult.ERROR_MISSING_PAYEE_NAME:
+                    return "ERROR_MISSING_PAYEE_NAME";
+                case UpiResult.ERROR_INVALID_AMOUNT:
+                    return "ERROR_INVALID_AMOUNT";
+                case UpiResult.ERROR_INVALID_MINIMUM_AMOUNT:
+                    return "ERROR_INVALID_MINIMUM_AMOUNT";
+                default:
+                    return "ERROR_" + errorCode;
+            }
+        }
+
+    }
+
+}
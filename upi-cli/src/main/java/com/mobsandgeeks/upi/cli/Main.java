@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line entry point that validates a file with one UPI URI per line.
+ *
+ * <pre>
+ * upi-validate [--threads N] [--rejected FILE] INPUT
+ * </pre>
+ *
+ * Exits with {@code 0} if every URI is valid, {@code 1} if some URIs were rejected and
+ * {@code 2} if the arguments or the input are not usable.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class Main {
+
+    private static final int EXIT_VALID = 0;
+    private static final int EXIT_REJECTED = 1;
+    private static final int EXIT_ERROR = 2;
+
+    private static final int MAX_CHUNK_SIZE = 256 * 1024 * 1024;
+
+    private Main() { /* No instances. */ }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path rejected = null;
+        Path input = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if ("-t".equals(arg) || "--threads".equals(arg)) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("-r".equals(arg) || "--rejected".equals(arg)) {
+                    rejected = Paths.get(args[++i]);
+                } else if (input == null && !arg.startsWith("-")) {
+                    input = Paths.get(arg);
+                } else {
+                    return usage(err, "Unexpected argument: " + arg);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return usage(err, "Missing value for " + args[args.length - 1]);
+        } catch (NumberFormatException e) {
+            return usage(err, "Invalid number of threads");
+        }
+        if (input == null) {
+            return usage(err, "Missing input file");
+        }
+        if (threads < 1) {
+            return usage(err, "Number of threads must be at least 1");
+        }
+
+        DumpValidator.Report report;
+        long start = System.nanoTime();
+        try {
+            report = new DumpValidator(threads, MAX_CHUNK_SIZE).validate(input, rejected);
+        } catch (IOException e) {
+            err.println("upi-validate: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        out.println("URIs:     " + report.getUriCount());
+        out.println("Valid:    " + report.getValidCount());
+        out.println("Rejected: " + report.getRejectedCount());
+        for (Map.Entry<Integer, Long> entry : report.getErrorCounts().entrySet()) {
+            out.println("  " + DumpValidator.Report.errorName(entry.getKey()) + " ("
+                    + entry.getKey() + "): " + entry.getValue());
+        }
+        out.println("Elapsed:  " + elapsedMillis + " ms");
+
+        return report.getRejectedCount() > 0 ? EXIT_REJECTED : EXIT_VALID;
+    }
+
+    private static int usage(PrintStream err, String message) {
+        err.println("upi-validate: " + message);
+        err.println("Usage: upi-validate [--threads N] [--rejected FILE] INPUT");
+        return EXIT_ERROR;
+    }
+
+}
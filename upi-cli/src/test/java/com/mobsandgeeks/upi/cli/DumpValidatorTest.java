@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.cli;
+
+import com.mobsandgeeks.upi.UpiResult;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class DumpValidatorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void validate_countsErrorsAcrossChunks() throws IOException {
+        File input = folder.newFile("dump.txt");
+        File rejected = new File(folder.getRoot(), "rejected.txt");
+        StringBuilder dump = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            dump.append("upi://pay?pa=m").append(i).append("@upi&pn=M&am=").append(i).append('\n');
+        }
+        dump.append("upi://pay?pn=NoAddress\r\n")
+                .append('\n')
+                .append("upi://pay?pa=a@upi&pn=A&am=1.2.3\n")
+                .append("upi://pay?pa=a@upi&pn=A&mam=x");
+        Files.write(input.toPath(), dump.toString().getBytes(UTF_8));
+
+        // Small chunks, so that lines straddle chunk boundaries
+        DumpValidator.Report report = new DumpValidator(3, 97)
+                .validate(input.toPath(), rejected.toPath());
+
+        assertEquals(503, report.getUriCount());
+        assertEquals(500, report.getValidCount());
+        assertEquals(3, report.getRejectedCount());
+        assertEquals(3, report.getErrorCounts().size());
+        assertEquals(Long.valueOf(1), report.getErrorCounts().get(UpiResult.ERROR_INVALID_AMOUNT));
+
+        List<String> lines = Files.readAllLines(rejected.toPath(), UTF_8);
+        assertEquals(Arrays.asList(
+                "501\tERROR_MISSING_PAYEE_ADDRESS\tupi://pay?pn=NoAddress",
+                "503\tERROR_INVALID_AMOUNT\tupi://pay?pa=a@upi&pn=A&am=1.2.3",
+                "504\tERROR_INVALID_MINIMUM_AMOUNT\tupi://pay?pa=a@upi&pn=A&mam=x"), lines);
+    }
+
+    @Test
+    public void validate_decodesUtf8Lines() throws IOException {
+        File input = folder.newFile("dump.txt");
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+        dump.write("upi://pay?pa=a@upi&pn=\u0928\u092E\u0938\u094D\u0924\u0947\n"
+                .getBytes(UTF_8));
+        // An invalid byte is replaced, so the name isn't blank
+        dump.write("upi://pay?pa=a@upi&pn=".getBytes(UTF_8));
+        dump.write(0xFF);
+        dump.write("\nupi://pay?pa=a@upi&pn=\u3000&am=\u0967\n".getBytes(UTF_8));
+        Files.write(input.toPath(), dump.toByteArray());
+
+        DumpValidator.Report report = new DumpValidator(1, 1024).validate(input.toPath(), null);
+
+        assertEquals(3, report.getUriCount());
+        assertEquals(2, report.getValidCount());
+        assertEquals(Long.valueOf(1), report.getErrorCounts().get(UpiResult.ERROR_INVALID_AMOUNT));
+    }
+
+}
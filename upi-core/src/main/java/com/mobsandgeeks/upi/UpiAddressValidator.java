@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Validates payee addresses, so that malformed addresses and addresses of unknown payment service
+ * providers are rejected on the device instead of by the payment backend.
+ *
+ * <p>A virtual payment address is a username and a handle separated by {@code @}, such as
+ * {@code store@ybl}. The username has letters, digits, dots, hyphens and underscores, and the
+ * handle has letters and digits. Addresses are at most {@link #MAX_LENGTH} characters long. When
+ * the validator has a {@link UpiHandleIndex}, the handle must also be in the index. Neither check
+ * allocates.
+ *
+ * <p>The index can be replaced at any time, e.g. with a handle list downloaded from a server.
+ * Validation on other threads picks up the new index right away.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiAddressValidator {
+
+    /**
+     * Maximum length of a virtual payment address.
+     */
+    public static final int MAX_LENGTH = 255;
+
+    @Nullable private volatile UpiHandleIndex handleIndex;
+
+    /**
+     * Creates a validator that checks handles against {@link UpiHandleIndex#getDefault()}.
+     */
+    public UpiAddressValidator() {
+        this(UpiHandleIndex.getDefault());
+    }
+
+    /**
+     * @param handleIndex Index of known handles, or {@code null} to only check the syntax.
+     */
+    public UpiAddressValidator(@Nullable UpiHandleIndex handleIndex) {
+        this.handleIndex = handleIndex;
+    }
+
+    /**
+     * Replaces the index of known handles.
+     *
+     * @param handleIndex Index of known handles, or {@code null} to only check the syntax.
+     */
+    public void setHandleIndex(@Nullable UpiHandleIndex handleIndex) {
+        this.handleIndex = handleIndex;
+    }
+
+    @Nullable
+    public UpiHandleIndex getHandleIndex() {
+        return handleIndex;
+    }
+
+    /**
+     * Validates the payee address of a payload.
+     *
+     * @return {@link UpiResult#NO_ERROR}, {@link UpiResult#ERROR_INVALID_PAYEE_ADDRESS} or
+     *         {@link UpiResult#ERROR_UNKNOWN_PAYEE_HANDLE}.
+     */
+    public int validate(@NonNull UpiPayload payload) {
+        return validate(payload.getPayeeAddress());
+    }
+
+    /**
+     * Validates a payee address.
+     *
+     * @return {@link UpiResult#NO_ERROR}, {@link UpiResult#ERROR_INVALID_PAYEE_ADDRESS} or
+     *         {@link UpiResult#ERROR_UNKNOWN_PAYEE_HANDLE}.
+     */
+    public int validate(@NonNull CharSequence address) {
+        int handleStart = handleStart(address);
+        if (handleStart == -1) {
+            return UpiResult.ERROR_INVALID_PAYEE_ADDRESS;
+        }
+        UpiHandleIndex handleIndex = this.handleIndex;
+        if (handleIndex != null
+                && handleIndex.getProvider(address, handleStart, address.length()) == null) {
+            return UpiResult.ERROR_UNKNOWN_PAYEE_HANDLE;
+        }
+        return UpiResult.NO_ERROR;
+    }
+
+    /**
+     * Looks up the provider of an address's handle.
+     *
+     * @return The provider, or {@code null} if the address is not valid, the handle is unknown or
+     *         the validator has no index.
+     */
+    @Nullable
+    public String getProvider(@NonNull CharSequence address) {
+        int handleStart = handleStart(address);
+        UpiHandleIndex handleIndex = this.handleIndex;
+        return handleStart != -1 && handleIndex != null
+                ? handleIndex.getProvider(address, handleStart, address.length())
+                : null;
+    }
+
+    /**
+     * Checks the syntax of a virtual payment address, without looking up its handle.
+     *
+     * @return {@code true} if the address is a username and a handle separated by {@code @}.
+     */
+    public static boolean isValid(@NonNull CharSequence address) {
+        return handleStart(address) != -1;
+    }
+
+    /**
+     * @return Index of the first character of the handle, or {@code -1} if the address is not
+     *         valid.
+     */
+    static int handleStart(CharSequence address) {
+        int length = address.length();
+        if (length > MAX_LENGTH) {
+            return -1;
+        }
+        int at = 0;
+        while (at < length && isUsernameChar(address.charAt(at))) {
+            at++;
+        }
+        if (at == 0 || at == length || address.charAt(at) != '@'
+                || !isValidHandle(address, at + 1, length)) {
+            return -1;
+        }
+        return at + 1;
+    }
+
+    /**
+     * @return {@code true} if the characters between {@code start} and {@code end} are a handle.
+     */
+    static boolean isValidHandle(CharSequence s, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (!isLetterOrDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUsernameChar(char c) {
+        return isLetterOrDigit(c) || c == '.' || c == '-' || c == '_';
+    }
+
+    // Only ASCII letters and digits, unlike Character.isLetterOrDigit(char)
+    private static boolean isLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses UPI amounts into paise without allocating or throwing. An amount is a non-negative
+ * decimal number with at most two digits after the decimal point, e.g. "100", "99.5" or "0.75".
+ *
+ * @author Ragunath Jawahar
+ */
+final class UpiAmount {
+
+    /**
+     * Returned by {@link #parsePaise(CharSequence, int, int)} for malformed amounts.
+     */
+    static final long INVALID = -2L;
+
+    private static final int MAX_SCALE = 2;
+    private static final long[] PAISE_PER_UNIT = { 100, 10, 1 };
+
+    private UpiAmount() { /* No instances. */ }
+
+    /**
+     * Parses a range of characters as an amount.
+     *
+     * @param s The characters to parse.
+     * @param start Start index of the amount, inclusive.
+     * @param end End index of the amount, exclusive.
+     * @return The amount in paise, or {@link #INVALID} if the range is not a valid amount.
+     */
+    static long parsePaise(CharSequence s, int start, int end) {
+        long paise = 0;
+        int digits = 0;
+        int scale = -1;
+
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (scale != -1 && ++scale > MAX_SCALE) {
+                    return INVALID;
+                }
+                int digit = c - '0';
+                if (paise > (Long.MAX_VALUE - digit) / 10) {
+                    return INVALID;
+                }
+                paise = paise * 10 + digit;
+                digits++;
+            } else if (c == '.' && scale == -1) {
+                scale = 0;
+            } else {
+                return INVALID;
+            }
+        }
+
+        if (digits == 0) {
+            return INVALID;
+        }
+        int multiplier = (int) PAISE_PER_UNIT[scale == -1 ? 0 : scale];
+        if (paise > Long.MAX_VALUE / multiplier) {
+            return INVALID;
+        }
+        return paise * multiplier;
+    }
+
+    /**
+     * Counts the digits after the decimal point of an amount that was accepted by
+     * {@link #parsePaise(CharSequence, int, int)}.
+     */
+    static int scale(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == '.') {
+                return end - i - 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return The unscaled value of an amount in paise, e.g. 995 for 99.5 with a scale of 1.
+     */
+    static long unscaledValue(long paise, int scale) {
+        return paise / PAISE_PER_UNIT[scale];
+    }
+
+    /**
+     * @return The amount in paise of an unscaled value with the given scale.
+     */
+    static long toPaise(long unscaledValue, int scale) {
+        return unscaledValue * PAISE_PER_UNIT[scale];
+    }
+
+    /**
+     * Creates a {@link BigDecimal} with the same value and scale as the parsed amount.
+     */
+    static BigDecimal toBigDecimal(long paise, int scale) {
+        return BigDecimal.valueOf(unscaledValue(paise, scale), scale);
+    }
+
+}
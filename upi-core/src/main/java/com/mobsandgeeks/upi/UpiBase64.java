@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Decodes Base64, because {@code java.util.Base64} needs Java 8 and {@code android.util.Base64}
+ * isn't available on the JVM. Both the standard and the URL-safe alphabets are accepted, and
+ * padding is optional.
+ *
+ * @author Ragunath Jawahar
+ */
+final class UpiBase64 {
+
+    private static final int INVALID = -1;
+    private static final int PADDING = -2;
+
+    // Values of ASCII characters, a space is a plus sign that went through form decoding
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int i = 0; i < VALUES.length; i++) {
+            VALUES[i] = INVALID;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+        for (int i = 0; i < alphabet.length(); i++) {
+            VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+        VALUES['+'] = 62;
+        VALUES['-'] = 62;
+        VALUES[' '] = 62;
+        VALUES['/'] = 63;
+        VALUES['_'] = 63;
+        VALUES['='] = PADDING;
+    }
+
+    private UpiBase64() { /* No instances. */ }
+
+    /**
+     * @return The decoded bytes, or {@code null} if the text is not valid Base64.
+     */
+    @Nullable
+    static byte[] decode(CharSequence s) {
+        return decode(s, 0, s.length());
+    }
+
+    /**
+     * Decodes a range of the text.
+     *
+     * @return The decoded bytes, or {@code null} if the range is not valid Base64.
+     */
+    @Nullable
+    static byte[] decode(CharSequence s, int start, int end) {
+        // Padding is only allowed to complete the last group of four characters
+        int padding = 0;
+        while (end - padding > start && s.charAt(end - padding - 1) == '=' && padding < 2) {
+            padding++;
+        }
+        if (padding > 0 && (end - start) % 4 != 0) {
+            return null;
+        }
+        int length = end - start - padding;
+        if (length % 4 == 1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length / 4 * 3 + Math.max(0, length % 4 - 1)];
+        int bits = 0;
+        int bitCount = 0;
+        int count = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = s.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : INVALID;
+            if (value < 0) {
+                return null;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                bytes[count++] = (byte) (bits >> bitCount);
+            }
+        }
+        // Bits left over after the last byte must be zero
+        if ((bits & ((1 << bitCount) - 1)) != 0) {
+            return null;
+        }
+        return bytes;
+    }
+
+}
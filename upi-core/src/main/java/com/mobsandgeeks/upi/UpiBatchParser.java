@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses large collections of UPI URIs in parallel on a {@link ForkJoinPool}. The input is split
+ * into contiguous ranges and each worker writes straight into the result arrays, so no objects
+ * are allocated per URI other than the payload and its extras.
+ *
+ * <p>On Android, {@link ForkJoinPool} is available from API level 21. On older versions, use
+ * {@link #parseAllSequentially(List)}, which doesn't touch it.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiBatchParser {
+
+    private static final int MIN_RANGE_SIZE = 64;
+
+    private UpiBatchParser() { /* No instances. */ }
+
+    /**
+     * Parses and validates UPI URIs on a shared pool that has one worker per processor.
+     *
+     * @param upiUris UPI URIs to parse. The list is read from several threads, so it must not be
+     *         modified until this method returns.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiBatchResult parseAll(@NonNull List<? extends CharSequence> upiUris) {
+        return parseAll(upiUris, UpiForkJoin.sharedPool());
+    }
+
+    /**
+     * Parses and validates UPI URIs on the given pool.
+     *
+     * @param upiUris UPI URIs to parse. The list is read from several threads, so it must not be
+     *         modified until this method returns.
+     * @param pool A pool that parses the URIs.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiBatchResult parseAll(@NonNull List<? extends CharSequence> upiUris,
+            @NonNull ForkJoinPool pool) {
+        return parseAll(upiUris.toArray(new CharSequence[upiUris.size()]), pool);
+    }
+
+    /**
+     * Parses and validates UPI URIs one after another on the calling thread, without a pool.
+     *
+     * @param upiUris UPI URIs to parse.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiBatchResult parseAllSequentially(
+            @NonNull List<? extends CharSequence> upiUris) {
+        ParseRange range = new ParseRange(upiUris.toArray(new CharSequence[upiUris.size()]));
+        range.run(0, upiUris.size());
+        return range.toResult();
+    }
+
+    /**
+     * Parses and validates UPI URIs on a shared pool that has one worker per processor.
+     *
+     * @param upiUris UPI URIs to parse.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiBatchResult parseAll(@NonNull CharSequence[] upiUris) {
+        return parseAll(upiUris, UpiForkJoin.sharedPool());
+    }
+
+    /**
+     * Parses and validates UPI URIs on the given pool.
+     *
+     * @param upiUris UPI URIs to parse.
+     * @param pool A pool that parses the URIs.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiBatchResult parseAll(@NonNull CharSequence[] upiUris,
+            @NonNull ForkJoinPool pool) {
+        ParseRange range = new ParseRange(upiUris);
+        UpiForkJoin.invoke(pool, upiUris.length, MIN_RANGE_SIZE, range);
+        return range.toResult();
+    }
+
+    /**
+     * Parses URIs into the result arrays, whether ranges run on a pool or on the calling thread.
+     */
+    private static final class ParseRange implements UpiForkJoin.RangeTask {
+
+        private final CharSequence[] upiUris;
+        private final UpiPayload[] payloads;
+        private final Map<String, String>[] extras;
+        private final int[] errorCodes;
+        private final AtomicInteger errorCount = new AtomicInteger();
+
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        ParseRange(CharSequence[] upiUris) {
+            this.upiUris = upiUris;
+            this.payloads = new UpiPayload[upiUris.length];
+            this.extras = new Map[upiUris.length];
+            this.errorCodes = new int[upiUris.length];
+        }
+
+        @Override
+        public void run(int start, int end) {
+            int errors = 0;
+            for (int i = start; i < end; i++) {
+                CharSequence upiUri = upiUris[i];
+                UpiPayload.Builder builder = new UpiPayload.Builder();
+                Map<String, String> uriExtras = UpiUriParser.parse(upiUri.toString(), builder);
+                int errorCode = UpiUriParser.validate(builder);
+                if (errorCode == UpiResult.NO_ERROR) {
+                    payloads[i] = builder.build();
+                    extras[i] = uriExtras;
+                } else {
+                    errors++;
+                }
+                errorCodes[i] = errorCode;
+            }
+            if (errors > 0) {
+                errorCount.addAndGet(errors);
+            }
+        }
+
+        /**
+         * Must be called after every range has run.
+         */
+        UpiBatchResult toResult() {
+            return new UpiBatchResult(payloads, extras, errorCodes, errorCount.get());
+        }
+
+    }
+
+}
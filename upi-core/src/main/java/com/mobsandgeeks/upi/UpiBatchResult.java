@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Results of parsing a batch of UPI URIs, stored in arrays that are indexed the same way as the
+ * input. Valid URIs have a payload and extras, invalid URIs only have an error code.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiBatchResult {
+
+    private final UpiPayload[] payloads;
+    private final Map<String, String>[] extras;
+    private final int[] errorCodes;
+    private final int errorCount;
+
+    UpiBatchResult(UpiPayload[] payloads, Map<String, String>[] extras, int[] errorCodes,
+            int errorCount) {
+        this.payloads = payloads;
+        this.extras = extras;
+        this.errorCodes = errorCodes;
+        this.errorCount = errorCount;
+    }
+
+    /**
+     * @return Number of URIs in the batch.
+     */
+    public int size() {
+        return errorCodes.length;
+    }
+
+    /**
+     * @return Number of URIs in the batch that are not valid.
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @param index Index of the URI in the input.
+     * @return {@code true} if the URI is a valid UPI URI.
+     */
+    public boolean isSuccess(int index) {
+        return errorCodes[index] == UpiResult.NO_ERROR;
+    }
+
+    /**
+     * @param index Index of the URI in the input.
+     * @return Information parsed from the URI, or {@code null} if the URI is not valid.
+     */
+    @Nullable
+    public UpiPayload getPayload(int index) {
+        return payloads[index];
+    }
+
+    /**
+     * @param index Index of the URI in the input.
+     * @return Parameters in the URI that are not a part of the UPI spec, or {@code null} if the
+     *         URI is not valid.
+     */
+    @Nullable
+    public Map<String, String> getExtras(int index) {
+        return extras[index];
+    }
+
+    /**
+     * @param index Index of the URI in the input.
+     * @return One of the {@code UpiResult.ERROR_*} constants, or {@link UpiResult#NO_ERROR} if
+     *         the URI is valid.
+     */
+    public int getErrorCode(int index) {
+        return errorCodes[index];
+    }
+
+    /**
+     * @param index Index of the URI in the input.
+     * @return The result of a single URI.
+     */
+    @NonNull
+    public UpiResult get(int index) {
+        return isSuccess(index)
+                ? new UpiResult(payloads[index], extras[index])
+                : new UpiResult(errorCodes[index]);
+    }
+
+}
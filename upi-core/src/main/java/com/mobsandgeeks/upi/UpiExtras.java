@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map of the parameters in a UPI URI that are not a part of the UPI spec. The parser
+ * only records where each parameter is in the URI, names and values are decoded into a flat array
+ * the first time the map is read. Like {@code android.net.Uri#getQueryParameter(String)}, the
+ * first occurrence of a repeated parameter wins.
+ *
+ * @author Ragunath Jawahar
+ */
+final class UpiExtras extends AbstractMap<String, String> {
+
+    /**
+     * Number of ints used to record a parameter: start and end of its name and of its value.
+     */
+    static final int RANGE_STRIDE = 4;
+
+    private final String source;
+    private final int[] ranges;
+    private final int parameterCount;
+
+    // Decoded names and values, interleaved. Written once, and racing threads decode equal arrays.
+    private volatile String[] namesAndValues;
+    private Set<Entry<String, String>> entrySet;
+
+    /**
+     * @param source The UPI URI.
+     * @param ranges Start and end indices of the name and the value of each parameter.
+     * @param parameterCount Number of parameters recorded in {@code ranges}.
+     */
+    UpiExtras(String source, int[] ranges, int parameterCount) {
+        this.source = source;
+        this.ranges = ranges;
+        this.parameterCount = parameterCount;
+    }
+
+    /**
+     * @return Number of parameters in the URI, repeated names included, without decoding them.
+     */
+    int getParameterCount() {
+        return parameterCount;
+    }
+
+    @Override
+    public int size() {
+        return namesAndValues().length / 2;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return parameterCount == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(namesAndValues(), key) != -1;
+    }
+
+    @Override
+    public String get(Object key) {
+        String[] namesAndValues = namesAndValues();
+        int index = indexOf(namesAndValues, key);
+        return index != -1 ? namesAndValues[index + 1] : null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private static int indexOf(String[] namesAndValues, Object name) {
+        return indexOf(namesAndValues, namesAndValues.length, name);
+    }
+
+    private static int indexOf(String[] namesAndValues, int size, Object name) {
+        for (int i = 0; i < size; i += 2) {
+            if (namesAndValues[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String[] namesAndValues() {
+        String[] namesAndValues = this.namesAndValues;
+        if (namesAndValues == null) {
+            namesAndValues = decode();
+            this.namesAndValues = namesAndValues;
+        }
+        return namesAndValues;
+    }
+
+    private String[] decode() {
+        String[] decoded = new String[parameterCount * 2];
+        int size = 0;
+
+        for (int i = 0; i < parameterCount; i++) {
+            int offset = i * RANGE_STRIDE;
+            String name = UpiUriParser.decode(source, ranges[offset], ranges[offset + 1]);
+            if (indexOf(decoded, size, name) == -1) {
+                decoded[size++] = name;
+                decoded[size++] = UpiUriParser.decode(source, ranges[offset + 2],
+                        ranges[offset + 3]);
+            }
+        }
+
+        if (size == decoded.length) {
+            return decoded;
+        }
+        String[] trimmed = new String[size];
+        System.arraycopy(decoded, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+
+        @Override
+        public int size() {
+            return UpiExtras.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            final String[] namesAndValues = namesAndValues();
+
+            return new Iterator<Entry<String, String>>() {
+                private int index;
+
+                @Override
+                public boolean hasNext() {
+                    return index < namesAndValues.length;
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Entry<String, String> entry = new SimpleImmutableEntry<>(
+                            namesAndValues[index], namesAndValues[index + 1]);
+                    index += 2;
+                    return entry;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException("Extras cannot be modified.");
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits index ranges across a {@link ForkJoinPool}, for the batch APIs. Available on Android
+ * from API level 21.
+ *
+ * @author Ragunath Jawahar
+ */
+final class UpiForkJoin {
+
+    // Keep a few ranges per worker, so that workers that finish early can steal the rest
+    private static final int RANGES_PER_WORKER = 8;
+
+    private UpiForkJoin() { /* No instances. */ }
+
+    /**
+     * Work done on a contiguous range of indices. Ranges never overlap.
+     */
+    interface RangeTask {
+
+        void run(int start, int end);
+
+    }
+
+    /**
+     * @return A pool that has one worker per processor, created on first use.
+     */
+    static ForkJoinPool sharedPool() {
+        return PoolHolder.POOL;
+    }
+
+    /**
+     * Runs the task over {@code [0, size)} on the pool and waits for it to finish. Small inputs
+     * run on the calling thread.
+     *
+     * @param minRangeSize Smallest range handed to a worker.
+     */
+    static void invoke(ForkJoinPool pool, int size, int minRangeSize, RangeTask task) {
+        int rangeSize = Math.max(minRangeSize,
+                size / (pool.getParallelism() * RANGES_PER_WORKER) + 1);
+        if (size <= rangeSize) {
+            task.run(0, size);
+        } else {
+            pool.invoke(new Range(task, rangeSize, 0, size));
+        }
+    }
+
+    private static final class Range extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient RangeTask task;
+        private final int rangeSize;
+        private final int start;
+        private final int end;
+
+        Range(RangeTask task, int rangeSize, int start, int end) {
+            this.task = task;
+            this.rangeSize = rangeSize;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > rangeSize) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Range(task, rangeSize, start, middle),
+                        new Range(task, rangeSize, middle, end));
+            } else {
+                task.run(start, end);
+            }
+        }
+
+    }
+
+    private static final class PoolHolder {
+
+        static final ForkJoinPool POOL = new ForkJoinPool();
+
+    }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.upi.internal.UpiHashing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable index of the handles of payment service providers, the part of a virtual payment
+ * address after the {@code @}, to the bank or app that issues them. Handles are case-insensitive.
+ *
+ * <p>The index is compiled into a perfect hash table, so a lookup hashes the handle once and
+ * compares it with the one handle in its slot, without allocating. Handles are grouped into
+ * small buckets by their hash, and each bucket gets a displacement that moves its handles into
+ * slots no other handle uses.
+ *
+ * <p>The default index is compiled from a list bundled with the library when the library is built.
+ * To pick up handles of new providers without an app update, {@link #load(InputStream)} an updated
+ * list and hand it to {@link UpiAddressValidator#setHandleIndex(UpiHandleIndex)}.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiHandleIndex {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final int HANDLES_PER_BUCKET = 4;
+    private static final int MAX_DISPLACEMENT = 1 << 16;
+    private static final int NO_HANDLE = -1;
+
+    private final int bucketMask;
+    private final int slotMask;
+    private final int[] displacements;
+    // Index of the handle in each slot, or NO_HANDLE
+    private final int[] slots;
+    // Lowercase handles, back to back, handle i is chars[starts[i]] to chars[starts[i + 1]]
+    private final char[] chars;
+    private final int[] starts;
+    private final String[] providers;
+
+    private UpiHandleIndex(int bucketMask, int slotMask, int[] displacements, int[] slots,
+            char[] chars, int[] starts, String[] providers) {
+        this.bucketMask = bucketMask;
+        this.slotMask = slotMask;
+        this.displacements = displacements;
+        this.slots = slots;
+        this.chars = chars;
+        this.starts = starts;
+        this.providers = providers;
+    }
+
+    /**
+     * @return The index generated from the handle list bundled with the library.
+     */
+    @NonNull
+    public static UpiHandleIndex getDefault() {
+        return DefaultHolder.INDEX;
+    }
+
+    /**
+     * Loads a handle list. Each line has a handle and its provider separated by a tab. Blank lines
+     * and lines starting with {@code #} are ignored.
+     *
+     * @param in UTF-8 text, not closed by this method.
+     * @throws IOException if reading fails or a line is not valid.
+     */
+    @NonNull
+    public static UpiHandleIndex load(@NonNull InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        Map<String, String> providersByHandle = new LinkedHashMap<String, String>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String handle = tab != -1 ? line.substring(0, tab).trim() : line;
+            String provider = tab != -1 ? line.substring(tab + 1).trim() : "";
+            if (!UpiAddressValidator.isValidHandle(handle, 0, handle.length())
+                    || provider.isEmpty()) {
+                throw new IOException("Invalid handle list, line " + lineNumber + ": " + line);
+            }
+            if (providersByHandle.put(handle.toLowerCase(Locale.US), provider) != null) {
+                throw new IOException("Invalid handle list, line " + lineNumber
+                        + ": duplicate handle " + handle);
+            }
+        }
+        return compile(providersByHandle);
+    }
+
+    /**
+     * Compiles an index.
+     *
+     * @param providersByHandle Names of providers by their handles, e.g. {@code "ybl"} to
+     *         {@code "PhonePe (Yes Bank)"}. Handles must differ in more than their case.
+     * @throws IllegalArgumentException if a handle is not valid or is repeated.
+     */
+    @NonNull
+    public static UpiHandleIndex compile(@NonNull Map<String, String> providersByHandle) {
+        int size = providersByHandle.size();
+        int[] starts = new int[size + 1];
+        String[] providers = new String[size];
+        long[] hashes = new long[size];
+        StringBuilder chars = new StringBuilder();
+        Set<String> handles = new HashSet<String>(size * 2);
+        int index = 0;
+        for (Map.Entry<String, String> entry : providersByHandle.entrySet()) {
+            String handle = entry.getKey();
+            if (!UpiAddressValidator.isValidHandle(handle, 0, handle.length())) {
+                throw new IllegalArgumentException("Invalid handle: " + handle);
+            }
+            if (entry.getValue() == null) {
+                throw new IllegalArgumentException("No provider for handle: " + handle);
+            }
+            String lowerCase = handle.toLowerCase(Locale.US);
+            if (!handles.add(lowerCase)) {
+                throw new IllegalArgumentException("Duplicate handle: " + handle);
+            }
+            starts[index] = chars.length();
+            chars.append(lowerCase);
+            providers[index] = entry.getValue();
+            hashes[index] = hash(chars, starts[index], chars.length());
+            index++;
+        }
+        starts[size] = chars.length();
+        char[] packed = new char[chars.length()];
+        chars.getChars(0, packed.length, packed, 0);
+
+        int bucketCount = ceilingPowerOfTwo((size + HANDLES_PER_BUCKET - 1) / HANDLES_PER_BUCKET);
+        int slotCount = ceilingPowerOfTwo(size * 2);
+        while (true) {
+            UpiHandleIndex compiled = place(hashes, bucketCount, slotCount, packed, starts,
+                    providers);
+            if (compiled != null) {
+                return compiled;
+            }
+            if (slotCount >= 1 << 30) {
+                throw new IllegalStateException("Cannot place " + size + " handles");
+            }
+            slotCount *= 2;
+        }
+    }
+
+    /**
+     * Looks up the provider of a handle.
+     *
+     * @return The provider, or {@code null} if the handle is not in the index.
+     */
+    @Nullable
+    public String getProvider(@NonNull CharSequence handle) {
+        return getProvider(handle, 0, handle.length());
+    }
+
+    /**
+     * Looks up the provider of the handle between {@code start} and {@code end}, e.g. the part of
+     * an address after the {@code @}.
+     *
+     * @return The provider, or {@code null} if the handle is not in the index.
+     */
+    @Nullable
+    public String getProvider(@NonNull CharSequence s, int start, int end) {
+        long hash = hash(s, start, end);
+        int handle = slots[slot(hash, displacements[bucket(hash)])];
+        if (handle == NO_HANDLE || starts[handle + 1] - starts[handle] != end - start) {
+            return null;
+        }
+        for (int i = start, j = starts[handle]; i < end; i++, j++) {
+            if (UpiUriParser.toLowerCase(s.charAt(i)) != chars[j]) {
+                return null;
+            }
+        }
+        return providers[handle];
+    }
+
+    /**
+     * @return Number of handles in the index.
+     */
+    public int size() {
+        return providers.length;
+    }
+
+    /**
+     * Tries to find a displacement for every bucket, fullest buckets first.
+     *
+     * @return The index, or {@code null} if a bucket didn't fit into the slots.
+     */
+    @Nullable
+    private static UpiHandleIndex place(long[] hashes, int bucketCount, int slotCount,
+            char[] chars, int[] starts, String[] providers) {
+        int bucketMask = bucketCount - 1;
+        int slotMask = slotCount - 1;
+        final List<List<Integer>> buckets = new ArrayList<List<Integer>>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<Integer>(HANDLES_PER_BUCKET));
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            buckets.get((int) (hashes[i] >>> 32) & bucketMask).add(i);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return buckets.get(b).size() - buckets.get(a).size();
+            }
+        });
+
+        int[] displacements = new int[bucketCount];
+        int[] slots = new int[slotCount];
+        Arrays.fill(slots, NO_HANDLE);
+        int[] taken = new int[HANDLES_PER_BUCKET];
+        for (Integer bucket : order) {
+            List<Integer> handles = buckets.get(bucket);
+            if (handles.isEmpty()) {
+                break;
+            }
+            if (taken.length < handles.size()) {
+                taken = new int[handles.size()];
+            }
+            int displacement = 0;
+            while (!fits(hashes, handles, displacement, slotMask, slots, taken)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    return null;
+                }
+            }
+            displacements[bucket] = displacement;
+            for (int i = 0; i < handles.size(); i++) {
+                slots[taken[i]] = handles.get(i);
+            }
+        }
+        return new UpiHandleIndex(bucketMask, slotMask, displacements, slots, chars, starts,
+                providers);
+    }
+
+    /**
+     * Checks if all handles of a bucket land in distinct free slots, and records the slots.
+     */
+    private static boolean fits(long[] hashes, List<Integer> handles, int displacement,
+            int slotMask, int[] slots, int[] taken) {
+        for (int i = 0; i < handles.size(); i++) {
+            long hash = hashes[handles.get(i)] + displacement * GOLDEN_GAMMA;
+            int slot = (int) UpiHashing.mix(hash) & slotMask;
+            if (slots[slot] != NO_HANDLE) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (taken[j] == slot) {
+                    return false;
+                }
+            }
+            taken[i] = slot;
+        }
+        return true;
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash >>> 32) & bucketMask;
+    }
+
+    private int slot(long hash, int displacement) {
+        return (int) UpiHashing.mix(hash + displacement * GOLDEN_GAMMA) & slotMask;
+    }
+
+    /**
+     * Hashes lowercase characters with 64-bit FNV-1a.
+     */
+    private static long hash(CharSequence s, int start, int end) {
+        long hash = UpiHashing.FNV_OFFSET_BASIS;
+        for (int i = start; i < end; i++) {
+            hash = UpiHashing.fnv1a(hash, UpiUriParser.toLowerCase(s.charAt(i)));
+        }
+        return hash;
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private static final class DefaultHolder {
+
+        // Generated tables are already placed, nothing is hashed until the first lookup
+        static final UpiHandleIndex INDEX = new UpiHandleIndex(UpiHandleIndexData.BUCKET_MASK,
+                UpiHandleIndexData.SLOT_MASK, UpiHandleIndexData.DISPLACEMENTS,
+                UpiHandleIndexData.SLOTS, UpiHandleIndexData.CHARS.toCharArray(),
+                UpiHandleIndexData.STARTS, UpiHandleIndexData.PROVIDERS);
+
+    }
+
+}
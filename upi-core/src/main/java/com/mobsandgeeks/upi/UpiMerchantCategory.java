@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * A merchant category, identified by its ISO 18245 merchant category code, the {@code mc}
+ * parameter of a UPI URI. Categories are looked up in a {@link UpiMerchantCategoryTable}.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiMerchantCategory {
+
+    /**
+     * Everyday purchases, such as groceries, restaurants and utilities.
+     */
+    public static final int RISK_LOW = 0;
+
+    /**
+     * Purchases that are easy to resell or often disputed, such as electronics, jewelry and
+     * digital goods.
+     */
+    public static final int RISK_MEDIUM = 1;
+
+    /**
+     * Cash-like and regulated categories, such as money transfers, gambling and telemarketing.
+     */
+    public static final int RISK_HIGH = 2;
+
+    @IntDef({ RISK_LOW, RISK_MEDIUM, RISK_HIGH })
+    public @interface RiskTier {}
+
+    /**
+     * Returned by {@link #parseCode(CharSequence, int, int)} for values that are not a code.
+     */
+    static final int NO_CODE = -1;
+
+    private static final int CODE_LENGTH = 4;
+    private static final String[] RISK_TIER_NAMES = { "LOW", "MEDIUM", "HIGH" };
+
+    private final int code;
+    @NonNull private final String name;
+    private final int riskTier;
+
+    /**
+     * @param code Merchant category code, between 0 and 9999.
+     * @param name Name of the category.
+     * @param riskTier One of the {@code RISK_*} constants.
+     */
+    public UpiMerchantCategory(int code, @NonNull String name, @RiskTier int riskTier) {
+        if (code < 0 || code > 9999) {
+            throw new IllegalArgumentException("code must be between 0 and 9999, but was " + code);
+        }
+        if (name == null) {
+            throw new NullPointerException("name must not be null");
+        }
+        if (riskTier < RISK_LOW || riskTier > RISK_HIGH) {
+            throw new IllegalArgumentException("Unknown risk tier: " + riskTier);
+        }
+        this.code = code;
+        this.name = name;
+        this.riskTier = riskTier;
+    }
+
+    /**
+     * @return Merchant category code, between 0 and 9999.
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * @return Name of the category, e.g. "Grocery Stores and Supermarkets".
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return One of the {@code RISK_*} constants.
+     */
+    @RiskTier
+    public int getRiskTier() {
+        return riskTier;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%04d %s (%s)", code, name, RISK_TIER_NAMES[riskTier]);
+    }
+
+    /**
+     * Parses a merchant category code, four digits, without allocating.
+     *
+     * @return The code, or {@link #NO_CODE} if the characters are not four digits.
+     */
+    static int parseCode(CharSequence s, int start, int end) {
+        if (end - start != CODE_LENGTH) {
+            return NO_CODE;
+        }
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NO_CODE;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    /**
+     * @return One of the {@code RISK_*} constants, or {@code -1} if the name is not a risk tier.
+     */
+    static int parseRiskTier(String name) {
+        for (int i = 0; i < RISK_TIER_NAMES.length; i++) {
+            if (RISK_TIER_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An immutable table of merchant categories, keyed by merchant category code. Codes are kept in a
+ * sorted {@code short} array next to the categories, and looked up with a binary search, so
+ * lookups don't box or hash and don't allocate.
+ *
+ * <p>The built-in table is generated at build time from
+ * {@code upi-core/src/main/data/merchant-categories.txt}. Apps that fetch an updated list can
+ * {@link #load(InputStream)} it and make it the default with
+ * {@link #setDefault(UpiMerchantCategoryTable)}, without an app update. Threads that look up
+ * categories afterwards see the new table.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiMerchantCategoryTable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Replaces the built-in table when set
+    @Nullable private static volatile UpiMerchantCategoryTable loaded;
+
+    private final short[] codes;
+    private final UpiMerchantCategory[] categories;
+
+    private UpiMerchantCategoryTable(short[] codes, UpiMerchantCategory[] categories) {
+        this.codes = codes;
+        this.categories = categories;
+    }
+
+    /**
+     * @return The table generated from the list bundled with the library.
+     */
+    @NonNull
+    public static UpiMerchantCategoryTable getBuiltIn() {
+        return BuiltInHolder.TABLE;
+    }
+
+    /**
+     * @return The table set with {@link #setDefault(UpiMerchantCategoryTable)}, or the built-in
+     *         table.
+     */
+    @NonNull
+    public static UpiMerchantCategoryTable getDefault() {
+        UpiMerchantCategoryTable table = loaded;
+        return table != null ? table : getBuiltIn();
+    }
+
+    /**
+     * Replaces the default table, e.g. with a newer list downloaded by the app.
+     *
+     * @param table The new default table, or {@code null} to go back to the built-in table.
+     */
+    public static void setDefault(@Nullable UpiMerchantCategoryTable table) {
+        loaded = table;
+    }
+
+    /**
+     * Loads a table in the format of the built-in list. Each line has a four-digit code, the risk
+     * tier ({@code LOW}, {@code MEDIUM} or {@code HIGH}) and the name, separated by tabs. Blank
+     * lines and lines starting with {@code #} are ignored.
+     *
+     * @param in UTF-8 text, not closed by this method.
+     * @throws IOException if reading fails or a line is not valid.
+     */
+    @NonNull
+    public static UpiMerchantCategoryTable load(@NonNull InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        List<UpiMerchantCategory> categories = new ArrayList<UpiMerchantCategory>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] fields = line.split("\t", 3);
+            int code = UpiMerchantCategory.parseCode(fields[0], 0, fields[0].length());
+            int riskTier = fields.length == 3 ? UpiMerchantCategory.parseRiskTier(fields[1]) : -1;
+            if (code == UpiMerchantCategory.NO_CODE || riskTier == -1
+                    || fields[2].trim().isEmpty()) {
+                throw new IOException("Invalid merchant category list, line " + lineNumber + ": "
+                        + line);
+            }
+            // noinspection WrongConstant
+            categories.add(new UpiMerchantCategory(code, fields[2].trim(), riskTier));
+        }
+        try {
+            return compile(categories);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid merchant category list: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compiles a table.
+     *
+     * @throws IllegalArgumentException if a code is repeated.
+     */
+    @NonNull
+    public static UpiMerchantCategoryTable compile(
+            @NonNull Collection<UpiMerchantCategory> categories) {
+        UpiMerchantCategory[] sorted = categories.toArray(
+                new UpiMerchantCategory[categories.size()]);
+        Arrays.sort(sorted, new Comparator<UpiMerchantCategory>() {
+            @Override
+            public int compare(UpiMerchantCategory a, UpiMerchantCategory b) {
+                return a.getCode() - b.getCode();
+            }
+        });
+        short[] codes = new short[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            codes[i] = (short) sorted[i].getCode();
+            if (i > 0 && codes[i] == codes[i - 1]) {
+                throw new IllegalArgumentException("Duplicate code: " + sorted[i].getCode());
+            }
+        }
+        return new UpiMerchantCategoryTable(codes, sorted);
+    }
+
+    /**
+     * @param code A merchant category code, e.g. {@link UpiPayload#getMerchantCategoryCode()}.
+     * @return The category, or {@code null} if the code is not in the table.
+     */
+    @Nullable
+    public UpiMerchantCategory get(int code) {
+        if (code < 0 || code > Short.MAX_VALUE) {
+            return null;
+        }
+        int index = Arrays.binarySearch(codes, (short) code);
+        return index >= 0 ? categories[index] : null;
+    }
+
+    /**
+     * @return Categories in the table, ordered by code.
+     */
+    @NonNull
+    public List<UpiMerchantCategory> getCategories() {
+        return Collections.unmodifiableList(Arrays.asList(categories));
+    }
+
+    /**
+     * @return Number of categories in the table.
+     */
+    public int size() {
+        return categories.length;
+    }
+
+    private static final class BuiltInHolder {
+
+        static final UpiMerchantCategoryTable TABLE = create();
+
+        private static UpiMerchantCategoryTable create() {
+            int size = UpiMerchantCategoryData.CODES.length;
+            UpiMerchantCategory[] categories = new UpiMerchantCategory[size];
+            for (int i = 0; i < size; i++) {
+                // noinspection WrongConstant
+                categories[i] = new UpiMerchantCategory(UpiMerchantCategoryData.CODES[i],
+                        UpiMerchantCategoryData.NAMES[i], UpiMerchantCategoryData.RISK_TIERS[i]);
+            }
+            // Generated codes are sorted and unique
+            return new UpiMerchantCategoryTable(UpiMerchantCategoryData.CODES, categories);
+        }
+
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how parsing behaves: latencies, results by error code and the number of extras in each
+ * URI. Pass an instance to {@code UpiDelegate} to record every URI it handles, and read the
+ * numbers with {@link #snapshot()} or {@link #snapshotAndReset()} to export them.
+ *
+ * <p>Latencies go into a log-bucketed histogram with 8 buckets per power of two, so percentiles
+ * are within 12.5% of the recorded values. All counters live in one fixed-size array, striped by
+ * thread so that threads recording at the same time rarely write to the same cache line.
+ * Recording is lock-free and does not allocate.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiMetrics {
+
+    /**
+     * Results with this many extras or more are counted together.
+     */
+    public static final int MAX_TRACKED_EXTRAS = 8;
+
+    // Latency buckets, values below SUB_BUCKETS nanoseconds have a bucket each
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_LATENCY_BITS = 36;
+    private static final int LATENCY_BUCKETS =
+            (MAX_LATENCY_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    // Error codes from FIRST_ERROR_CODE up to, but not including, FIRST_ERROR_CODE + ERROR_SLOTS
+    private static final int FIRST_ERROR_CODE = UpiResult.ERROR_MISSING_PAYEE_ADDRESS;
+    private static final int ERROR_SLOTS = 16;
+
+    // Layout of a stripe
+    private static final int SUCCESS = 0;
+    private static final int FAILURES = SUCCESS + 1;
+    private static final int LATENCY_SUM = FAILURES + ERROR_SLOTS;
+    private static final int EXTRAS_SUM = LATENCY_SUM + 1;
+    private static final int EXTRAS = EXTRAS_SUM + 1;
+    private static final int LATENCIES = EXTRAS + MAX_TRACKED_EXTRAS + 1;
+    private static final int STRIPE_LENGTH = LATENCIES + LATENCY_BUCKETS;
+
+    // Longs in a cache line, stripes are padded by two lines to keep prefetched lines apart
+    private static final int CACHE_LINE_LONGS = 8;
+    private static final int STRIPE_STRIDE =
+            (STRIPE_LENGTH + CACHE_LINE_LONGS - 1) / CACHE_LINE_LONGS * CACHE_LINE_LONGS
+                    + 2 * CACHE_LINE_LONGS;
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicLongArray cells;
+    private final int stripeMask;
+
+    /**
+     * Creates metrics with a stripe for each processor, up to 8.
+     */
+    public UpiMetrics() {
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+        stripes = Math.min(stripes, MAX_STRIPES);
+        this.cells = new AtomicLongArray(stripes * STRIPE_STRIDE);
+        this.stripeMask = stripes - 1;
+    }
+
+    /**
+     * Records the outcome of parsing a URI. This method is safe to call from any thread.
+     *
+     * @param result The result of parsing.
+     * @param latencyNanos Time it took to get the result, from {@link System#nanoTime()}.
+     */
+    public void record(@NonNull UpiResult result, long latencyNanos) {
+        int stripe = ((int) Thread.currentThread().getId() & stripeMask) * STRIPE_STRIDE;
+        if (result.isSuccess()) {
+            cells.getAndIncrement(stripe + SUCCESS);
+            int extras = extrasCount(result.getExtras());
+            if (extras > 0) {
+                cells.getAndAdd(stripe + EXTRAS_SUM, extras);
+            }
+            cells.getAndIncrement(stripe + EXTRAS + Math.min(extras, MAX_TRACKED_EXTRAS));
+        } else {
+            cells.getAndIncrement(stripe + FAILURES + errorSlot(result.getErrorCode()));
+        }
+        long latency = Math.max(latencyNanos, 0);
+        cells.getAndAdd(stripe + LATENCY_SUM, latency);
+        cells.getAndIncrement(stripe + LATENCIES + latencyBucket(latency));
+    }
+
+    /**
+     * @return Totals of everything recorded so far.
+     */
+    @NonNull
+    public Snapshot snapshot() {
+        return snapshot(false);
+    }
+
+    /**
+     * Takes a snapshot and starts counting from zero, for exporters that report intervals. Each
+     * result is counted by exactly one snapshot, although results recorded while the snapshot is
+     * taken may have their latency and their error code counted by consecutive snapshots.
+     *
+     * @return Totals of everything recorded since the previous reset.
+     */
+    @NonNull
+    public Snapshot snapshotAndReset() {
+        return snapshot(true);
+    }
+
+    private Snapshot snapshot(boolean reset) {
+        long[] totals = new long[STRIPE_LENGTH];
+        for (int stripe = 0; stripe < cells.length(); stripe += STRIPE_STRIDE) {
+            for (int i = 0; i < STRIPE_LENGTH; i++) {
+                totals[i] += reset ? cells.getAndSet(stripe + i, 0) : cells.get(stripe + i);
+            }
+        }
+        return new Snapshot(totals);
+    }
+
+    private static int extrasCount(Map<String, String> extras) {
+        // Counting decoded extras would decode them, the raw parameter count doesn't
+        return extras instanceof UpiExtras
+                ? ((UpiExtras) extras).getParameterCount()
+                : extras != null ? extras.size() : 0;
+    }
+
+    private static int errorSlot(int errorCode) {
+        int slot = errorCode - FIRST_ERROR_CODE;
+        return slot >= 0 && slot < ERROR_SLOTS ? slot : ERROR_SLOTS - 1;
+    }
+
+    static int latencyBucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(nanos), MAX_LATENCY_BITS);
+        if (exponent == MAX_LATENCY_BITS) {
+            return LATENCY_BUCKETS - 1;
+        }
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return The largest latency that falls into a bucket, or {@link Long#MAX_VALUE} for the
+     *         last bucket.
+     */
+    static long latencyBucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        } else if (bucket == LATENCY_BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = (bucket & (SUB_BUCKETS - 1)) + SUB_BUCKETS + 1;
+        return (subBucket << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Totals recorded by {@link UpiMetrics} at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long[] totals;
+        private final long count;
+
+        Snapshot(long[] totals) {
+            this.totals = totals;
+            long count = 0;
+            for (int i = LATENCIES; i < STRIPE_LENGTH; i++) {
+                count += totals[i];
+            }
+            this.count = count;
+        }
+
+        /**
+         * @return Number of recorded results.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return Number of valid URIs.
+         */
+        public long getSuccessCount() {
+            return totals[SUCCESS];
+        }
+
+        /**
+         * @return Number of URIs that are not valid.
+         */
+        public long getFailureCount() {
+            long failures = 0;
+            for (int i = 0; i < ERROR_SLOTS; i++) {
+                failures += totals[FAILURES + i];
+            }
+            return failures;
+        }
+
+        /**
+         * @param errorCode One of the {@code UpiResult.ERROR_*} constants.
+         * @return Number of URIs that failed with the error code.
+         */
+        public long getFailureCount(int errorCode) {
+            return totals[FAILURES + errorSlot(errorCode)];
+        }
+
+        /**
+         * @return Number of extras in all valid URIs, repeated parameters included.
+         */
+        public long getExtrasCount() {
+            return totals[EXTRAS_SUM];
+        }
+
+        /**
+         * @param extras Number of extras, values from {@link #MAX_TRACKED_EXTRAS} up count the
+         *         valid URIs with that many extras or more.
+         * @return Number of valid URIs with exactly this many extras.
+         */
+        public long getSuccessCountWithExtras(int extras) {
+            return totals[EXTRAS + Math.min(Math.max(extras, 0), MAX_TRACKED_EXTRAS)];
+        }
+
+        /**
+         * @return Average latency in nanoseconds, or {@code 0} if nothing was recorded.
+         */
+        public long getMeanLatencyNanos() {
+            return count > 0 ? totals[LATENCY_SUM] / count : 0;
+        }
+
+        /**
+         * @param percentile A percentile from {@code 0} to {@code 100}, e.g. {@code 99.9}.
+         * @return The latency that the given percentage of results did not exceed, in
+         *         nanoseconds, or {@code 0} if nothing was recorded.
+         */
+        public long getLatencyPercentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(
+                        "percentile must be between 0 and 100, but was " + percentile);
+            }
+            long rank = Math.max((long) Math.ceil(percentile / 100 * count), 1);
+            long seen = 0;
+            for (int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+                seen += totals[LATENCIES + bucket];
+                if (seen >= rank) {
+                    return latencyBucketLimit(bucket);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * @return Number of latency buckets, to export the whole histogram along with
+         *         {@link #getLatencyBucketLimitNanos(int)} and {@link #getLatencyBucketCount(int)}.
+         */
+        public int getLatencyBuckets() {
+            return LATENCY_BUCKETS;
+        }
+
+        /**
+         * @return The largest latency in nanoseconds that falls into a bucket, or
+         *         {@link Long#MAX_VALUE} for the last bucket. Limits increase with the index.
+         */
+        public long getLatencyBucketLimitNanos(int bucket) {
+            return latencyBucketLimit(bucket);
+        }
+
+        /**
+         * @return Number of results in a latency bucket.
+         */
+        public long getLatencyBucketCount(int bucket) {
+            return totals[LATENCIES + bucket];
+        }
+
+    }
+
+}
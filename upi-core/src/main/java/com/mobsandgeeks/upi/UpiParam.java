@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+/**
+ * A class with constants that are defined in the
+ * <a href="http://www.npci.org.in/documents/UPI-Linking-Specs-ver-1.1_draft.pdf">UPI Linking
+ * Specifications Version 1.1 (Draft)</a> and the parameters added by UPI 2.0.
+ *
+ * <p>Every parameter has a slot, which is the index of its value in arrays used by the parser and
+ * the payload. {@link #slotOf(CharSequence, int, int)} maps a parameter name in a URI to its slot.
+ */
+final class UpiParam {
+
+    // Mandatory fields
+    static final String PAYEE_ADDRESS = "pa";
+    static final String PAYEE_NAME = "pn";
+
+    // Conditional
+    static final String TRANSACTION_REFERENCE_ID = "tr";
+
+    // Optional
+    static final String AMOUNT = "am";
+    static final String MINIMUM_AMOUNT = "mam";
+    static final String MERCHANT_CODE = "mc";
+    static final String TRANSACTION_ID = "tid";
+    static final String TRANSACTION_NOTE = "tn";
+    static final String CURRENCY_CODE = "cu";
+    static final String REFERENCE_URL = "url";
+
+    // UPI 2.0
+    static final String MODE = "mode";
+    static final String PURPOSE = "purpose";
+    static final String ORGANIZATION_ID = "orgid";
+    static final String SIGNATURE = "sign";
+    static final String MERCHANT_ID = "mid";
+    static final String MERCHANT_STORE_ID = "msid";
+    static final String MERCHANT_TERMINAL_ID = "mtid";
+    static final String QR_MEDIUM = "qrMedium";
+
+    // Slots
+    static final int SLOT_PAYEE_ADDRESS = 0;
+    static final int SLOT_PAYEE_NAME = 1;
+    static final int SLOT_TRANSACTION_REFERENCE_ID = 2;
+    static final int SLOT_AMOUNT = 3;
+    static final int SLOT_MINIMUM_AMOUNT = 4;
+    static final int SLOT_MERCHANT_CODE = 5;
+    static final int SLOT_TRANSACTION_ID = 6;
+    static final int SLOT_TRANSACTION_NOTE = 7;
+    static final int SLOT_CURRENCY_CODE = 8;
+    static final int SLOT_REFERENCE_URL = 9;
+    static final int SLOT_MODE = 10;
+    static final int SLOT_PURPOSE = 11;
+    static final int SLOT_ORGANIZATION_ID = 12;
+    static final int SLOT_SIGNATURE = 13;
+    static final int SLOT_MERCHANT_ID = 14;
+    static final int SLOT_MERCHANT_STORE_ID = 15;
+    static final int SLOT_MERCHANT_TERMINAL_ID = 16;
+    static final int SLOT_QR_MEDIUM = 17;
+    static final int SLOT_COUNT = 18;
+    static final int NO_SLOT = -1;
+
+    /**
+     * Parameter names, indexed by slot.
+     */
+    static final String[] NAMES = {
+            PAYEE_ADDRESS, PAYEE_NAME, TRANSACTION_REFERENCE_ID, AMOUNT, MINIMUM_AMOUNT,
+            MERCHANT_CODE, TRANSACTION_ID, TRANSACTION_NOTE, CURRENCY_CODE, REFERENCE_URL,
+            MODE, PURPOSE, ORGANIZATION_ID, SIGNATURE, MERCHANT_ID, MERCHANT_STORE_ID,
+            MERCHANT_TERMINAL_ID, QR_MEDIUM
+    };
+
+    private UpiParam() { /* No instances. */ }
+
+    /**
+     * Finds the slot of a parameter name without allocating. The length and the first two
+     * characters of the name select at most one candidate, which is then compared in full, so the
+     * cost does not grow with the number of parameters.
+     *
+     * @param s Text that contains the name.
+     * @param start Start index of the name, inclusive.
+     * @param end End index of the name, exclusive.
+     * @return The slot of the parameter, or {@link #NO_SLOT} if it is not a UPI parameter.
+     */
+    static int slotOf(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > 8) {
+            return NO_SLOT;
+        }
+        char first = s.charAt(start);
+        char second = s.charAt(start + 1);
+        if (first > 0x7f || second > 0x7f) {
+            return NO_SLOT;
+        }
+
+        int slot;
+        switch (length << 16 | first << 8 | second) {
+            case 2 << 16 | 'p' << 8 | 'a':  slot = SLOT_PAYEE_ADDRESS; break;
+            case 2 << 16 | 'p' << 8 | 'n':  slot = SLOT_PAYEE_NAME; break;
+            case 2 << 16 | 't' << 8 | 'r':  slot = SLOT_TRANSACTION_REFERENCE_ID; break;
+            case 2 << 16 | 'a' << 8 | 'm':  slot = SLOT_AMOUNT; break;
+            case 3 << 16 | 'm' << 8 | 'a':  slot = SLOT_MINIMUM_AMOUNT; break;
+            case 2 << 16 | 'm' << 8 | 'c':  slot = SLOT_MERCHANT_CODE; break;
+            case 3 << 16 | 't' << 8 | 'i':  slot = SLOT_TRANSACTION_ID; break;
+            case 2 << 16 | 't' << 8 | 'n':  slot = SLOT_TRANSACTION_NOTE; break;
+            case 2 << 16 | 'c' << 8 | 'u':  slot = SLOT_CURRENCY_CODE; break;
+            case 3 << 16 | 'u' << 8 | 'r':  slot = SLOT_REFERENCE_URL; break;
+            case 4 << 16 | 'm' << 8 | 'o':  slot = SLOT_MODE; break;
+            case 7 << 16 | 'p' << 8 | 'u':  slot = SLOT_PURPOSE; break;
+            case 5 << 16 | 'o' << 8 | 'r':  slot = SLOT_ORGANIZATION_ID; break;
+            case 4 << 16 | 's' << 8 | 'i':  slot = SLOT_SIGNATURE; break;
+            case 3 << 16 | 'm' << 8 | 'i':  slot = SLOT_MERCHANT_ID; break;
+            case 4 << 16 | 'm' << 8 | 's':  slot = SLOT_MERCHANT_STORE_ID; break;
+            case 4 << 16 | 'm' << 8 | 't':  slot = SLOT_MERCHANT_TERMINAL_ID; break;
+            case 8 << 16 | 'q' << 8 | 'r':  slot = SLOT_QR_MEDIUM; break;
+            default:                        return NO_SLOT;
+        }
+
+        // Two character names are matched by the switch itself
+        String name = NAMES[slot];
+        for (int i = 2; i < length; i++) {
+            if (s.charAt(start + i) != name.charAt(i)) {
+                return NO_SLOT;
+            }
+        }
+        return slot;
+    }
+
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.math.BigDecimal;
+
+/**
+ * A payload that contains all values that are described in the
+ * <a href="http://www.npci.org.in/documents/UPI-Linking-Specs-ver-1.1_draft.pdf">UPI Linking
+ * Specifications Version 1.1 (Draft)</a>.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiPayload {
+
+    /**
+     * Returned by {@link #getPayeeAmountPaise()} and {@link #getMinimumAmountPaise()} when the
+     * URI does not contain the amount.
+     */
+    public static final long NO_AMOUNT = -1L;
+
+    /**
+     * Returned by {@link #getMerchantCategoryCode()} when the URI does not contain a merchant code
+     * or the code is not four digits.
+     */
+    public static final int NO_MERCHANT_CATEGORY_CODE = UpiMerchantCategory.NO_CODE;
+
+    @NonNull private final String payeeName;
+    @NonNull private final String payeeAddress;
+    private final long payeeAmountPaise;
+    private final int payeeAmountScale;
+    private final long minimumAmountPaise;
+    private final int minimumAmountScale;
+    private final int merchantCategoryCode;
+
+    /*
+     * Payloads parsed from a URI keep the URI and the ranges of the values in it, and decode the
+     * optional fields below on first access. The fields are immutable once decoded, so racing
+     * threads can only ever decode the same value.
+     */
+    @Nullable private final String source;
+    @Nullable private final int[] valueRanges;
+    private String merchantCode;
+    private String transactionId;
+    private String transactionReferenceId;
+    private String transactionNote;
+    private String currencyCode;
+    private String referenceUrl;
+    private String mode;
+    private String purpose;
+    private String organizationId;
+    private String signature;
+    private String merchantId;
+    private String merchantStoreId;
+    private String merchantTerminalId;
+    private String qrMedium;
+
+    // Created on demand from the amounts in paise
+    private BigDecimal payeeAmount;
+    private BigDecimal minimumAmount;
+
+    /**
+     * Private constructor. Used by the {@link Builder} method.
+     */
+    private UpiPayload(Builder builder) {
+        this.payeeName = builder.payeeName;
+        this.payeeAddress = builder.payeeAddress;
+        this.merchantCode = builder.merchantCode;
+        this.transactionId = builder.transactionId;
+        this.transactionReferenceId = builder.transactionReferenceId;
+        this.transactionNote = builder.transactionNote;
+        this.payeeAmountPaise = builder.payeeAmountPaise;
+        this.payeeAmountScale = builder.payeeAmountScale;
+        this.minimumAmountPaise = builder.minimumAmountPaise;
+        this.minimumAmountScale = builder.minimumAmountScale;
+        this.merchantCategoryCode = builder.merchantCategoryCode;
+        this.currencyCode = builder.currencyCode;
+        this.referenceUrl = builder.referenceUrl;
+        this.mode = builder.mode;
+        this.purpose = builder.purpose;
+        this.organizationId = builder.organizationId;
+        this.signature = builder.signature;
+        this.merchantId = builder.merchantId;
+        this.merchantStoreId = builder.merchantStoreId;
+        this.merchantTerminalId = builder.merchantTerminalId;
+        this.qrMedium = builder.qrMedium;
+        this.source = builder.source;
+        this.valueRanges = builder.valueRanges;
+    }
+
+    /**
+     * @return Payee name. This field is mandatory.
+     */
+    @NonNull
+    public String getPayeeName() {
+        return payeeName;
+    }
+
+    /**
+     * @return Payee address. This field is mandatory.
+     */
+    @NonNull
+    public String getPayeeAddress() {
+        return payeeAddress;
+    }
+
+    /**
+     * @return Payee merchant code.
+     */
+    @Nullable
+    public String getMerchantCode() {
+        if (merchantCode == null) {
+            merchantCode = decodeValue(UpiParam.SLOT_MERCHANT_CODE);
+        }
+        return merchantCode;
+    }
+
+    /**
+     * @return Payee merchant code as a number, parsed when the payload was created, or
+     *         {@link #NO_MERCHANT_CATEGORY_CODE}. Look it up in a {@link UpiMerchantCategoryTable}
+     *         to get the category.
+     */
+    public int getMerchantCategoryCode() {
+        return merchantCategoryCode;
+    }
+
+    /**
+     * This is a PSP generated ID when present. In the case of Merchant payments, merchant may
+     * acquire the transaction ID from his PSP.
+     *
+     * @return The PSP generated transaction ID.
+     */
+    @Nullable
+    public String getTransactionId() {
+        if (transactionId == null) {
+            transactionId = decodeValue(UpiParam.SLOT_TRANSACTION_ID);
+        }
+        return transactionId;
+    }
+
+    /**
+     * Transaction reference ID. This could be an order number, subscription number, bill ID,
+     * booking ID, insurance renewal reference, etc., This field is mandatory only for merchant
+     * transactions.
+     *
+     * @return The transaction reference ID.
+     */
+    @Nullable
+    public String getTransactionReferenceId() {
+        if (transactionReferenceId == null) {
+            transactionReferenceId = decodeValue(UpiParam.SLOT_TRANSACTION_REFERENCE_ID);
+        }
+        return transactionReferenceId;
+    }
+
+    /**
+     * Transaction note providing a short description of the transaction.
+     *
+     * @return A transaction note if present.
+     */
+    @Nullable
+    public String getTransactionNote() {
+        if (transactionNote == null) {
+            transactionNote = decodeValue(UpiParam.SLOT_TRANSACTION_NOTE);
+        }
+        return transactionNote;
+    }
+
+    /**
+     * @return The transaction amount.
+     */
+    @Nullable
+    public BigDecimal getPayeeAmount() {
+        if (payeeAmount == null && payeeAmountPaise != NO_AMOUNT) {
+            payeeAmount = UpiAmount.toBigDecimal(payeeAmountPaise, payeeAmountScale);
+        }
+        return payeeAmount;
+    }
+
+    /**
+     * @return The transaction amount in paise, or {@link #NO_AMOUNT} if there is no amount.
+     */
+    public long getPayeeAmountPaise() {
+        return payeeAmountPaise;
+    }
+
+    /**
+     * Minimum amount to be paid if different from transaction amount.
+     *
+     * @return The minimum amount.
+     */
+    @Nullable
+    public BigDecimal getMinimumAmount() {
+        if (minimumAmount == null && minimumAmountPaise != NO_AMOUNT) {
+            minimumAmount = UpiAmount.toBigDecimal(minimumAmountPaise, minimumAmountScale);
+        }
+        return minimumAmount;
+    }
+
+    /**
+     * Minimum amount to be paid if different from transaction amount.
+     *
+     * @return The minimum amount in paise, or {@link #NO_AMOUNT} if there is no minimum amount.
+     */
+    public long getMinimumAmountPaise() {
+        return minimumAmountPaise;
+    }
+
+    /**
+     * Currency code. Currently ONLY "INR" is the supported value.
+     *
+     * @return The currency code.
+     */
+    @Nullable
+    public String getCurrencyCode() {
+        if (currencyCode == null) {
+            String decoded = decodeValue(UpiParam.SLOT_CURRENCY_CODE);
+            currencyCode = decoded != null ? decoded : Builder.DEFAULT_CURRENCY_CODE;
+        }
+        return currencyCode;
+    }
+
+    /**
+     * This should be a URL when clicked provides customer with further transaction details like
+     * complete bill details, bill copy, order copy, ticket details, etc. This can also be used to
+     * deliver digital goods such as mp3 files etc., after payment.
+     *
+     * This URL, when used, MUST BE related to the particular transaction and MUST NOT be used to
+     * send unsolicited information that are not relevant to the transaction.
+     *
+     * @return A reference URL related to the current transaction.
+     */
+    public String getReferenceUrl() {
+        if (referenceUrl == null) {
+            referenceUrl = decodeValue(UpiParam.SLOT_REFERENCE_URL);
+        }
+        return referenceUrl;
+    }
+
+    /**
+     * Transaction initiation mode, e.g. "01" for a static QR code or "02" for a dynamic one.
+     *
+     * @return The initiation mode.
+     */
+    @Nullable
+    public String getMode() {
+        if (mode == null) {
+            mode = decodeValue(UpiParam.SLOT_MODE);
+        }
+        return mode;
+    }
+
+    /**
+     * Purpose code of the transaction, e.g. "00" for a default payment.
+     *
+     * @return The purpose code.
+     */
+    @Nullable
+    public String getPurpose() {
+        if (purpose == null) {
+            purpose = decodeValue(UpiParam.SLOT_PURPOSE);
+        }
+        return purpose;
+    }
+
+    /**
+     * ID of the organization that generated the URI. Used to pick the key that verifies
+     * {@link #getSignature()}.
+     *
+     * @return The organization ID.
+     */
+    @Nullable
+    public String getOrganizationId() {
+        if (organizationId == null) {
+            organizationId = decodeValue(UpiParam.SLOT_ORGANIZATION_ID);
+        }
+        return organizationId;
+    }
+
+    /**
+     * Signature of the URI by the organization in {@link #getOrganizationId()}.
+     *
+     * @return The Base64 encoded signature.
+     */
+    @Nullable
+    public String getSignature() {
+        if (signature == null) {
+            signature = decodeValue(UpiParam.SLOT_SIGNATURE);
+        }
+        return signature;
+    }
+
+    /**
+     * @return Merchant ID assigned by the acquiring PSP.
+     */
+    @Nullable
+    public String getMerchantId() {
+        if (merchantId == null) {
+            merchantId = decodeValue(UpiParam.SLOT_MERCHANT_ID);
+        }
+        return merchantId;
+    }
+
+    /**
+     * @return ID of the merchant's store.
+     */
+    @Nullable
+    public String getMerchantStoreId() {
+        if (merchantStoreId == null) {
+            merchantStoreId = decodeValue(UpiParam.SLOT_MERCHANT_STORE_ID);
+        }
+        return merchantStoreId;
+    }
+
+    /**
+     * @return ID of the merchant's terminal.
+     */
+    @Nullable
+    public String getMerchantTerminalId() {
+        if (merchantTerminalId == null) {
+            merchantTerminalId = decodeValue(UpiParam.SLOT_MERCHANT_TERMINAL_ID);
+        }
+        return merchantTerminalId;
+    }
+
+    /**
+     * Medium that displayed the QR code, e.g. "01" for a printed QR code or "02" for a screen.
+     *
+     * @return The QR medium.
+     */
+    @Nullable
+    public String getQrMedium() {
+        if (qrMedium == null) {
+            qrMedium = decodeValue(UpiParam.SLOT_QR_MEDIUM);
+        }
+        return qrMedium;
+    }
+
+    @Nullable
+    private String decodeValue(int slot) {
+        return valueRanges != null ? UpiUriParser.value(source, valueRanges, slot) : null;
+    }
+
+    int getPayeeAmountScale() {
+        return payeeAmountScale;
+    }
+
+    int getMinimumAmountScale() {
+        return minimumAmountScale;
+    }
+
+    /**
+     * Creates a builder for payloads that are encoded into URIs with {@link UpiUriEncoder}.
+     *
+     * @param payeeName Payee name.
+     * @param payeeAddress Payee VPA.
+     * @return A builder with the mandatory fields set.
+     */
+    @NonNull
+    public static Builder builder(@NonNull String payeeName, @NonNull String payeeAddress) {
+        if (payeeName == null || payeeAddress == null) {
+            throw new NullPointerException("payeeName and payeeAddress must not be null");
+        }
+        return new Builder(payeeName, payeeAddress);
+    }
+
+    /**
+     * Builds payloads, see {@link UpiPayload#builder(String, String)}.
+     */
+    public static final class Builder {
+
+        private static final String DEFAULT_CURRENCY_CODE = "INR";
+
+        private String payeeName;
+        private String payeeAddress;
+        private String merchantCode;
+        private int merchantCategoryCode = NO_MERCHANT_CATEGORY_CODE;
+        private String transactionId;
+        private String transactionReferenceId;
+        private String transactionNote;
+        private long payeeAmountPaise = NO_AMOUNT;
+        private int payeeAmountScale;
+        private long minimumAmountPaise = NO_AMOUNT;
+        private int minimumAmountScale;
+        private String currencyCode;
+        private String referenceUrl;
+        private String mode;
+        private String purpose;
+        private String organizationId;
+        private String signature;
+        private String merchantId;
+        private String merchantStoreId;
+        private String merchantTerminalId;
+        private String qrMedium;
+        private String source;
+        private int[] valueRanges;
+
+        Builder() {
+        }
+
+        Builder(@NonNull String payeeName, @NonNull String payeeAddress) {
+            this.payeeAddress = payeeAddress;
+            this.payeeName = payeeName;
+        }
+
+        String getPayeeName() {
+            return payeeName;
+        }
+
+        String getPayeeAddress() {
+            return payeeAddress;
+        }
+
+        long getPayeeAmountPaise() {
+            return payeeAmountPaise;
+        }
+
+        long getMinimumAmountPaise() {
+            return minimumAmountPaise;
+        }
+
+        Builder payeeName(String payeeName) {
+            this.payeeName = payeeName;
+            return this;
+        }
+
+        Builder payeeAddress(String payeeAddress) {
+            this.payeeAddress = payeeAddress;
+            return this;
+        }
+
+        public Builder merchantCode(String merchantCode) {
+            this.merchantCode = merchantCode;
+            this.merchantCategoryCode = merchantCode != null
+                    ? UpiMerchantCategory.parseCode(merchantCode, 0, merchantCode.length())
+                    : NO_MERCHANT_CATEGORY_CODE;
+            return this;
+        }
+
+        /**
+         * Sets the merchant code parsed from a URI, the payload decodes the string on demand.
+         */
+        Builder merchantCategoryCode(int merchantCategoryCode) {
+            this.merchantCategoryCode = merchantCategoryCode;
+            return this;
+        }
+
+        public Builder transactionId(String transactionId) {
+            this.transactionId = transactionId;
+            return this;
+        }
+
+        public Builder transactionReferenceId(String transactionReferenceId) {
+            this.transactionReferenceId = transactionReferenceId;
+            return this;
+        }
+
+        public Builder transactionNote(String transactionNote) {
+            this.transactionNote = transactionNote;
+            return this;
+        }
+
+        /**
+         * @param paise The amount in paise, written with two decimal places.
+         */
+        public Builder payeeAmount(long paise) {
+            return payeeAmount(checkAmount(paise), 2);
+        }
+
+        /**
+         * @param paise The amount in paise.
+         * @param scale Number of digits after the decimal point, used by
+         *              {@link UpiPayload#getPayeeAmount()}.
+         */
+        Builder payeeAmount(long paise, int scale) {
+            this.payeeAmountPaise = paise;
+            this.payeeAmountScale = scale;
+            return this;
+        }
+
+        /**
+         * @param paise The minimum amount in paise, written with two decimal places.
+         */
+        public Builder minimumAmount(long paise) {
+            return minimumAmount(checkAmount(paise), 2);
+        }
+
+        /**
+         * @param paise The minimum amount in paise.
+         * @param scale Number of digits after the decimal point, used by
+         *              {@link UpiPayload#getMinimumAmount()}.
+         */
+        Builder minimumAmount(long paise, int scale) {
+            this.minimumAmountPaise = paise;
+            this.minimumAmountScale = scale;
+            return this;
+        }
+
+        public Builder currencyCode(String currencyCode) {
+            this.currencyCode = currencyCode;
+            return this;
+        }
+
+        public Builder referenceUrl(String referenceUrl) {
+            this.referenceUrl = referenceUrl;
+            return this;
+        }
+
+        public Builder mode(String mode) {
+            this.mode = mode;
+            return this;
+        }
+
+        public Builder purpose(String purpose) {
+            this.purpose = purpose;
+            return this;
+        }
+
+        public Builder organizationId(String organizationId) {
+            this.organizationId = organizationId;
+            return this;
+        }
+
+        public Builder signature(String signature) {
+            this.signature = signature;
+            return this;
+        }
+
+        public Builder merchantId(String merchantId) {
+            this.merchantId = merchantId;
+            return this;
+        }
+
+        public Builder merchantStoreId(String merchantStoreId) {
+            this.merchantStoreId = merchantStoreId;
+            return this;
+        }
+
+        public Builder merchantTerminalId(String merchantTerminalId) {
+            this.merchantTerminalId = merchantTerminalId;
+            return this;
+        }
+
+        public Builder qrMedium(String qrMedium) {
+            this.qrMedium = qrMedium;
+            return this;
+        }
+
+        /**
+         * Makes the payload decode optional values from the URI when they are first accessed.
+         *
+         * @param source The UPI URI.
+         * @param valueRanges Start and end indices of the value of each UPI parameter, indexed by
+         *                    the slots defined in {@link UpiParam}.
+         */
+        Builder valueRanges(String source, int[] valueRanges) {
+            this.source = source;
+            this.valueRanges = valueRanges;
+            return this;
+        }
+
+        public UpiPayload build() {
+            return new UpiPayload(this);
+        }
+
+        private static long checkAmount(long paise) {
+            if (paise < 0) {
+                throw new IllegalArgumentException("Amount must be >= 0, but was " + paise);
+            }
+            return paise;
+        }
+
+    }
+
+}
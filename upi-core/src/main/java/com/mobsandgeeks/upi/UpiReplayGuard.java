@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+
+import com.mobsandgeeks.upi.internal.UpiHashing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects payment URIs that are handled more than once within a time window, such as double
+ * taps, deep links that are delivered again, or replays. A transaction is identified by its payee
+ * address and its transaction reference ID, or its transaction ID if there is no reference ID.
+ * URIs without either are never replays.
+ *
+ * <p>Transactions are remembered as 64-bit fingerprints in a fixed-size hash table, so both
+ * memory and the time of a check stay constant however long the app runs. The table is split
+ * into blocks of 16 slots and a transaction can only go into its own block. When a block is
+ * full of transactions from within the window, the oldest one is forgotten. Blocks are locked
+ * independently, so threads rarely wait for each other.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiReplayGuard {
+
+    /**
+     * Default number of transactions remembered.
+     */
+    public static final int DEFAULT_CAPACITY = 16384;
+
+    /**
+     * Default time window, in hours.
+     */
+    public static final int DEFAULT_WINDOW_HOURS = 24;
+
+    private static final int BLOCK_SIZE_SHIFT = 4;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_SHIFT;
+    private static final int MAX_LOCKS = 64;
+    private static final long EMPTY = 0;
+
+    private final long windowNanos;
+    private final int blockMask;
+    private final long[] fingerprints;
+    private final long[] times;
+    private final Object[] locks;
+
+    /**
+     * Creates a guard that remembers {@link #DEFAULT_CAPACITY} transactions for
+     * {@link #DEFAULT_WINDOW_HOURS} hours.
+     */
+    public UpiReplayGuard() {
+        this(DEFAULT_WINDOW_HOURS, TimeUnit.HOURS, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param window How long a transaction is remembered.
+     * @param unit Unit of {@code window}.
+     * @param capacity Number of transactions to remember, rounded up to a power of two. The table
+     *         takes 16 bytes per transaction.
+     */
+    public UpiReplayGuard(long window, @NonNull TimeUnit unit, int capacity) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be > 0, but was " + window);
+        }
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, but was "
+                    + capacity);
+        }
+        int slots = Math.max(Integer.highestOneBit(capacity * 2 - 1), BLOCK_SIZE);
+        int blocks = slots >>> BLOCK_SIZE_SHIFT;
+        this.windowNanos = unit.toNanos(window);
+        this.blockMask = blocks - 1;
+        this.fingerprints = new long[slots];
+        this.times = new long[slots];
+        this.locks = new Object[Math.min(blocks, MAX_LOCKS)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Checks if the payload's transaction was seen within the window, and remembers it. This
+     * method is safe to call from any thread.
+     *
+     * @param payload A payload of a handled URI.
+     * @return {@code true} if the transaction was seen before, {@code false} if it is new or the
+     *         payload has no transaction IDs.
+     */
+    public boolean isReplay(@NonNull UpiPayload payload) {
+        return isReplay(payload, System.nanoTime());
+    }
+
+    boolean isReplay(UpiPayload payload, long now) {
+        String transaction = payload.getTransactionReferenceId();
+        if (transaction == null || transaction.isEmpty()) {
+            transaction = payload.getTransactionId();
+            if (transaction == null || transaction.isEmpty()) {
+                return false;
+            }
+        }
+        long fingerprint = fingerprint(payload.getPayeeAddress(), transaction);
+        int block = (int) fingerprint & blockMask;
+        int start = block << BLOCK_SIZE_SHIFT;
+        synchronized (locks[block & (locks.length - 1)]) {
+            int replace = start;
+            long replaceRank = -1;
+            for (int i = start; i < start + BLOCK_SIZE; i++) {
+                long age = now - times[i];
+                boolean live = fingerprints[i] != EMPTY && age < windowNanos;
+                if (live && fingerprints[i] == fingerprint) {
+                    return true;
+                }
+                // An empty or expired slot is taken first, then the oldest transaction's slot
+                long rank = live ? age : Long.MAX_VALUE;
+                if (rank > replaceRank) {
+                    replace = i;
+                    replaceRank = rank;
+                }
+            }
+            fingerprints[replace] = fingerprint;
+            times[replace] = now;
+            return false;
+        }
+    }
+
+    /**
+     * Hashes the payee address and the transaction ID, with a NUL between them, and mixes the bits
+     * so that the low bits are good enough to pick a block. Zero marks an empty slot and is never
+     * returned.
+     */
+    private static long fingerprint(String payeeAddress, String transaction) {
+        long hash = UpiHashing.FNV_OFFSET_BASIS;
+        for (int i = 0; i < payeeAddress.length(); i++) {
+            hash = UpiHashing.fnv1a(hash, payeeAddress.charAt(i));
+        }
+        hash = UpiHashing.fnv1a(hash, 0);
+        for (int i = 0; i < transaction.length(); i++) {
+            hash = UpiHashing.fnv1a(hash, transaction.charAt(i));
+        }
+        hash = UpiHashing.mix(hash);
+        return hash != EMPTY ? hash : 1;
+    }
+
+}
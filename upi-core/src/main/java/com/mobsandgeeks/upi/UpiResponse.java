@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * The response a UPI app returns after a payment, such as
+ * {@code txnId=ICI123&responseCode=00&Status=SUCCESS&txnRef=ORD-1&ApprovalRefNo=701234}. Parse it
+ * with {@link UpiResponseParser}.
+ *
+ * <p>The status and the numeric response code are parsed up front. Like {@link UpiPayload}, the
+ * other fields are kept as ranges of the response string and decoded on first access, and racing
+ * threads can only ever decode the same value.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiResponse {
+
+    /**
+     * The payment succeeded.
+     */
+    public static final int STATUS_SUCCESS = 0;
+
+    /**
+     * The payment failed, see {@link #getResponseCode()} for the reason.
+     */
+    public static final int STATUS_FAILURE = 1;
+
+    /**
+     * The payment was submitted but its outcome is not known yet, check it with the backend.
+     */
+    public static final int STATUS_SUBMITTED = 2;
+
+    /**
+     * The response has no status, or a status that is not known.
+     */
+    public static final int STATUS_UNKNOWN = 3;
+
+    @IntDef({ STATUS_SUCCESS, STATUS_FAILURE, STATUS_SUBMITTED, STATUS_UNKNOWN })
+    public @interface Status {}
+
+    /**
+     * Returned by {@link #getNumericResponseCode()} when the response code is missing or is not
+     * a number.
+     */
+    public static final int NO_RESPONSE_CODE = -1;
+
+    // Slots of the fields in the ranges array, see UpiResponseParser
+    static final int SLOT_TRANSACTION_ID = 0;
+    static final int SLOT_RESPONSE_CODE = 1;
+    static final int SLOT_STATUS = 2;
+    static final int SLOT_TRANSACTION_REFERENCE_ID = 3;
+    static final int SLOT_APPROVAL_REFERENCE_NUMBER = 4;
+    static final int SLOT_COUNT = 5;
+
+    @NonNull private final CharSequence source;
+    // Start and end of each field's value, SLOT_COUNT pairs from offset on, may be shared
+    @NonNull private final int[] ranges;
+    private final int offset;
+    private final int status;
+    private final int numericResponseCode;
+
+    private String transactionId;
+    private String responseCode;
+    private String transactionReferenceId;
+    private String approvalReferenceNumber;
+
+    UpiResponse(@NonNull CharSequence source, @NonNull int[] ranges, int offset,
+            @Status int status, int numericResponseCode) {
+        this.source = source;
+        this.ranges = ranges;
+        this.offset = offset;
+        this.status = status;
+        this.numericResponseCode = numericResponseCode;
+    }
+
+    /**
+     * @return {@code true} if the status is {@link #STATUS_SUCCESS}.
+     */
+    public boolean isSuccess() {
+        return status == STATUS_SUCCESS;
+    }
+
+    /**
+     * @return One of the {@code STATUS_*} constants.
+     */
+    @Status
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return The response code as a number, e.g. {@code 0} for {@code "00"}, or
+     *         {@link #NO_RESPONSE_CODE} if it is missing or is not a number.
+     */
+    public int getNumericResponseCode() {
+        return numericResponseCode;
+    }
+
+    /**
+     * @return The response code as it was sent, e.g. {@code "00"} or {@code "ZD"}.
+     */
+    @Nullable
+    public String getResponseCode() {
+        if (responseCode == null) {
+            responseCode = decodeValue(SLOT_RESPONSE_CODE);
+        }
+        return responseCode;
+    }
+
+    /**
+     * @return Transaction ID assigned by the PSP ({@code txnId}).
+     */
+    @Nullable
+    public String getTransactionId() {
+        if (transactionId == null) {
+            transactionId = decodeValue(SLOT_TRANSACTION_ID);
+        }
+        return transactionId;
+    }
+
+    /**
+     * @return Transaction reference ID from the payment URI ({@code txnRef}), to match the
+     *         response with its order.
+     */
+    @Nullable
+    public String getTransactionReferenceId() {
+        if (transactionReferenceId == null) {
+            transactionReferenceId = decodeValue(SLOT_TRANSACTION_REFERENCE_ID);
+        }
+        return transactionReferenceId;
+    }
+
+    /**
+     * @return Approval reference number assigned by the bank ({@code ApprovalRefNo}).
+     */
+    @Nullable
+    public String getApprovalReferenceNumber() {
+        if (approvalReferenceNumber == null) {
+            approvalReferenceNumber = decodeValue(SLOT_APPROVAL_REFERENCE_NUMBER);
+        }
+        return approvalReferenceNumber;
+    }
+
+    @Override
+    public String toString() {
+        return source.toString();
+    }
+
+    @Nullable
+    private String decodeValue(int slot) {
+        int start = ranges[offset + slot * 2];
+        return start != -1
+                ? UpiUriParser.decode(source, start, ranges[offset + slot * 2 + 1])
+                : null;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Results of parsing a batch of UPI app responses with
+ * {@link UpiResponseParser#parseAll(CharSequence[])}, stored in arrays that are indexed the same
+ * way as the input. Statuses and numeric response codes are read straight from the arrays, and
+ * {@link #get(int)} creates a {@link UpiResponse} for the other fields.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiResponseBatch {
+
+    private final CharSequence[] responses;
+    private final int[] ranges;
+    private final int[] statuses;
+    private final int[] numericResponseCodes;
+    private final int successCount;
+
+    UpiResponseBatch(CharSequence[] responses, int[] ranges, int[] statuses,
+            int[] numericResponseCodes, int successCount) {
+        this.responses = responses;
+        this.ranges = ranges;
+        this.statuses = statuses;
+        this.numericResponseCodes = numericResponseCodes;
+        this.successCount = successCount;
+    }
+
+    /**
+     * @return Number of responses in the batch.
+     */
+    public int size() {
+        return statuses.length;
+    }
+
+    /**
+     * @return Number of responses in the batch with {@link UpiResponse#STATUS_SUCCESS}.
+     */
+    public int getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @param index Index of the response in the input.
+     * @return {@code true} if the status is {@link UpiResponse#STATUS_SUCCESS}.
+     */
+    public boolean isSuccess(int index) {
+        return statuses[index] == UpiResponse.STATUS_SUCCESS;
+    }
+
+    /**
+     * @param index Index of the response in the input.
+     * @return One of the {@code UpiResponse.STATUS_*} constants.
+     */
+    @UpiResponse.Status
+    public int getStatus(int index) {
+        // noinspection WrongConstant
+        return statuses[index];
+    }
+
+    /**
+     * @param index Index of the response in the input.
+     * @return The response code as a number, or {@link UpiResponse#NO_RESPONSE_CODE}.
+     */
+    public int getNumericResponseCode(int index) {
+        return numericResponseCodes[index];
+    }
+
+    /**
+     * @param index Index of the response in the input.
+     * @return The parsed response.
+     */
+    @NonNull
+    public UpiResponse get(int index) {
+        // noinspection WrongConstant
+        return new UpiResponse(responses[index], ranges, index * UpiResponse.SLOT_COUNT * 2,
+                statuses[index], numericResponseCodes[index]);
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_APPROVAL_REFERENCE_NUMBER;
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_COUNT;
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_RESPONSE_CODE;
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_STATUS;
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_TRANSACTION_ID;
+import static com.mobsandgeeks.upi.UpiResponse.SLOT_TRANSACTION_REFERENCE_ID;
+
+/**
+ * Parses the {@code response} string that UPI apps return after a payment. The string is scanned
+ * once, and only the ranges of known fields are recorded. Keys are matched without regard to
+ * case, since apps disagree on it ({@code Status} and {@code status}, {@code ApprovalRefNo} and
+ * {@code approvalRefNo}), and {@code tr} is accepted for {@code txnRef}. Spaces around keys and
+ * values and a leading {@code ?} are ignored, and the first occurrence of a repeated key wins.
+ *
+ * <p>Statuses are matched without regard to case too. {@code FAILED} and {@code FAIL} are
+ * failures, and {@code PENDING} is treated as {@code SUBMITTED}.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiResponseParser {
+
+    private static final int MAX_NUMERIC_RESPONSE_CODE_LENGTH = 9;
+
+    // Keys and their slots, aliases after the names the spec uses
+    private static final String[] KEYS = {
+            "txnId", "responseCode", "Status", "txnRef", "ApprovalRefNo", "tr"
+    };
+    private static final int[] KEY_SLOTS = {
+            SLOT_TRANSACTION_ID, SLOT_RESPONSE_CODE, SLOT_STATUS, SLOT_TRANSACTION_REFERENCE_ID,
+            SLOT_APPROVAL_REFERENCE_NUMBER, SLOT_TRANSACTION_REFERENCE_ID
+    };
+
+    private static final String[] STATUSES = { "SUCCESS", "FAILURE", "FAILED", "FAIL",
+            "SUBMITTED", "PENDING" };
+    private static final int[] STATUS_VALUES = { UpiResponse.STATUS_SUCCESS,
+            UpiResponse.STATUS_FAILURE, UpiResponse.STATUS_FAILURE, UpiResponse.STATUS_FAILURE,
+            UpiResponse.STATUS_SUBMITTED, UpiResponse.STATUS_SUBMITTED };
+
+    private UpiResponseParser() { /* No instances. */ }
+
+    /**
+     * Parses a response string.
+     *
+     * @param response The {@code response} extra of the result intent.
+     */
+    @NonNull
+    public static UpiResponse parse(@NonNull String response) {
+        int[] ranges = new int[SLOT_COUNT * 2];
+        scan(response, ranges, 0);
+        // noinspection WrongConstant
+        return new UpiResponse(response, ranges, 0, status(response, ranges, 0),
+                numericResponseCode(response, ranges, 0));
+    }
+
+    /**
+     * Parses a batch of response strings, e.g. on a backend. Fields of all responses are recorded
+     * in shared arrays, so no objects are allocated per response.
+     *
+     * @param responses Response strings. The list must not be modified until this method
+     *         returns.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiResponseBatch parseAll(@NonNull List<? extends CharSequence> responses) {
+        return parseAll(responses.toArray(new CharSequence[responses.size()]));
+    }
+
+    /**
+     * Parses a batch of response strings, e.g. on a backend. Fields of all responses are recorded
+     * in shared arrays, so no objects are allocated per response.
+     *
+     * @param responses Response strings.
+     * @return Results in the same order as the input.
+     */
+    @NonNull
+    public static UpiResponseBatch parseAll(@NonNull CharSequence[] responses) {
+        int size = responses.length;
+        int[] ranges = new int[size * SLOT_COUNT * 2];
+        int[] statuses = new int[size];
+        int[] numericResponseCodes = new int[size];
+        int successCount = 0;
+        for (int i = 0; i < size; i++) {
+            CharSequence response = responses[i];
+            int offset = i * SLOT_COUNT * 2;
+            scan(response, ranges, offset);
+            statuses[i] = status(response, ranges, offset);
+            numericResponseCodes[i] = numericResponseCode(response, ranges, offset);
+            if (statuses[i] == UpiResponse.STATUS_SUCCESS) {
+                successCount++;
+            }
+        }
+        return new UpiResponseBatch(responses, ranges, statuses, numericResponseCodes,
+                successCount);
+    }
+
+    /**
+     * Records the start and end of each known field's value in {@code ranges}, from
+     * {@code offset} on. Absent fields get {@code -1}.
+     */
+    static void scan(CharSequence response, int[] ranges, int offset) {
+        Arrays.fill(ranges, offset, offset + SLOT_COUNT * 2, -1);
+        int length = response.length();
+        int start = 0;
+        if (start < length && response.charAt(start) == '?') {
+            start++;
+        }
+        while (start < length) {
+            int end = UpiUriParser.indexOf(response, '&', start, length);
+            int separator = UpiUriParser.indexOf(response, '=', start, end);
+            int slot = slotOf(response, trimStart(response, start, separator),
+                    trimEnd(response, start, separator));
+            if (slot != -1 && ranges[offset + slot * 2] == -1 && separator < end) {
+                int valueStart = trimStart(response, separator + 1, end);
+                ranges[offset + slot * 2] = valueStart;
+                ranges[offset + slot * 2 + 1] = trimEnd(response, valueStart, end);
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * @return One of the {@code UpiResponse.STATUS_*} constants.
+     */
+    static int status(CharSequence response, int[] ranges, int offset) {
+        int start = ranges[offset + SLOT_STATUS * 2];
+        int end = ranges[offset + SLOT_STATUS * 2 + 1];
+        if (start == -1) {
+            return UpiResponse.STATUS_UNKNOWN;
+        }
+        if (UpiUriParser.isEncoded(response, start, end)) {
+            response = UpiUriParser.decode(response, start, end);
+            start = 0;
+            end = response.length();
+        }
+        for (int i = 0; i < STATUSES.length; i++) {
+            if (equalsIgnoreCase(response, start, end, STATUSES[i])) {
+                return STATUS_VALUES[i];
+            }
+        }
+        return UpiResponse.STATUS_UNKNOWN;
+    }
+
+    /**
+     * @return The response code if it is a number, or {@link UpiResponse#NO_RESPONSE_CODE}.
+     */
+    static int numericResponseCode(CharSequence response, int[] ranges, int offset) {
+        int start = ranges[offset + SLOT_RESPONSE_CODE * 2];
+        int end = ranges[offset + SLOT_RESPONSE_CODE * 2 + 1];
+        if (start == end || end - start > MAX_NUMERIC_RESPONSE_CODE_LENGTH) {
+            return UpiResponse.NO_RESPONSE_CODE;
+        }
+        int code = 0;
+        for (int i = start; i < end; i++) {
+            int digit = response.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return UpiResponse.NO_RESPONSE_CODE;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    private static int slotOf(CharSequence s, int start, int end) {
+        for (int i = 0; i < KEYS.length; i++) {
+            if (equalsIgnoreCase(s, start, end, KEYS[i])) {
+                return KEY_SLOTS[i];
+            }
+        }
+        return -1;
+    }
+
+    private static boolean equalsIgnoreCase(CharSequence s, int start, int end, String other) {
+        if (end - start != other.length()) {
+            return false;
+        }
+        for (int i = start, j = 0; i < end; i++, j++) {
+            char a = s.charAt(i);
+            char b = other.charAt(j);
+            if (a != b && UpiUriParser.toLowerCase(a) != UpiUriParser.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int trimStart(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(CharSequence s, int start, int end) {
+        while (end > start && s.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Map;
+
+/**
+ * Result of parsing and validating a UPI URI. Both the payload and the extras are immutable, so
+ * a result can be shared between threads and handed out to every caller that parses the same URI.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiResult {
+
+    /**
+     * The URI was parsed successfully.
+     */
+    public static final int NO_ERROR = -1;
+
+    /**
+     * Missing Payee Address in URI.
+     */
+    public static final int ERROR_MISSING_PAYEE_ADDRESS = 100;
+
+    /**
+     * Missing Payee Name in URI.
+     */
+    public static final int ERROR_MISSING_PAYEE_NAME = 101;
+
+    /**
+     * Transaction amount in URI is not a valid amount.
+     */
+    public static final int ERROR_INVALID_AMOUNT = 102;
+
+    /**
+     * Minimum amount in URI is not a valid amount.
+     */
+    public static final int ERROR_INVALID_MINIMUM_AMOUNT = 103;
+
+    /**
+     * The transaction in the URI was already handled, see {@link UpiReplayGuard}.
+     */
+    public static final int ERROR_DUPLICATE_TRANSACTION = 104;
+
+    /**
+     * Payee Address in URI is not a valid virtual payment address, see
+     * {@link UpiAddressValidator}.
+     */
+    public static final int ERROR_INVALID_PAYEE_ADDRESS = 105;
+
+    /**
+     * The handle of the Payee Address in URI doesn't belong to a known payment service provider,
+     * see {@link UpiAddressValidator}.
+     */
+    public static final int ERROR_UNKNOWN_PAYEE_HANDLE = 106;
+
+    /**
+     * The URI is not signed, or its signature could not be verified, see
+     * {@link UpiSignatureVerifier}.
+     */
+    public static final int ERROR_INVALID_SIGNATURE = 107;
+
+    @Nullable private final UpiPayload payload;
+    @Nullable private final Map<String, String> extras;
+    private final int errorCode;
+
+    UpiResult(@NonNull UpiPayload payload, @NonNull Map<String, String> extras) {
+        this.payload = payload;
+        this.extras = extras;
+        this.errorCode = NO_ERROR;
+    }
+
+    UpiResult(int errorCode) {
+        this.payload = null;
+        this.extras = null;
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * @return {@code true} if the URI is a valid UPI URI.
+     */
+    public boolean isSuccess() {
+        return errorCode == NO_ERROR;
+    }
+
+    /**
+     * @return Information parsed from the URI, or {@code null} if the URI is not valid.
+     */
+    @Nullable
+    public UpiPayload getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return Parameters in the URI that are not a part of the UPI spec, or {@code null} if the
+     *         URI is not valid.
+     */
+    @Nullable
+    public Map<String, String> getExtras() {
+        return extras;
+    }
+
+    /**
+     * @return One of the {@code ERROR_*} constants, or {@link #NO_ERROR} if the URI is valid.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies signed UPI URIs, such as signed QR codes. A signed URI carries the Base64 signature in
+ * its {@code sign} parameter and the organization that signed it in its {@code orgid} parameter.
+ * The signature covers the URI as it is, without the {@code sign} parameter. RSA keys are
+ * verified with SHA256withRSA and EC keys with SHA256withECDSA.
+ *
+ * <p>Public keys are parsed once per organization and kept in a concurrent map. SHA-256 digests
+ * of verified URIs are kept in a fixed-size table, so repeated scans of the same static QR code
+ * are verified with a lookup instead of public key cryptography. The table is split into blocks
+ * of 8 slots and the least recently verified URI of a block is forgotten first. Changing a key
+ * forgets every verified URI.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiSignatureVerifier {
+
+    /**
+     * The signature is valid.
+     */
+    public static final int SIGNATURE_VALID = 0;
+
+    /**
+     * The URI is not signed.
+     */
+    public static final int SIGNATURE_MISSING = 1;
+
+    /**
+     * The signature is malformed, or doesn't match the URI and the organization's key.
+     */
+    public static final int SIGNATURE_INVALID = 2;
+
+    /**
+     * The URI has no organization ID, or there is no key for its organization.
+     */
+    public static final int SIGNATURE_UNKNOWN_KEY = 3;
+
+    @IntDef({ SIGNATURE_VALID, SIGNATURE_MISSING, SIGNATURE_INVALID, SIGNATURE_UNKNOWN_KEY })
+    public @interface Result {}
+
+    /**
+     * Default number of verified URIs remembered.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /**
+     * Supplies public keys of organizations that are not known yet.
+     */
+    public interface KeyProvider {
+
+        /**
+         * Called the first time a URI of an organization is verified, and again after its key is
+         * removed. May be called concurrently.
+         *
+         * @param orgId The organization ID of a URI.
+         * @return The X.509 encoded public key of the organization, or {@code null} if the
+         *         organization is unknown.
+         */
+        @Nullable
+        byte[] getPublicKey(@NonNull String orgId);
+
+    }
+
+    private static final String PARAM_SIGN = "sign";
+    private static final String PARAM_ORG_ID = "orgid";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String[] KEY_ALGORITHMS = { "RSA", "EC" };
+    private static final String[] SIGNATURE_ALGORITHMS = { "SHA256withRSA", "SHA256withECDSA" };
+
+    private static final int BLOCK_SIZE_SHIFT = 3;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_SHIFT;
+    private static final int MAX_LOCKS = 64;
+    private static final int DIGEST_LONGS = 4;
+    private static final long EMPTY = 0;
+
+    private static final int MIN_RANGE_SIZE = 16;
+
+    // Signature and MessageDigest instances are not thread-safe, and are costly to look up
+    private static final ThreadLocal<Signature[]> SIGNATURES = new ThreadLocal<Signature[]>() {
+        @Override
+        protected Signature[] initialValue() {
+            return new Signature[SIGNATURE_ALGORITHMS.length];
+        }
+    };
+    private static final ThreadLocal<MessageDigest> SHA_256 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    };
+
+    @Nullable private final KeyProvider keyProvider;
+    private final boolean signatureRequired;
+    private final ConcurrentHashMap<String, PublicKey> keys =
+            new ConcurrentHashMap<String, PublicKey>();
+
+    private final int blockMask;
+    private final long[] digests;
+    // Time of the last verification of each slot, EMPTY for empty slots
+    private final long[] stamps;
+    private final Object[] locks;
+    private final AtomicLong clock = new AtomicLong();
+    // Changed with every key, so that URIs verified with an old key are not remembered
+    private final AtomicLong keyVersion = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * Creates a verifier that remembers {@link #DEFAULT_CACHE_SIZE} verified URIs, and accepts
+     * URIs that are not signed. Keys are added with {@link #putPublicKey(String, PublicKey)}.
+     */
+    public UpiSignatureVerifier() {
+        this(null, DEFAULT_CACHE_SIZE, false);
+    }
+
+    /**
+     * @param keyProvider Provider for keys that were not added, or {@code null} to only use keys
+     *         that were added.
+     * @param cacheSize Number of verified URIs to remember, rounded up to a power of two. The
+     *         table takes 40 bytes per URI.
+     * @param signatureRequired {@code true} if {@link #isTrusted(String)} should reject URIs that
+     *         are not signed.
+     */
+    public UpiSignatureVerifier(@Nullable KeyProvider keyProvider, int cacheSize,
+            boolean signatureRequired) {
+        if (cacheSize <= 0 || cacheSize > 1 << 26) {
+            throw new IllegalArgumentException("cacheSize must be between 1 and 2^26, but was "
+                    + cacheSize);
+        }
+        int slots = Math.max(Integer.highestOneBit(cacheSize * 2 - 1), BLOCK_SIZE);
+        int blocks = slots >>> BLOCK_SIZE_SHIFT;
+        this.keyProvider = keyProvider;
+        this.signatureRequired = signatureRequired;
+        this.blockMask = blocks - 1;
+        this.digests = new long[slots * DIGEST_LONGS];
+        this.stamps = new long[slots];
+        this.locks = new Object[Math.min(blocks, MAX_LOCKS)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Adds or replaces the public key of an organization.
+     */
+    public void putPublicKey(@NonNull String orgId, @NonNull PublicKey publicKey) {
+        if (signatureAlgorithm(publicKey) == -1) {
+            throw new IllegalArgumentException("Unsupported key algorithm: "
+                    + publicKey.getAlgorithm());
+        }
+        keys.put(orgId, publicKey);
+        forgetVerified();
+    }
+
+    /**
+     * Adds or replaces the public key of an organization.
+     *
+     * @param encodedPublicKey An X.509 encoded RSA or EC public key.
+     */
+    public void putPublicKey(@NonNull String orgId, @NonNull byte[] encodedPublicKey) {
+        PublicKey publicKey = decodePublicKey(encodedPublicKey);
+        if (publicKey == null) {
+            throw new IllegalArgumentException("Not an X.509 encoded RSA or EC public key");
+        }
+        putPublicKey(orgId, publicKey);
+    }
+
+    /**
+     * Removes the public key of an organization. URIs of the organization are verified with a key
+     * from the key provider next.
+     */
+    public void removePublicKey(@NonNull String orgId) {
+        keys.remove(orgId);
+        forgetVerified();
+    }
+
+    /**
+     * @return {@code true} if unsigned URIs are not trusted.
+     */
+    public boolean isSignatureRequired() {
+        return signatureRequired;
+    }
+
+    /**
+     * Checks if a URI can be handled: its signature is valid, or it is not signed and signatures
+     * are not required. This method is safe to call from any thread.
+     */
+    public boolean isTrusted(@NonNull String upiUri) {
+        int result = verify(upiUri);
+        return result == SIGNATURE_VALID || result == SIGNATURE_MISSING && !signatureRequired;
+    }
+
+    /**
+     * Verifies the signature of a URI. This method is safe to call from any thread.
+     *
+     * @param upiUri A UPI URI as it was received.
+     * @return One of the {@code SIGNATURE_*} constants.
+     */
+    @Result
+    public int verify(@NonNull String upiUri) {
+        int fragmentStart = upiUri.indexOf('#');
+        int queryEnd = fragmentStart == -1 ? upiUri.length() : fragmentStart;
+        int queryStart = upiUri.indexOf('?');
+        if (queryStart == -1 || queryStart > queryEnd) {
+            return SIGNATURE_MISSING;
+        }
+
+        // Start of the first sign parameter, and ranges of the first values of both parameters
+        int signStart = -1;
+        int signValueStart = -1;
+        int signValueEnd = -1;
+        int orgIdStart = -1;
+        int orgIdEnd = -1;
+        int start = queryStart + 1;
+        while (start < queryEnd) {
+            int end = upiUri.indexOf('&', start);
+            end = end == -1 || end > queryEnd ? queryEnd : end;
+            int separator = upiUri.indexOf('=', start);
+            if (separator != -1 && separator < end) {
+                if (signStart == -1 && isName(upiUri, start, separator, PARAM_SIGN)) {
+                    signStart = start;
+                    signValueStart = separator + 1;
+                    signValueEnd = end;
+                } else if (orgIdStart == -1 && isName(upiUri, start, separator, PARAM_ORG_ID)) {
+                    orgIdStart = separator + 1;
+                    orgIdEnd = end;
+                }
+            }
+            start = end + 1;
+        }
+
+        if (signStart == -1) {
+            return SIGNATURE_MISSING;
+        }
+        if (orgIdStart == -1 || orgIdStart == orgIdEnd) {
+            return SIGNATURE_UNKNOWN_KEY;
+        }
+
+        long[] digest = digest(upiUri);
+        if (isVerified(digest)) {
+            cacheHits.incrementAndGet();
+            return SIGNATURE_VALID;
+        }
+
+        long version = keyVersion.get();
+        PublicKey publicKey = getPublicKey(UpiUriParser.decode(upiUri, orgIdStart, orgIdEnd));
+        if (publicKey == null) {
+            return SIGNATURE_UNKNOWN_KEY;
+        }
+        byte[] signature = UpiBase64.decode(
+                UpiUriParser.decode(upiUri, signValueStart, signValueEnd));
+        if (signature == null || signature.length == 0) {
+            return SIGNATURE_INVALID;
+        }
+
+        // The sign parameter and one of its separators are left out of the signed message
+        String message;
+        if (upiUri.charAt(signStart - 1) == '&') {
+            message = upiUri.substring(0, signStart - 1) + upiUri.substring(signValueEnd);
+        } else if (signValueEnd < queryEnd) {
+            message = upiUri.substring(0, signStart) + upiUri.substring(signValueEnd + 1);
+        } else {
+            message = upiUri.substring(0, signStart - 1) + upiUri.substring(signValueEnd);
+        }
+
+        if (!verify(publicKey, message.getBytes(UTF_8), signature)) {
+            return SIGNATURE_INVALID;
+        }
+        remember(digest, version);
+        return SIGNATURE_VALID;
+    }
+
+    /**
+     * Verifies a batch of URIs in parallel, for bulk jobs like reconciliation, on the pool shared
+     * with {@link UpiBatchParser}. Requires API level 21.
+     *
+     * @param upiUris UPI URIs to verify. The list is read from several threads, so it must not be
+     *         modified until this method returns.
+     * @return One of the {@code SIGNATURE_*} constants for each URI, in the same order.
+     */
+    @NonNull
+    public int[] verifyAll(@NonNull List<? extends CharSequence> upiUris) {
+        return verifyAll(upiUris.toArray(new CharSequence[upiUris.size()]),
+                UpiForkJoin.sharedPool());
+    }
+
+    /**
+     * Verifies a batch of URIs in parallel on the given pool.
+     *
+     * @param upiUris UPI URIs to verify.
+     * @param pool A pool that verifies the URIs.
+     * @return One of the {@code SIGNATURE_*} constants for each URI, in the same order.
+     */
+    @NonNull
+    public int[] verifyAll(@NonNull final CharSequence[] upiUris,
+            @NonNull ForkJoinPool pool) {
+        final int[] results = new int[upiUris.length];
+        UpiForkJoin.invoke(pool, upiUris.length, MIN_RANGE_SIZE, new UpiForkJoin.RangeTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    results[i] = verify(upiUris[i].toString());
+                }
+            }
+        });
+        return results;
+    }
+
+    /**
+     * @return Number of URIs that were verified by finding them among the verified URIs.
+     */
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    @Nullable
+    private PublicKey getPublicKey(String orgId) {
+        PublicKey publicKey = keys.get(orgId);
+        if (publicKey != null || keyProvider == null) {
+            return publicKey;
+        }
+        byte[] encoded = keyProvider.getPublicKey(orgId);
+        publicKey = encoded != null ? decodePublicKey(encoded) : null;
+        if (publicKey == null) {
+            return null;
+        }
+        PublicKey existing = keys.putIfAbsent(orgId, publicKey);
+        return existing != null ? existing : publicKey;
+    }
+
+    @Nullable
+    static PublicKey decodePublicKey(byte[] encoded) {
+        for (String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm)
+                        .generatePublic(new X509EncodedKeySpec(encoded));
+            } catch (GeneralSecurityException e) {
+                // Try the next algorithm
+            }
+        }
+        return null;
+    }
+
+    private static int signatureAlgorithm(PublicKey publicKey) {
+        for (int i = 0; i < KEY_ALGORITHMS.length; i++) {
+            if (KEY_ALGORITHMS[i].equals(publicKey.getAlgorithm())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean verify(PublicKey publicKey, byte[] message, byte[] signature) {
+        int algorithm = signatureAlgorithm(publicKey);
+        if (algorithm == -1) {
+            return false;
+        }
+        Signature[] signatures = SIGNATURES.get();
+        try {
+            if (signatures[algorithm] == null) {
+                signatures[algorithm] = Signature.getInstance(SIGNATURE_ALGORITHMS[algorithm]);
+            }
+            Signature verifier = signatures[algorithm];
+            verifier.initVerify(publicKey);
+            verifier.update(message);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            // Malformed signatures, like ECDSA signatures that aren't DER sequences
+            return false;
+        }
+    }
+
+    private static boolean isName(String s, int start, int end, String name) {
+        return end - start == name.length() && s.regionMatches(start, name, 0, name.length());
+    }
+
+    private static long[] digest(String upiUri) {
+        byte[] bytes = SHA_256.get().digest(upiUri.getBytes(UTF_8));
+        long[] digest = new long[DIGEST_LONGS];
+        for (int i = 0; i < bytes.length; i++) {
+            digest[i >>> 3] = (digest[i >>> 3] << 8) | (bytes[i] & 0xff);
+        }
+        return digest;
+    }
+
+    private boolean isVerified(long[] digest) {
+        int block = (int) digest[0] & blockMask;
+        int start = block << BLOCK_SIZE_SHIFT;
+        synchronized (locks[block & (locks.length - 1)]) {
+            for (int i = start; i < start + BLOCK_SIZE; i++) {
+                if (stamps[i] != EMPTY && matches(i, digest)) {
+                    stamps[i] = clock.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private void remember(long[] digest, long version) {
+        int block = (int) digest[0] & blockMask;
+        int start = block << BLOCK_SIZE_SHIFT;
+        synchronized (locks[block & (locks.length - 1)]) {
+            if (keyVersion.get() != version) {
+                return;
+            }
+            // An empty slot is taken first, then the least recently verified URI's slot
+            int replace = start;
+            for (int i = start; i < start + BLOCK_SIZE; i++) {
+                if (stamps[i] != EMPTY && matches(i, digest)) {
+                    return;
+                }
+                if (stamps[i] < stamps[replace]) {
+                    replace = i;
+                }
+            }
+            System.arraycopy(digest, 0, digests, replace * DIGEST_LONGS, DIGEST_LONGS);
+            stamps[replace] = clock.incrementAndGet();
+        }
+    }
+
+    private boolean matches(int slot, long[] digest) {
+        int offset = slot * DIGEST_LONGS;
+        return digests[offset] == digest[0] && digests[offset + 1] == digest[1]
+                && digests[offset + 2] == digest[2] && digests[offset + 3] == digest[3];
+    }
+
+    private void forgetVerified() {
+        keyVersion.incrementAndGet();
+        int blocks = blockMask + 1;
+        for (int block = 0; block < blocks; block++) {
+            synchronized (locks[block & (locks.length - 1)]) {
+                int start = block << BLOCK_SIZE_SHIFT;
+                for (int i = start; i < start + BLOCK_SIZE; i++) {
+                    stamps[i] = EMPTY;
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Generates UPI URIs from payloads, the reverse of {@link UpiUriParser}. Parameters are written in
+ * the order of the spec and values are percent-encoded with UTF-8, the same way
+ * {@code android.net.Uri#encode(String)} encodes them, except that {@code @} is kept as is in
+ * payee addresses and other values.
+ *
+ * <p>Values are written straight to the destination. Values that need no escaping are appended in
+ * one call, the others are escaped a character at a time with precomputed escape sequences.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiUriEncoder {
+
+    private static final String PREFIX = "upi://pay";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int ASCII_LIMIT = 128;
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+    // Escape sequence for each ASCII character, or null if the character is written as is
+    private static final char[][] ASCII_ESCAPES = new char[ASCII_LIMIT][];
+
+    static {
+        for (int c = 0; c < ASCII_LIMIT; c++) {
+            if (!isUnreserved((char) c)) {
+                ASCII_ESCAPES[c] = new char[] { '%', HEX_DIGITS[c >> 4], HEX_DIGITS[c & 0xF] };
+            }
+        }
+    }
+
+    private UpiUriEncoder() { /* No instances. */ }
+
+    /**
+     * @param payload The payload to encode.
+     * @return A UPI URI that contains every value of the payload.
+     */
+    @NonNull
+    public static String encode(@NonNull UpiPayload payload) {
+        return encode(payload, null);
+    }
+
+    /**
+     * @param payload The payload to encode.
+     * @param extras Parameters that are not a part of the UPI spec, written after the UPI
+     *         parameters. May be {@code null}.
+     * @return A UPI URI that contains every value of the payload and the extras.
+     */
+    @NonNull
+    public static String encode(@NonNull UpiPayload payload,
+            @Nullable Map<String, String> extras) {
+        return encodeTo(payload, extras, new StringBuilder(128)).toString();
+    }
+
+    /**
+     * Appends a UPI URI to a builder, which can be reset with {@code setLength(0)} and reused for
+     * the next URI.
+     *
+     * @param payload The payload to encode.
+     * @param extras Parameters that are not a part of the UPI spec. May be {@code null}.
+     * @param out The builder to append the URI to.
+     * @return The builder.
+     */
+    @NonNull
+    public static StringBuilder encodeTo(@NonNull UpiPayload payload,
+            @Nullable Map<String, String> extras, @NonNull StringBuilder out) {
+        try {
+            write(payload, extras, out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // StringBuilder doesn't throw
+        }
+        return out;
+    }
+
+    /**
+     * Appends a UPI URI to a destination such as a {@code Writer}.
+     *
+     * @param payload The payload to encode.
+     * @param extras Parameters that are not a part of the UPI spec. May be {@code null}.
+     * @param out The destination to append the URI to.
+     * @return The destination.
+     * @throws IOException If the destination throws.
+     */
+    @NonNull
+    public static <A extends Appendable> A encodeTo(@NonNull UpiPayload payload,
+            @Nullable Map<String, String> extras, @NonNull A out) throws IOException {
+        write(payload, extras, out);
+        return out;
+    }
+
+    private static void write(UpiPayload payload, Map<String, String> extras, Appendable out)
+            throws IOException {
+        out.append(PREFIX);
+        char separator = '?';
+        separator = writeParam(out, separator, UpiParam.PAYEE_ADDRESS, payload.getPayeeAddress());
+        separator = writeParam(out, separator, UpiParam.PAYEE_NAME, payload.getPayeeName());
+        separator = writeParam(out, separator, UpiParam.MERCHANT_CODE, payload.getMerchantCode());
+        separator = writeParam(out, separator, UpiParam.TRANSACTION_ID,
+                payload.getTransactionId());
+        separator = writeParam(out, separator, UpiParam.TRANSACTION_REFERENCE_ID,
+                payload.getTransactionReferenceId());
+        separator = writeParam(out, separator, UpiParam.TRANSACTION_NOTE,
+                payload.getTransactionNote());
+        separator = writeAmount(out, separator, UpiParam.AMOUNT, payload.getPayeeAmountPaise(),
+                payload.getPayeeAmountScale());
+        separator = writeAmount(out, separator, UpiParam.MINIMUM_AMOUNT,
+                payload.getMinimumAmountPaise(), payload.getMinimumAmountScale());
+        separator = writeParam(out, separator, UpiParam.CURRENCY_CODE, payload.getCurrencyCode());
+        separator = writeParam(out, separator, UpiParam.REFERENCE_URL, payload.getReferenceUrl());
+        separator = writeParam(out, separator, UpiParam.MODE, payload.getMode());
+        separator = writeParam(out, separator, UpiParam.PURPOSE, payload.getPurpose());
+        separator = writeParam(out, separator, UpiParam.ORGANIZATION_ID,
+                payload.getOrganizationId());
+        separator = writeParam(out, separator, UpiParam.SIGNATURE, payload.getSignature());
+        separator = writeParam(out, separator, UpiParam.MERCHANT_ID, payload.getMerchantId());
+        separator = writeParam(out, separator, UpiParam.MERCHANT_STORE_ID,
+                payload.getMerchantStoreId());
+        separator = writeParam(out, separator, UpiParam.MERCHANT_TERMINAL_ID,
+                payload.getMerchantTerminalId());
+        separator = writeParam(out, separator, UpiParam.QR_MEDIUM, payload.getQrMedium());
+
+        if (extras != null) {
+            for (Map.Entry<String, String> extra : extras.entrySet()) {
+                out.append(separator);
+                appendEncoded(out, extra.getKey());
+                out.append('=');
+                appendEncoded(out, extra.getValue());
+                separator = '&';
+            }
+        }
+    }
+
+    /**
+     * Parameter names are constants that need no escaping.
+     */
+    private static char writeParam(Appendable out, char separator, String name, String value)
+            throws IOException {
+        if (value == null) {
+            return separator;
+        }
+        out.append(separator).append(name).append('=');
+        appendEncoded(out, value);
+        return '&';
+    }
+
+    /**
+     * Amounts are written with as many decimal places as they were given with.
+     */
+    private static char writeAmount(Appendable out, char separator, String name, long paise,
+            int scale) throws IOException {
+        if (paise < 0) {
+            return separator;
+        }
+        out.append(separator).append(name).append('=');
+        appendLong(out, paise / 100);
+        if (scale > 0) {
+            int fraction = (int) (paise % 100);
+            out.append('.').append((char) ('0' + fraction / 10));
+            if (scale > 1) {
+                out.append((char) ('0' + fraction % 10));
+            }
+        }
+        return '&';
+    }
+
+    private static void appendLong(Appendable out, long value) throws IOException {
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+        } else {
+            out.append(Long.toString(value));
+        }
+    }
+
+    /**
+     * Percent-encodes a value with UTF-8. Values that need no escaping are appended as is.
+     */
+    static void appendEncoded(Appendable out, @Nullable String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c >= ASCII_LIMIT || ASCII_ESCAPES[c] != null) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            out.append(value);
+            return;
+        }
+
+        out.append(value, 0, i);
+        int unescapedStart = i;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < ASCII_LIMIT) {
+                char[] escape = ASCII_ESCAPES[c];
+                if (escape != null) {
+                    out.append(value, unescapedStart, i);
+                    out.append(escape[0]).append(escape[1]).append(escape[2]);
+                    unescapedStart = i + 1;
+                }
+                i++;
+                continue;
+            }
+
+            out.append(value, unescapedStart, i);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+                i++;
+            } else if (c >= '\uD800' && c <= '\uDFFF') {
+                // Character.isSurrogate needs API level 19
+                codePoint = REPLACEMENT_CHARACTER;
+            }
+            appendUtf8(out, codePoint);
+            i++;
+            unescapedStart = i;
+        }
+        out.append(value, unescapedStart, length);
+    }
+
+    private static void appendUtf8(Appendable out, int codePoint) throws IOException {
+        if (codePoint < 0x800) {
+            appendByte(out, 0xC0 | (codePoint >> 6));
+        } else if (codePoint < 0x10000) {
+            appendByte(out, 0xE0 | (codePoint >> 12));
+            appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+        } else {
+            appendByte(out, 0xF0 | (codePoint >> 18));
+            appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+            appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+        }
+        appendByte(out, 0x80 | (codePoint & 0x3F));
+    }
+
+    private static void appendByte(Appendable out, int b) throws IOException {
+        out.append('%').append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || "_-!.~'()*@".indexOf(c) != -1;
+    }
+
+}
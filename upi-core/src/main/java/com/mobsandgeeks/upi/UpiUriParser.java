@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static com.mobsandgeeks.upi.UpiParam.NO_SLOT;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_AMOUNT;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_COUNT;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_MERCHANT_CODE;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_MINIMUM_AMOUNT;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_PAYEE_ADDRESS;
+import static com.mobsandgeeks.upi.UpiParam.SLOT_PAYEE_NAME;
+
+/**
+ * A parser that reads all parameters of a UPI URI in a single pass over the raw URI string.
+ * Values are decoded the same way {@code android.net.Uri#getQueryParameter(String)} decodes
+ * them, and when a parameter repeats, the first occurrence wins. The parser has no Android
+ * dependencies and is safe to call from any thread.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiUriParser {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char REPLACEMENT_CHARACTER = '\uFFFD';
+
+    private static final int INITIAL_EXTRAS_CAPACITY = 8;
+
+    private UpiUriParser() { /* No instances. */ }
+
+    /**
+     * Parses and validates a UPI URI.
+     *
+     * @param upiUri The UPI URI as a string.
+     * @return The parsed payload and extras, or an error code if the URI is not valid.
+     */
+    @NonNull
+    public static UpiResult parse(@NonNull String upiUri) {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        Map<String, String> extras = parse(upiUri, builder);
+        int errorCode = validate(builder);
+        return errorCode == UpiResult.NO_ERROR
+                ? new UpiResult(builder.build(), extras)
+                : new UpiResult(errorCode);
+    }
+
+    /**
+     * Validates a UPI URI with the same rules as {@link #parse(String)}, without building the
+     * payload or its extras. Nothing is allocated unless a parameter name or an amount is
+     * percent-encoded, so large dumps can be checked line by line from a reused buffer.
+     *
+     * @param upiUri The UPI URI.
+     * @return One of the {@code UpiResult.ERROR_*} constants, or {@link UpiResult#NO_ERROR}.
+     */
+    public static int validate(@NonNull CharSequence upiUri) {
+        int length = upiUri.length();
+        int queryEnd = indexOf(upiUri, '#', 0, length);
+        int queryStart = indexOf(upiUri, '?', 0, length);
+
+        int payeeAddress = -1;
+        int payeeName = -1;
+        int amount = -1;
+        int minimumAmount = -1;
+        int start = queryStart + 1;
+        while (start < queryEnd) {
+            int end = indexOf(upiUri, '&', start, queryEnd);
+            if (end > start) {
+                int separator = indexOf(upiUri, '=', start, end);
+                int slot = UpiParam.slotOf(upiUri, start, separator);
+                if (slot == NO_SLOT && isEncoded(upiUri, start, separator)) {
+                    String name = decode(upiUri, start, separator);
+                    slot = UpiParam.slotOf(name, 0, name.length());
+                }
+                // Values end at the next '&', so only their start is recorded
+                int valueStart = separator < end ? separator + 1 : end;
+                if (slot == SLOT_PAYEE_ADDRESS && payeeAddress == -1) {
+                    payeeAddress = valueStart;
+                } else if (slot == SLOT_PAYEE_NAME && payeeName == -1) {
+                    payeeName = valueStart;
+                } else if (slot == SLOT_AMOUNT && amount == -1) {
+                    amount = valueStart;
+                } else if (slot == SLOT_MINIMUM_AMOUNT && minimumAmount == -1) {
+                    minimumAmount = valueStart;
+                }
+            }
+            start = end + 1;
+        }
+
+        if (isBlank(upiUri, payeeName, queryEnd)) {
+            return UpiResult.ERROR_MISSING_PAYEE_NAME;
+        } else if (isBlank(upiUri, payeeAddress, queryEnd)) {
+            return UpiResult.ERROR_MISSING_PAYEE_ADDRESS;
+        } else if (!isValidAmount(upiUri, amount, queryEnd)) {
+            return UpiResult.ERROR_INVALID_AMOUNT;
+        } else if (!isValidAmount(upiUri, minimumAmount, queryEnd)) {
+            return UpiResult.ERROR_INVALID_MINIMUM_AMOUNT;
+        }
+        return UpiResult.NO_ERROR;
+    }
+
+    /**
+     * Checks a filled builder for missing mandatory fields and invalid amounts.
+     *
+     * @return One of the {@code UpiResult.ERROR_*} constants, or {@link UpiResult#NO_ERROR}.
+     */
+    static int validate(@NonNull UpiPayload.Builder builder) {
+        if (isBlank(builder.getPayeeName())) {
+            return UpiResult.ERROR_MISSING_PAYEE_NAME;
+        } else if (isBlank(builder.getPayeeAddress())) {
+            return UpiResult.ERROR_MISSING_PAYEE_ADDRESS;
+        } else if (builder.getPayeeAmountPaise() == UpiAmount.INVALID) {
+            return UpiResult.ERROR_INVALID_AMOUNT;
+        } else if (builder.getMinimumAmountPaise() == UpiAmount.INVALID) {
+            return UpiResult.ERROR_INVALID_MINIMUM_AMOUNT;
+        } // FIXME: 05/01/17 What if both are missing?
+        return UpiResult.NO_ERROR;
+    }
+
+    /**
+     * Parses a UPI URI and fills the builder with values of UPI parameters.
+     *
+     * @param upiUri The UPI URI as a string.
+     * @param builder A builder that receives values of UPI parameters.
+     * @return An unmodifiable map of parameters that are not a part of the UPI spec. The map
+     *         decodes the parameters when it is first read.
+     */
+    @NonNull
+    static Map<String, String> parse(@NonNull String upiUri, @NonNull UpiPayload.Builder builder) {
+        int fragmentStart = upiUri.indexOf('#');
+        int queryEnd = fragmentStart == -1 ? upiUri.length() : fragmentStart;
+        int queryStart = upiUri.indexOf('?');
+
+        // Start and end indices of the first occurrence of each UPI parameter's value
+        int[] ranges = new int[SLOT_COUNT * 2];
+        Arrays.fill(ranges, -1);
+        int[] extraRanges = null;
+        int extraCount = 0;
+
+        if (queryStart != -1 && queryStart < queryEnd) {
+            int start = queryStart + 1;
+            while (start < queryEnd) {
+                int end = indexOf(upiUri, '&', start, queryEnd);
+                if (end > start) {
+                    int separator = indexOf(upiUri, '=', start, end);
+                    int valueStart = separator < end ? separator + 1 : end;
+
+                    int slot = UpiParam.slotOf(upiUri, start, separator);
+                    if (slot == NO_SLOT && isEncoded(upiUri, start, separator)) {
+                        String name = decode(upiUri, start, separator);
+                        slot = UpiParam.slotOf(name, 0, name.length());
+                    }
+                    if (slot != NO_SLOT) {
+                        if (ranges[slot * 2] == -1) {
+                            ranges[slot * 2] = valueStart;
+                            ranges[slot * 2 + 1] = end;
+                        }
+                    } else {
+                        int offset = extraCount * UpiExtras.RANGE_STRIDE;
+                        if (extraRanges == null) {
+                            extraRanges = new int[INITIAL_EXTRAS_CAPACITY * UpiExtras.RANGE_STRIDE];
+                        } else if (offset == extraRanges.length) {
+                            extraRanges = Arrays.copyOf(extraRanges, offset * 2);
+                        }
+                        extraRanges[offset] = start;
+                        extraRanges[offset + 1] = separator;
+                        extraRanges[offset + 2] = valueStart;
+                        extraRanges[offset + 3] = end;
+                        extraCount++;
+                    }
+                }
+                start = end + 1;
+            }
+        }
+
+        // Mandatory fields are validated right away, the others are decoded by the payload
+        builder.payeeAddress(value(upiUri, ranges, SLOT_PAYEE_ADDRESS))
+                .payeeName(value(upiUri, ranges, SLOT_PAYEE_NAME))
+                .valueRanges(upiUri, ranges);
+
+        setAmount(upiUri, ranges, SLOT_AMOUNT, builder);
+        setAmount(upiUri, ranges, SLOT_MINIMUM_AMOUNT, builder);
+        setMerchantCategoryCode(upiUri, ranges, builder);
+
+        return extraCount > 0
+                ? new UpiExtras(upiUri, extraRanges, extraCount)
+                : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * Decodes the value of a UPI parameter.
+     *
+     * @return The decoded value, or {@code null} if the parameter is absent.
+     */
+    @Nullable
+    static String value(String upiUri, int[] ranges, int slot) {
+        int start = ranges[slot * 2];
+        return start != -1 ? decode(upiUri, start, ranges[slot * 2 + 1]) : null;
+    }
+
+    /**
+     * Amounts are parsed straight from the URI unless they are percent-encoded. Empty amounts
+     * are treated as absent.
+     */
+    private static void setAmount(String upiUri, int[] ranges, int slot,
+            UpiPayload.Builder builder) {
+        int start = ranges[slot * 2];
+        int end = ranges[slot * 2 + 1];
+        if (start == end) {
+            return;
+        }
+
+        CharSequence amount = upiUri;
+        if (isEncoded(upiUri, start, end)) {
+            amount = decode(upiUri, start, end);
+            start = 0;
+            end = amount.length();
+        }
+
+        long paise = UpiAmount.parsePaise(amount, start, end);
+        int scale = paise != UpiAmount.INVALID ? UpiAmount.scale(amount, start, end) : 0;
+        if (slot == SLOT_AMOUNT) {
+            builder.payeeAmount(paise, scale);
+        } else {
+            builder.minimumAmount(paise, scale);
+        }
+    }
+
+    /**
+     * Like amounts, merchant codes are parsed straight from the URI unless they are
+     * percent-encoded.
+     */
+    private static void setMerchantCategoryCode(String upiUri, int[] ranges,
+            UpiPayload.Builder builder) {
+        int start = ranges[SLOT_MERCHANT_CODE * 2];
+        int end = ranges[SLOT_MERCHANT_CODE * 2 + 1];
+        if (start == -1) {
+            return;
+        }
+
+        CharSequence code = upiUri;
+        if (isEncoded(upiUri, start, end)) {
+            code = decode(upiUri, start, end);
+            start = 0;
+            end = code.length();
+        }
+        builder.merchantCategoryCode(UpiMerchantCategory.parseCode(code, start, end));
+    }
+
+    private static boolean isBlank(@Nullable String s) {
+        return s == null || s.trim().isEmpty();
+    }
+
+    /**
+     * Same as {@link #isBlank(String)} on the decoded value that starts at the index, without
+     * decoding it. Escaped bytes above {@code 0x7f} and invalid escapes decode to characters that
+     * are not blank.
+     *
+     * @param start Start index of the value, or {@code -1} if the parameter is absent.
+     */
+    private static boolean isBlank(CharSequence s, int start, int queryEnd) {
+        if (start == -1) {
+            return true;
+        }
+        int end = indexOf(s, '&', start, queryEnd);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                int high = i + 2 < end ? hexValue(s.charAt(i + 1)) : -1;
+                int low = i + 2 < end ? hexValue(s.charAt(i + 2)) : -1;
+                if (high == -1 || low == -1 || (high << 4 | low) > ' ') {
+                    return false;
+                }
+                i += 2;
+            } else if (c != '+' && c > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses an amount the way {@link #setAmount} does, empty and absent amounts are valid.
+     *
+     * @param start Start index of the value, or {@code -1} if the parameter is absent.
+     */
+    private static boolean isValidAmount(CharSequence s, int start, int queryEnd) {
+        if (start == -1) {
+            return true;
+        }
+        int end = indexOf(s, '&', start, queryEnd);
+        if (start == end) {
+            return true;
+        }
+        CharSequence amount = s;
+        if (isEncoded(s, start, end)) {
+            amount = decode(s, start, end);
+            start = 0;
+            end = amount.length();
+        }
+        return UpiAmount.parsePaise(amount, start, end) != UpiAmount.INVALID;
+    }
+
+    /**
+     * @return Index of the character in the range, or {@code end} if it isn't there.
+     */
+    static int indexOf(CharSequence s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return {@code true} if the range has to be decoded.
+     */
+    static boolean isEncoded(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '%' || c == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lowercases ASCII letters only, unlike {@link Character#toLowerCase(char)}, so that keys and
+     * handles match the same way in every locale.
+     */
+    static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Decodes a percent-encoded range of the URI. Plus signs are decoded as spaces and invalid
+     * escape sequences are replaced with the Unicode replacement character.
+     */
+    static String decode(CharSequence s, int start, int end) {
+        int i = start;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '%' || c == '+') {
+                break;
+            }
+            i++;
+        }
+        if (i == end) {
+            return s.subSequence(start, end).toString();
+        }
+
+        StringBuilder decoded = new StringBuilder(end - start);
+        decoded.append(s, start, i);
+        byte[] bytes = null;
+        while (i < end) {
+            char c = s.charAt(i);
+            if (c == '+') {
+                decoded.append(' ');
+                i++;
+            } else if (c == '%') {
+                if (bytes == null) {
+                    bytes = new byte[(end - i) / 3];
+                }
+                int count = 0;
+                while (i + 2 < end && s.charAt(i) == '%') {
+                    int high = hexValue(s.charAt(i + 1));
+                    int low = hexValue(s.charAt(i + 2));
+                    if (high == -1 || low == -1) {
+                        break;
+                    }
+                    bytes[count++] = (byte) ((high << 4) | low);
+                    i += 3;
+                }
+                if (count > 0) {
+                    decoded.append(new String(bytes, 0, count, UTF_8));
+                } else {
+                    decoded.append(REPLACEMENT_CHARACTER);
+                    i++;
+                }
+            } else {
+                decoded.append(c);
+                i++;
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.audit;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.WorkerThread;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An append-only journal of handled UPI URIs, for audits. Each URI is recorded with the time it
+ * was handled, a hash of the URI, the payee address, the amount in paise and the result code.
+ *
+ * <p>{@link #append(String, UpiResult)} only puts the URI, its result and the time into a slot of
+ * a preallocated ring buffer, without locks, allocations or I/O, so it is cheap enough for the
+ * main thread. A background thread hashes and encodes buffered records, writes them to
+ * memory-mapped segment files in batches, and forces each batch to storage once. A new segment
+ * is started when the current one is full or when {@link #rotate()} is called. Completed
+ * segments are read with {@link AuditReader}.
+ *
+ * <p>If records arrive faster than they can be written and the buffer fills up, new records are
+ * dropped and counted by {@link #getDroppedCount()}.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class AuditJournal implements Closeable {
+
+    /**
+     * Default number of records that can wait in the buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Default segment size, 8191 records and a header.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    // Records that arrive within this interval are forced to storage together
+    private static final long COMMIT_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int capacity;
+    private final int mask;
+    private final String[] uris;
+    private final UpiResult[] results;
+    private final long[] timestamps;
+    // Sequence number of the record in each slot, a slot is readable when it equals the sequence
+    private final AtomicLongArray published;
+    // Next sequence number to claim
+    private final AtomicLong tail = new AtomicLong();
+    // Next sequence number to write, slots before it can be reused
+    private volatile long head;
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Guards the writer and the segment files
+    private final Object lock = new Object();
+    private final AuditWriter writer;
+    private final File directory;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    // Used by the writer, with the lock held
+    private final byte[] record = new byte[AuditLog.RECORD_SIZE];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+    /**
+     * Opens a journal with the default capacity and segment size.
+     *
+     * @param directory Directory for the segment files, created if it doesn't exist.
+     */
+    @WorkerThread
+    public AuditJournal(@NonNull File directory) throws IOException {
+        this(directory, DEFAULT_CAPACITY, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens a journal. Records always go into a new segment, segments written earlier are left as
+     * they are.
+     *
+     * @param directory Directory for the segment files, created if it doesn't exist.
+     * @param capacity Number of records that can wait to be written, a power of two.
+     * @param segmentSize Maximum size of a segment file in bytes, a multiple of 128 that holds at
+     *         least one record.
+     */
+    @WorkerThread
+    public AuditJournal(@NonNull File directory, int capacity, int segmentSize)
+            throws IOException {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two, but was "
+                    + capacity);
+        }
+        if (segmentSize < 2 * AuditLog.RECORD_SIZE || segmentSize % AuditLog.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("segmentSize must be a multiple of "
+                    + AuditLog.RECORD_SIZE + " and at least " + 2 * AuditLog.RECORD_SIZE
+                    + ", but was " + segmentSize);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.uris = new String[capacity];
+        this.results = new UpiResult[capacity];
+        this.timestamps = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.directory = directory;
+        this.writer = new AuditWriter(directory, segmentSize);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeUntilClosed();
+            }
+        }, "UpiAuditJournal");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Records a handled URI. This method is safe to call from any thread, and doesn't block.
+     *
+     * @param upiUri The URI as it was received.
+     * @param result The result of parsing the URI.
+     * @return {@code false} if the record was dropped because the buffer is full, the journal is
+     *         closed or writing failed.
+     */
+    public boolean append(@NonNull String upiUri, @NonNull UpiResult result) {
+        if (closed || failure != null) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        uris[slot] = upiUri;
+        results[slot] = result;
+        timestamps[slot] = System.currentTimeMillis();
+        published.lazySet(slot, sequence);
+
+        // Wakes the idle writer for the first record of a group, and wakes it early when the
+        // buffer is filling up faster than it commits
+        long pending = sequence - head;
+        if (pending == 0 || pending == capacity / 2) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    /**
+     * Writes every record appended before this call and forces them to storage. Waits for records
+     * that other threads have claimed but not finished appending yet.
+     */
+    @WorkerThread
+    public void flush() throws IOException {
+        checkNotFailed();
+        long last = tail.get();
+        synchronized (lock) {
+            try {
+                drain();
+                while (head < last) {
+                    Thread.yield();
+                    drain();
+                }
+                writer.force();
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+    }
+
+    /**
+     * Flushes and completes the current segment, so that it shows up in
+     * {@link #getCompletedSegments()}. Records appended after this call go into a new segment.
+     */
+    @WorkerThread
+    public void rotate() throws IOException {
+        checkNotFailed();
+        synchronized (lock) {
+            try {
+                drain();
+                writer.seal();
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+    }
+
+    /**
+     * Lists segments that are no longer written to, for exporting. Exported segments can be
+     * deleted.
+     *
+     * @return Segment files, oldest first.
+     */
+    @NonNull
+    @WorkerThread
+    public List<File> getCompletedSegments() {
+        synchronized (lock) {
+            File current = writer.getSegmentFile();
+            List<File> completed = new ArrayList<File>();
+            for (File segment : AuditLog.segmentFiles(directory)) {
+                if (!segment.equals(current)) {
+                    completed.add(segment);
+                }
+            }
+            return completed;
+        }
+    }
+
+    /**
+     * @return Number of records that were not written, because the buffer was full, the journal
+     *         was closed or writing failed.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Writes all buffered records, completes the current segment and stops the background thread.
+     * Records appended after this call are dropped.
+     */
+    @WorkerThread
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the journal");
+        }
+        synchronized (lock) {
+            try {
+                if (failure == null) {
+                    drain();
+                }
+                writer.close();
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+        checkNotFailed();
+    }
+
+    /**
+     * Computes the hash that identifies a URI in the journal, to match records with URIs. It is the
+     * 64-bit FNV-1a hash of the URI's UTF-8 bytes.
+     */
+    public static long hash(@NonNull String upiUri) {
+        return AuditLog.hash(upiUri);
+    }
+
+    private void writeUntilClosed() {
+        while (!closed) {
+            if (tail.get() == head) {
+                // Nothing to write, append unparks the writer when a record arrives
+                LockSupport.park(this);
+                continue;
+            }
+
+            // Gives other records a chance to join the group before it is forced
+            LockSupport.parkNanos(this, COMMIT_INTERVAL_NANOS);
+            synchronized (lock) {
+                try {
+                    if (drain() > 0) {
+                        writer.force();
+                    }
+                } catch (IOException e) {
+                    fail(e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes published records in sequence order, up to the first slot that isn't published yet.
+     * Must be called with the lock held.
+     *
+     * @return Number of records written.
+     */
+    private int drain() throws IOException {
+        long next = head;
+        int count = 0;
+        while (published.get((int) next & mask) == next) {
+            int slot = (int) next & mask;
+            encode(uris[slot], results[slot], timestamps[slot]);
+            writer.append(record, 0);
+            uris[slot] = null;
+            results[slot] = null;
+            next++;
+            count++;
+            head = next;
+        }
+        return count;
+    }
+
+    /**
+     * Fills the record buffer, except for the checksum.
+     */
+    private void encode(String upiUri, UpiResult result, long timestamp) {
+        UpiPayload payload = result.getPayload();
+        int length = payload != null ? AuditLog.encode(payload.getPayeeAddress(), record,
+                AuditLog.ADDRESS, AuditLog.MAX_ADDRESS_BYTES) : 0;
+        boolean truncated = length < 0;
+        if (truncated) {
+            length = -1 - length;
+        }
+        Arrays.fill(record, AuditLog.ADDRESS + length, AuditLog.RECORD_SIZE, (byte) 0);
+        recordBuffer.putInt(AuditLog.RESULT_CODE, result.getErrorCode())
+                .putLong(AuditLog.TIMESTAMP, timestamp)
+                .putLong(AuditLog.URI_HASH, AuditLog.hash(upiUri))
+                .putLong(AuditLog.AMOUNT,
+                        payload != null ? payload.getPayeeAmountPaise() : UpiPayload.NO_AMOUNT)
+                .putShort(AuditLog.ADDRESS_LENGTH, (short) length)
+                .putShort(AuditLog.FLAGS,
+                        (short) (truncated ? AuditLog.FLAG_ADDRESS_TRUNCATED : 0));
+    }
+
+    private void checkNotFailed() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException("Writing the journal failed", failure);
+        }
+    }
+
+    private IOException fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        return e;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.audit;
+
+import com.mobsandgeeks.upi.internal.UpiHashing;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Layout of journal segments. A segment starts with a header record, followed by fixed-size
+ * records in append order. All values are big-endian.
+ *
+ * <pre>
+ * Header: magic (4), version (4), record size (4), segment number (8), zero padding.
+ * Record: CRC-32 of the remaining 124 bytes (4), result code (4), timestamp (8), URI hash (8),
+ *         amount in paise (8), payee address length (2), flags (2), payee address (92).
+ * </pre>
+ *
+ * Segments are preallocated and mapped, so a segment that wasn't closed cleanly ends with zeros.
+ * Reading stops at the first record whose checksum doesn't match.
+ *
+ * @author Ragunath Jawahar
+ */
+final class AuditLog {
+
+    static final int RECORD_SIZE = 128;
+
+    static final int MAGIC = 0x55504941; // "UPIA"
+    static final int VERSION = 1;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_RECORD_SIZE = 8;
+    static final int HEADER_SEGMENT = 12;
+
+    static final int CRC = 0;
+    static final int RESULT_CODE = 4;
+    static final int TIMESTAMP = 8;
+    static final int URI_HASH = 16;
+    static final int AMOUNT = 24;
+    static final int ADDRESS_LENGTH = 32;
+    static final int FLAGS = 34;
+    static final int ADDRESS = 36;
+    static final int MAX_ADDRESS_BYTES = RECORD_SIZE - ADDRESS;
+
+    static final int FLAG_ADDRESS_TRUNCATED = 1;
+
+    private static final String PREFIX = "upi-audit-";
+    private static final String SUFFIX = ".log";
+
+    private AuditLog() { /* No instances. */ }
+
+    static File segmentFile(File directory, long segment) {
+        return new File(directory, String.format(Locale.US, "%s%012d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * @return Segment files in the directory, oldest first.
+     */
+    static File[] segmentFiles(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return segmentNumber(name) != -1;
+            }
+        });
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * @return The segment number in a file name, or {@code -1} if it isn't a segment file.
+     */
+    static long segmentNumber(String name) {
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)
+                || name.length() == PREFIX.length() + SUFFIX.length()) {
+            return -1;
+        }
+        long segment = 0;
+        for (int i = PREFIX.length(); i < name.length() - SUFFIX.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9' || segment > Long.MAX_VALUE / 10) {
+                return -1;
+            }
+            segment = segment * 10 + (c - '0');
+        }
+        return segment;
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes of the text. Unpaired surrogates are hashed as {@code '?'},
+     * the way {@code String#getBytes} encodes them.
+     */
+    static long hash(CharSequence text) {
+        long hash = UpiHashing.FNV_OFFSET_BASIS;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            int codePoint = codePointAt(text, i, length);
+            if (codePoint > Character.MAX_VALUE) {
+                i++;
+            }
+            int bytes = utf8Length(codePoint);
+            for (int b = 0; b < bytes; b++) {
+                hash = UpiHashing.fnv1a(hash, utf8Byte(codePoint, bytes, b));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the UTF-8 bytes of the text, stopping before a character that doesn't fit.
+     *
+     * @return Number of bytes written, or {@code -1 - written} if the text was truncated.
+     */
+    static int encode(CharSequence text, byte[] dest, int offset, int maxBytes) {
+        int written = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            int codePoint = codePointAt(text, i, length);
+            int bytes = utf8Length(codePoint);
+            if (written + bytes > maxBytes) {
+                return -1 - written;
+            }
+            if (codePoint > Character.MAX_VALUE) {
+                i++;
+            }
+            for (int b = 0; b < bytes; b++) {
+                dest[offset + written++] = (byte) utf8Byte(codePoint, bytes, b);
+            }
+        }
+        return written;
+    }
+
+    private static int codePointAt(CharSequence text, int index, int length) {
+        char c = text.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < length
+                && Character.isLowSurrogate(text.charAt(index + 1))) {
+            return Character.toCodePoint(c, text.charAt(index + 1));
+        }
+        // Character.isSurrogate needs API level 19
+        return c >= '\uD800' && c <= '\uDFFF' ? '?' : c;
+    }
+
+    private static int utf8Length(int codePoint) {
+        return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static int utf8Byte(int codePoint, int length, int index) {
+        if (length == 1) {
+            return codePoint;
+        }
+        int shift = (length - 1 - index) * 6;
+        int bits = (codePoint >>> shift) & 0x3F;
+        if (index > 0) {
+            return 0x80 | bits;
+        }
+        // Leading byte: 110xxxxx, 1110xxxx or 11110xxx
+        return (0xFF00 >>> length) & 0xFF | (codePoint >>> shift);
+    }
+
+}
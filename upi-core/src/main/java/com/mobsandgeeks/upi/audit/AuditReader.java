@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.audit;
+
+import android.support.annotation.NonNull;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiResult;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a journal segment, oldest first. Call {@link #next()} to move to a record
+ * and read its values with the getters.
+ * <pre>
+ * AuditReader reader = new AuditReader(segment);
+ * try {
+ *     while (reader.next()) {
+ *         export(reader.getTimestampMillis(), reader.getPayeeAddress(), ...);
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * Reading stops at the end of the segment, or at the first damaged record in a segment that was
+ * being written when the app stopped.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class AuditReader implements Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final byte[] record = new byte[AuditLog.RECORD_SIZE];
+    private final byte[] address = new byte[AuditLog.MAX_ADDRESS_BYTES];
+    private final CRC32 crc = new CRC32();
+    private final long segmentNumber;
+    private int position = -1;
+
+    /**
+     * @param segment A segment file from {@link AuditJournal#getCompletedSegments()}.
+     * @throws IOException If the file can't be read or is not a journal segment.
+     */
+    public AuditReader(@NonNull File segment) throws IOException {
+        file = new RandomAccessFile(segment, "r");
+        try {
+            long length = file.length() / AuditLog.RECORD_SIZE * AuditLog.RECORD_SIZE;
+            if (length < AuditLog.RECORD_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("Not a journal segment: " + segment);
+            }
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != AuditLog.MAGIC
+                    || buffer.getInt(AuditLog.HEADER_VERSION) != AuditLog.VERSION
+                    || buffer.getInt(AuditLog.HEADER_RECORD_SIZE) != AuditLog.RECORD_SIZE) {
+                throw new IOException("Not a journal segment: " + segment);
+            }
+            segmentNumber = buffer.getLong(AuditLog.HEADER_SEGMENT);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Segment numbers increase by one with each new segment.
+     */
+    public long getSegmentNumber() {
+        return segmentNumber;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return {@code false} if there are no more records.
+     */
+    public boolean next() {
+        int next = position == -1 ? AuditLog.RECORD_SIZE : position + AuditLog.RECORD_SIZE;
+        if (next + AuditLog.RECORD_SIZE > buffer.limit()) {
+            return false;
+        }
+        buffer.position(next);
+        buffer.get(record);
+        crc.reset();
+        crc.update(record, AuditLog.CRC + 4, AuditLog.RECORD_SIZE - 4);
+        if ((int) crc.getValue() != buffer.getInt(next + AuditLog.CRC)) {
+            return false;
+        }
+        position = next;
+        return true;
+    }
+
+    /**
+     * @return When the URI was handled, in milliseconds since the epoch.
+     */
+    public long getTimestampMillis() {
+        return buffer.getLong(checkPosition() + AuditLog.TIMESTAMP);
+    }
+
+    /**
+     * @return Hash of the URI, see {@link AuditJournal#hash(String)}.
+     */
+    public long getUriHash() {
+        return buffer.getLong(checkPosition() + AuditLog.URI_HASH);
+    }
+
+    /**
+     * @return The payee address, or an empty string if the URI was not valid.
+     */
+    @NonNull
+    public String getPayeeAddress() {
+        int position = checkPosition();
+        int length = buffer.getShort(position + AuditLog.ADDRESS_LENGTH);
+        buffer.position(position + AuditLog.ADDRESS);
+        buffer.get(address, 0, length);
+        return new String(address, 0, length, UTF_8);
+    }
+
+    /**
+     * @return {@code true} if the payee address was too long to be recorded in full, in which case
+     *         {@link #getPayeeAddress()} returns the first 92 bytes.
+     */
+    public boolean isPayeeAddressTruncated() {
+        return (buffer.getShort(checkPosition() + AuditLog.FLAGS)
+                & AuditLog.FLAG_ADDRESS_TRUNCATED) != 0;
+    }
+
+    /**
+     * @return The transaction amount in paise, or {@link UpiPayload#NO_AMOUNT} if there was no
+     *         amount or the URI was not valid.
+     */
+    public long getPayeeAmountPaise() {
+        return buffer.getLong(checkPosition() + AuditLog.AMOUNT);
+    }
+
+    /**
+     * @return {@link UpiResult#NO_ERROR} or one of the {@code UpiResult.ERROR_*} constants.
+     */
+    public int getResultCode() {
+        return buffer.getInt(checkPosition() + AuditLog.RESULT_CODE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int checkPosition() {
+        if (position == -1) {
+            throw new IllegalStateException("next() must be called before reading a record");
+        }
+        return position;
+    }
+
+}
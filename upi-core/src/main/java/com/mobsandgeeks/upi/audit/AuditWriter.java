@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.audit;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Appends records to memory-mapped segments, starting a new segment when the current one is full.
+ * Segments are created on the first record that goes into them, so a journal that records nothing
+ * leaves no empty files behind. Only the journal's writer thread uses this class.
+ *
+ * @author Ragunath Jawahar
+ */
+final class AuditWriter implements Closeable {
+
+    private final File directory;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    private long nextSegment;
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private File segmentFile;
+
+    /**
+     * @param segmentSize Size of a segment in bytes, including the header.
+     */
+    AuditWriter(File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        // Segments from earlier runs are never appended to
+        File[] segments = AuditLog.segmentFiles(directory);
+        nextSegment = segments.length > 0
+                ? AuditLog.segmentNumber(segments[segments.length - 1].getName()) + 1 : 0;
+    }
+
+    /**
+     * Copies a record and fills in its checksum. The record is durable after {@link #force()}.
+     */
+    void append(byte[] record, int offset) throws IOException {
+        if (buffer == null || buffer.remaining() < AuditLog.RECORD_SIZE) {
+            seal();
+            open();
+        }
+        crc.reset();
+        crc.update(record, offset + AuditLog.CRC + 4, AuditLog.RECORD_SIZE - 4);
+        int start = buffer.position();
+        buffer.put(record, offset, AuditLog.RECORD_SIZE);
+        buffer.putInt(start + AuditLog.CRC, (int) crc.getValue());
+    }
+
+    /**
+     * Writes appended records to the storage device.
+     */
+    void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces and closes the current segment, trimmed to its records. The next record starts a new
+     * segment.
+     */
+    void seal() throws IOException {
+        if (file == null) {
+            return;
+        }
+        try {
+            buffer.force();
+            file.getChannel().truncate(buffer.position());
+        } finally {
+            file.close();
+            file = null;
+            buffer = null;
+            segmentFile = null;
+        }
+    }
+
+    /**
+     * @return The segment that records are appended to, or {@code null} if there is none yet.
+     */
+    File getSegmentFile() {
+        return segmentFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        seal();
+    }
+
+    private void open() throws IOException {
+        File segmentFile = AuditLog.segmentFile(directory, nextSegment);
+        RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+        try {
+            file.setLength(segmentSize);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        buffer.putInt(AuditLog.MAGIC)
+                .putInt(AuditLog.HEADER_VERSION, AuditLog.VERSION)
+                .putInt(AuditLog.HEADER_RECORD_SIZE, AuditLog.RECORD_SIZE)
+                .putLong(AuditLog.HEADER_SEGMENT, nextSegment)
+                .position(AuditLog.RECORD_SIZE);
+        this.file = file;
+        this.segmentFile = segmentFile;
+        nextSegment++;
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.flow;
+
+/**
+ * Interfaces for demand-driven streams, with the same methods and rules as
+ * {@code java.util.concurrent.Flow} and Reactive Streams, which are not available on Java 7 and
+ * older Android versions. Adapters to either are one-line delegations.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class Flow {
+
+    private Flow() { /* No instances. */ }
+
+    /**
+     * Produces items for subscribers, no more than they requested.
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds a subscriber, which first receives {@link Subscriber#onSubscribe(Subscription)}.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+
+    }
+
+    /**
+     * Receives items. Calls to a subscriber are never made concurrently.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method, no items arrive until the subscription is requested.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with each requested item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called when the stream failed, no other calls follow.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called when the stream ended, no other calls follow.
+         */
+        void onComplete();
+
+    }
+
+    /**
+     * Links a publisher with a subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Adds {@code n} items to the demand. {@code n} must be positive, a demand of
+         * {@link Long#MAX_VALUE} is unbounded.
+         */
+        void request(long n);
+
+        /**
+         * Stops the stream. Items may still arrive for a while.
+         */
+        void cancel();
+
+    }
+
+    /**
+     * A subscriber that publishes what it makes of its items.
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+
+}
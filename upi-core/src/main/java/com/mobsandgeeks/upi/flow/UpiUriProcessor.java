@@ -0,0 +1,435 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.flow;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.upi.UpiResult;
+import com.mobsandgeeks.upi.UpiUriParser;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns a continuous stream of UPI URIs, such as scans from a QR code scanner or NFC taps, into
+ * {@link UpiResult}s for a single subscriber, no faster than the subscriber requests them.
+ *
+ * <p>URIs are offered with {@link #offer(String)} from any thread, or published by an upstream
+ * {@link Flow.Publisher} this processor is subscribed to. Each URI is parsed on the thread that
+ * offers it and its result waits in a bounded buffer until the subscriber requests it. Results
+ * are delivered on the executor given to the constructor, one at a time.
+ *
+ * <p>A URI that is already waiting in the buffer, or that is the same as the last accepted URI
+ * and arrives within the coalescing window of its previous arrival, is coalesced: it is neither
+ * parsed nor delivered again. A code held in front of a scanner is reported once, however long it
+ * stays there. A URI that doesn't fit into a full buffer is dropped, so a burst of scans never
+ * queues more than the buffer's capacity of work.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiUriProcessor implements Flow.Processor<String, UpiResult> {
+
+    /**
+     * Default number of results that can wait for the subscriber.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Default coalescing window, in milliseconds.
+     */
+    public static final long DEFAULT_COALESCING_WINDOW_MILLIS = 2000;
+
+    /**
+     * Parses URIs for a processor.
+     */
+    public interface Parser {
+
+        /**
+         * Parses a URI, called on the thread that offers it.
+         */
+        @NonNull
+        UpiResult parse(@NonNull String upiUri);
+
+    }
+
+    private static final int BUFFERED = 0;
+    private static final int COALESCED = 1;
+    private static final int DROPPED = 2;
+
+    private static final Parser URI_PARSER = new Parser() {
+        @NonNull
+        @Override
+        public UpiResult parse(@NonNull String upiUri) {
+            return UpiUriParser.parse(upiUri);
+        }
+    };
+
+    private final Executor executor;
+    private final Parser parser;
+    private final long coalescingWindowNanos;
+
+    private final Object lock = new Object();
+
+    // Guarded by the lock, a ring buffer of results waiting for the subscriber
+    private final String[] uris;
+    private final UpiResult[] results;
+    private final boolean[] fromUpstream;
+    private int head;
+    private int count;
+
+    // Guarded by the lock
+    @Nullable private String lastUri;
+    private long lastUriNanos;
+    @Nullable private Flow.Subscriber<? super UpiResult> subscriber;
+    private boolean subscribed;
+    @Nullable private Flow.Subscription upstream;
+    private long demand;
+    private boolean cancelled;
+    private boolean done;
+    @Nullable private Throwable error;
+    private long droppedCount;
+    private long coalescedCount;
+
+    // Number of drains scheduled since the running one started, zero when none is scheduled
+    private final AtomicInteger drains = new AtomicInteger();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates a processor with the {@link #DEFAULT_CAPACITY} and the
+     * {@link #DEFAULT_COALESCING_WINDOW_MILLIS}, that parses URIs with
+     * {@link UpiUriParser#parse(String)}.
+     *
+     * @param executor Executor that delivers results, for example one that posts to the main
+     *         thread.
+     */
+    public UpiUriProcessor(@NonNull Executor executor) {
+        this(DEFAULT_CAPACITY, DEFAULT_COALESCING_WINDOW_MILLIS, TimeUnit.MILLISECONDS, executor,
+                URI_PARSER);
+    }
+
+    /**
+     * @param capacity Number of results that can wait for the subscriber.
+     * @param coalescingWindow How long a repeated URI is coalesced after its previous arrival,
+     *         zero to only coalesce URIs that are waiting in the buffer.
+     * @param unit Unit of {@code coalescingWindow}.
+     * @param executor Executor that delivers results, for example one that posts to the main
+     *         thread.
+     * @param parser Parser for offered URIs.
+     */
+    public UpiUriProcessor(int capacity, long coalescingWindow, @NonNull TimeUnit unit,
+            @NonNull Executor executor, @NonNull Parser parser) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0, but was " + capacity);
+        }
+        if (coalescingWindow < 0) {
+            throw new IllegalArgumentException("coalescingWindow must be >= 0, but was "
+                    + coalescingWindow);
+        }
+        this.executor = executor;
+        this.parser = parser;
+        this.coalescingWindowNanos = unit.toNanos(coalescingWindow);
+        this.uris = new String[capacity];
+        this.results = new UpiResult[capacity];
+        this.fromUpstream = new boolean[capacity];
+    }
+
+    /**
+     * Offers a URI. This method is safe to call from any thread, and doesn't wait for the
+     * subscriber.
+     *
+     * @param upiUri A UPI URI as it was received.
+     * @return {@code true} if the URI was buffered or coalesced, {@code false} if it was dropped
+     *         because the buffer is full, or the stream was cancelled or completed.
+     */
+    public boolean offer(@NonNull String upiUri) {
+        return offer(upiUri, false, System.nanoTime()) != DROPPED;
+    }
+
+    int offer(String upiUri, boolean upstreamItem, long now) {
+        synchronized (lock) {
+            if (cancelled || done) {
+                droppedCount++;
+                return DROPPED;
+            }
+            if (isCoalesced(upiUri, now)) {
+                coalescedCount++;
+                if (upiUri.equals(lastUri)) {
+                    lastUriNanos = now;
+                }
+                return COALESCED;
+            }
+            if (count == uris.length) {
+                droppedCount++;
+                return DROPPED;
+            }
+            lastUri = upiUri;
+            lastUriNanos = now;
+        }
+
+        UpiResult result = parser.parse(upiUri);
+        synchronized (lock) {
+            // Checked again, the buffer may have been filled or cleared while parsing
+            if (cancelled || done || count == uris.length) {
+                droppedCount++;
+                return DROPPED;
+            }
+            int slot = (head + count) % uris.length;
+            uris[slot] = upiUri;
+            results[slot] = result;
+            fromUpstream[slot] = upstreamItem;
+            count++;
+        }
+        schedule();
+        return BUFFERED;
+    }
+
+    /**
+     * @return Number of URIs that were not delivered, because the buffer was full, or the stream
+     *         was cancelled or completed.
+     */
+    public long getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * @return Number of URIs that were coalesced with an earlier one.
+     */
+    public long getCoalescedCount() {
+        synchronized (lock) {
+            return coalescedCount;
+        }
+    }
+
+    /**
+     * Completes the stream. Results that are buffered are still delivered, URIs offered after
+     * this call are dropped.
+     */
+    public void complete() {
+        terminate(null);
+    }
+
+    @Override
+    public void subscribe(@NonNull Flow.Subscriber<? super UpiResult> subscriber) {
+        boolean accepted;
+        synchronized (lock) {
+            accepted = this.subscriber == null && !cancelled;
+            if (accepted) {
+                this.subscriber = subscriber;
+            }
+        }
+        if (accepted) {
+            subscriber.onSubscribe(new ResultSubscription());
+            synchronized (lock) {
+                subscribed = true;
+            }
+            schedule();
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(new IllegalStateException("A processor has a single subscriber"));
+    }
+
+    @Override
+    public void onSubscribe(@NonNull Flow.Subscription subscription) {
+        synchronized (lock) {
+            if (upstream != null || cancelled || done) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        subscription.request(uris.length);
+    }
+
+    @Override
+    public void onNext(@NonNull String upiUri) {
+        // A buffered URI asks for the next one when it's delivered, others make room right away
+        if (offer(upiUri, true, System.nanoTime()) != BUFFERED) {
+            requestUpstream();
+        }
+    }
+
+    @Override
+    public void onError(@NonNull Throwable throwable) {
+        terminate(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        terminate(null);
+    }
+
+    private boolean isCoalesced(String upiUri, long now) {
+        if (upiUri.equals(lastUri) && now - lastUriNanos < coalescingWindowNanos) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            if (upiUri.equals(uris[(head + i) % uris.length])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void terminate(@Nullable Throwable throwable) {
+        synchronized (lock) {
+            if (done || cancelled) {
+                return;
+            }
+            done = true;
+            error = throwable;
+        }
+        schedule();
+    }
+
+    private void requestUpstream() {
+        Flow.Subscription upstream;
+        synchronized (lock) {
+            upstream = cancelled || done ? null : this.upstream;
+        }
+        if (upstream != null) {
+            upstream.request(1);
+        }
+    }
+
+    private void schedule() {
+        if (drains.getAndIncrement() == 0) {
+            executor.execute(drain);
+        }
+    }
+
+    /**
+     * Delivers results while there is demand, and the terminal signal once the buffer is empty.
+     * Runs on the executor, never concurrently with itself.
+     */
+    private void drain() {
+        int missed = 1;
+        do {
+            while (true) {
+                Flow.Subscriber<? super UpiResult> subscriber;
+                UpiResult result = null;
+                boolean requestUpstream = false;
+                Throwable error = null;
+                synchronized (lock) {
+                    subscriber = this.subscriber;
+                    if (subscriber == null || !subscribed || cancelled) {
+                        break;
+                    }
+                    if (count > 0 && demand > 0) {
+                        result = results[head];
+                        requestUpstream = fromUpstream[head];
+                        uris[head] = null;
+                        results[head] = null;
+                        head = (head + 1) % uris.length;
+                        count--;
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    } else if (count == 0 && done) {
+                        error = this.error;
+                        cancelled = true;
+                        this.subscriber = null;
+                    } else {
+                        break;
+                    }
+                }
+
+                if (result != null) {
+                    subscriber.onNext(result);
+                    if (requestUpstream) {
+                        requestUpstream();
+                    }
+                } else if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+            }
+            missed = drains.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void clear() {
+        for (int i = 0; i < count; i++) {
+            int slot = (head + i) % uris.length;
+            uris[slot] = null;
+            results[slot] = null;
+        }
+        head = 0;
+        count = 0;
+    }
+
+    private final class ResultSubscription implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            Flow.Subscription upstream = null;
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    // Rule 3.9 of Reactive Streams, the stream fails with the next signal
+                    clear();
+                    done = true;
+                    error = new IllegalArgumentException("n must be > 0, but was " + n);
+                    upstream = UpiUriProcessor.this.upstream;
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            Flow.Subscription upstream;
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                subscriber = null;
+                clear();
+                upstream = UpiUriProcessor.this.upstream;
+            }
+            if (upstream != null) {
+                upstream.cancel();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi.internal;
+
+/**
+ * Hash functions shared by the lookup tables in this library. Classes in this package are public
+ * only so that other packages of the library can use them, they are not part of the supported API
+ * and may change in any release.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class UpiHashing {
+
+    /**
+     * Initial value of a 64-bit FNV-1a hash.
+     */
+    public static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UpiHashing() { /* No instances. */ }
+
+    /**
+     * Adds a value to a 64-bit FNV-1a hash.
+     *
+     * @param hash {@link #FNV_OFFSET_BASIS}, or the hash so far.
+     * @param value A byte or a character.
+     * @return The updated hash.
+     */
+    public static long fnv1a(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * 64-bit finalizer of MurmurHash3. Every input bit affects every output bit, so the low bits
+     * are good enough to pick a slot.
+     */
+    public static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * 32-bit finalizer of MurmurHash3.
+     */
+    public static int mix(int hash) {
+        hash = (hash ^ (hash >>> 16)) * 0x85ebca6b;
+        hash = (hash ^ (hash >>> 13)) * 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import java.util.Arrays;
+
+/**
+ * Turns a luminance plane into a bit-packed matrix of dark and light pixels. Thresholds are
+ * local, computed for 8x8 blocks from the average of a 5x5 neighborhood of blocks, so that
+ * shadows and glare across a printed code don't wash it out. Blocks with little contrast take
+ * the threshold of their neighbors. Buffers are reused while the frame size stays the same.
+ *
+ * @author Ragunath Jawahar
+ */
+final class QrBinarizer {
+
+    private static final int BLOCK_SIZE_SHIFT = 3;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_SHIFT;
+    private static final int BLOCK_PIXELS_SHIFT = BLOCK_SIZE_SHIFT * 2;
+    private static final int MIN_DYNAMIC_RANGE = 24;
+    private static final int NEIGHBORHOOD = 2;
+
+    /**
+     * Frames must be at least this wide and tall.
+     */
+    static final int MIN_SIZE = BLOCK_SIZE * (NEIGHBORHOOD * 2 + 1);
+
+    int width;
+    int height;
+    int rowStride;
+
+    // Set bits are dark pixels
+    int[] bits = new int[0];
+    private int[] blackPoints = new int[0];
+    // Darkest and lightest pixel of each block, packed as min | max << 8
+    private int[] blockRanges = new int[0];
+
+    /**
+     * @param luminance One byte per pixel, e.g. the Y plane of an NV21 frame.
+     * @param offset Index of the top-left pixel.
+     * @param stride Number of bytes from one row to the next.
+     * @return {@code false} if the frame is smaller than {@link #MIN_SIZE}.
+     */
+    boolean binarize(byte[] luminance, int offset, int stride, int width, int height) {
+        if (width < MIN_SIZE || height < MIN_SIZE) {
+            return false;
+        }
+        this.width = width;
+        this.height = height;
+        rowStride = (width + 31) >>> 5;
+        int words = rowStride * height;
+        if (bits.length < words) {
+            bits = new int[words];
+        } else {
+            Arrays.fill(bits, 0, words, 0);
+        }
+
+        int blocksWide = (width + BLOCK_SIZE - 1) >>> BLOCK_SIZE_SHIFT;
+        int blocksHigh = (height + BLOCK_SIZE - 1) >>> BLOCK_SIZE_SHIFT;
+        if (blackPoints.length < blocksWide * blocksHigh) {
+            blackPoints = new int[blocksWide * blocksHigh];
+            blockRanges = new int[blocksWide * blocksHigh];
+        }
+        computeBlackPoints(luminance, offset, stride, blocksWide, blocksHigh);
+        threshold(luminance, offset, stride, blocksWide, blocksHigh);
+        return true;
+    }
+
+    boolean isDark(int x, int y) {
+        return (bits[y * rowStride + (x >>> 5)] & (1 << (x & 31))) != 0;
+    }
+
+    private void computeBlackPoints(byte[] luminance, int offset, int stride, int blocksWide,
+            int blocksHigh) {
+        int maxX = width - BLOCK_SIZE;
+        int maxY = height - BLOCK_SIZE;
+        for (int by = 0; by < blocksHigh; by++) {
+            int top = Math.min(by << BLOCK_SIZE_SHIFT, maxY);
+            for (int bx = 0; bx < blocksWide; bx++) {
+                int left = Math.min(bx << BLOCK_SIZE_SHIFT, maxX);
+                int sum = 0;
+                int min = 0xFF;
+                int max = 0;
+                for (int y = 0, row = offset + top * stride + left; y < BLOCK_SIZE;
+                        y++, row += stride) {
+                    for (int x = 0; x < BLOCK_SIZE; x++) {
+                        int pixel = luminance[row + x] & 0xFF;
+                        sum += pixel;
+                        min = Math.min(min, pixel);
+                        max = Math.max(max, pixel);
+                    }
+                }
+
+                int blackPoint = sum >>> BLOCK_PIXELS_SHIFT;
+                if (max - min <= MIN_DYNAMIC_RANGE) {
+                    // A flat block is assumed light, unless it is darker than its neighbors
+                    blackPoint = min / 2;
+                    if (by > 0 && bx > 0) {
+                        int i = by * blocksWide + bx;
+                        int neighbors = (blackPoints[i - blocksWide] + 2 * blackPoints[i - 1]
+                                + blackPoints[i - blocksWide - 1]) / 4;
+                        if (min < neighbors) {
+                            blackPoint = neighbors;
+                        }
+                    }
+                }
+                blackPoints[by * blocksWide + bx] = blackPoint;
+                blockRanges[by * blocksWide + bx] = min | max << 8;
+            }
+        }
+    }
+
+    private void threshold(byte[] luminance, int offset, int stride, int blocksWide,
+            int blocksHigh) {
+        int maxX = width - BLOCK_SIZE;
+        int maxY = height - BLOCK_SIZE;
+        int area = (NEIGHBORHOOD * 2 + 1) * (NEIGHBORHOOD * 2 + 1);
+        for (int by = 0; by < blocksHigh; by++) {
+            int top = Math.min(by << BLOCK_SIZE_SHIFT, maxY);
+            int centerY = clamp(by, NEIGHBORHOOD, blocksHigh - NEIGHBORHOOD - 1);
+            for (int bx = 0; bx < blocksWide; bx++) {
+                int left = Math.min(bx << BLOCK_SIZE_SHIFT, maxX);
+                int centerX = clamp(bx, NEIGHBORHOOD, blocksWide - NEIGHBORHOOD - 1);
+                int sum = 0;
+                for (int dy = -NEIGHBORHOOD; dy <= NEIGHBORHOOD; dy++) {
+                    int row = (centerY + dy) * blocksWide + centerX;
+                    for (int dx = -NEIGHBORHOOD; dx <= NEIGHBORHOOD; dx++) {
+                        sum += blackPoints[row + dx];
+                    }
+                }
+                int threshold = sum / area;
+
+                // Blocks entirely on one side of the threshold don't need their pixels read
+                int range = blockRanges[by * blocksWide + bx];
+                if ((range & 0xFF) > threshold) {
+                    continue;
+                }
+                boolean allDark = range >>> 8 <= threshold;
+
+                // Camera noise makes a per-pixel branch unpredictable, so each row of the block
+                // is gathered into a byte of dark bits first
+                int word = left >>> 5;
+                int shift = left & 31;
+                for (int y = top, row = offset + top * stride + left; y < top + BLOCK_SIZE;
+                        y++, row += stride) {
+                    int dark = allDark ? (1 << BLOCK_SIZE) - 1 : 0;
+                    for (int x = 0; x < BLOCK_SIZE && !allDark; x++) {
+                        dark |= ((threshold - (luminance[row + x] & 0xFF)) >>> 31 ^ 1) << x;
+                    }
+                    int bitRow = y * rowStride + word;
+                    bits[bitRow] |= dark << shift;
+                    if (shift > Integer.SIZE - BLOCK_SIZE) {
+                        bits[bitRow + 1] |= dark >>> (Integer.SIZE - shift);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : value > max ? max : value;
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import android.support.annotation.IntDef;
+
+/**
+ * A QR code symbol. Modules are stored in a bit-packed matrix, one bit per module, and can be
+ * rasterized straight into an ARGB pixel buffer, e.g. for {@code Bitmap#setPixels}.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class QrCode {
+
+    /**
+     * Recovers about 7% of the codewords.
+     */
+    public static final int ERROR_CORRECTION_LOW = 0;
+
+    /**
+     * Recovers about 15% of the codewords.
+     */
+    public static final int ERROR_CORRECTION_MEDIUM = 1;
+
+    /**
+     * Recovers about 25% of the codewords.
+     */
+    public static final int ERROR_CORRECTION_QUARTILE = 2;
+
+    /**
+     * Recovers about 30% of the codewords.
+     */
+    public static final int ERROR_CORRECTION_HIGH = 3;
+
+    @IntDef({ ERROR_CORRECTION_LOW, ERROR_CORRECTION_MEDIUM, ERROR_CORRECTION_QUARTILE,
+            ERROR_CORRECTION_HIGH })
+    public @interface ErrorCorrection {}
+
+    private final int version;
+    private final int size;
+    private final int errorCorrection;
+    private final int mask;
+    private final int[] modules;
+    private final int rowStride;
+
+    QrCode(int version, int errorCorrection, int mask, int[] modules) {
+        this.version = version;
+        this.size = QrSpec.size(version);
+        this.errorCorrection = errorCorrection;
+        this.mask = mask;
+        this.modules = modules;
+        this.rowStride = QrSpec.rowStride(size);
+    }
+
+    /**
+     * @return Version of the symbol, from 1 to 40.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Number of modules on each side of the symbol, without the quiet zone.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return The error correction level, which may be higher than the requested level when the
+     *         higher level fits in the same version.
+     */
+    @ErrorCorrection
+    public int getErrorCorrection() {
+        return errorCorrection;
+    }
+
+    /**
+     * @return The mask pattern applied to the symbol, from 0 to 7.
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * @param x Column of the module.
+     * @param y Row of the module.
+     * @return {@code true} if the module is dark.
+     */
+    public boolean isDark(int x, int y) {
+        if (x < 0 || y < 0 || x >= size || y >= size) {
+            throw new IndexOutOfBoundsException("(" + x + ", " + y + ") is outside the symbol");
+        }
+        return (modules[y * rowStride + (x >>> 5)] & (1 << (x & 31))) != 0;
+    }
+
+    /**
+     * @param moduleSize Width of a module in pixels.
+     * @param quietZone Width of the light border around the symbol in modules, the spec asks
+     *         for 4.
+     * @return Width and height of the rasterized symbol in pixels.
+     */
+    public int getPixelSize(int moduleSize, int quietZone) {
+        return (size + 2 * quietZone) * moduleSize;
+    }
+
+    /**
+     * Rasterizes the symbol into a square pixel buffer with rows of
+     * {@link #getPixelSize(int, int)} pixels, starting at index 0.
+     *
+     * @param pixels The buffer, at least {@code getPixelSize(moduleSize, quietZone)} squared in
+     *         length. It can be reused for symbols of the same or a smaller size.
+     * @param moduleSize Width of a module in pixels.
+     * @param quietZone Width of the light border around the symbol in modules.
+     * @param darkColor Color of dark modules, e.g. {@code 0xFF000000}.
+     * @param lightColor Color of light modules and the quiet zone, e.g. {@code 0xFFFFFFFF}.
+     */
+    public void toPixels(int[] pixels, int moduleSize, int quietZone, int darkColor,
+            int lightColor) {
+        if (moduleSize < 1 || quietZone < 0) {
+            throw new IllegalArgumentException("Invalid module size or quiet zone");
+        }
+        int width = getPixelSize(moduleSize, quietZone);
+        if (pixels.length < width * width) {
+            throw new IllegalArgumentException("Buffer has " + pixels.length
+                    + " pixels, but needs " + width * width);
+        }
+
+        int border = quietZone * moduleSize;
+        fill(pixels, 0, border * width, lightColor);
+        for (int y = 0; y < size; y++) {
+            int rowStart = (border + y * moduleSize) * width;
+            fill(pixels, rowStart, rowStart + border, lightColor);
+            int pixel = rowStart + border;
+            int word = y * rowStride;
+            for (int x = 0; x < size; x++) {
+                boolean dark = (modules[word + (x >>> 5)] & (1 << (x & 31))) != 0;
+                fill(pixels, pixel, pixel + moduleSize, dark ? darkColor : lightColor);
+                pixel += moduleSize;
+            }
+            fill(pixels, pixel, rowStart + width, lightColor);
+
+            // The other pixel rows of the module row are copies of the first one
+            for (int i = 1; i < moduleSize; i++) {
+                System.arraycopy(pixels, rowStart, pixels, rowStart + i * width, width);
+            }
+        }
+        fill(pixels, (width - border) * width, width * width, lightColor);
+    }
+
+    private static void fill(int[] pixels, int from, int to, int color) {
+        for (int i = from; i < to; i++) {
+            pixels[i] = color;
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+/**
+ * Decodes a sampled module matrix into the bytes of its text. Reads the format and version
+ * information, removes the mask, corrects each block with Reed-Solomon and parses numeric,
+ * alphanumeric and byte segments. Numeric and alphanumeric segments are written as ASCII, byte
+ * segments as they are, so UTF-8 text stays UTF-8.
+ *
+ * @author Ragunath Jawahar
+ */
+final class QrDecoder {
+
+    // Up to 3 bit errors can be corrected in format and version information
+    private static final int MAX_INFORMATION_ERRORS = 3;
+
+    private static final int MODE_TERMINATOR = 0x0;
+    private static final int MODE_STRUCTURED_APPEND = 0x3;
+    private static final int MODE_FNC1_FIRST = 0x5;
+    private static final int MODE_ECI = 0x7;
+    private static final int MODE_FNC1_SECOND = 0x9;
+
+    /**
+     * Length of the longest text, a version 40 symbol full of digits.
+     */
+    static final int MAX_TEXT_LENGTH = 7089;
+
+    private static final int MAX_CODEWORDS = QrSpec.rawDataModules(QrSpec.MAX_VERSION) / 8;
+
+    private final QrLayout[] layouts = new QrLayout[QrSpec.MAX_VERSION + 1];
+    private final ReedSolomonDecoder reedSolomon = new ReedSolomonDecoder();
+    private final byte[] codewords = new byte[MAX_CODEWORDS];
+    private final byte[] blocks = new byte[MAX_CODEWORDS];
+    private final byte[] data = new byte[MAX_CODEWORDS];
+
+    /**
+     * Decoded text, valid up to the length returned by {@link #decode(int[], int)}.
+     */
+    final byte[] text = new byte[MAX_TEXT_LENGTH];
+
+    private int bitOffset;
+    private int bitLimit;
+
+    /**
+     * @param modules Bit-packed modules with {@code QrSpec.rowStride(dimension)} ints per row.
+     * @param dimension Number of modules on each side.
+     * @return Length of the text, or {@code -1} if the symbol can't be decoded.
+     */
+    int decode(int[] modules, int dimension) {
+        int version = (dimension - 17) / 4;
+        if (version >= 7) {
+            version = readVersion(modules, dimension);
+            if (QrSpec.size(version) != dimension) {
+                return -1;
+            }
+        }
+        QrLayout layout = layouts[version];
+        if (layout == null) {
+            layout = new QrLayout(version);
+            layouts[version] = layout;
+        }
+
+        int format = readFormat(modules, layout);
+        if (format == -1) {
+            return -1;
+        }
+        int level = format >>> 3;
+        int mask = format & 0x7;
+
+        int[] maskPattern = layout.masks[mask];
+        int[] dataPositions = layout.dataPositions;
+        int codewordCount = dataPositions.length / 8;
+        for (int i = 0; i < codewordCount; i++) {
+            int codeword = 0;
+            for (int j = i * 8; j < i * 8 + 8; j++) {
+                int position = dataPositions[j];
+                int word = position >>> 5;
+                codeword = codeword << 1
+                        | ((modules[word] ^ maskPattern[word]) >>> (position & 31)) & 1;
+            }
+            codewords[i] = (byte) codeword;
+        }
+
+        int dataLength = correctBlocks(version, level, codewordCount);
+        return dataLength != -1 ? parseSegments(version, dataLength) : -1;
+    }
+
+    /**
+     * @return The error correction level in the upper bits and the mask in the lower three bits,
+     *         or {@code -1} if neither copy of the format information is readable.
+     */
+    private int readFormat(int[] modules, QrLayout layout) {
+        int[] positions = layout.formatPositions;
+        int rowStride = layout.rowStride;
+        int first = 0;
+        int second = 0;
+        for (int i = 0; i < QrLayout.FORMAT_BITS; i++) {
+            first |= module(modules, rowStride, positions[i]) << i;
+            second |= module(modules, rowStride, positions[QrLayout.FORMAT_BITS + i]) << i;
+        }
+
+        int best = -1;
+        int bestDistance = MAX_INFORMATION_ERRORS + 1;
+        for (int level = 0; level < 4; level++) {
+            for (int mask = 0; mask < QrLayout.MASK_COUNT; mask++) {
+                int bits = QrSpec.formatBits(level, mask);
+                int distance = Math.min(Integer.bitCount(bits ^ first),
+                        Integer.bitCount(bits ^ second));
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = level << 3 | mask;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static int module(int[] modules, int rowStride, int position) {
+        int x = position >>> 16;
+        int y = position & 0xFFFF;
+        return (modules[y * rowStride + (x >>> 5)] >>> (x & 31)) & 1;
+    }
+
+    /**
+     * @return The version in either copy of the version information, or {@code 0}.
+     */
+    private static int readVersion(int[] modules, int dimension) {
+        int rowStride = QrSpec.rowStride(dimension);
+        int topRight = 0;
+        int bottomLeft = 0;
+        for (int i = 0; i < 18; i++) {
+            int a = dimension - 11 + i % 3;
+            int b = i / 3;
+            topRight |= ((modules[b * rowStride + (a >>> 5)] >>> (a & 31)) & 1) << i;
+            bottomLeft |= ((modules[a * rowStride + (b >>> 5)] >>> (b & 31)) & 1) << i;
+        }
+
+        int best = 0;
+        int bestDistance = MAX_INFORMATION_ERRORS + 1;
+        for (int version = 7; version <= QrSpec.MAX_VERSION; version++) {
+            int bits = QrSpec.versionBits(version);
+            int distance = Math.min(Integer.bitCount(bits ^ topRight),
+                    Integer.bitCount(bits ^ bottomLeft));
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = version;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Undoes the interleaving, corrects each block and joins their data codewords.
+     *
+     * @return Number of data codewords, or {@code -1} if a block has too many errors.
+     */
+    private int correctBlocks(int version, int level, int codewordCount) {
+        int blockCount = QrSpec.errorCorrectionBlocks(level, version);
+        int eccLength = QrSpec.eccCodewordsPerBlock(level, version);
+        int shortBlocks = blockCount - codewordCount % blockCount;
+        int shortDataLength = codewordCount / blockCount - eccLength;
+        int shortBlockLength = shortDataLength + eccLength;
+
+        int k = 0;
+        for (int i = 0; i <= shortDataLength; i++) {
+            for (int b = 0; b < blockCount; b++) {
+                if (i < shortDataLength || b >= shortBlocks) {
+                    blocks[b * shortBlockLength + Math.max(0, b - shortBlocks) + i] =
+                            codewords[k++];
+                }
+            }
+        }
+        for (int i = 0; i < eccLength; i++) {
+            for (int b = 0; b < blockCount; b++) {
+                int dataLength = shortDataLength + (b < shortBlocks ? 0 : 1);
+                blocks[b * shortBlockLength + Math.max(0, b - shortBlocks) + dataLength + i] =
+                        codewords[k++];
+            }
+        }
+
+        int dataOffset = 0;
+        for (int b = 0; b < blockCount; b++) {
+            int offset = b * shortBlockLength + Math.max(0, b - shortBlocks);
+            int dataLength = shortDataLength + (b < shortBlocks ? 0 : 1);
+            if (!reedSolomon.correct(blocks, offset, dataLength + eccLength, eccLength)) {
+                return -1;
+            }
+            System.arraycopy(blocks, offset, data, dataOffset, dataLength);
+            dataOffset += dataLength;
+        }
+        return dataOffset;
+    }
+
+    /**
+     * @return Length of the text, or {@code -1} if the bit stream is invalid or uses a mode that
+     *         isn't supported.
+     */
+    private int parseSegments(int version, int dataLength) {
+        bitOffset = 0;
+        bitLimit = dataLength * 8;
+        int length = 0;
+        while (bitLimit - bitOffset >= 4) {
+            int mode = readBits(4);
+            if (mode == MODE_TERMINATOR) {
+                break;
+            } else if (mode == MODE_FNC1_FIRST) {
+                continue;
+            } else if (mode == MODE_FNC1_SECOND) {
+                if (readBits(8) == -1) {
+                    return -1;
+                }
+                continue;
+            } else if (mode == MODE_STRUCTURED_APPEND) {
+                if (readBits(16) == -1) {
+                    return -1;
+                }
+                continue;
+            } else if (mode == MODE_ECI) {
+                // The designator is ignored, UPI URIs are UTF-8
+                if (!skipEci()) {
+                    return -1;
+                }
+                continue;
+            } else if (mode != QrSpec.MODE_NUMERIC && mode != QrSpec.MODE_ALPHANUMERIC
+                    && mode != QrSpec.MODE_BYTE) {
+                return -1;
+            }
+
+            int count = readBits(QrSpec.characterCountBits(mode, version));
+            if (count == -1 || length + count > MAX_TEXT_LENGTH) {
+                return -1;
+            }
+            if (mode == QrSpec.MODE_NUMERIC) {
+                length = readNumeric(count, length);
+            } else if (mode == QrSpec.MODE_ALPHANUMERIC) {
+                length = readAlphanumeric(count, length);
+            } else {
+                length = readBytes(count, length);
+            }
+            if (length == -1) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    private int readNumeric(int count, int length) {
+        while (count >= 3) {
+            int value = readBits(10);
+            if (value == -1 || value >= 1000) {
+                return -1;
+            }
+            text[length++] = (byte) ('0' + value / 100);
+            text[length++] = (byte) ('0' + value / 10 % 10);
+            text[length++] = (byte) ('0' + value % 10);
+            count -= 3;
+        }
+        if (count == 2) {
+            int value = readBits(7);
+            if (value == -1 || value >= 100) {
+                return -1;
+            }
+            text[length++] = (byte) ('0' + value / 10);
+            text[length++] = (byte) ('0' + value % 10);
+        } else if (count == 1) {
+            int value = readBits(4);
+            if (value == -1 || value >= 10) {
+                return -1;
+            }
+            text[length++] = (byte) ('0' + value);
+        }
+        return length;
+    }
+
+    private int readAlphanumeric(int count, int length) {
+        String charset = QrSpec.ALPHANUMERIC_CHARSET;
+        int size = charset.length();
+        while (count >= 2) {
+            int value = readBits(11);
+            if (value == -1 || value >= size * size) {
+                return -1;
+            }
+            text[length++] = (byte) charset.charAt(value / size);
+            text[length++] = (byte) charset.charAt(value % size);
+            count -= 2;
+        }
+        if (count == 1) {
+            int value = readBits(6);
+            if (value == -1 || value >= size) {
+                return -1;
+            }
+            text[length++] = (byte) charset.charAt(value);
+        }
+        return length;
+    }
+
+    private int readBytes(int count, int length) {
+        if (bitLimit - bitOffset < count * 8) {
+            return -1;
+        }
+        for (int i = 0; i < count; i++) {
+            text[length++] = (byte) readBits(8);
+        }
+        return length;
+    }
+
+    private boolean skipEci() {
+        int first = readBits(8);
+        if (first == -1) {
+            return false;
+        } else if ((first & 0x80) == 0) {
+            return true;
+        } else if ((first & 0xC0) == 0x80) {
+            return readBits(8) != -1;
+        } else if ((first & 0xE0) == 0xC0) {
+            return readBits(16) != -1;
+        }
+        return false;
+    }
+
+    /**
+     * @return The next bits as an unsigned value, or {@code -1} if there aren't enough bits.
+     */
+    private int readBits(int count) {
+        if (bitLimit - bitOffset < count) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < count; i++, bitOffset++) {
+            value = value << 1 | (data[bitOffset >>> 3] >>> (7 - (bitOffset & 7))) & 1;
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,941 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import java.util.Arrays;
+
+/**
+ * Locates a QR code in a binarized frame and samples its modules. Rows are scanned for the
+ * 1:1:3:1:1 runs of finder patterns, which are confirmed across columns. The three finder
+ * patterns give the size of the symbol, and for version 2 and above the bottom-right alignment
+ * pattern corrects for perspective. Modules are then sampled through a perspective transform.
+ *
+ * <p>Candidates, the transform and the module matrix live in preallocated arrays, so scanning a
+ * frame doesn't allocate.
+ *
+ * @author Ragunath Jawahar
+ */
+final class QrDetector {
+
+    private static final int MAX_CANDIDATES = 32;
+    private static final int CENTER_QUORUM = 2;
+    private static final int MIN_ROW_SKIP = 3;
+    private static final int MAX_MODULES = 97;
+    private static final float MAX_MODULE_SIZE_RATIO = 1.4f;
+    private static final float AXIS_TOLERANCE = 0.5f;
+    private static final float DIAGONAL_TOLERANCE = 0.75f;
+    private static final float MAX_SKEW = 0.5f;
+    private static final int[] ALIGNMENT_ALLOWANCES = { 4, 8, 16 };
+    private static final int MAX_ALIGNMENT_ERRORS = 2;
+
+    // Transforms are 3x3 matrices in the order a11, a21, a31, a12, a22, a32, a13, a23, a33
+    private static final int A11 = 0;
+    private static final int A21 = 1;
+    private static final int A31 = 2;
+    private static final int A12 = 3;
+    private static final int A22 = 4;
+    private static final int A32 = 5;
+    private static final int A13 = 6;
+    private static final int A23 = 7;
+    private static final int A33 = 8;
+
+    private QrBinarizer image;
+    private final int[] stateCount = new int[5];
+    private final int[] crossCount = new int[5];
+
+    // Finder pattern candidates
+    private final float[] candidateX = new float[MAX_CANDIDATES];
+    private final float[] candidateY = new float[MAX_CANDIDATES];
+    private final float[] candidateModuleSize = new float[MAX_CANDIDATES];
+    private final int[] candidateCount = new int[MAX_CANDIDATES];
+    private int candidates;
+
+    // Top-left, top-right and bottom-left finder patterns
+    private float topLeftX;
+    private float topLeftY;
+    private float topRightX;
+    private float topRightY;
+    private float bottomLeftX;
+    private float bottomLeftY;
+    private float finderModuleSize;
+
+    private float alignmentX;
+    private float alignmentY;
+
+    private final float[] transform = new float[9];
+    private final float[] toSquare = new float[9];
+    private final float[] toImage = new float[9];
+
+    /**
+     * Sampled modules, bit-packed with {@code QrSpec.rowStride(dimension)} ints per row.
+     */
+    final int[] modules = new int[QrSpec.size(QrSpec.MAX_VERSION)
+            * QrSpec.rowStride(QrSpec.size(QrSpec.MAX_VERSION))];
+
+    /**
+     * @return Number of modules on each side of the sampled symbol, or {@code 0} if no symbol was
+     *         found.
+     */
+    int detect(QrBinarizer image) {
+        this.image = image;
+        if (!findFinderPatterns() || !selectFinderPatterns()) {
+            return 0;
+        }
+
+        float moduleSize = (moduleSize(topLeftX, topLeftY, topRightX, topRightY)
+                + moduleSize(topLeftX, topLeftY, bottomLeftX, bottomLeftY)) / 2;
+        if (!(moduleSize >= 1)) {
+            return 0;
+        }
+        // Small modules make the estimate drift, the timing patterns settle it when readable
+        float estimate = (distance(topLeftX, topLeftY, topRightX, topRightY)
+                + distance(topLeftX, topLeftY, bottomLeftX, bottomLeftY)) / (2 * moduleSize) + 7;
+        int dimension = Math.round((estimate - 17) / 4) * 4 + 17;
+        int row = timingDimension(topLeftX, topLeftY, topRightX, topRightY, bottomLeftX,
+                bottomLeftY, moduleSize);
+        int column = timingDimension(topLeftX, topLeftY, bottomLeftX, bottomLeftY, topRightX,
+                topRightY, moduleSize);
+        if (row != 0 && (row == column || column == 0) && Math.abs(row - estimate) <= 8) {
+            dimension = row;
+        } else if (column != 0 && row == 0 && Math.abs(column - estimate) <= 8) {
+            dimension = column;
+        }
+        if (dimension < QrSpec.size(QrSpec.MIN_VERSION)
+                || dimension > QrSpec.size(QrSpec.MAX_VERSION)) {
+            return 0;
+        }
+        int version = (dimension - 17) / 4;
+
+        // Where the bottom-right corner would be without perspective
+        float bottomRightX = topRightX - topLeftX + bottomLeftX;
+        float bottomRightY = topRightY - topLeftY + bottomLeftY;
+        float sourceBottomRight = dimension - 3.5f;
+        if (version >= 2) {
+            float correction = 1 - 3f / (dimension - 7);
+            int estimateX = (int) (topLeftX + correction * (bottomRightX - topLeftX));
+            int estimateY = (int) (topLeftY + correction * (bottomRightY - topLeftY));
+            for (int allowance : ALIGNMENT_ALLOWANCES) {
+                if (findAlignmentPattern(estimateX, estimateY, moduleSize, allowance,
+                        dimension)) {
+                    bottomRightX = alignmentX;
+                    bottomRightY = alignmentY;
+                    sourceBottomRight = dimension - 6.5f;
+                    break;
+                }
+            }
+        }
+
+        float sourceMax = dimension - 3.5f;
+        quadrilateralToQuadrilateral(3.5f, 3.5f, sourceMax, 3.5f,
+                sourceBottomRight, sourceBottomRight, 3.5f, sourceMax,
+                topLeftX, topLeftY, topRightX, topRightY,
+                bottomRightX, bottomRightY, bottomLeftX, bottomLeftY);
+        return sample(dimension) ? dimension : 0;
+    }
+
+    /**
+     * Counts the modules of a timing pattern, which runs three modules in from the line between
+     * two finder pattern centers. The line starts and ends in the dark edges of the finder
+     * patterns, with single modules of alternating colors in between. Runs shorter than a third
+     * of a module are noise and are merged into the run before them.
+     *
+     * @return Number of modules on each side of the symbol, or {@code 0} if the count isn't a
+     *         valid size.
+     */
+    private int timingDimension(float fromX, float fromY, float toX, float toY, float sideX,
+            float sideY, float moduleSize) {
+        float side = distance(fromX, fromY, sideX, sideY);
+        float offsetX = (sideX - fromX) / side * 3 * moduleSize;
+        float offsetY = (sideY - fromY) / side * 3 * moduleSize;
+        fromX += offsetX;
+        fromY += offsetY;
+        toX += offsetX;
+        toY += offsetY;
+
+        int steps = (int) Math.max(Math.abs(toX - fromX), Math.abs(toY - fromY));
+        if (steps == 0) {
+            return 0;
+        }
+        float stepX = (toX - fromX) / steps;
+        float stepY = (toY - fromY) / steps;
+        float minRun = moduleSize / 3;
+        boolean color = true;
+        int runs = 1;
+        int length = 0;
+        int previousLength = 0;
+        for (int i = 0; i <= steps; i++) {
+            boolean dark = isDark((int) (fromX + i * stepX), (int) (fromY + i * stepY));
+            if (dark == color) {
+                length++;
+            } else if (length < minRun && runs > 1) {
+                runs--;
+                length = previousLength + length + 1;
+                color = dark;
+            } else {
+                runs++;
+                previousLength = length;
+                length = 1;
+                color = dark;
+            }
+        }
+
+        int dimension = runs + 12;
+        return (dimension & 0x3) == 1 && dimension >= QrSpec.size(QrSpec.MIN_VERSION)
+                && dimension <= QrSpec.size(QrSpec.MAX_VERSION) ? dimension : 0;
+    }
+
+    // Finder patterns
+
+    private boolean findFinderPatterns() {
+        candidates = 0;
+        int width = image.width;
+        int height = image.height;
+        int rowSkip = Math.max(MIN_ROW_SKIP, 3 * height / (4 * MAX_MODULES));
+        int[] stateCount = this.stateCount;
+        boolean done = false;
+        for (int y = rowSkip - 1; y < height && !done; y += rowSkip) {
+            Arrays.fill(stateCount, 0);
+            int state = 0;
+            int row = y * image.rowStride;
+            for (int x = 0; x < width; x++) {
+                // Most of a frame is background, light runs are skipped a word at a time
+                if ((x & 31) == 0 && (state & 1) == 1 && x + 32 <= width
+                        && image.bits[row + (x >>> 5)] == 0) {
+                    stateCount[state] += 32;
+                    x += 31;
+                    continue;
+                }
+                if (image.isDark(x, y)) {
+                    if ((state & 1) == 1) {
+                        state++;
+                    }
+                    stateCount[state]++;
+                } else if ((state & 1) == 1) {
+                    stateCount[state]++;
+                } else if (state == 4) {
+                    if (isFinderPattern(stateCount) && handleCandidate(stateCount, y, x)) {
+                        rowSkip = 2;
+                        done = hasConfirmedPatterns();
+                        Arrays.fill(stateCount, 0);
+                        state = 0;
+                    } else {
+                        shiftCounts(stateCount);
+                        state = 3;
+                    }
+                } else {
+                    state++;
+                    stateCount[state]++;
+                }
+            }
+            if (isFinderPattern(stateCount) && handleCandidate(stateCount, y, width)) {
+                rowSkip = 2;
+                done = hasConfirmedPatterns();
+            }
+        }
+        return candidates >= 3;
+    }
+
+    private static void shiftCounts(int[] stateCount) {
+        stateCount[0] = stateCount[2];
+        stateCount[1] = stateCount[3];
+        stateCount[2] = stateCount[4];
+        stateCount[3] = 1;
+        stateCount[4] = 0;
+    }
+
+    private static boolean isFinderPattern(int[] stateCount) {
+        return isFinderPattern(stateCount, AXIS_TOLERANCE);
+    }
+
+    /**
+     * @param tolerance Allowed difference between a run and its expected length, in modules.
+     * @return {@code true} if the runs are close to a 1:1:3:1:1 ratio.
+     */
+    private static boolean isFinderPattern(int[] stateCount, float tolerance) {
+        int total = 0;
+        for (int count : stateCount) {
+            if (count == 0) {
+                return false;
+            }
+            total += count;
+        }
+        if (total < 7) {
+            return false;
+        }
+        float moduleSize = total / 7f;
+        float maxVariance = moduleSize * tolerance;
+        return Math.abs(moduleSize - stateCount[0]) < maxVariance
+                && Math.abs(moduleSize - stateCount[1]) < maxVariance
+                && Math.abs(3 * moduleSize - stateCount[2]) < 3 * maxVariance
+                && Math.abs(moduleSize - stateCount[3]) < maxVariance
+                && Math.abs(moduleSize - stateCount[4]) < maxVariance;
+    }
+
+    private static float centerFromEnd(int[] stateCount, int end) {
+        return end - stateCount[4] - stateCount[3] - stateCount[2] / 2f;
+    }
+
+    /**
+     * Confirms a horizontal match across the column through its center, then across the row and
+     * the diagonal through the vertical center, and merges it with a nearby candidate.
+     */
+    private boolean handleCandidate(int[] stateCount, int y, int end) {
+        int total = stateCount[0] + stateCount[1] + stateCount[2] + stateCount[3] + stateCount[4];
+        int maxCount = stateCount[2];
+        float centerX = centerFromEnd(stateCount, end);
+        float offsetY = crossCheck((int) centerX, y, 0, 1, maxCount, total);
+        if (Float.isNaN(offsetY)) {
+            return false;
+        }
+        float centerY = y + offsetY;
+        float offsetX = crossCheck((int) centerX, (int) centerY, 1, 0, maxCount, total);
+        if (Float.isNaN(offsetX)) {
+            return false;
+        }
+        centerX = (int) centerX + offsetX;
+        if (Float.isNaN(crossCheck((int) centerX, (int) centerY, 1, 1, maxCount, total))) {
+            return false;
+        }
+
+        float moduleSize = total / 7f;
+        for (int i = 0; i < candidates; i++) {
+            float sizeDifference = Math.abs(moduleSize - candidateModuleSize[i]);
+            if (Math.abs(centerX - candidateX[i]) <= moduleSize
+                    && Math.abs(centerY - candidateY[i]) <= moduleSize
+                    && (sizeDifference <= 1 || sizeDifference <= candidateModuleSize[i])) {
+                int count = candidateCount[i];
+                candidateX[i] = (candidateX[i] * count + centerX) / (count + 1);
+                candidateY[i] = (candidateY[i] * count + centerY) / (count + 1);
+                candidateModuleSize[i] = (candidateModuleSize[i] * count + moduleSize)
+                        / (count + 1);
+                candidateCount[i] = count + 1;
+                return true;
+            }
+        }
+        if (candidates < MAX_CANDIDATES) {
+            candidateX[candidates] = centerX;
+            candidateY[candidates] = centerY;
+            candidateModuleSize[candidates] = moduleSize;
+            candidateCount[candidates] = 1;
+            candidates++;
+        }
+        return true;
+    }
+
+    /**
+     * Counts the runs of a finder pattern along a line, outwards from a point in its center.
+     *
+     * @param dx Horizontal step, {@code 0} or {@code 1}.
+     * @param dy Vertical step, {@code 0} or {@code 1}.
+     * @return Offset of the center from the given point, in steps, or {@code NaN} if the runs
+     *         don't match.
+     */
+    private float crossCheck(int x, int y, int dx, int dy, int maxCount, int originalTotal) {
+        int[] count = crossCount;
+        Arrays.fill(count, 0);
+
+        int i = 0;
+        while (isDark(x - i * dx, y - i * dy)) {
+            count[2]++;
+            i++;
+        }
+        if (!isInside(x - i * dx, y - i * dy)) {
+            return Float.NaN;
+        }
+        while (isLight(x - i * dx, y - i * dy) && count[1] <= maxCount) {
+            count[1]++;
+            i++;
+        }
+        if (!isInside(x - i * dx, y - i * dy) || count[1] > maxCount) {
+            return Float.NaN;
+        }
+        while (isDark(x - i * dx, y - i * dy) && count[0] <= maxCount) {
+            count[0]++;
+            i++;
+        }
+        if (count[0] > maxCount) {
+            return Float.NaN;
+        }
+
+        i = 1;
+        while (isDark(x + i * dx, y + i * dy)) {
+            count[2]++;
+            i++;
+        }
+        if (!isInside(x + i * dx, y + i * dy)) {
+            return Float.NaN;
+        }
+        while (isLight(x + i * dx, y + i * dy) && count[3] < maxCount) {
+            count[3]++;
+            i++;
+        }
+        if (!isInside(x + i * dx, y + i * dy) || count[3] >= maxCount) {
+            return Float.NaN;
+        }
+        while (isDark(x + i * dx, y + i * dy) && count[4] < maxCount) {
+            count[4]++;
+            i++;
+        }
+        if (count[4] >= maxCount) {
+            return Float.NaN;
+        }
+
+        // The pattern should be about as wide along rows and columns. Diagonal steps are longer,
+        // and a rotated pattern can be up to twice as wide along a diagonal.
+        int total = count[0] + count[1] + count[2] + count[3] + count[4];
+        boolean diagonal = dx != 0 && dy != 0;
+        if (diagonal ? Math.abs(total - originalTotal) >= 2 * originalTotal
+                : 5 * Math.abs(total - originalTotal) >= 2 * originalTotal) {
+            return Float.NaN;
+        }
+        return isFinderPattern(count, diagonal ? DIAGONAL_TOLERANCE : AXIS_TOLERANCE)
+                ? centerFromEnd(count, i) : Float.NaN;
+    }
+
+    private boolean isInside(int x, int y) {
+        return x >= 0 && y >= 0 && x < image.width && y < image.height;
+    }
+
+    private boolean isDark(int x, int y) {
+        return isInside(x, y) && image.isDark(x, y);
+    }
+
+    private boolean isLight(int x, int y) {
+        return isInside(x, y) && !image.isDark(x, y);
+    }
+
+    /**
+     * @return {@code true} if three candidates were seen in several rows, with similar module
+     *         sizes, so that the remaining rows need not be scanned.
+     */
+    private boolean hasConfirmedPatterns() {
+        int confirmed = 0;
+        float totalModuleSize = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (candidateCount[i] >= CENTER_QUORUM) {
+                confirmed++;
+                totalModuleSize += candidateModuleSize[i];
+            }
+        }
+        if (confirmed < 3) {
+            return false;
+        }
+        float average = totalModuleSize / confirmed;
+        float totalDeviation = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (candidateCount[i] >= CENTER_QUORUM) {
+                totalDeviation += Math.abs(candidateModuleSize[i] - average);
+            }
+        }
+        return totalDeviation <= 0.05f * totalModuleSize
+                && selectFinderPatterns(CENTER_QUORUM, true);
+    }
+
+    /**
+     * Picks three candidates, preferring those that were seen in several rows.
+     */
+    private boolean selectFinderPatterns() {
+        int confirmed = 0;
+        for (int i = 0; i < candidates; i++) {
+            if (candidateCount[i] >= CENTER_QUORUM) {
+                confirmed++;
+            }
+        }
+        return selectFinderPatterns(confirmed >= 3 ? CENTER_QUORUM : 1, false);
+    }
+
+    /**
+     * Picks the three candidates that are closest to a right isosceles triangle with timing
+     * patterns along two sides, and orders them. Patterns in the data area can look like finder
+     * patterns from every direction, but they don't have timing patterns between them.
+     *
+     * @param quorum Minimum number of rows a candidate was seen in.
+     * @param requireTiming Whether to fail rather than fall back to the closest triangle when no
+     *        triangle has timing patterns.
+     */
+    private boolean selectFinderPatterns(int quorum, boolean requireTiming) {
+        int closest = -1;
+        float closestScore = Float.MAX_VALUE;
+        int timed = -1;
+        float timedScore = Float.MAX_VALUE;
+        for (int a = 0; a < candidates; a++) {
+            if (candidateCount[a] < quorum) {
+                continue;
+            }
+            for (int b = a + 1; b < candidates; b++) {
+                if (candidateCount[b] < quorum) {
+                    continue;
+                }
+                for (int c = b + 1; c < candidates; c++) {
+                    if (candidateCount[c] < quorum) {
+                        continue;
+                    }
+                    float minSize = Math.min(candidateModuleSize[a],
+                            Math.min(candidateModuleSize[b], candidateModuleSize[c]));
+                    float maxSize = Math.max(candidateModuleSize[a],
+                            Math.max(candidateModuleSize[b], candidateModuleSize[c]));
+                    if (maxSize > minSize * MAX_MODULE_SIZE_RATIO) {
+                        continue;
+                    }
+
+                    float ab = squaredDistance(a, b);
+                    float bc = squaredDistance(b, c);
+                    float ca = squaredDistance(c, a);
+                    float longest = Math.max(ab, Math.max(bc, ca));
+                    float shortest = Math.min(ab, Math.min(bc, ca));
+                    float middle = ab + bc + ca - longest - shortest;
+
+                    // Finder pattern centers are at least 14 modules apart
+                    float minDistance = 14 * minSize * 0.7f;
+                    if (shortest < minDistance * minDistance) {
+                        continue;
+                    }
+
+                    // Zero for a right isosceles triangle
+                    float score = (Math.abs(longest - 2 * middle)
+                            + Math.abs(longest - 2 * shortest)) / longest;
+                    int triangle = a << 16 | b << 8 | c;
+                    if (score < closestScore) {
+                        closestScore = score;
+                        closest = triangle;
+                    }
+                    if (score < timedScore && score <= MAX_SKEW) {
+                        order(a, b, c);
+                        if (hasTimingPatterns()) {
+                            timedScore = score;
+                            timed = triangle;
+                        }
+                    }
+                }
+            }
+        }
+
+        int triangle = timed != -1 ? timed : requireTiming ? -1 : closest;
+        if (triangle == -1) {
+            return false;
+        }
+        order(triangle >>> 16, (triangle >>> 8) & 0xFF, triangle & 0xFF);
+        return true;
+    }
+
+    /**
+     * Assigns three candidates to the top-left, top-right and bottom-left corners.
+     */
+    private void order(int a, int b, int c) {
+        // The top-left pattern is opposite the longest side
+        float ab = squaredDistance(a, b);
+        float bc = squaredDistance(b, c);
+        float ca = squaredDistance(c, a);
+        int topLeft;
+        int first;
+        int second;
+        if (bc >= ab && bc >= ca) {
+            topLeft = a;
+            first = b;
+            second = c;
+        } else if (ca >= bc && ca >= ab) {
+            topLeft = b;
+            first = a;
+            second = c;
+        } else {
+            topLeft = c;
+            first = a;
+            second = b;
+        }
+
+        // Going clockwise, top-right follows top-left which follows bottom-left
+        float cross = (candidateX[second] - candidateX[topLeft])
+                * (candidateY[first] - candidateY[topLeft])
+                - (candidateY[second] - candidateY[topLeft])
+                * (candidateX[first] - candidateX[topLeft]);
+        if (cross < 0) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        topLeftX = candidateX[topLeft];
+        topLeftY = candidateY[topLeft];
+        bottomLeftX = candidateX[first];
+        bottomLeftY = candidateY[first];
+        topRightX = candidateX[second];
+        topRightY = candidateY[second];
+        finderModuleSize = (candidateModuleSize[a] + candidateModuleSize[b]
+                + candidateModuleSize[c]) / 3;
+    }
+
+    private boolean hasTimingPatterns() {
+        int row = timingDimension(topLeftX, topLeftY, topRightX, topRightY, bottomLeftX,
+                bottomLeftY, finderModuleSize);
+        int column = timingDimension(topLeftX, topLeftY, bottomLeftX, bottomLeftY, topRightX,
+                topRightY, finderModuleSize);
+        return row != 0 && column != 0 && Math.abs(row - column) <= 4;
+    }
+
+    private float squaredDistance(int a, int b) {
+        float dx = candidateX[a] - candidateX[b];
+        float dy = candidateY[a] - candidateY[b];
+        return dx * dx + dy * dy;
+    }
+
+    private static float distance(float x1, float y1, float x2, float y2) {
+        float dx = x1 - x2;
+        float dy = y1 - y2;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Module size
+
+    /**
+     * Estimates the module size from the dark-light-dark runs that cross both finder patterns
+     * along the line that joins their centers, seven modules each.
+     */
+    private float moduleSize(float fromX, float fromY, float toX, float toY) {
+        float forward = runsBothWays((int) fromX, (int) fromY, (int) toX, (int) toY);
+        float backward = runsBothWays((int) toX, (int) toY, (int) fromX, (int) fromY);
+        if (Float.isNaN(forward)) {
+            return backward / 7;
+        } else if (Float.isNaN(backward)) {
+            return forward / 7;
+        }
+        return (forward + backward) / 14;
+    }
+
+    private float runsBothWays(int fromX, int fromY, int toX, int toY) {
+        float result = darkLightDarkRun(fromX, fromY, toX, toY);
+
+        // Then the other way, stopping at the edges of the frame
+        float scale = 1;
+        int otherX = fromX - (toX - fromX);
+        if (otherX < 0) {
+            scale = fromX / (float) (fromX - otherX);
+            otherX = 0;
+        } else if (otherX >= image.width) {
+            scale = (image.width - 1 - fromX) / (float) (otherX - fromX);
+            otherX = image.width - 1;
+        }
+        int otherY = (int) (fromY - (toY - fromY) * scale);
+        scale = 1;
+        if (otherY < 0) {
+            scale = fromY / (float) (fromY - otherY);
+            otherY = 0;
+        } else if (otherY >= image.height) {
+            scale = (image.height - 1 - fromY) / (float) (otherY - fromY);
+            otherY = image.height - 1;
+        }
+        otherX = (int) (fromX + (otherX - fromX) * scale);
+        result += darkLightDarkRun(fromX, fromY, otherX, otherY);
+
+        // The center pixel was counted twice
+        return result - 1;
+    }
+
+    /**
+     * Walks a line with Bresenham's algorithm through a dark run, a light run and a dark run.
+     *
+     * @return The length of the three runs, or {@code NaN} if the line ends before that.
+     */
+    private float darkLightDarkRun(int fromX, int fromY, int toX, int toY) {
+        boolean steep = Math.abs(toY - fromY) > Math.abs(toX - fromX);
+        if (steep) {
+            int swap = fromX;
+            fromX = fromY;
+            fromY = swap;
+            swap = toX;
+            toX = toY;
+            toY = swap;
+        }
+
+        int dx = Math.abs(toX - fromX);
+        int dy = Math.abs(toY - fromY);
+        int error = -dx / 2;
+        int xStep = fromX < toX ? 1 : -1;
+        int yStep = fromY < toY ? 1 : -1;
+
+        // Dark, light, then dark again
+        int state = 0;
+        int xLimit = toX + xStep;
+        for (int x = fromX, y = fromY; x != xLimit; x += xStep) {
+            int realX = steep ? y : x;
+            int realY = steep ? x : y;
+            if (realX < 0 || realY < 0 || realX >= image.width || realY >= image.height) {
+                return Float.NaN;
+            }
+            if ((state == 1) == image.isDark(realX, realY)) {
+                if (state == 2) {
+                    return distance(x, y, fromX, fromY);
+                }
+                state++;
+            }
+            error += dy;
+            if (error > 0) {
+                if (y == toY) {
+                    break;
+                }
+                y += yStep;
+                error -= dx;
+            }
+        }
+        if (state == 2) {
+            return distance(toX + xStep, toY, fromX, fromY);
+        }
+        return Float.NaN;
+    }
+
+    // Alignment pattern
+
+    /**
+     * Looks for the light-dark-light runs through the center of an alignment pattern around an
+     * estimated position, from the middle row outwards.
+     */
+    private boolean findAlignmentPattern(int estimateX, int estimateY, float moduleSize,
+            int allowanceFactor, int dimension) {
+        int allowance = (int) (allowanceFactor * moduleSize);
+        int left = Math.max(0, estimateX - allowance);
+        int right = Math.min(image.width - 1, estimateX + allowance);
+        int top = Math.max(0, estimateY - allowance);
+        int bottom = Math.min(image.height - 1, estimateY + allowance);
+        if (right - left < moduleSize * 3 || bottom - top < moduleSize * 3) {
+            return false;
+        }
+
+        int middle = (top + bottom) / 2;
+        float maxVariance = moduleSize / 2;
+        for (int k = 0; k <= bottom - top; k++) {
+            int y = middle + ((k & 1) == 0 ? (k + 1) / 2 : -((k + 1) / 2));
+            if (y < top || y > bottom) {
+                continue;
+            }
+
+            // The first dark run is skipped, its start is unknown
+            int x = left;
+            while (x <= right && !image.isDark(x, y)) {
+                x++;
+            }
+            boolean dark = true;
+            int runs = 0;
+            int run = 0;
+            int first = 0;
+            int second = 0;
+            int third = 0;
+            for (; x <= right; x++) {
+                if (image.isDark(x, y) == dark) {
+                    run++;
+                    continue;
+                }
+                first = second;
+                second = third;
+                third = run;
+                runs++;
+                run = 1;
+                dark = !dark;
+
+                // A light run just ended, check light, dark, light
+                if (dark && runs >= 4
+                        && Math.abs(moduleSize - first) < maxVariance
+                        && Math.abs(moduleSize - second) < maxVariance
+                        && Math.abs(moduleSize - third) < maxVariance) {
+                    float centerX = x - third - second / 2f;
+                    float centerY = crossCheckAlignment((int) centerX, y, 2 * second,
+                            first + second + third, moduleSize);
+                    if (!Float.isNaN(centerY)
+                            && isAlignmentPattern(centerX, centerY, dimension)) {
+                        alignmentX = centerX;
+                        alignmentY = centerY;
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Samples the 5x5 modules around a candidate center, stepping along the sides of the
+     * triangle of finder patterns, and allows a couple of wrong modules.
+     */
+    private boolean isAlignmentPattern(float centerX, float centerY, int dimension) {
+        float columnX = (topRightX - topLeftX) / (dimension - 7);
+        float columnY = (topRightY - topLeftY) / (dimension - 7);
+        float rowX = (bottomLeftX - topLeftX) / (dimension - 7);
+        float rowY = (bottomLeftY - topLeftY) / (dimension - 7);
+        int errors = 0;
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                int x = (int) (centerX + dx * columnX + dy * rowX);
+                int y = (int) (centerY + dx * columnY + dy * rowY);
+                if (isDark(x, y) != (Math.max(Math.abs(dx), Math.abs(dy)) != 1)) {
+                    errors++;
+                }
+            }
+        }
+        return errors <= MAX_ALIGNMENT_ERRORS;
+    }
+
+    private float crossCheckAlignment(int x, int startY, int maxCount, int originalTotal,
+            float moduleSize) {
+        int height = image.height;
+        int above = 0;
+        int center = 0;
+        int below = 0;
+
+        int y = startY;
+        while (y >= 0 && image.isDark(x, y) && center <= maxCount) {
+            center++;
+            y--;
+        }
+        if (y < 0 || center > maxCount) {
+            return Float.NaN;
+        }
+        while (y >= 0 && !image.isDark(x, y) && above <= maxCount) {
+            above++;
+            y--;
+        }
+        if (above > maxCount) {
+            return Float.NaN;
+        }
+
+        y = startY + 1;
+        while (y < height && image.isDark(x, y) && center <= maxCount) {
+            center++;
+            y++;
+        }
+        if (y == height || center > maxCount) {
+            return Float.NaN;
+        }
+        while (y < height && !image.isDark(x, y) && below <= maxCount) {
+            below++;
+            y++;
+        }
+        if (below > maxCount) {
+            return Float.NaN;
+        }
+
+        int total = above + center + below;
+        float maxVariance = moduleSize / 2;
+        if (5 * Math.abs(total - originalTotal) >= 2 * originalTotal
+                || Math.abs(moduleSize - above) >= maxVariance
+                || Math.abs(moduleSize - center) >= maxVariance
+                || Math.abs(moduleSize - below) >= maxVariance) {
+            return Float.NaN;
+        }
+        return y - below - center / 2f;
+    }
+
+    // Sampling
+
+    private boolean sample(int dimension) {
+        int rowStride = QrSpec.rowStride(dimension);
+        Arrays.fill(modules, 0, dimension * rowStride, 0);
+        float[] t = transform;
+        int width = image.width;
+        int height = image.height;
+        for (int y = 0; y < dimension; y++) {
+            float sourceY = y + 0.5f;
+            for (int x = 0; x < dimension; x++) {
+                float sourceX = x + 0.5f;
+                float denominator = t[A13] * sourceX + t[A23] * sourceY + t[A33];
+                int imageX = (int) ((t[A11] * sourceX + t[A21] * sourceY + t[A31]) / denominator);
+                int imageY = (int) ((t[A12] * sourceX + t[A22] * sourceY + t[A32]) / denominator);
+
+                // Points just outside the frame are nudged in, the rest means a bad transform
+                if (imageX < -1 || imageX > width || imageY < -1 || imageY > height) {
+                    return false;
+                }
+                imageX = Math.max(0, Math.min(width - 1, imageX));
+                imageY = Math.max(0, Math.min(height - 1, imageY));
+                if (image.isDark(imageX, imageY)) {
+                    modules[y * rowStride + (x >>> 5)] |= 1 << (x & 31);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the transform that maps one quadrilateral onto another, through the unit square.
+     */
+    private void quadrilateralToQuadrilateral(float x0, float y0, float x1, float y1,
+            float x2, float y2, float x3, float y3,
+            float x0p, float y0p, float x1p, float y1p,
+            float x2p, float y2p, float x3p, float y3p) {
+        squareToQuadrilateral(x0, y0, x1, y1, x2, y2, x3, y3, transform);
+        adjoint(transform, toSquare);
+        squareToQuadrilateral(x0p, y0p, x1p, y1p, x2p, y2p, x3p, y3p, toImage);
+        multiply(toImage, toSquare, transform);
+    }
+
+    private static void squareToQuadrilateral(float x0, float y0, float x1, float y1,
+            float x2, float y2, float x3, float y3, float[] out) {
+        float dx3 = x0 - x1 + x2 - x3;
+        float dy3 = y0 - y1 + y2 - y3;
+        if (dx3 == 0 && dy3 == 0) {
+            // Affine
+            set(out, x1 - x0, x2 - x1, x0, y1 - y0, y2 - y1, y0, 0, 0, 1);
+        } else {
+            float dx1 = x1 - x2;
+            float dx2 = x3 - x2;
+            float dy1 = y1 - y2;
+            float dy2 = y3 - y2;
+            float denominator = dx1 * dy2 - dx2 * dy1;
+            float a13 = (dx3 * dy2 - dx2 * dy3) / denominator;
+            float a23 = (dx1 * dy3 - dx3 * dy1) / denominator;
+            set(out, x1 - x0 + a13 * x1, x3 - x0 + a23 * x3, x0,
+                    y1 - y0 + a13 * y1, y3 - y0 + a23 * y3, y0, a13, a23, 1);
+        }
+    }
+
+    private static void set(float[] out, float a11, float a21, float a31, float a12, float a22,
+            float a32, float a13, float a23, float a33) {
+        out[A11] = a11;
+        out[A21] = a21;
+        out[A31] = a31;
+        out[A12] = a12;
+        out[A22] = a22;
+        out[A32] = a32;
+        out[A13] = a13;
+        out[A23] = a23;
+        out[A33] = a33;
+    }
+
+    /**
+     * The adjoint is proportional to the inverse, which is all a projective transform needs.
+     */
+    private static void adjoint(float[] m, float[] out) {
+        set(out,
+                m[A22] * m[A33] - m[A23] * m[A32],
+                m[A23] * m[A31] - m[A21] * m[A33],
+                m[A21] * m[A32] - m[A22] * m[A31],
+                m[A13] * m[A32] - m[A12] * m[A33],
+                m[A11] * m[A33] - m[A13] * m[A31],
+                m[A12] * m[A31] - m[A11] * m[A32],
+                m[A12] * m[A23] - m[A13] * m[A22],
+                m[A13] * m[A21] - m[A11] * m[A23],
+                m[A11] * m[A22] - m[A12] * m[A21]);
+    }
+
+    private static void multiply(float[] a, float[] b, float[] out) {
+        set(out,
+                a[A11] * b[A11] + a[A21] * b[A12] + a[A31] * b[A13],
+                a[A11] * b[A21] + a[A21] * b[A22] + a[A31] * b[A23],
+                a[A11] * b[A31] + a[A21] * b[A32] + a[A31] * b[A33],
+                a[A12] * b[A11] + a[A22] * b[A12] + a[A32] * b[A13],
+                a[A12] * b[A21] + a[A22] * b[A22] + a[A32] * b[A23],
+                a[A12] * b[A31] + a[A22] * b[A32] + a[A32] * b[A33],
+                a[A13] * b[A11] + a[A23] * b[A12] + a[A33] * b[A13],
+                a[A13] * b[A21] + a[A23] * b[A22] + a[A33] * b[A23],
+                a[A13] * b[A31] + a[A23] * b[A32] + a[A33] * b[A33]);
+    }
+
+}
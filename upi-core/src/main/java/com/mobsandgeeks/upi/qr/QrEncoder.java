@@ -0,0 +1,519 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiUriEncoder;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.mobsandgeeks.upi.qr.QrCode.ERROR_CORRECTION_HIGH;
+import static com.mobsandgeeks.upi.qr.QrCode.ERROR_CORRECTION_LOW;
+import static com.mobsandgeeks.upi.qr.QrCode.ERROR_CORRECTION_MEDIUM;
+
+/**
+ * Encodes text and UPI payloads into QR codes. The encoder picks the most compact mode that can
+ * hold the whole text and the smallest version that fits it, and raises the error correction level
+ * when a higher level fits in the same version.
+ *
+ * <p>Buffers for codewords and matrices are kept between calls, along with the function patterns
+ * and mask patterns of the last version used, so encoding URIs of similar lengths only allocates
+ * the matrix of the returned {@link QrCode}. Encoders are not thread-safe, use one per thread.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class QrEncoder {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int PAD_BYTE_1 = 0xEC;
+    private static final int PAD_BYTE_2 = 0x11;
+
+    // Penalty weights for mask selection
+    private static final int PENALTY_RUN = 3;
+    private static final int PENALTY_BLOCK = 3;
+    private static final int PENALTY_FINDER_LIKE = 40;
+    private static final int PENALTY_BALANCE = 10;
+
+    // Lines are scored in 64-bit words, with four light modules before the first module
+    private static final int LINE_PADDING = 4;
+    private static final int LINE_WORDS = 4;
+
+    private static final byte[] ALPHANUMERIC_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(ALPHANUMERIC_VALUES, (byte) -1);
+        for (int i = 0; i < QrSpec.ALPHANUMERIC_CHARSET.length(); i++) {
+            ALPHANUMERIC_VALUES[QrSpec.ALPHANUMERIC_CHARSET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final int errorCorrection;
+    private final StringBuilder uriBuilder = new StringBuilder(256);
+
+    // Codeword buffers, sized for the largest symbol
+    private final byte[] data = new byte[QrSpec.rawDataModules(QrSpec.MAX_VERSION) / 8];
+    private final byte[] ecc = new byte[QrSpec.rawDataModules(QrSpec.MAX_VERSION) / 8];
+    private final byte[] codewords = new byte[QrSpec.rawDataModules(QrSpec.MAX_VERSION) / 8];
+    private int bitLength;
+
+    // Layout of the last version used, matrices are bit-packed with rowStride ints per row
+    private QrLayout layout;
+    private int size;
+    private int rowStride;
+    private final int[][] transposedMasks = new int[QrLayout.MASK_COUNT][];
+    private int[] base;
+    private int[] candidate;
+    private int[] best;
+    private int[] transposedBase;
+    private int[] transposedCandidate;
+
+    // Scratch line for scoring, and the positions in it where runs can start
+    private final long[] line = new long[LINE_WORDS];
+    private final long[] runPositions = new long[LINE_WORDS];
+    private final long[] firstPosition = new long[LINE_WORDS];
+
+    /**
+     * Creates an encoder with the {@link QrCode#ERROR_CORRECTION_MEDIUM} error correction level.
+     */
+    public QrEncoder() {
+        this(ERROR_CORRECTION_MEDIUM);
+    }
+
+    /**
+     * @param errorCorrection The minimum error correction level.
+     */
+    public QrEncoder(@QrCode.ErrorCorrection int errorCorrection) {
+        if (errorCorrection < ERROR_CORRECTION_LOW || errorCorrection > ERROR_CORRECTION_HIGH) {
+            throw new IllegalArgumentException("Unknown error correction level: "
+                    + errorCorrection);
+        }
+        this.errorCorrection = errorCorrection;
+    }
+
+    /**
+     * Encodes the URI of a payload, as generated by {@link UpiUriEncoder}.
+     *
+     * @param payload The payload to encode.
+     * @param extras Parameters that are not a part of the UPI spec. May be {@code null}.
+     * @return The QR code.
+     */
+    @NonNull
+    public QrCode encode(@NonNull UpiPayload payload, @Nullable Map<String, String> extras) {
+        uriBuilder.setLength(0);
+        return encode(UpiUriEncoder.encodeTo(payload, extras, uriBuilder));
+    }
+
+    /**
+     * @param text The text to encode, non-ASCII characters are encoded with UTF-8.
+     * @return The QR code.
+     * @throws IllegalArgumentException If the text doesn't fit in a version 40 QR code.
+     */
+    @NonNull
+    public QrCode encode(@NonNull CharSequence text) {
+        int length = text.length();
+        int mode = selectMode(text);
+        byte[] bytes = null;
+        int count = length;
+        if (mode == QrSpec.MODE_BYTE && !isAscii(text)) {
+            bytes = text.toString().getBytes(UTF_8);
+            count = bytes.length;
+        }
+
+        int payloadBits = payloadBits(mode, count);
+        int version = 0;
+        for (int v = QrSpec.MIN_VERSION; v <= QrSpec.MAX_VERSION; v++) {
+            int countBits = QrSpec.characterCountBits(mode, v);
+            if (count < 1 << countBits && 4 + countBits + payloadBits
+                    <= QrSpec.dataCodewords(errorCorrection, v) * 8) {
+                version = v;
+                break;
+            }
+        }
+        if (version == 0) {
+            throw new IllegalArgumentException("Text of length " + length
+                    + " doesn't fit in a QR code");
+        }
+
+        int usedBits = 4 + QrSpec.characterCountBits(mode, version) + payloadBits;
+        int level = errorCorrection;
+        while (level < ERROR_CORRECTION_HIGH
+                && usedBits <= QrSpec.dataCodewords(level + 1, version) * 8) {
+            level++;
+        }
+
+        writeData(text, bytes, mode, count, version, level);
+        writeCodewords(version, level);
+        prepare(version);
+        return drawSymbol(level);
+    }
+
+    private static int selectMode(CharSequence text) {
+        boolean numeric = true;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 128 || ALPHANUMERIC_VALUES[c] == -1) {
+                return QrSpec.MODE_BYTE;
+            }
+            numeric &= c >= '0' && c <= '9';
+        }
+        return numeric ? QrSpec.MODE_NUMERIC : QrSpec.MODE_ALPHANUMERIC;
+    }
+
+    private static boolean isAscii(CharSequence text) {
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (text.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int payloadBits(int mode, int count) {
+        switch (mode) {
+            case QrSpec.MODE_NUMERIC:
+                return count / 3 * 10 + (count % 3 == 0 ? 0 : count % 3 * 3 + 1);
+            case QrSpec.MODE_ALPHANUMERIC:
+                return count / 2 * 11 + count % 2 * 6;
+            default:
+                return count * 8;
+        }
+    }
+
+    /**
+     * Writes the segment, the terminator and the padding into the data codewords.
+     */
+    private void writeData(CharSequence text, byte[] bytes, int mode, int count, int version,
+            int level) {
+        int capacity = QrSpec.dataCodewords(level, version);
+        Arrays.fill(data, 0, capacity, (byte) 0);
+        bitLength = 0;
+
+        appendBits(mode, 4);
+        appendBits(count, QrSpec.characterCountBits(mode, version));
+        if (mode == QrSpec.MODE_NUMERIC) {
+            int i = 0;
+            for (; i + 3 <= count; i += 3) {
+                appendBits(digits(text, i, 3), 10);
+            }
+            if (count - i > 0) {
+                appendBits(digits(text, i, count - i), (count - i) * 3 + 1);
+            }
+        } else if (mode == QrSpec.MODE_ALPHANUMERIC) {
+            int i = 0;
+            for (; i + 2 <= count; i += 2) {
+                appendBits(ALPHANUMERIC_VALUES[text.charAt(i)] * 45
+                        + ALPHANUMERIC_VALUES[text.charAt(i + 1)], 11);
+            }
+            if (i < count) {
+                appendBits(ALPHANUMERIC_VALUES[text.charAt(i)], 6);
+            }
+        } else if (bytes != null) {
+            for (int i = 0; i < count; i++) {
+                appendBits(bytes[i] & 0xFF, 8);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                appendBits(text.charAt(i), 8);
+            }
+        }
+
+        // Terminator, then pad to a byte boundary and fill the rest with pad bytes
+        bitLength = Math.min(bitLength + 4, capacity * 8);
+        bitLength = (bitLength + 7) & ~7;
+        for (int i = bitLength >>> 3, pad = PAD_BYTE_1; i < capacity; i++) {
+            data[i] = (byte) pad;
+            pad = pad == PAD_BYTE_1 ? PAD_BYTE_2 : PAD_BYTE_1;
+        }
+    }
+
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + text.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    private void appendBits(int value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (((value >>> i) & 1) != 0) {
+                data[bitLength >>> 3] |= 0x80 >>> (bitLength & 7);
+            }
+            bitLength++;
+        }
+    }
+
+    /**
+     * Splits the data codewords into blocks, computes their error correction codewords and
+     * interleaves the blocks.
+     */
+    private void writeCodewords(int version, int level) {
+        int blocks = QrSpec.errorCorrectionBlocks(level, version);
+        int eccLength = QrSpec.eccCodewordsPerBlock(level, version);
+        int rawCodewords = QrSpec.rawDataModules(version) / 8;
+        int shortBlocks = blocks - rawCodewords % blocks;
+        int shortDataLength = rawCodewords / blocks - eccLength;
+
+        for (int b = 0, offset = 0; b < blocks; b++) {
+            int length = shortDataLength + (b < shortBlocks ? 0 : 1);
+            ReedSolomon.remainder(data, offset, length, ecc, b * eccLength, eccLength);
+            offset += length;
+        }
+
+        int k = 0;
+        for (int i = 0; i <= shortDataLength; i++) {
+            for (int b = 0; b < blocks; b++) {
+                if (i < shortDataLength || b >= shortBlocks) {
+                    codewords[k++] = data[b * shortDataLength + Math.max(0, b - shortBlocks) + i];
+                }
+            }
+        }
+        for (int i = 0; i < eccLength; i++) {
+            for (int b = 0; b < blocks; b++) {
+                codewords[k++] = ecc[b * eccLength + i];
+            }
+        }
+    }
+
+    /**
+     * Places the codewords, then picks the mask with the lowest penalty.
+     */
+    private QrCode drawSymbol(int level) {
+        int words = size * rowStride;
+        System.arraycopy(layout.template, 0, base, 0, words);
+        int[] dataPositions = layout.dataPositions;
+        int bits = dataPositions.length / 8 * 8;
+        for (int i = 0; i < bits; i++) {
+            if ((codewords[i >>> 3] & (0x80 >>> (i & 7))) != 0) {
+                int position = dataPositions[i];
+                base[position >>> 5] |= 1 << (position & 31);
+            }
+        }
+
+        // Columns are scored as the rows of a transposed copy
+        Arrays.fill(transposedBase, 0, words, 0);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (isSet(base, x, y)) {
+                    transposedBase[x * rowStride + (y >>> 5)] |= 1 << (y & 31);
+                }
+            }
+        }
+
+        int bestMask = -1;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int mask = 0; mask < QrLayout.MASK_COUNT; mask++) {
+            int[] maskPattern = layout.masks[mask];
+            int[] transposedMaskPattern = transposedMasks[mask];
+            for (int i = 0; i < words; i++) {
+                candidate[i] = base[i] ^ maskPattern[i];
+                transposedCandidate[i] = transposedBase[i] ^ transposedMaskPattern[i];
+            }
+            int formatBits = QrSpec.formatBits(level, mask);
+            drawFormatBits(candidate, formatBits, false);
+            drawFormatBits(transposedCandidate, formatBits, true);
+            int penalty = penalty(candidate, transposedCandidate);
+            if (penalty < bestPenalty) {
+                bestPenalty = penalty;
+                bestMask = mask;
+                int[] swap = best;
+                best = candidate;
+                candidate = swap;
+            }
+        }
+        return new QrCode(layout.version, level, bestMask, Arrays.copyOf(best, words));
+    }
+
+    /**
+     * Builds the layout of a version, the transposed mask patterns and buffers for matrices.
+     * Nothing is done if the version was used by the previous call.
+     */
+    private void prepare(int version) {
+        if (layout != null && layout.version == version) {
+            return;
+        }
+        layout = new QrLayout(version);
+        size = layout.size;
+        rowStride = layout.rowStride;
+        int words = size * rowStride;
+        base = new int[words];
+        candidate = new int[words];
+        best = new int[words];
+        transposedBase = new int[words];
+        transposedCandidate = new int[words];
+
+        for (int mask = 0; mask < QrLayout.MASK_COUNT; mask++) {
+            int[] pattern = layout.masks[mask];
+            int[] transposedPattern = new int[words];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (isSet(pattern, x, y)) {
+                        transposedPattern[x * rowStride + (y >>> 5)] |= 1 << (y & 31);
+                    }
+                }
+            }
+            transposedMasks[mask] = transposedPattern;
+        }
+
+        // A run of five modules can start anywhere from the first to the fifth last module
+        Arrays.fill(runPositions, 0);
+        Arrays.fill(firstPosition, 0);
+        for (int q = LINE_PADDING; q <= LINE_PADDING + size - 5; q++) {
+            runPositions[q >>> 6] |= 1L << (q & 63);
+        }
+        firstPosition[LINE_PADDING >>> 6] |= 1L << (LINE_PADDING & 63);
+    }
+
+    /**
+     * Draws both copies of the format information.
+     */
+    private void drawFormatBits(int[] matrix, int bits, boolean transpose) {
+        int[] positions = layout.formatPositions;
+        for (int i = 0; i < positions.length; i++) {
+            int x = positions[i] >>> 16;
+            int y = positions[i] & 0xFFFF;
+            boolean dark = ((bits >>> (i % QrLayout.FORMAT_BITS)) & 1) != 0;
+            if (transpose) {
+                QrLayout.set(matrix, rowStride, y, x, dark);
+            } else {
+                QrLayout.set(matrix, rowStride, x, y, dark);
+            }
+        }
+    }
+
+    private boolean isSet(int[] matrix, int x, int y) {
+        return QrLayout.isSet(matrix, rowStride, x, y);
+    }
+
+    /**
+     * Scores a masked symbol with the four penalty rules of the spec, lower is better.
+     */
+    private int penalty(int[] matrix, int[] transposed) {
+        int penalty = linePenalty(matrix) + linePenalty(transposed) + blockPenalty(matrix);
+
+        int dark = 0;
+        for (int i = 0, words = size * rowStride; i < words; i++) {
+            dark += Integer.bitCount(matrix[i]);
+        }
+        int total = size * size;
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        return penalty + k * PENALTY_BALANCE;
+    }
+
+    /**
+     * Penalizes runs of five or more modules of the same color in each row, and 1:1:3:1:1
+     * finder-like patterns with four light modules on either side. Each row is copied into a line
+     * of 64-bit words and scored 64 modules at a time, the area outside the symbol counts as
+     * light.
+     */
+    private int linePenalty(int[] matrix) {
+        long[] line = this.line;
+        int lineWords = (size + 2 * LINE_PADDING + 63) >>> 6;
+        int runs = 0;
+        int runStarts = 0;
+        int finderLike = 0;
+        for (int y = 0; y < size; y++) {
+            Arrays.fill(line, 0);
+            for (int j = 0, row = y * rowStride; j < rowStride; j++) {
+                long bits = matrix[row + j] & 0xFFFFFFFFL;
+                int position = j * 32 + LINE_PADDING;
+                int shift = position & 63;
+                line[position >>> 6] |= bits << shift;
+                if (shift > 32) {
+                    line[(position >>> 6) + 1] |= bits >>> (64 - shift);
+                }
+            }
+
+            for (int w = 0; w < lineWords; w++) {
+                long b0 = bitsAt(line, w, 0);
+                long b1 = bitsAt(line, w, 1);
+                long b2 = bitsAt(line, w, 2);
+                long b3 = bitsAt(line, w, 3);
+                long b4 = bitsAt(line, w, 4);
+                long b5 = bitsAt(line, w, 5);
+                long b6 = bitsAt(line, w, 6);
+                long before = bitsAt(line, w, -1);
+
+                // Five modules of the same color, and where each such run starts
+                long same = ~(b0 ^ b1);
+                long sameBefore = ~(before ^ b0);
+                long fives = same & ~(b1 ^ b2) & ~(b2 ^ b3) & ~(b3 ^ b4) & runPositions[w];
+                runs += Long.bitCount(fives);
+                runStarts += Long.bitCount(fives & (~sameBefore | firstPosition[w]));
+
+                long finder = b0 & ~b1 & b2 & b3 & b4 & ~b5 & b6;
+                if (finder != 0) {
+                    long lightAfter = ~(bitsAt(line, w, 7) | bitsAt(line, w, 8)
+                            | bitsAt(line, w, 9) | bitsAt(line, w, 10));
+                    long lightBefore = ~(before | bitsAt(line, w, -2) | bitsAt(line, w, -3)
+                            | bitsAt(line, w, -4));
+                    finderLike += Long.bitCount(finder & lightAfter)
+                            + Long.bitCount(finder & lightBefore);
+                }
+            }
+        }
+
+        // A run of n >= 5 modules has n - 4 windows of five and scores n - 2
+        return runs + runStarts * (PENALTY_RUN - 1) + finderLike * PENALTY_FINDER_LIKE;
+    }
+
+    /**
+     * @return 64 bits of the line, starting at bit {@code offset} of the given word.
+     */
+    private static long bitsAt(long[] line, int word, int offset) {
+        int start = word * 64 + offset;
+        int index = start >> 6;
+        int shift = start & 63;
+        long low = index >= 0 && index < LINE_WORDS ? line[index] : 0;
+        if (shift == 0) {
+            return low;
+        }
+        long high = index + 1 >= 0 && index + 1 < LINE_WORDS ? line[index + 1] : 0;
+        return (low >>> shift) | (high << (64 - shift));
+    }
+
+    /**
+     * Penalizes 2x2 blocks of the same color, comparing 32 modules at a time.
+     */
+    private int blockPenalty(int[] matrix) {
+        int blocks = 0;
+        for (int y = 0; y < size - 1; y++) {
+            int top = y * rowStride;
+            int bottom = top + rowStride;
+            for (int j = 0; j < rowStride; j++) {
+                boolean last = j == rowStride - 1;
+                int topRight = (matrix[top + j] >>> 1) | (last ? 0 : matrix[top + j + 1] << 31);
+                int bottomRight = (matrix[bottom + j] >>> 1)
+                        | (last ? 0 : matrix[bottom + j + 1] << 31);
+                int same = ~(matrix[top + j] ^ topRight) & ~(matrix[bottom + j] ^ bottomRight)
+                        & ~(matrix[top + j] ^ matrix[bottom + j]);
+                if (last) {
+                    // Only blocks that start before the last column
+                    int columns = size - 1 - j * 32;
+                    same &= columns >= 32 ? -1 : (1 << columns) - 1;
+                }
+                blocks += Integer.bitCount(same);
+            }
+        }
+        return blocks * PENALTY_BLOCK;
+    }
+
+}
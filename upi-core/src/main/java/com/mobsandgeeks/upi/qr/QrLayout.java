@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+/**
+ * Module layout of a QR code version: function patterns, the placement order of data modules,
+ * the positions of format information and the eight mask patterns. Matrices are bit-packed with
+ * {@code rowStride} ints per row. Shared by the encoder and the decoder, and immutable once built.
+ *
+ * @author Ragunath Jawahar
+ */
+final class QrLayout {
+
+    static final int MASK_COUNT = 8;
+    static final int FORMAT_BITS = 15;
+
+    final int version;
+    final int size;
+    final int rowStride;
+
+    // Modules that are part of function patterns, and their colors
+    final int[] functionModules;
+    final int[] template;
+
+    // Data modules in placement order, as bit indices into the matrix
+    final int[] dataPositions;
+
+    // Masks only cover data modules
+    final int[][] masks = new int[MASK_COUNT][];
+
+    // Both copies of the format information, bit by bit, packed as x << 16 | y
+    final int[] formatPositions = new int[FORMAT_BITS * 2];
+
+    QrLayout(int version) {
+        this.version = version;
+        size = QrSpec.size(version);
+        rowStride = QrSpec.rowStride(size);
+        int words = size * rowStride;
+        functionModules = new int[words];
+        template = new int[words];
+
+        // Timing patterns
+        for (int i = 0; i < size; i++) {
+            setFunctionModule(6, i, i % 2 == 0);
+            setFunctionModule(i, 6, i % 2 == 0);
+        }
+
+        // Finder patterns and their separators
+        drawFinderPattern(3, 3);
+        drawFinderPattern(size - 4, 3);
+        drawFinderPattern(3, size - 4);
+
+        // Alignment patterns, except where they would overlap the finder patterns
+        int[] alignment = QrSpec.alignmentPatternPositions(version);
+        int last = alignment.length - 1;
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j <= last; j++) {
+                if (!(i == 0 && j == 0) && !(i == 0 && j == last) && !(i == last && j == 0)) {
+                    drawAlignmentPattern(alignment[i], alignment[j]);
+                }
+            }
+        }
+
+        // Format information is reserved as light modules, it depends on the mask
+        for (int i = 0; i <= 5; i++) {
+            setFormatPosition(i, 8, i);
+        }
+        setFormatPosition(6, 8, 7);
+        setFormatPosition(7, 8, 8);
+        setFormatPosition(8, 7, 8);
+        for (int i = 9; i < FORMAT_BITS; i++) {
+            setFormatPosition(i, 14 - i, 8);
+        }
+        for (int i = 0; i < 8; i++) {
+            setFormatPosition(FORMAT_BITS + i, size - 1 - i, 8);
+        }
+        for (int i = 8; i < FORMAT_BITS; i++) {
+            setFormatPosition(FORMAT_BITS + i, 8, size - 15 + i);
+        }
+        setFunctionModule(8, size - 8, true);
+
+        if (version >= 7) {
+            int bits = QrSpec.versionBits(version);
+            for (int i = 0; i < 18; i++) {
+                boolean dark = ((bits >>> i) & 1) != 0;
+                int a = size - 11 + i % 3;
+                int b = i / 3;
+                setFunctionModule(a, b, dark);
+                setFunctionModule(b, a, dark);
+            }
+        }
+
+        for (int mask = 0; mask < MASK_COUNT; mask++) {
+            int[] pattern = new int[words];
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    if (!isSet(functionModules, rowStride, x, y) && isMasked(mask, x, y)) {
+                        set(pattern, rowStride, x, y, true);
+                    }
+                }
+            }
+            masks[mask] = pattern;
+        }
+
+        dataPositions = new int[QrSpec.rawDataModules(version)];
+        int i = 0;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5; // Skip the vertical timing pattern
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    if (!isSet(functionModules, rowStride, x, y)) {
+                        dataPositions[i++] = ((y * rowStride + (x >>> 5)) << 5) | (x & 31);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawFinderPattern(int centerX, int centerY) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int x = centerX + dx;
+                int y = centerY + dy;
+                if (x >= 0 && x < size && y >= 0 && y < size) {
+                    int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                    setFunctionModule(x, y, distance != 2 && distance != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignmentPattern(int centerX, int centerY) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunctionModule(centerX + dx, centerY + dy,
+                        Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private void setFormatPosition(int index, int x, int y) {
+        formatPositions[index] = x << 16 | y;
+        setFunctionModule(x, y, false);
+    }
+
+    private void setFunctionModule(int x, int y, boolean dark) {
+        set(functionModules, rowStride, x, y, true);
+        set(template, rowStride, x, y, dark);
+    }
+
+    static boolean isSet(int[] matrix, int rowStride, int x, int y) {
+        return (matrix[y * rowStride + (x >>> 5)] & (1 << (x & 31))) != 0;
+    }
+
+    static void set(int[] matrix, int rowStride, int x, int y, boolean dark) {
+        int word = y * rowStride + (x >>> 5);
+        if (dark) {
+            matrix[word] |= 1 << (x & 31);
+        } else {
+            matrix[word] &= ~(1 << (x & 31));
+        }
+    }
+
+    private static boolean isMasked(int mask, int x, int y) {
+        switch (mask) {
+            case 0:
+                return (x + y) % 2 == 0;
+            case 1:
+                return y % 2 == 0;
+            case 2:
+                return x % 3 == 0;
+            case 3:
+                return (x + y) % 3 == 0;
+            case 4:
+                return (x / 3 + y / 2) % 2 == 0;
+            case 5:
+                return x * y % 2 + x * y % 3 == 0;
+            case 6:
+                return (x * y % 2 + x * y % 3) % 2 == 0;
+            default:
+                return ((x + y) % 2 + x * y % 3) % 2 == 0;
+        }
+    }
+
+}
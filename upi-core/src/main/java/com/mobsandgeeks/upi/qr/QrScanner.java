@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.mobsandgeeks.upi.UpiResult;
+import com.mobsandgeeks.upi.UpiUriParser;
+
+import java.nio.charset.Charset;
+
+/**
+ * Scans camera frames for UPI QR codes and parses them, without going through a {@code Uri} or
+ * an {@code Intent}. Frames are read in place from their luminance plane, which is the first
+ * {@code width * height} bytes of an NV21 preview frame and the Y plane of a YUV_420_888 image.
+ *
+ * <p>Buffers are kept between calls and only grow when the frame gets larger, so frames without
+ * a UPI QR code don't allocate. A scanner is not thread-safe, use one per camera thread.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class QrScanner {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String UPI_SCHEME = "upi:";
+
+    private final QrBinarizer binarizer = new QrBinarizer();
+    private final QrDetector detector = new QrDetector();
+    private final QrDecoder decoder = new QrDecoder();
+
+    /**
+     * Scans a whole frame.
+     *
+     * @param frame An NV21 frame, or any frame that starts with a tightly packed luminance plane.
+     * @param width Width of the frame in pixels.
+     * @param height Height of the frame in pixels.
+     * @return The parsed URI, or {@code null} if the frame has no readable UPI QR code.
+     */
+    @Nullable
+    public UpiResult scan(@NonNull byte[] frame, int width, int height) {
+        return scan(frame, width, 0, 0, width, height);
+    }
+
+    /**
+     * Scans a region of a frame, such as the area inside a viewfinder. Smaller regions scan
+     * faster.
+     *
+     * @param luminance Luminance plane of the frame, one byte per pixel.
+     * @param rowStride Number of bytes from one row to the next.
+     * @param left Left edge of the region.
+     * @param top Top edge of the region.
+     * @param width Width of the region, at least 40 pixels.
+     * @param height Height of the region, at least 40 pixels.
+     * @return The parsed URI, or {@code null} if the region has no readable UPI QR code. QR codes
+     *         that aren't UPI URIs are ignored.
+     */
+    @Nullable
+    public UpiResult scan(@NonNull byte[] luminance, int rowStride, int left, int top, int width,
+            int height) {
+        int length = decode(luminance, rowStride, left, top, width, height);
+        if (length < UPI_SCHEME.length() || !isUpiUri(decoder.text)) {
+            return null;
+        }
+        return UpiUriParser.parse(new String(decoder.text, 0, length, UTF_8));
+    }
+
+    /**
+     * Scans a region of a frame for any QR code.
+     *
+     * @return Text of the QR code, or {@code null} if the region has no readable QR code.
+     * @see #scan(byte[], int, int, int, int, int)
+     */
+    @Nullable
+    public String scanText(@NonNull byte[] luminance, int rowStride, int left, int top, int width,
+            int height) {
+        int length = decode(luminance, rowStride, left, top, width, height);
+        return length != -1 ? new String(decoder.text, 0, length, UTF_8) : null;
+    }
+
+    private int decode(byte[] luminance, int rowStride, int left, int top, int width,
+            int height) {
+        if (left < 0 || top < 0 || width < 0 || height < 0 || left + width > rowStride
+                || (long) (top + height - 1) * rowStride + left + width > luminance.length) {
+            throw new IllegalArgumentException("Region " + width + "x" + height + " at (" + left
+                    + ", " + top + ") is outside the frame");
+        }
+        if (!binarizer.binarize(luminance, top * rowStride + left, rowStride, width, height)) {
+            return -1;
+        }
+        int dimension = detector.detect(binarizer);
+        return dimension != 0 ? decoder.decode(detector.modules, dimension) : -1;
+    }
+
+    private static boolean isUpiUri(byte[] text) {
+        for (int i = 0; i < UPI_SCHEME.length(); i++) {
+            if (Character.toLowerCase((char) text[i]) != UPI_SCHEME.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+/**
+ * Capacity tables and layout rules from ISO/IEC 18004. Error correction levels are indexed by
+ * the {@code QrCode.ERROR_CORRECTION_*} constants and versions by their number.
+ *
+ * @author Ragunath Jawahar
+ */
+final class QrSpec {
+
+    static final int MIN_VERSION = 1;
+    static final int MAX_VERSION = 40;
+
+    static final int MODE_NUMERIC = 0x1;
+    static final int MODE_ALPHANUMERIC = 0x2;
+    static final int MODE_BYTE = 0x4;
+
+    static final String ALPHANUMERIC_CHARSET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ $%*+-./:";
+
+    private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+            { -1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28,
+              28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+            { -1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26,
+              26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28 },
+            { -1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30,
+              28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+            { -1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28,
+              30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30 },
+    };
+
+    private static final byte[][] ERROR_CORRECTION_BLOCKS = {
+            { -1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8,
+              8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25 },
+            { -1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16,
+              17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49 },
+            { -1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20,
+              23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68 },
+            { -1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25,
+              25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81 },
+    };
+
+    // Format information encodes L, M, Q and H as 1, 0, 3 and 2
+    private static final int[] FORMAT_LEVEL_BITS = { 1, 0, 3, 2 };
+
+    private QrSpec() { /* No instances. */ }
+
+    static int size(int version) {
+        return version * 4 + 17;
+    }
+
+    /**
+     * @return Number of ints in a row of a bit-packed matrix.
+     */
+    static int rowStride(int size) {
+        return (size + 31) >>> 5;
+    }
+
+    static int eccCodewordsPerBlock(int errorCorrection, int version) {
+        return ECC_CODEWORDS_PER_BLOCK[errorCorrection][version];
+    }
+
+    static int errorCorrectionBlocks(int errorCorrection, int version) {
+        return ERROR_CORRECTION_BLOCKS[errorCorrection][version];
+    }
+
+    /**
+     * @return Number of modules that hold data and error correction codewords, including the
+     *         remainder bits.
+     */
+    static int rawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignmentCount = version / 7 + 2;
+            result -= (25 * alignmentCount - 10) * alignmentCount - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    static int dataCodewords(int errorCorrection, int version) {
+        return rawDataModules(version) / 8 - eccCodewordsPerBlock(errorCorrection, version)
+                * errorCorrectionBlocks(errorCorrection, version);
+    }
+
+    static int characterCountBits(int mode, int version) {
+        int range = version <= 9 ? 0 : version <= 26 ? 1 : 2;
+        switch (mode) {
+            case MODE_NUMERIC:
+                return 10 + 2 * range;
+            case MODE_ALPHANUMERIC:
+                return 9 + 2 * range;
+            default:
+                return range == 0 ? 8 : 16;
+        }
+    }
+
+    /**
+     * @return Centers of alignment patterns along each axis, an empty array for version 1.
+     */
+    static int[] alignmentPatternPositions(int version) {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = size(version) - 7; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * @return The 15 format information bits, with error correction and the XOR mask applied.
+     */
+    static int formatBits(int errorCorrection, int mask) {
+        int data = FORMAT_LEVEL_BITS[errorCorrection] << 3 | mask;
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        return (data << 10 | remainder) ^ 0x5412;
+    }
+
+    /**
+     * @return The 18 version information bits, used by version 7 and above.
+     */
+    static int versionBits(int version) {
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1F25);
+        }
+        return version << 12 | remainder;
+    }
+
+}
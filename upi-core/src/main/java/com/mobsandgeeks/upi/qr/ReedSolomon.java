@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+/**
+ * Arithmetic in GF(256) with the QR code polynomial, and Reed-Solomon error correction codewords.
+ * Multiplication uses precomputed exponent and logarithm tables, and generator polynomials are
+ * computed once for every degree used by QR codes and kept as logarithms.
+ *
+ * @author Ragunath Jawahar
+ */
+final class ReedSolomon {
+
+    private static final int PRIMITIVE_POLYNOMIAL = 0x11D;
+    static final int MAX_DEGREE = 30;
+
+    // Doubled, so that the sum of two logarithms can be looked up without a modulo
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    // Coefficients of each generator polynomial as logarithms, highest degree first without the
+    // leading 1
+    private static final int[][] GENERATOR_LOGS = new int[MAX_DEGREE + 1][];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 256) {
+                x ^= PRIMITIVE_POLYNOMIAL;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+
+        for (int degree = 1; degree <= MAX_DEGREE; degree++) {
+            int[] coefficients = new int[degree];
+            coefficients[degree - 1] = 1;
+            int root = 1;
+            for (int i = 0; i < degree; i++) {
+                for (int j = 0; j < degree; j++) {
+                    coefficients[j] = multiply(coefficients[j], root);
+                    if (j + 1 < degree) {
+                        coefficients[j] ^= coefficients[j + 1];
+                    }
+                }
+                root = multiply(root, 2);
+            }
+            int[] logs = new int[degree];
+            for (int i = 0; i < degree; i++) {
+                logs[i] = LOG[coefficients[i]];
+            }
+            GENERATOR_LOGS[degree] = logs;
+        }
+    }
+
+    private ReedSolomon() { /* No instances. */ }
+
+    static int multiply(int a, int b) {
+        return a == 0 || b == 0 ? 0 : EXP[LOG[a] + LOG[b]];
+    }
+
+    /**
+     * @return Alpha raised to the given power, for powers from 0 to 509.
+     */
+    static int exp(int power) {
+        return EXP[power];
+    }
+
+    static int inverse(int a) {
+        return EXP[255 - LOG[a]];
+    }
+
+    /**
+     * Computes the error correction codewords of a block.
+     *
+     * @param data Array that holds the data codewords.
+     * @param offset Index of the first data codeword.
+     * @param length Number of data codewords.
+     * @param ecc Array that receives the error correction codewords.
+     * @param eccOffset Index of the first error correction codeword.
+     * @param degree Number of error correction codewords.
+     */
+    static void remainder(byte[] data, int offset, int length, byte[] ecc, int eccOffset,
+            int degree) {
+        int[] generator = GENERATOR_LOGS[degree];
+        int last = eccOffset + degree - 1;
+        for (int i = eccOffset; i <= last; i++) {
+            ecc[i] = 0;
+        }
+        for (int i = offset; i < offset + length; i++) {
+            int factor = (data[i] ^ ecc[eccOffset]) & 0xFF;
+            System.arraycopy(ecc, eccOffset + 1, ecc, eccOffset, degree - 1);
+            ecc[last] = 0;
+            if (factor != 0) {
+                int factorLog = LOG[factor];
+                for (int j = 0; j < degree; j++) {
+                    ecc[eccOffset + j] ^= EXP[generator[j] + factorLog];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import java.util.Arrays;
+
+/**
+ * Corrects errors in Reed-Solomon blocks, with syndromes, the Berlekamp-Massey algorithm, a Chien
+ * search and Forney's formula. Work arrays are allocated once, so a decoder is not thread-safe.
+ *
+ * @author Ragunath Jawahar
+ */
+final class ReedSolomonDecoder {
+
+    private final int[] syndromes = new int[ReedSolomon.MAX_DEGREE];
+    private final int[] locator = new int[ReedSolomon.MAX_DEGREE + 1];
+    private final int[] previous = new int[ReedSolomon.MAX_DEGREE + 1];
+    private final int[] swap = new int[ReedSolomon.MAX_DEGREE + 1];
+    private final int[] evaluator = new int[ReedSolomon.MAX_DEGREE];
+
+    /**
+     * Corrects a block of data codewords followed by error correction codewords, in place.
+     *
+     * @param block Array that holds the block.
+     * @param offset Index of the first codeword.
+     * @param length Number of codewords in the block.
+     * @param degree Number of error correction codewords.
+     * @return {@code false} if the block has more errors than can be corrected.
+     */
+    boolean correct(byte[] block, int offset, int length, int degree) {
+        boolean clean = true;
+        for (int j = 0; j < degree; j++) {
+            int root = ReedSolomon.exp(j);
+            int syndrome = 0;
+            for (int i = offset; i < offset + length; i++) {
+                syndrome = ReedSolomon.multiply(syndrome, root) ^ (block[i] & 0xFF);
+            }
+            syndromes[j] = syndrome;
+            clean &= syndrome == 0;
+        }
+        if (clean) {
+            return true;
+        }
+
+        // Berlekamp-Massey, finds the error locator polynomial, lowest degree first
+        Arrays.fill(locator, 0);
+        Arrays.fill(previous, 0);
+        locator[0] = 1;
+        previous[0] = 1;
+        int errors = 0;
+        int shift = 1;
+        int lastDiscrepancy = 1;
+        for (int n = 0; n < degree; n++) {
+            int discrepancy = syndromes[n];
+            for (int i = 1; i <= errors; i++) {
+                discrepancy ^= ReedSolomon.multiply(locator[i], syndromes[n - i]);
+            }
+            if (discrepancy == 0) {
+                shift++;
+                continue;
+            }
+
+            int factor = ReedSolomon.multiply(discrepancy, ReedSolomon.inverse(lastDiscrepancy));
+            boolean lengthen = 2 * errors <= n;
+            if (lengthen) {
+                System.arraycopy(locator, 0, swap, 0, degree + 1);
+            }
+            for (int i = 0; i + shift <= degree; i++) {
+                locator[i + shift] ^= ReedSolomon.multiply(factor, previous[i]);
+            }
+            if (lengthen) {
+                errors = n + 1 - errors;
+                System.arraycopy(swap, 0, previous, 0, degree + 1);
+                lastDiscrepancy = discrepancy;
+                shift = 1;
+            } else {
+                shift++;
+            }
+        }
+        if (2 * errors > degree) {
+            return false;
+        }
+
+        // Error evaluator polynomial, the syndromes times the locator modulo x^degree
+        for (int i = 0; i < degree; i++) {
+            int value = 0;
+            for (int k = 0; k <= Math.min(i, errors); k++) {
+                value ^= ReedSolomon.multiply(syndromes[i - k], locator[k]);
+            }
+            evaluator[i] = value;
+        }
+
+        // Chien search for the roots of the locator, with Forney's formula for error values
+        int found = 0;
+        for (int p = 0; p < length; p++) {
+            int power = length - 1 - p;
+            int inversePower = (255 - power) % 255;
+            int x = ReedSolomon.exp(inversePower);
+            int value = 0;
+            for (int i = errors; i >= 0; i--) {
+                value = ReedSolomon.multiply(value, x) ^ locator[i];
+            }
+            if (value != 0) {
+                continue;
+            }
+
+            // The formal derivative only keeps the odd terms
+            int derivative = 0;
+            for (int i = 1; i <= errors; i += 2) {
+                derivative ^= ReedSolomon.multiply(locator[i],
+                        ReedSolomon.exp(inversePower * (i - 1) % 255));
+            }
+            if (derivative == 0) {
+                return false;
+            }
+            int numerator = 0;
+            for (int i = degree - 1; i >= 0; i--) {
+                numerator = ReedSolomon.multiply(numerator, x) ^ evaluator[i];
+            }
+            int magnitude = ReedSolomon.multiply(ReedSolomon.exp(power),
+                    ReedSolomon.multiply(numerator, ReedSolomon.inverse(derivative)));
+            block[offset + p] ^= magnitude;
+            found++;
+        }
+        return found == errors;
+    }
+
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.reconcile;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiResponse;
+import com.mobsandgeeks.upi.internal.UpiHashing;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches the payment requests an app or a server issued with the responses that come back,
+ * by transaction reference ID ({@code tr}), and reports matches, amount mismatches, duplicates
+ * and missing responses to a {@link ReconciliationListener} as it goes.
+ *
+ * <p>Requests and responses are fed in the order they happened, each with its time, so that a
+ * day of records can be streamed through without loading it. Outstanding requests are kept in
+ * an open-addressing hash table of fixed capacity, with amounts in paise, and expire on a time
+ * wheel when no response arrives within the window. Matched requests stay in the table for
+ * another window, to catch duplicate responses. Memory is allocated up front and stays the
+ * same, about 50 bytes per request plus its {@code tr} string.
+ *
+ * <p>Time is taken from the records, not from the clock, so old records can be reconciled.
+ * Reconcilers are not thread-safe.
+ *
+ * @author Ragunath Jawahar
+ */
+public final class Reconciler {
+
+    /**
+     * The response matches a request and its amount.
+     */
+    public static final int RESULT_MATCHED = 0;
+
+    /**
+     * The response matches a request, but not its amount.
+     */
+    public static final int RESULT_AMOUNT_MISMATCH = 1;
+
+    /**
+     * A request was already matched with an earlier response.
+     */
+    public static final int RESULT_DUPLICATE_RESPONSE = 2;
+
+    /**
+     * No request with the response's transaction reference ID is outstanding. The request was
+     * not issued, or it expired before the response arrived.
+     */
+    public static final int RESULT_UNKNOWN_RESPONSE = 3;
+
+    /**
+     * No response arrived for a request within the window.
+     */
+    public static final int RESULT_MISSING_RESPONSE = 4;
+
+    /**
+     * A request was issued with the transaction reference ID of a request in the table. The
+     * later request is ignored.
+     */
+    public static final int RESULT_DUPLICATE_REQUEST = 5;
+
+    @IntDef({ RESULT_MATCHED, RESULT_AMOUNT_MISMATCH, RESULT_DUPLICATE_RESPONSE,
+            RESULT_UNKNOWN_RESPONSE, RESULT_MISSING_RESPONSE, RESULT_DUPLICATE_REQUEST })
+    public @interface Result {}
+
+    private static final int WHEEL_SIZE = 1024;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int NONE = -1;
+
+    private final ReconciliationListener listener;
+    private final long windowMillis;
+    private final long tickMillis;
+
+    // Hash table of entry indices, with linear probing
+    private final int[] table;
+    private final int tableMask;
+
+    // Entries, indexed by entry. Free entries are linked through next.
+    private final String[] keys;
+    private final int[] hashes;
+    private final long[] amounts;
+    private final long[] deadlineTicks;
+    private final boolean[] matched;
+    private final int[] next;
+    private final int[] previous;
+    private int freeEntry;
+    private int size;
+
+    // Entries linked by the tick they expire at
+    private final int[] wheel = new int[WHEEL_SIZE];
+    private long tick = Long.MIN_VALUE;
+
+    /**
+     * @param capacity Maximum number of requests in the table, outstanding or matched.
+     * @param window How long a request waits for its response, and how long a matched request is
+     *         kept to catch duplicate responses.
+     * @param unit Unit of {@code window}.
+     * @param listener Receives the results.
+     */
+    public Reconciler(int capacity, long window, @NonNull TimeUnit unit,
+            @NonNull ReconciliationListener listener) {
+        if (capacity <= 0 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^29, but was "
+                    + capacity);
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be > 0, but was " + window);
+        }
+        this.listener = listener;
+        this.windowMillis = unit.toMillis(window);
+        // The wheel spans more than a window, so each slot only holds entries of a single tick
+        this.tickMillis = Math.max(1, (windowMillis + WHEEL_SIZE - 2) / (WHEEL_SIZE - 1));
+
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.table = new int[tableSize];
+        this.tableMask = tableSize - 1;
+        Arrays.fill(table, NONE);
+
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+        this.amounts = new long[capacity];
+        this.deadlineTicks = new long[capacity];
+        this.matched = new boolean[capacity];
+        this.next = new int[capacity];
+        this.previous = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            next[i] = i + 1 < capacity ? i + 1 : NONE;
+        }
+        this.freeEntry = 0;
+        Arrays.fill(wheel, NONE);
+    }
+
+    /**
+     * Adds an issued request.
+     *
+     * @param payload The request, with a transaction reference ID.
+     * @param timeMillis When it was issued.
+     * @return {@code false} if the table is full.
+     */
+    public boolean addRequest(@NonNull UpiPayload payload, long timeMillis) {
+        String transactionReferenceId = payload.getTransactionReferenceId();
+        if (transactionReferenceId == null) {
+            throw new IllegalArgumentException("payload has no transaction reference ID");
+        }
+        return addRequest(transactionReferenceId, payload.getPayeeAmountPaise(), timeMillis);
+    }
+
+    /**
+     * Adds an issued request.
+     *
+     * @param transactionReferenceId Transaction reference ID of the request.
+     * @param amountPaise Amount of the request, or {@code UpiPayload.NO_AMOUNT} to match any
+     *         amount.
+     * @param timeMillis When it was issued.
+     * @return {@code false} if the table is full.
+     */
+    public boolean addRequest(@NonNull String transactionReferenceId, long amountPaise,
+            long timeMillis) {
+        advanceTo(timeMillis);
+        // Spreads similar IDs like ORD-1 and ORD-2 over the table
+        int hash = UpiHashing.mix(transactionReferenceId.hashCode());
+        int entry = find(transactionReferenceId, hash);
+        if (entry != NONE) {
+            listener.onResult(RESULT_DUPLICATE_REQUEST, transactionReferenceId, amountPaise,
+                    UpiPayload.NO_AMOUNT);
+            return true;
+        }
+        if (freeEntry == NONE) {
+            return false;
+        }
+
+        entry = freeEntry;
+        freeEntry = next[entry];
+        keys[entry] = transactionReferenceId;
+        hashes[entry] = hash;
+        amounts[entry] = amountPaise;
+        matched[entry] = false;
+        int slot = hash & tableMask;
+        while (table[slot] != NONE) {
+            slot = (slot + 1) & tableMask;
+        }
+        table[slot] = entry;
+        size++;
+        schedule(entry, deadlineTick(timeMillis));
+        return true;
+    }
+
+    /**
+     * Matches a response from a UPI app, see {@link #addResponse(CharSequence, long, long)}.
+     */
+    public void addResponse(@NonNull UpiResponse response, long amountPaise, long timeMillis) {
+        String transactionReferenceId = response.getTransactionReferenceId();
+        addResponse(transactionReferenceId != null ? transactionReferenceId : "", amountPaise,
+                timeMillis);
+    }
+
+    /**
+     * Matches a response with its request, without allocating.
+     *
+     * @param transactionReferenceId Transaction reference ID of the response.
+     * @param amountPaise Amount that was paid.
+     * @param timeMillis When the response arrived.
+     */
+    public void addResponse(@NonNull CharSequence transactionReferenceId, long amountPaise,
+            long timeMillis) {
+        advanceTo(timeMillis);
+        int entry = find(transactionReferenceId, UpiHashing.mix(hashCode(transactionReferenceId)));
+        if (entry == NONE) {
+            listener.onResult(RESULT_UNKNOWN_RESPONSE, transactionReferenceId,
+                    UpiPayload.NO_AMOUNT, amountPaise);
+            return;
+        }
+
+        long requestedAmountPaise = amounts[entry];
+        if (matched[entry]) {
+            listener.onResult(RESULT_DUPLICATE_RESPONSE, keys[entry], requestedAmountPaise,
+                    amountPaise);
+            return;
+        }
+        matched[entry] = true;
+        unschedule(entry);
+        schedule(entry, deadlineTick(timeMillis));
+        boolean amountMatches = requestedAmountPaise == UpiPayload.NO_AMOUNT
+                || requestedAmountPaise == amountPaise;
+        listener.onResult(amountMatches ? RESULT_MATCHED : RESULT_AMOUNT_MISMATCH, keys[entry],
+                requestedAmountPaise, amountPaise);
+    }
+
+    /**
+     * Reports requests whose window ended before the given time as missing, and forgets matched
+     * requests whose window ended. Adding requests and responses does the same.
+     *
+     * @param timeMillis The current time of the stream. Earlier times are ignored.
+     */
+    public void advanceTo(long timeMillis) {
+        long target = timeMillis / tickMillis;
+        if (tick == Long.MIN_VALUE) {
+            tick = target;
+            return;
+        }
+        if (target <= tick) {
+            return;
+        }
+        long count = Math.min(target - tick, WHEEL_SIZE);
+        for (long t = tick + 1; t <= tick + count; t++) {
+            expire((int) t & WHEEL_MASK, target);
+        }
+        tick = target;
+    }
+
+    /**
+     * Reports every outstanding request as missing and empties the table, e.g. at the end of a
+     * reconciliation run.
+     */
+    public void expireAll() {
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            expire(i, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * @return Number of requests in the table, outstanding or matched.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void expire(int slot, long target) {
+        int entry = wheel[slot];
+        while (entry != NONE) {
+            int following = next[entry];
+            if (deadlineTicks[entry] <= target) {
+                unschedule(entry);
+                remove(entry);
+                if (!matched[entry]) {
+                    listener.onResult(RESULT_MISSING_RESPONSE, keys[entry], amounts[entry],
+                            UpiPayload.NO_AMOUNT);
+                }
+                keys[entry] = null;
+                next[entry] = freeEntry;
+                freeEntry = entry;
+            }
+            entry = following;
+        }
+    }
+
+    private int find(CharSequence key, int hash) {
+        int slot = hash & tableMask;
+        int entry;
+        while ((entry = table[slot]) != NONE) {
+            if (hashes[entry] == hash && contentEquals(keys[entry], key)) {
+                return entry;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Removes an entry from the hash table, shifting later entries of its probe sequence back
+     * into the gap instead of leaving a tombstone.
+     */
+    private void remove(int entry) {
+        int hole = hashes[entry] & tableMask;
+        while (table[hole] != entry) {
+            hole = (hole + 1) & tableMask;
+        }
+        int slot = (hole + 1) & tableMask;
+        int moving;
+        while ((moving = table[slot]) != NONE) {
+            int home = hashes[moving] & tableMask;
+            if (((slot - home) & tableMask) >= ((slot - hole) & tableMask)) {
+                table[hole] = moving;
+                hole = slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        table[hole] = NONE;
+        size--;
+    }
+
+    private long deadlineTick(long timeMillis) {
+        long deadline = timeMillis + windowMillis;
+        return (deadline + tickMillis - 1) / tickMillis;
+    }
+
+    private void schedule(int entry, long deadlineTick) {
+        // An entry whose deadline has passed expires on the next tick
+        deadlineTick = Math.max(deadlineTick, tick + 1);
+        deadlineTicks[entry] = deadlineTick;
+        int slot = (int) deadlineTick & WHEEL_MASK;
+        int head = wheel[slot];
+        next[entry] = head;
+        previous[entry] = NONE;
+        if (head != NONE) {
+            previous[head] = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    private void unschedule(int entry) {
+        int before = previous[entry];
+        int after = next[entry];
+        if (before != NONE) {
+            next[before] = after;
+        } else {
+            wheel[(int) deadlineTicks[entry] & WHEEL_MASK] = after;
+        }
+        if (after != NONE) {
+            previous[after] = before;
+        }
+    }
+
+    private static boolean contentEquals(String key, CharSequence other) {
+        int length = key.length();
+        if (length != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != other.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link String#hashCode()}, for any {@link CharSequence}.
+     */
+    private static int hashCode(CharSequence s) {
+        if (s instanceof String) {
+            return s.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + s.charAt(i);
+        }
+        return hash;
+    }
+
+}
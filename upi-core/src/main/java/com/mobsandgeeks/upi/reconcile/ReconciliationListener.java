@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.reconcile;
+
+import android.support.annotation.NonNull;
+
+import com.mobsandgeeks.upi.reconcile.Reconciler.Result;
+
+/**
+ * Receives the results of a {@link Reconciler}, one call per match, mismatch or missing
+ * response. Calls are made on the thread that feeds the reconciler, and must not feed it.
+ *
+ * @author Ragunath Jawahar
+ */
+public interface ReconciliationListener {
+
+    /**
+     * @param result One of the {@code Reconciler.RESULT_*} constants.
+     * @param transactionReferenceId Transaction reference ID of the request or the response.
+     *         Only valid during the call, copy it to keep it.
+     * @param requestedAmountPaise Amount of the request, or {@code UpiPayload.NO_AMOUNT} if
+     *         there is no request or it has no amount.
+     * @param respondedAmountPaise Amount of the response, or {@code UpiPayload.NO_AMOUNT} if
+     *         there is no response.
+     */
+    void onResult(@Result int result, @NonNull CharSequence transactionReferenceId,
+            long requestedAmountPaise, long respondedAmountPaise);
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UpiAddressValidatorTest {
+
+    @Test
+    public void isValid_acceptsUsernamesAndHandles() {
+        assertTrue(UpiAddressValidator.isValid("a@b"));
+        assertTrue(UpiAddressValidator.isValid("store@ybl"));
+        assertTrue(UpiAddressValidator.isValid("9876543210@OKSBI"));
+        assertTrue(UpiAddressValidator.isValid("sharma.general-store_1@okhdfcbank"));
+    }
+
+    @Test
+    public void isValid_rejectsMalformedAddresses() {
+        String[] addresses = { "", "store", "@ybl", "store@", "store@@ybl", "store@ybl@ybl",
+                "store@y.bl", "sharma store@ybl", "store@ybl ", "st\u00F6re@ybl",
+                "\u0928\u092E@ybl", "store%40ybl" };
+        for (String address : addresses) {
+            assertFalse(address, UpiAddressValidator.isValid(address));
+        }
+    }
+
+    @Test
+    public void isValid_limitsTheLength() {
+        StringBuilder address = new StringBuilder();
+        while (address.length() < UpiAddressValidator.MAX_LENGTH - "@ybl".length()) {
+            address.append('a');
+        }
+        address.append("@ybl");
+        assertTrue(UpiAddressValidator.isValid(address));
+        assertFalse(UpiAddressValidator.isValid(address.insert(0, 'a')));
+    }
+
+    @Test
+    public void validate_checksHandlesAgainstTheIndex() {
+        UpiAddressValidator validator = new UpiAddressValidator();
+
+        assertEquals(UpiResult.NO_ERROR, validator.validate("store@ybl"));
+        assertEquals(UpiResult.ERROR_UNKNOWN_PAYEE_HANDLE, validator.validate("store@nobank"));
+        assertEquals(UpiResult.ERROR_INVALID_PAYEE_ADDRESS, validator.validate("store"));
+        assertEquals("PhonePe (Yes Bank)", validator.getProvider("store@YBL"));
+        assertNull(validator.getProvider("store@nobank"));
+    }
+
+    @Test
+    public void validate_usesTheLatestIndex() {
+        UpiAddressValidator validator = new UpiAddressValidator(null);
+        assertEquals(UpiResult.NO_ERROR, validator.validate("store@nobank"));
+
+        validator.setHandleIndex(UpiHandleIndex.compile(
+                Collections.singletonMap("nobank", "No Bank")));
+        assertEquals(UpiResult.NO_ERROR, validator.validate("store@nobank"));
+        assertEquals(UpiResult.ERROR_UNKNOWN_PAYEE_HANDLE, validator.validate("store@ybl"));
+    }
+
+    @Test
+    public void validate_checksParsedPayloads() {
+        UpiAddressValidator validator = new UpiAddressValidator();
+        UpiResult result = UpiUriParser.parse("upi://pay?pa=store%40ybl&pn=Store");
+
+        assertTrue(result.isSuccess());
+        assertEquals(UpiResult.NO_ERROR, validator.validate(result.getPayload()));
+    }
+
+}
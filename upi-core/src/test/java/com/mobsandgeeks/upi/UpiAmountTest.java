@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+
+public class UpiAmountTest {
+
+    @Test
+    public void parsePaise_acceptsValidAmounts() {
+        assertEquals(10000, parsePaise("100"));
+        assertEquals(9950, parsePaise("99.5"));
+        assertEquals(75, parsePaise("0.75"));
+        assertEquals(50, parsePaise(".50"));
+        assertEquals(1000, parsePaise("10."));
+    }
+
+    @Test
+    public void parsePaise_rejectsInvalidAmounts() {
+        String[] amounts = { "", ".", "-1", "+1", "1,000", "1.2.3", "1.234", "1e3", "NaN",
+                " 1", "92233720368547758.08", "99999999999999999999" };
+        for (String amount : amounts) {
+            assertEquals(amount, UpiAmount.INVALID, parsePaise(amount));
+        }
+    }
+
+    @Test
+    public void parsePaise_acceptsLargestAmount() {
+        assertEquals(Long.MAX_VALUE, parsePaise("92233720368547758.07"));
+    }
+
+    @Test
+    public void toBigDecimal_keepsScale() {
+        assertEquals(new BigDecimal("99.5"), UpiAmount.toBigDecimal(9950, 1));
+        assertEquals(new BigDecimal("100"), UpiAmount.toBigDecimal(10000, 0));
+        assertEquals(new BigDecimal("0.75"), UpiAmount.toBigDecimal(75, 2));
+    }
+
+    @Test
+    public void parse_marksInvalidAmounts() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&am=1%2C000&mam=5", builder);
+
+        assertEquals(UpiAmount.INVALID, builder.getPayeeAmountPaise());
+        assertEquals(500, builder.getMinimumAmountPaise());
+    }
+
+    @Test
+    public void parse_treatsEmptyAmountAsAbsent() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&am=", builder);
+
+        assertEquals(UpiPayload.NO_AMOUNT, builder.build().getPayeeAmountPaise());
+    }
+
+    private static long parsePaise(String amount) {
+        return UpiAmount.parsePaise(amount, 0, amount.length());
+    }
+
+}
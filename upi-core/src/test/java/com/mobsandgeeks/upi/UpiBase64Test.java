@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class UpiBase64Test {
+
+    @Test
+    public void decode_decodesPaddedAndUnpaddedText() {
+        assertArrayEquals(bytes(""), UpiBase64.decode(""));
+        assertArrayEquals(bytes("f"), UpiBase64.decode("Zg=="));
+        assertArrayEquals(bytes("fo"), UpiBase64.decode("Zm8="));
+        assertArrayEquals(bytes("foo"), UpiBase64.decode("Zm9v"));
+        assertArrayEquals(bytes("foob"), UpiBase64.decode("Zm9vYg"));
+        assertArrayEquals(bytes("fooba"), UpiBase64.decode("Zm9vYmE"));
+    }
+
+    @Test
+    public void decode_acceptsBothAlphabets() {
+        byte[] expected = { (byte) 0xfb, (byte) 0xff };
+        assertArrayEquals(expected, UpiBase64.decode("+/8="));
+        assertArrayEquals(expected, UpiBase64.decode("-_8"));
+        // A plus sign that went through form decoding
+        assertArrayEquals(expected, UpiBase64.decode(" /8="));
+        assertArrayEquals(bytes("foo"), UpiBase64.decode("sign=Zm9v&", 5, 9));
+    }
+
+    @Test
+    public void decode_rejectsMalformedText() {
+        assertNull(UpiBase64.decode("Z"));
+        assertNull(UpiBase64.decode("Zm9v*"));
+        assertNull(UpiBase64.decode("Zm9"));
+        assertNull(UpiBase64.decode("Zm9=v"));
+        assertNull(UpiBase64.decode("Zg="));
+        assertNull(UpiBase64.decode("Zh=="));
+        assertNull(UpiBase64.decode("Zm9v\u00e9"));
+    }
+
+    private static byte[] bytes(String ascii) {
+        byte[] bytes = new byte[ascii.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ascii.charAt(i);
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UpiBatchParserTest {
+
+    @Test
+    public void parseAll_keepsInputOrder() {
+        UpiBatchResult result = UpiBatchParser.parseAll(Arrays.asList(
+                "upi://pay?pa=a@upi&pn=A&utm_source=qr",
+                "upi://pay?pn=B",
+                "upi://pay?pa=c@upi&pn=C&am=x"));
+
+        assertEquals(3, result.size());
+        assertEquals(2, result.getErrorCount());
+        assertEquals("a@upi", result.getPayload(0).getPayeeAddress());
+        assertEquals("qr", result.getExtras(0).get("utm_source"));
+        assertEquals(UpiResult.ERROR_MISSING_PAYEE_ADDRESS, result.getErrorCode(1));
+        assertNull(result.getPayload(1));
+        assertEquals(UpiResult.ERROR_INVALID_AMOUNT, result.getErrorCode(2));
+    }
+
+    @Test
+    public void parseAll_matchesSequentialParsingAcrossWorkers() {
+        List<String> uris = new ArrayList<String>();
+        for (int i = 0; i < 10000; i++) {
+            uris.add(i % 7 == 0
+                    ? "upi://pay?pn=Missing+" + i
+                    : "upi://pay?pa=m" + i + "@upi&pn=M&am=" + i + ".5");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            UpiBatchResult result = UpiBatchParser.parseAll(uris, pool);
+
+            int errors = 0;
+            for (int i = 0; i < uris.size(); i++) {
+                UpiResult expected = UpiUriParser.parse(uris.get(i));
+                assertEquals(expected.getErrorCode(), result.getErrorCode(i));
+                if (expected.isSuccess()) {
+                    assertTrue(result.isSuccess(i));
+                    assertEquals(expected.getPayload().getPayeeAddress(),
+                            result.getPayload(i).getPayeeAddress());
+                    assertEquals(expected.getPayload().getPayeeAmountPaise(),
+                            result.getPayload(i).getPayeeAmountPaise());
+                } else {
+                    errors++;
+                }
+            }
+            assertEquals(errors, result.getErrorCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parseAllSequentially_matchesParseAll() {
+        List<String> uris = Arrays.asList(
+                "upi://pay?pa=a@upi&pn=A&utm_source=qr",
+                "upi://pay?pn=B",
+                "upi://pay?pa=c@upi&pn=C&am=x");
+
+        UpiBatchResult expected = UpiBatchParser.parseAll(uris);
+        UpiBatchResult result = UpiBatchParser.parseAllSequentially(uris);
+
+        assertEquals(expected.size(), result.size());
+        assertEquals(expected.getErrorCount(), result.getErrorCount());
+        for (int i = 0; i < uris.size(); i++) {
+            assertEquals(expected.getErrorCode(i), result.getErrorCode(i));
+        }
+        assertEquals("a@upi", result.getPayload(0).getPayeeAddress());
+        assertEquals("qr", result.getExtras(0).get("utm_source"));
+        assertNull(result.getPayload(1));
+    }
+
+}
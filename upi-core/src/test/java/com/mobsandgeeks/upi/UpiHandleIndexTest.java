@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpiHandleIndexTest {
+
+    @Test
+    public void getDefault_loadsTheBundledList() {
+        UpiHandleIndex index = UpiHandleIndex.getDefault();
+
+        assertTrue(index.size() > 50);
+        assertEquals("PhonePe (Yes Bank)", index.getProvider("ybl"));
+        assertEquals("BHIM", index.getProvider("UPI"));
+        assertEquals("State Bank of India", index.getProvider("store@sbi", 6, 9));
+        assertNull(index.getProvider("yb"));
+        assertNull(index.getProvider("ybll"));
+    }
+
+    @Test
+    public void getDefault_findsEveryGeneratedHandle() {
+        // The build script places the handles, lookups must agree with it
+        UpiHandleIndex index = UpiHandleIndex.getDefault();
+        String[] providers = UpiHandleIndexData.PROVIDERS;
+
+        assertEquals(providers.length, index.size());
+        for (int i = 0; i < providers.length; i++) {
+            String handle = UpiHandleIndexData.CHARS.substring(UpiHandleIndexData.STARTS[i],
+                    UpiHandleIndexData.STARTS[i + 1]);
+            assertEquals(handle, providers[i], index.getProvider(handle));
+            assertEquals(handle, providers[i], index.getProvider(handle.toUpperCase(Locale.US)));
+            assertNull(handle, index.getProvider(handle + "x"));
+        }
+    }
+
+    @Test
+    public void compile_findsEveryHandle() {
+        Map<String, String> providersByHandle = new HashMap<String, String>();
+        for (int i = 0; i < 5000; i++) {
+            providersByHandle.put("bank" + i, "Bank " + i);
+        }
+        UpiHandleIndex index = UpiHandleIndex.compile(providersByHandle);
+
+        assertEquals(5000, index.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("Bank " + i, index.getProvider("BANK" + i));
+        }
+        assertNull(index.getProvider("bank5000"));
+        assertNull(index.getProvider(""));
+    }
+
+    @Test
+    public void compile_handlesAnEmptyMap() {
+        UpiHandleIndex index = UpiHandleIndex.compile(new HashMap<String, String>());
+
+        assertEquals(0, index.size());
+        assertNull(index.getProvider("ybl"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compile_rejectsHandlesThatDifferInCase() {
+        Map<String, String> providersByHandle = new HashMap<String, String>();
+        providersByHandle.put("ybl", "PhonePe");
+        providersByHandle.put("YBL", "PhonePe");
+        UpiHandleIndex.compile(providersByHandle);
+    }
+
+    @Test
+    public void load_readsTabSeparatedLines() throws IOException {
+        UpiHandleIndex index = UpiHandleIndex.load(
+                stream("# Comment\n\nnewbank\tNew Bank\r\nOTHER\t Other Bank \n"));
+
+        assertEquals(2, index.size());
+        assertEquals("New Bank", index.getProvider("newbank"));
+        assertEquals("Other Bank", index.getProvider("other"));
+    }
+
+    @Test
+    public void load_rejectsInvalidLines() {
+        String[] lists = { "newbank\n", "new.bank\tNew Bank\n", "a\tA\nA\tA\n" };
+        for (String list : lists) {
+            try {
+                UpiHandleIndex.load(stream(list));
+                fail(list);
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(Charset.forName("UTF-8")));
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpiMerchantCategoryTableTest {
+
+    @After
+    public void tearDown() {
+        UpiMerchantCategoryTable.setDefault(null);
+    }
+
+    @Test
+    public void getBuiltIn_containsGeneratedCategories() {
+        UpiMerchantCategoryTable table = UpiMerchantCategoryTable.getBuiltIn();
+
+        UpiMerchantCategory groceries = table.get(5411);
+        assertEquals("Grocery Stores and Supermarkets", groceries.getName());
+        assertEquals(UpiMerchantCategory.RISK_LOW, groceries.getRiskTier());
+        assertEquals(UpiMerchantCategory.RISK_HIGH, table.get(7995).getRiskTier());
+        assertEquals(742, table.get(742).getCode());
+        assertNull(table.get(0));
+        assertNull(table.get(UpiPayload.NO_MERCHANT_CATEGORY_CODE));
+        assertNull(table.get(70000));
+
+        List<UpiMerchantCategory> categories = table.getCategories();
+        assertEquals(table.size(), categories.size());
+        for (int i = 1; i < categories.size(); i++) {
+            assertTrue(categories.get(i - 1).getCode() < categories.get(i).getCode());
+        }
+    }
+
+    @Test
+    public void setDefault_replacesTheBuiltInTable() throws IOException {
+        UpiMerchantCategoryTable table = UpiMerchantCategoryTable.load(
+                stream("# Comment\n\n5411\tMEDIUM\tGroceries\r\n0001\tHIGH\tTest\n"));
+        assertEquals(2, table.size());
+        assertEquals(UpiMerchantCategory.RISK_MEDIUM, table.get(5411).getRiskTier());
+        assertEquals("Test", table.get(1).getName());
+
+        assertSame(UpiMerchantCategoryTable.getBuiltIn(), UpiMerchantCategoryTable.getDefault());
+        UpiMerchantCategoryTable.setDefault(table);
+        assertSame(table, UpiMerchantCategoryTable.getDefault());
+        UpiMerchantCategoryTable.setDefault(null);
+        assertSame(UpiMerchantCategoryTable.getBuiltIn(), UpiMerchantCategoryTable.getDefault());
+    }
+
+    @Test
+    public void load_rejectsInvalidLines() {
+        String[] lists = { "5411\tLOW\n", "541\tLOW\tGroceries\n", "5411\tNONE\tGroceries\n",
+                "5411\tLOW\tGroceries\n5411\tHIGH\tGroceries\n" };
+        for (String list : lists) {
+            try {
+                UpiMerchantCategoryTable.load(stream(list));
+                fail(list);
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void compile_sortsCategories() {
+        UpiMerchantCategoryTable table = UpiMerchantCategoryTable.compile(Arrays.asList(
+                new UpiMerchantCategory(9999, "Last", UpiMerchantCategory.RISK_LOW),
+                new UpiMerchantCategory(0, "First", UpiMerchantCategory.RISK_HIGH)));
+
+        assertEquals("First", table.get(0).getName());
+        assertEquals("Last", table.get(9999).getName());
+        assertEquals(0, table.getCategories().get(0).getCode());
+    }
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(Charset.forName("UTF-8")));
+    }
+
+}
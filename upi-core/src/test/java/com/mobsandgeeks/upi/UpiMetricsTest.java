@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UpiMetricsTest {
+
+    private static final UpiResult VALID = UpiUriParser.parse("upi://pay?pa=a@upi&pn=A");
+    private static final UpiResult WITH_EXTRAS =
+            UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&utm_source=qr&utm_source=app&x=1");
+    private static final UpiResult INVALID = UpiUriParser.parse("upi://pay?pn=A");
+
+    @Test
+    public void record_countsResultsByErrorCode() {
+        UpiMetrics metrics = new UpiMetrics();
+        metrics.record(VALID, 1000);
+        metrics.record(WITH_EXTRAS, 1000);
+        metrics.record(INVALID, 1000);
+        metrics.record(UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&am=x"), 1000);
+
+        UpiMetrics.Snapshot snapshot = metrics.snapshot();
+
+        assertEquals(4, snapshot.getCount());
+        assertEquals(2, snapshot.getSuccessCount());
+        assertEquals(2, snapshot.getFailureCount());
+        assertEquals(1, snapshot.getFailureCount(UpiResult.ERROR_MISSING_PAYEE_ADDRESS));
+        assertEquals(1, snapshot.getFailureCount(UpiResult.ERROR_INVALID_AMOUNT));
+        assertEquals(0, snapshot.getFailureCount(UpiResult.ERROR_MISSING_PAYEE_NAME));
+    }
+
+    @Test
+    public void record_countsExtrasWithoutDecodingThem() {
+        UpiMetrics metrics = new UpiMetrics();
+        metrics.record(VALID, 1000);
+        metrics.record(WITH_EXTRAS, 1000);
+        metrics.record(INVALID, 1000);
+
+        UpiMetrics.Snapshot snapshot = metrics.snapshot();
+
+        assertEquals(3, snapshot.getExtrasCount());
+        assertEquals(1, snapshot.getSuccessCountWithExtras(0));
+        assertEquals(1, snapshot.getSuccessCountWithExtras(3));
+        assertEquals(0, snapshot.getSuccessCountWithExtras(UpiMetrics.MAX_TRACKED_EXTRAS));
+    }
+
+    @Test
+    public void snapshot_reportsPercentilesWithinABucket() {
+        UpiMetrics metrics = new UpiMetrics();
+        for (int i = 1; i <= 1000; i++) {
+            metrics.record(VALID, i * 1000L);
+        }
+
+        UpiMetrics.Snapshot snapshot = metrics.snapshot();
+
+        assertWithinBucket(500000, snapshot.getLatencyPercentileNanos(50));
+        assertWithinBucket(990000, snapshot.getLatencyPercentileNanos(99));
+        assertWithinBucket(1000000, snapshot.getLatencyPercentileNanos(100));
+        assertWithinBucket(1000, snapshot.getLatencyPercentileNanos(0));
+        assertEquals(500500, snapshot.getMeanLatencyNanos());
+    }
+
+    @Test
+    public void latencyBucket_limitsCoverEveryValue() {
+        for (long nanos = 0; nanos < 1L << 40; nanos = nanos * 3 / 2 + 1) {
+            int bucket = UpiMetrics.latencyBucket(nanos);
+
+            assertTrue(nanos <= UpiMetrics.latencyBucketLimit(bucket));
+            assertTrue(bucket == 0 || nanos > UpiMetrics.latencyBucketLimit(bucket - 1));
+        }
+        assertEquals(new UpiMetrics().snapshot().getLatencyBuckets() - 1,
+                UpiMetrics.latencyBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void snapshotAndReset_startsFromZero() {
+        UpiMetrics metrics = new UpiMetrics();
+        metrics.record(VALID, 1000);
+
+        assertEquals(1, metrics.snapshotAndReset().getCount());
+        assertEquals(0, metrics.snapshot().getCount());
+        assertEquals(0, metrics.snapshot().getLatencyPercentileNanos(99));
+    }
+
+    @Test
+    public void record_losesNothingAcrossThreads() throws InterruptedException {
+        final UpiMetrics metrics = new UpiMetrics();
+        final int threads = 8;
+        final int records = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < records; i++) {
+                        metrics.record(i % 4 == 0 ? INVALID : WITH_EXTRAS, i);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        UpiMetrics.Snapshot snapshot = metrics.snapshot();
+
+        assertEquals(threads * records, snapshot.getCount());
+        assertEquals(threads * records / 4, snapshot.getFailureCount());
+        assertEquals(threads * records / 4 * 3 * 3, snapshot.getExtrasCount());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected * 9 / 8);
+    }
+
+}
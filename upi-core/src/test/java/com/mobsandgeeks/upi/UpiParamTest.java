@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UpiParamTest {
+
+    @Test
+    public void slotOf_findsEveryParameter() {
+        assertEquals(UpiParam.SLOT_COUNT, UpiParam.NAMES.length);
+        for (int slot = 0; slot < UpiParam.SLOT_COUNT; slot++) {
+            String query = "x=1&" + UpiParam.NAMES[slot] + "=2";
+            assertEquals(slot, UpiParam.slotOf(query, 4, query.indexOf('=', 4)));
+        }
+    }
+
+    @Test
+    public void slotOf_rejectsOtherNames() {
+        String[] names = { "", "p", "PA", "pay", "mx", "mas", "modes", "orgId", "qrmedium",
+                "purposes", "msidx", "\u0970a" };
+        for (String name : names) {
+            assertEquals(name, UpiParam.NO_SLOT, UpiParam.slotOf(name, 0, name.length()));
+        }
+    }
+
+}
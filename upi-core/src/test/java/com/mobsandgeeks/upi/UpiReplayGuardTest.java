@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UpiReplayGuardTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    public void isReplay_detectsTransactionsSeenBefore() {
+        UpiReplayGuard guard = new UpiReplayGuard();
+        UpiPayload payload = payload("store@ybl", "ORD-1", null);
+
+        assertFalse(guard.isReplay(payload));
+        assertTrue(guard.isReplay(payload));
+        assertTrue(guard.isReplay(payload("store@ybl", "ORD-1", "TID-9")));
+        assertFalse(guard.isReplay(payload("other@ybl", "ORD-1", null)));
+        assertFalse(guard.isReplay(payload("store@ybl", "ORD-2", null)));
+    }
+
+    @Test
+    public void isReplay_fallsBackToTheTransactionId() {
+        UpiReplayGuard guard = new UpiReplayGuard();
+
+        assertFalse(guard.isReplay(payload("store@ybl", null, "TID-9")));
+        assertTrue(guard.isReplay(payload("store@ybl", null, "TID-9")));
+        assertFalse(guard.isReplay(payload("store@ybl", null, null)));
+        assertFalse(guard.isReplay(payload("store@ybl", null, null)));
+    }
+
+    @Test
+    public void isReplay_forgetsTransactionsOutsideTheWindow() {
+        UpiReplayGuard guard = new UpiReplayGuard(1, TimeUnit.HOURS, 64);
+        UpiPayload payload = payload("store@ybl", "ORD-1", null);
+
+        assertFalse(guard.isReplay(payload, 0));
+        assertTrue(guard.isReplay(payload, HOUR - 1));
+        assertFalse(guard.isReplay(payload, 2 * HOUR));
+        assertTrue(guard.isReplay(payload, 2 * HOUR + 1));
+    }
+
+    @Test
+    public void isReplay_forgetsTheOldestTransactionsWhenFull() {
+        // A single block of 16 slots
+        UpiReplayGuard guard = new UpiReplayGuard(1, TimeUnit.HOURS, 8);
+        for (int i = 0; i < 17; i++) {
+            assertFalse(guard.isReplay(payload("store@ybl", "ORD-" + i, null), i));
+        }
+
+        assertFalse(guard.isReplay(payload("store@ybl", "ORD-0", null), 17));
+        assertTrue(guard.isReplay(payload("store@ybl", "ORD-16", null), 18));
+    }
+
+    @Test
+    public void isReplay_letsExactlyOneThreadThrough() throws InterruptedException {
+        final UpiReplayGuard guard = new UpiReplayGuard();
+        final int transactions = 2000;
+        final AtomicInteger firsts = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < transactions; i++) {
+                        if (!guard.isReplay(payload("store@ybl", "ORD-" + i, null))) {
+                            firsts.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(transactions, firsts.get());
+    }
+
+    private static UpiPayload payload(String payeeAddress, String transactionReferenceId,
+            String transactionId) {
+        return UpiPayload.builder("Store", payeeAddress)
+                .transactionReferenceId(transactionReferenceId)
+                .transactionId(transactionId)
+                .build();
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UpiResponseParserTest {
+
+    @Test
+    public void parse_readsAllFields() {
+        UpiResponse response = UpiResponseParser.parse("txnId=ICI0123&responseCode=00"
+                + "&Status=SUCCESS&txnRef=ORD-1&ApprovalRefNo=701234");
+
+        assertTrue(response.isSuccess());
+        assertEquals(UpiResponse.STATUS_SUCCESS, response.getStatus());
+        assertEquals(0, response.getNumericResponseCode());
+        assertEquals("00", response.getResponseCode());
+        assertEquals("ICI0123", response.getTransactionId());
+        assertEquals("ORD-1", response.getTransactionReferenceId());
+        assertEquals("701234", response.getApprovalReferenceNumber());
+    }
+
+    @Test
+    public void parse_toleratesKeyVariations() {
+        UpiResponse response = UpiResponseParser.parse("?TXNID=T1 & responsecode = ZD"
+                + "&status=Failed&tr=ORD%2F2&approvalRefNo=&Status=SUCCESS&flag");
+
+        assertEquals(UpiResponse.STATUS_FAILURE, response.getStatus());
+        assertEquals(UpiResponse.NO_RESPONSE_CODE, response.getNumericResponseCode());
+        assertEquals("ZD", response.getResponseCode());
+        assertEquals("T1", response.getTransactionId());
+        assertEquals("ORD/2", response.getTransactionReferenceId());
+        assertEquals("", response.getApprovalReferenceNumber());
+    }
+
+    @Test
+    public void parse_mapsStatuses() {
+        assertEquals(UpiResponse.STATUS_SUBMITTED,
+                UpiResponseParser.parse("Status=SUBMITTED").getStatus());
+        assertEquals(UpiResponse.STATUS_SUBMITTED,
+                UpiResponseParser.parse("Status=pending").getStatus());
+        assertEquals(UpiResponse.STATUS_FAILURE,
+                UpiResponseParser.parse("Status=FAILURE").getStatus());
+        assertEquals(UpiResponse.STATUS_UNKNOWN,
+                UpiResponseParser.parse("Status=DONE").getStatus());
+        assertEquals(UpiResponse.STATUS_UNKNOWN, UpiResponseParser.parse("").getStatus());
+        assertNull(UpiResponseParser.parse("").getTransactionId());
+    }
+
+    @Test
+    public void parseAll_keepsTheInputOrder() {
+        UpiResponseBatch batch = UpiResponseParser.parseAll(Arrays.asList(
+                "txnId=T1&Status=SUCCESS&responseCode=0",
+                "txnId=T2&Status=FAILURE&responseCode=U30",
+                new StringBuilder("txnId=T3&Status=SUBMITTED&responseCode=01")));
+
+        assertEquals(3, batch.size());
+        assertEquals(1, batch.getSuccessCount());
+        assertTrue(batch.isSuccess(0));
+        assertFalse(batch.isSuccess(1));
+        assertEquals(UpiResponse.STATUS_SUBMITTED, batch.getStatus(2));
+        assertEquals(0, batch.getNumericResponseCode(0));
+        assertEquals(UpiResponse.NO_RESPONSE_CODE, batch.getNumericResponseCode(1));
+        assertEquals(1, batch.getNumericResponseCode(2));
+        assertEquals("T2", batch.get(1).getTransactionId());
+        assertEquals("U30", batch.get(1).getResponseCode());
+        assertEquals("T3", batch.get(2).getTransactionId());
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UpiSignatureVerifierTest {
+
+    private static final String UNSIGNED = "upi://pay?pa=store@ybl&pn=Sharma%20Store&am=10.00"
+            + "&orgid=159001&tr=ORD-1";
+
+    private static KeyPair rsaKeys;
+    private static KeyPair ecKeys;
+
+    @BeforeClass
+    public static void generateKeys() throws GeneralSecurityException {
+        KeyPairGenerator rsa = KeyPairGenerator.getInstance("RSA");
+        rsa.initialize(2048);
+        rsaKeys = rsa.generateKeyPair();
+        KeyPairGenerator ec = KeyPairGenerator.getInstance("EC");
+        ec.initialize(256);
+        ecKeys = ec.generateKeyPair();
+    }
+
+    @Test
+    public void verify_acceptsValidSignatures() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+        verifier.putPublicKey("159002", ecKeys.getPublic().getEncoded());
+        String ecUri = UNSIGNED.replace("159001", "159002");
+
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(signRsa(UNSIGNED)));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID,
+                verifier.verify(sign(ecUri, ecKeys.getPrivate(), "SHA256withECDSA")));
+    }
+
+    @Test
+    public void verify_leavesTheSignOutOfTheMessage() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+        String signature = signature(UNSIGNED, rsaKeys.getPrivate(), "SHA256withRSA");
+
+        String first = UNSIGNED.replace("?", "?sign=" + signature + "&");
+        String middle = UNSIGNED.replace("&am=", "&sign=" + signature + "&am=");
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(first));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(middle));
+    }
+
+    @Test
+    public void verify_rejectsTamperedUris() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+        String signed = signRsa(UNSIGNED);
+
+        assertEquals(UpiSignatureVerifier.SIGNATURE_INVALID,
+                verifier.verify(signed.replace("am=10.00", "am=1.00")));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_INVALID,
+                verifier.verify(UNSIGNED + "&sign=not*base64"));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_INVALID, verifier.verify(UNSIGNED + "&sign="));
+    }
+
+    @Test
+    public void verify_reportsUnsignedUrisAndUnknownKeys() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+
+        assertEquals(UpiSignatureVerifier.SIGNATURE_MISSING, verifier.verify(UNSIGNED));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_MISSING, verifier.verify("upi://pay"));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_UNKNOWN_KEY,
+                verifier.verify(signRsa(UNSIGNED.replace("159001", "159009"))));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_UNKNOWN_KEY,
+                verifier.verify(signRsa(UNSIGNED.replace("&orgid=159001", ""))));
+    }
+
+    @Test
+    public void isTrusted_rejectsUnsignedUrisOnlyWhenRequired() throws GeneralSecurityException {
+        UpiSignatureVerifier lenient = new UpiSignatureVerifier();
+        UpiSignatureVerifier strict = new UpiSignatureVerifier(null, 16, true);
+        lenient.putPublicKey("159001", rsaKeys.getPublic());
+        strict.putPublicKey("159001", rsaKeys.getPublic());
+
+        assertTrue(lenient.isTrusted(UNSIGNED));
+        assertFalse(strict.isTrusted(UNSIGNED));
+        assertTrue(strict.isTrusted(signRsa(UNSIGNED)));
+        assertFalse(lenient.isTrusted(signRsa(UNSIGNED).replace("ORD-1", "ORD-2")));
+    }
+
+    @Test
+    public void verify_loadsKeysFromTheProviderOnce() throws GeneralSecurityException {
+        final AtomicInteger loads = new AtomicInteger();
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier(
+                new UpiSignatureVerifier.KeyProvider() {
+                    @Override
+                    public byte[] getPublicKey(String orgId) {
+                        loads.incrementAndGet();
+                        return "159001".equals(orgId) ? rsaKeys.getPublic().getEncoded() : null;
+                    }
+                }, 16, false);
+
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(signRsa(UNSIGNED)));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID,
+                verifier.verify(signRsa(UNSIGNED.replace("ORD-1", "ORD-2"))));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void verify_remembersVerifiedUrisUntilAKeyChanges() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+        String signed = signRsa(UNSIGNED);
+
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(signed));
+        assertEquals(UpiSignatureVerifier.SIGNATURE_VALID, verifier.verify(signed));
+        assertEquals(1, verifier.getCacheHitCount());
+
+        verifier.putPublicKey("159001", ecKeys.getPublic());
+        assertEquals(UpiSignatureVerifier.SIGNATURE_INVALID, verifier.verify(signed));
+        verifier.removePublicKey("159001");
+        assertEquals(UpiSignatureVerifier.SIGNATURE_UNKNOWN_KEY, verifier.verify(signed));
+        assertEquals(1, verifier.getCacheHitCount());
+    }
+
+    @Test
+    public void verifyAll_verifiesInParallel() throws GeneralSecurityException {
+        UpiSignatureVerifier verifier = new UpiSignatureVerifier();
+        verifier.putPublicKey("159001", rsaKeys.getPublic());
+        CharSequence[] uris = new CharSequence[200];
+        int[] expected = new int[uris.length];
+        for (int i = 0; i < uris.length; i++) {
+            String signed = signRsa(UNSIGNED.replace("ORD-1", "ORD-" + i % 50));
+            uris[i] = i % 7 == 0 ? signed.replace("am=10.00", "am=99.00") : signed;
+            expected[i] = i % 7 == 0
+                    ? UpiSignatureVerifier.SIGNATURE_INVALID
+                    : UpiSignatureVerifier.SIGNATURE_VALID;
+        }
+
+        int[] results = verifier.verifyAll(uris, new ForkJoinPool(4));
+
+        assertArrayEquals(expected, results);
+        assertEquals(expected.length, verifier.verifyAll(Arrays.asList(uris)).length);
+    }
+
+    private static String signRsa(String upiUri) throws GeneralSecurityException {
+        return sign(upiUri, rsaKeys.getPrivate(), "SHA256withRSA");
+    }
+
+    private static String sign(String upiUri, PrivateKey privateKey, String algorithm)
+            throws GeneralSecurityException {
+        return upiUri + "&sign=" + signature(upiUri, privateKey, algorithm);
+    }
+
+    /**
+     * Signs the URI and returns the signature as percent-encoded Base64.
+     */
+    private static String signature(String upiUri, PrivateKey privateKey, String algorithm)
+            throws GeneralSecurityException {
+        Signature signer = Signature.getInstance(algorithm);
+        signer.initSign(privateKey);
+        signer.update(upiUri.getBytes(Charset.forName("UTF-8")));
+        return base64(signer.sign()).replace("+", "%2B").replace("/", "%2F").replace("=", "%3D");
+    }
+
+    private static String base64(byte[] bytes) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < bytes.length; i += 3) {
+            int group = (bytes[i] & 0xff) << 16;
+            group |= i + 1 < bytes.length ? (bytes[i + 1] & 0xff) << 8 : 0;
+            group |= i + 2 < bytes.length ? bytes[i + 2] & 0xff : 0;
+            for (int j = 0; j < 4; j++) {
+                encoded.append(i + j - 1 < bytes.length
+                        ? alphabet.charAt((group >> (18 - 6 * j)) & 0x3f) : '=');
+            }
+        }
+        return encoded.toString();
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class UpiUriEncoderTest {
+
+    @Test
+    public void encode_writesParametersInSpecOrder() {
+        UpiPayload payload = UpiPayload.builder("Sharma Store", "store@ybl")
+                .merchantCode("5411")
+                .transactionReferenceId("ORD-42")
+                .payeeAmount(149950)
+                .mode("02")
+                .build();
+
+        assertEquals("upi://pay?pa=store@ybl&pn=Sharma%20Store&mc=5411&tr=ORD-42&am=1499.50"
+                + "&cu=INR&mode=02", UpiUriEncoder.encode(payload));
+    }
+
+    @Test
+    public void encode_escapesReservedAndNonAsciiCharacters() {
+        UpiPayload payload = UpiPayload.builder("A&B=C+D", "a@upi")
+                .transactionNote("\u0928\u092E\u0938\u094D\u0924\u0947 \uD83D\uDE00 100%")
+                .build();
+
+        assertEquals("upi://pay?pa=a@upi&pn=A%26B%3DC%2BD"
+                + "&tn=%E0%A4%A8%E0%A4%AE%E0%A4%B8%E0%A5%8D%E0%A4%A4%E0%A5%87"
+                + "%20%F0%9F%98%80%20100%25"
+                + "&cu=INR", UpiUriEncoder.encode(payload));
+    }
+
+    @Test
+    public void encode_replacesUnpairedSurrogates() {
+        UpiPayload payload = UpiPayload.builder("A", "a@upi")
+                .transactionNote("x\uD83Dy\uDE00")
+                .build();
+
+        assertEquals("upi://pay?pa=a@upi&pn=A&tn=x%EF%BF%BDy%EF%BF%BD&cu=INR",
+                UpiUriEncoder.encode(payload));
+    }
+
+    @Test
+    public void encode_roundTripsParsedPayloadsAndExtras() {
+        String uri = "upi://pay?pa=m@upi&pn=M%20%26%20Co&tn=Rent+for+March&am=10.5&mam=1"
+                + "&cu=INR&url=https%3A%2F%2Fexample.com%2F%3Fa%3D1&utm_source=qr%20code";
+        UpiResult parsed = UpiUriParser.parse(uri);
+
+        String encoded = UpiUriEncoder.encode(parsed.getPayload(), parsed.getExtras());
+        UpiPayload payload = UpiUriParser.parse(encoded).getPayload();
+
+        assertEquals("upi://pay?pa=m@upi&pn=M%20%26%20Co&tn=Rent%20for%20March&am=10.5&mam=1"
+                + "&cu=INR&url=https%3A%2F%2Fexample.com%2F%3Fa%3D1&utm_source=qr%20code",
+                encoded);
+        assertEquals("M & Co", payload.getPayeeName());
+        assertEquals(parsed.getPayload().getPayeeAmount(), payload.getPayeeAmount());
+    }
+
+    @Test
+    public void encodeTo_appendsToDestination() throws IOException {
+        UpiPayload payload = UpiPayload.builder("A", "a@upi").build();
+        Map<String, String> extras = new LinkedHashMap<String, String>();
+        extras.put("k", "v");
+        StringBuilder builder = new StringBuilder("uri: ");
+        StringWriter writer = new StringWriter();
+
+        assertSame(builder, UpiUriEncoder.encodeTo(payload, extras, builder));
+        UpiUriEncoder.encodeTo(payload, extras, writer);
+
+        assertEquals("uri: upi://pay?pa=a@upi&pn=A&cu=INR&k=v", builder.toString());
+        assertEquals("upi://pay?pa=a@upi&pn=A&cu=INR&k=v", writer.toString());
+    }
+
+}
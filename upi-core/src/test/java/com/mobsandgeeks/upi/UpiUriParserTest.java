@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UpiUriParserTest {
+
+    @Test
+    public void parse_fillsAllUpiParameters() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        Map<String, String> extras = UpiUriParser.parse("upi://pay?pa=merchant@upi&pn=Merchant"
+                + "&tr=ORDER1&am=10.50&mam=5&mc=5411&tid=TXN1&tn=Groceries&cu=INR"
+                + "&url=https%3A%2F%2Fexample.com%2Fo%2F1", builder);
+        UpiPayload payload = builder.build();
+
+        assertEquals("merchant@upi", payload.getPayeeAddress());
+        assertEquals("Merchant", payload.getPayeeName());
+        assertEquals("ORDER1", payload.getTransactionReferenceId());
+        assertEquals(new BigDecimal("10.50"), payload.getPayeeAmount());
+        assertEquals(new BigDecimal("5"), payload.getMinimumAmount());
+        assertEquals("5411", payload.getMerchantCode());
+        assertEquals("TXN1", payload.getTransactionId());
+        assertEquals("Groceries", payload.getTransactionNote());
+        assertEquals("INR", payload.getCurrencyCode());
+        assertEquals("https://example.com/o/1", payload.getReferenceUrl());
+        assertTrue(extras.isEmpty());
+    }
+
+    @Test
+    public void parse_fillsUpi2Parameters() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        Map<String, String> extras = UpiUriParser.parse("upi://pay?pa=m@upi&pn=M&mode=02"
+                + "&purpose=00&orgid=000000&sign=c2lnbg%3D%3D&mid=M1&msid=S1&mtid=T1&qrMedium=06"
+                + "&%6Dc=5411", builder);
+        UpiPayload payload = builder.build();
+
+        assertEquals("02", payload.getMode());
+        assertEquals("00", payload.getPurpose());
+        assertEquals("000000", payload.getOrganizationId());
+        assertEquals("c2lnbg==", payload.getSignature());
+        assertEquals("M1", payload.getMerchantId());
+        assertEquals("S1", payload.getMerchantStoreId());
+        assertEquals("T1", payload.getMerchantTerminalId());
+        assertEquals("06", payload.getQrMedium());
+        assertEquals("5411", payload.getMerchantCode());
+        assertTrue(extras.isEmpty());
+    }
+
+    @Test
+    public void parse_parsesMerchantCategoryCodes() {
+        assertEquals(5411, UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&mc=5411").getPayload()
+                .getMerchantCategoryCode());
+        assertEquals(742, UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&mc=%30742").getPayload()
+                .getMerchantCategoryCode());
+        String[] invalid = { "", "&mc=", "&mc=541", "&mc=54111", "&mc=54a1", "&mc=+541" };
+        for (String mc : invalid) {
+            assertEquals(mc, UpiPayload.NO_MERCHANT_CATEGORY_CODE, UpiUriParser
+                    .parse("upi://pay?pa=a@upi&pn=A" + mc).getPayload().getMerchantCategoryCode());
+        }
+        assertEquals(5411, UpiPayload.builder("A", "a@upi").merchantCode("5411").build()
+                .getMerchantCategoryCode());
+    }
+
+    @Test
+    public void parse_collectsExtras() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        Map<String, String> extras = UpiUriParser.parse(
+                "upi://pay?pa=a@upi&pn=A&utm_source=qr&flag&utm_source=ignored", builder);
+
+        assertEquals(2, extras.size());
+        assertEquals("qr", extras.get("utm_source"));
+        assertEquals("", extras.get("flag"));
+        assertEquals("{utm_source=qr, flag=}", extras.toString());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void parse_extrasAreUnmodifiable() {
+        Map<String, String> extras = UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&utm_source=qr",
+                new UpiPayload.Builder());
+
+        extras.keySet().remove("utm_source");
+    }
+
+    @Test
+    public void parse_firstOccurrenceWins() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=first@upi&pn=A&pa=second@upi", builder);
+
+        assertEquals("first@upi", builder.getPayeeAddress());
+    }
+
+    @Test
+    public void parse_stopsAtFragment() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=a@upi&pn=A#tn=ignored", builder);
+
+        assertNull(builder.build().getTransactionNote());
+    }
+
+    @Test
+    public void parse_defaultsCurrencyCode() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=a@upi&pn=A", builder);
+
+        assertEquals("INR", builder.build().getCurrencyCode());
+    }
+
+    @Test
+    public void parse_decodesOptionalValuesOnFirstAccess() {
+        UpiPayload.Builder builder = new UpiPayload.Builder();
+        UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&tn=Rent+for+March", builder);
+        UpiPayload payload = builder.build();
+
+        assertEquals("Rent for March", payload.getTransactionNote());
+        assertSame(payload.getTransactionNote(), payload.getTransactionNote());
+        assertNull(payload.getMerchantCode());
+    }
+
+    @Test
+    public void parse_validatesMandatoryFieldsAndAmounts() {
+        assertEquals(UpiResult.ERROR_MISSING_PAYEE_NAME,
+                UpiUriParser.parse("upi://pay?pa=a@upi&pn=+").getErrorCode());
+        assertEquals(UpiResult.ERROR_MISSING_PAYEE_ADDRESS,
+                UpiUriParser.parse("upi://pay?pn=A").getErrorCode());
+        assertEquals(UpiResult.ERROR_INVALID_AMOUNT,
+                UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&am=1.2.3").getErrorCode());
+        assertEquals(UpiResult.ERROR_INVALID_MINIMUM_AMOUNT,
+                UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&mam=abc").getErrorCode());
+    }
+
+    @Test
+    public void parse_returnsPayloadForValidUri() {
+        UpiResult result = UpiUriParser.parse("upi://pay?pa=a@upi&pn=A&am=10&utm_source=qr");
+
+        assertEquals(UpiResult.NO_ERROR, result.getErrorCode());
+        assertEquals("a@upi", result.getPayload().getPayeeAddress());
+        assertEquals("qr", result.getExtras().get("utm_source"));
+    }
+
+    @Test
+    public void validate_matchesParse() {
+        String[] uris = {
+                "upi://pay?pa=a@upi&pn=A&am=10&utm_source=qr",
+                "upi://pay?pa=a@upi&pn=Sharma%20Store&am=10%2E50&mam=1",
+                "upi://pay?pa=a@upi&pn=+%20%09",
+                "upi://pay?pa=a@upi&pn=%",
+                "upi://pay?pa=a@upi&pn=%2",
+                "upi://pay?pa=a@upi&pn=%zz",
+                "upi://pay?pa=a@upi&pn=%E0%A4%A8",
+                "upi://pay?pa=a@upi&pn",
+                "upi://pay?pa=&pn=A&pa=second@upi",
+                "upi://pay?pn=A",
+                "upi://pay?%70a=a@upi&pn=A",
+                "upi://pay?pa=a@upi&pn=A&am=",
+                "upi://pay?pa=a@upi&pn=A&am=1.2.3",
+                "upi://pay?pa=a@upi&pn=A&am=1%2E2%2E3",
+                "upi://pay?pa=a@upi&pn=A&mam=abc",
+                "upi://pay?pa=a@upi#pn=A",
+                "upi://pay#?pa=a@upi&pn=A",
+                "upi://pay",
+                ""
+        };
+        for (String uri : uris) {
+            assertEquals(uri, UpiUriParser.parse(uri).getErrorCode(),
+                    UpiUriParser.validate(uri));
+            assertEquals(uri, UpiUriParser.parse(uri).getErrorCode(),
+                    UpiUriParser.validate(new StringBuilder(uri)));
+        }
+    }
+
+    @Test
+    public void decode_handlesPlusAndPercentEncodedUtf8() {
+        String encoded = "x=%E0%A4%A8%E0%A4%AE%E0%A4%B8%E0%A5%8D%E0%A4%A4%E0%A5%87+ji";
+
+        assertEquals("\u0928\u092E\u0938\u094D\u0924\u0947 ji",
+                UpiUriParser.decode(encoded, 2, encoded.length()));
+    }
+
+    @Test
+    public void decode_replacesInvalidEscapes() {
+        assertEquals("\uFFFDzz", UpiUriParser.decode("%zz", 0, 3));
+    }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.audit;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiResult;
+import com.mobsandgeeks.upi.UpiUriParser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AuditJournalTest {
+
+    private static final String VALID = "upi://pay?pa=store@ybl&pn=Store&am=149.50";
+    private static final String INVALID = "upi://pay?pn=Store";
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void append_recordsReadBackInOrder() throws IOException {
+        File directory = folder.newFolder();
+        AuditJournal journal = new AuditJournal(directory);
+        long before = System.currentTimeMillis();
+
+        assertTrue(journal.append(VALID, UpiUriParser.parse(VALID)));
+        assertTrue(journal.append(INVALID, UpiUriParser.parse(INVALID)));
+        journal.close();
+
+        List<File> segments = journal.getCompletedSegments();
+        assertEquals(1, segments.size());
+        AuditReader reader = new AuditReader(segments.get(0));
+        try {
+            assertEquals(0, reader.getSegmentNumber());
+            assertTrue(reader.next());
+            assertEquals(AuditJournal.hash(VALID), reader.getUriHash());
+            assertEquals("store@ybl", reader.getPayeeAddress());
+            assertEquals(14950, reader.getPayeeAmountPaise());
+            assertEquals(UpiResult.NO_ERROR, reader.getResultCode());
+            assertTrue(reader.getTimestampMillis() >= before);
+            assertFalse(reader.isPayeeAddressTruncated());
+
+            assertTrue(reader.next());
+            assertEquals(AuditJournal.hash(INVALID), reader.getUriHash());
+            assertEquals("", reader.getPayeeAddress());
+            assertEquals(UpiPayload.NO_AMOUNT, reader.getPayeeAmountPaise());
+            assertEquals(UpiResult.ERROR_MISSING_PAYEE_ADDRESS, reader.getResultCode());
+
+            assertFalse(reader.next());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void append_rotatesFullSegments() throws IOException {
+        File directory = folder.newFolder();
+        // A header and three records per segment
+        AuditJournal journal = new AuditJournal(directory, 4, AuditLog.RECORD_SIZE * 4);
+        for (int i = 0; i < 10; i++) {
+            String uri = "upi://pay?pa=m" + i + "@upi&pn=M";
+            journal.append(uri, UpiUriParser.parse(uri));
+            // Keeps the small buffer from filling up
+            journal.flush();
+        }
+
+        assertEquals(3, journal.getCompletedSegments().size());
+        journal.rotate();
+        List<File> segments = journal.getCompletedSegments();
+        journal.close();
+
+        assertEquals(4, segments.size());
+        List<String> addresses = new ArrayList<String>();
+        for (int i = 0; i < segments.size(); i++) {
+            AuditReader reader = new AuditReader(segments.get(i));
+            assertEquals(i, reader.getSegmentNumber());
+            while (reader.next()) {
+                addresses.add(reader.getPayeeAddress());
+            }
+            reader.close();
+        }
+        assertEquals(10, addresses.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("m" + i + "@upi", addresses.get(i));
+        }
+    }
+
+    @Test
+    public void open_startsANewSegment() throws IOException {
+        File directory = folder.newFolder();
+        AuditJournal journal = new AuditJournal(directory);
+        journal.append(VALID, UpiUriParser.parse(VALID));
+        journal.close();
+
+        journal = new AuditJournal(directory);
+        assertEquals(1, journal.getCompletedSegments().size());
+        journal.append(VALID, UpiUriParser.parse(VALID));
+        journal.close();
+
+        List<File> segments = journal.getCompletedSegments();
+        assertEquals(2, segments.size());
+        AuditReader reader = new AuditReader(segments.get(1));
+        assertEquals(1, reader.getSegmentNumber());
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+        reader.close();
+    }
+
+    @Test
+    public void append_dropsRecordsAfterClose() throws IOException {
+        AuditJournal journal = new AuditJournal(folder.newFolder());
+        journal.close();
+
+        assertFalse(journal.append(VALID, UpiUriParser.parse(VALID)));
+        assertEquals(1, journal.getDroppedCount());
+        assertEquals(0, journal.getCompletedSegments().size());
+    }
+
+    @Test
+    public void next_stopsAtADamagedRecord() throws IOException {
+        File directory = folder.newFolder();
+        AuditJournal journal = new AuditJournal(directory);
+        for (int i = 0; i < 3; i++) {
+            journal.append(VALID, UpiUriParser.parse(VALID));
+        }
+        journal.close();
+        File segment = journal.getCompletedSegments().get(0);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek(AuditLog.RECORD_SIZE * 2 + AuditLog.ADDRESS);
+        file.write('S');
+        file.close();
+
+        AuditReader reader = new AuditReader(segment);
+        assertTrue(reader.next());
+        assertFalse(reader.next());
+        assertEquals("store@ybl", reader.getPayeeAddress());
+        reader.close();
+    }
+
+    @Test
+    public void append_truncatesLongAddressesAtACharacter() throws IOException {
+        // 31 three-byte characters, one more than fits
+        StringBuilder address = new StringBuilder();
+        for (int i = 0; i < 31; i++) {
+            address.append('\u0928');
+        }
+        String uri = "upi://pay?pa=" + address + "@upi&pn=M";
+        AuditJournal journal = new AuditJournal(folder.newFolder());
+        journal.append(uri, UpiUriParser.parse(uri));
+        journal.close();
+
+        AuditReader reader = new AuditReader(journal.getCompletedSegments().get(0));
+        assertTrue(reader.next());
+        assertTrue(reader.isPayeeAddressTruncated());
+        assertEquals(address.substring(0, 30), reader.getPayeeAddress());
+        reader.close();
+    }
+
+    @Test
+    public void append_replacesUnpairedSurrogatesInAddresses() throws IOException {
+        String uri = "upi://pay?pa=a\uD83Db\uDE00c\uD83D\uDE00@upi&pn=M";
+        AuditJournal journal = new AuditJournal(folder.newFolder());
+        journal.append(uri, UpiUriParser.parse(uri));
+        journal.close();
+
+        AuditReader reader = new AuditReader(journal.getCompletedSegments().get(0));
+        assertTrue(reader.next());
+        assertEquals("a?b?c\uD83D\uDE00@upi", reader.getPayeeAddress());
+        assertEquals(AuditJournal.hash(uri), reader.getUriHash());
+        reader.close();
+    }
+
+    @Test
+    public void hash_hashesUtf8Bytes() {
+        Charset utf8 = Charset.forName("UTF-8");
+        String[] uris = { "", VALID, "upi://pay?pn=\u0928\u092E\u0938\u094D\u0924\u0947",
+                "upi://pay?tn=\uD83D\uDE00", "upi://pay?tn=\uD83D",
+                "upi://pay?tn=\uDE00\uD83D" };
+        for (String uri : uris) {
+            long expected = 0xcbf29ce484222325L;
+            for (byte b : uri.getBytes(utf8)) {
+                expected = (expected ^ (b & 0xFF)) * 0x100000001b3L;
+            }
+            assertEquals(uri, expected, AuditJournal.hash(uri));
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.flow;
+
+import com.mobsandgeeks.upi.UpiResult;
+import com.mobsandgeeks.upi.UpiUriParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UpiUriProcessorTest {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void delivers_onlyRequestedResults() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+
+        assertTrue(processor.offer(uri("a@ybl")));
+        assertTrue(processor.offer(uri("b@ybl")));
+        assertTrue(processor.offer(uri("c@ybl")));
+        assertEquals(0, subscriber.results.size());
+
+        subscriber.subscription.request(2);
+        assertEquals(2, subscriber.results.size());
+        assertEquals("a@ybl", subscriber.results.get(0).getPayload().getPayeeAddress());
+        assertEquals("b@ybl", subscriber.results.get(1).getPayload().getPayeeAddress());
+
+        subscriber.subscription.request(1);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(UpiResult.NO_ERROR, subscriber.results.get(2).getErrorCode());
+    }
+
+    @Test
+    public void delivers_errorResults() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        processor.offer("upi://pay?pn=Store");
+
+        assertEquals(1, subscriber.results.size());
+        assertEquals(UpiResult.ERROR_MISSING_PAYEE_ADDRESS,
+                subscriber.results.get(0).getErrorCode());
+    }
+
+    @Test
+    public void offer_coalescesRepeatsWithinTheWindow() {
+        UpiUriProcessor processor = new UpiUriProcessor(16, 2, TimeUnit.SECONDS, DIRECT,
+                new CountingParser());
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        processor.offer(uri("a@ybl"), false, 0);
+        processor.offer(uri("a@ybl"), false, SECOND);
+        // The window starts again with each repeat, a code held in front of a scanner is seen once
+        processor.offer(uri("a@ybl"), false, 2 * SECOND + SECOND / 2);
+        processor.offer(uri("a@ybl"), false, 5 * SECOND);
+
+        assertEquals(2, subscriber.results.size());
+        assertEquals(2, processor.getCoalescedCount());
+    }
+
+    @Test
+    public void offer_coalescesUrisWaitingInTheBuffer() {
+        CountingParser parser = new CountingParser();
+        UpiUriProcessor processor = new UpiUriProcessor(16, 0, TimeUnit.SECONDS, DIRECT, parser);
+
+        assertTrue(processor.offer(uri("a@ybl")));
+        assertTrue(processor.offer(uri("b@ybl")));
+        assertTrue(processor.offer(uri("a@ybl")));
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(2, subscriber.results.size());
+        assertEquals(2, parser.count);
+        assertEquals(1, processor.getCoalescedCount());
+
+        processor.offer(uri("a@ybl"));
+        assertEquals(3, subscriber.results.size());
+    }
+
+    @Test
+    public void offer_dropsUrisWhenTheBufferIsFull() {
+        CountingParser parser = new CountingParser();
+        UpiUriProcessor processor = new UpiUriProcessor(2, 0, TimeUnit.SECONDS, DIRECT, parser);
+
+        assertTrue(processor.offer(uri("a@ybl")));
+        assertTrue(processor.offer(uri("b@ybl")));
+        assertFalse(processor.offer(uri("c@ybl")));
+        assertEquals(1, processor.getDroppedCount());
+        assertEquals(2, parser.count);
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(1);
+        assertTrue(processor.offer(uri("c@ybl")));
+    }
+
+    @Test
+    public void complete_deliversBufferedResultsFirst() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.offer(uri("a@ybl"));
+
+        processor.complete();
+        assertFalse(subscriber.completed);
+        assertFalse(processor.offer(uri("b@ybl")));
+
+        subscriber.subscription.request(5);
+        assertEquals(1, subscriber.results.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void request_failsTheStreamForNonPositiveDemand() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.offer(uri("a@ybl"));
+
+        subscriber.subscription.request(0);
+
+        assertEquals(0, subscriber.results.size());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void cancel_stopsDeliveryAndCancelsUpstream() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        RecordingSubscription upstream = new RecordingSubscription();
+        processor.onSubscribe(upstream);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+
+        processor.onNext(uri("a@ybl"));
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(1);
+
+        assertEquals(0, subscriber.results.size());
+        assertTrue(upstream.cancelled);
+        assertFalse(processor.offer(uri("b@ybl")));
+    }
+
+    @Test
+    public void onNext_keepsUpstreamDemandAtTheCapacity() {
+        UpiUriProcessor processor = new UpiUriProcessor(4, 2, TimeUnit.SECONDS, DIRECT,
+                new CountingParser());
+        RecordingSubscription upstream = new RecordingSubscription();
+        processor.onSubscribe(upstream);
+        assertEquals(4, upstream.requested);
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+        processor.onNext(uri("a@ybl"));
+        processor.onNext(uri("b@ybl"));
+        assertEquals(4, upstream.requested);
+
+        // Coalesced URIs don't take space in the buffer
+        processor.onNext(uri("b@ybl"));
+        assertEquals(5, upstream.requested);
+
+        // Neither do URIs offered directly
+        processor.offer(uri("c@ybl"));
+        subscriber.subscription.request(3);
+        assertEquals(3, subscriber.results.size());
+        assertEquals(7, upstream.requested);
+
+        processor.onComplete();
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void subscribe_rejectsASecondSubscriber() {
+        UpiUriProcessor processor = new UpiUriProcessor(DIRECT);
+        processor.subscribe(new RecordingSubscriber());
+        RecordingSubscriber second = new RecordingSubscriber();
+
+        processor.subscribe(second);
+
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    private static String uri(String payeeAddress) {
+        return "upi://pay?pa=" + payeeAddress + "&pn=Store&am=10.00";
+    }
+
+    private static class CountingParser implements UpiUriProcessor.Parser {
+
+        int count;
+
+        @Override
+        public UpiResult parse(String upiUri) {
+            count++;
+            return UpiUriParser.parse(upiUri);
+        }
+
+    }
+
+    private static class RecordingSubscription implements Flow.Subscription {
+
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<UpiResult> {
+
+        final List<UpiResult> results = new ArrayList<UpiResult>();
+        Flow.Subscription subscription;
+        Throwable error;
+        boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(UpiResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.DecoderResult;
+import com.google.zxing.qrcode.decoder.Decoder;
+import com.mobsandgeeks.upi.UpiPayload;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QrEncoderTest {
+
+    private static final String URI = "upi://pay?pa=store@ybl&pn=Sharma%20General%20Store"
+            + "&mc=5411&tr=ORD-2017-42&am=1499.50&cu=INR";
+
+    @Test
+    public void encode_decodesWithAnIndependentDecoder() throws Exception {
+        QrCode qrCode = new QrEncoder().encode(URI);
+
+        assertEquals(URI, decode(qrCode));
+        assertEquals(QrSpec.size(qrCode.getVersion()), qrCode.getSize());
+    }
+
+    @Test
+    public void encode_decodesForEveryVersionAndLevel() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int level = QrCode.ERROR_CORRECTION_LOW; level <= QrCode.ERROR_CORRECTION_HIGH;
+                level++) {
+            QrEncoder encoder = new QrEncoder(level);
+            int lastVersion = 0;
+            text.setLength(0);
+            while (lastVersion < QrSpec.MAX_VERSION) {
+                text.append("upi://pay?pa=a@b&tn=").append(text.length());
+                QrCode qrCode;
+                try {
+                    qrCode = encoder.encode(text);
+                } catch (IllegalArgumentException e) {
+                    break;
+                }
+                assertEquals(text.toString(), decode(qrCode));
+                lastVersion = qrCode.getVersion();
+            }
+            assertEquals(QrSpec.MAX_VERSION, lastVersion);
+        }
+    }
+
+    @Test
+    public void encode_picksTheMostCompactMode() throws Exception {
+        QrEncoder encoder = new QrEncoder(QrCode.ERROR_CORRECTION_LOW);
+
+        // 41 digits, 25 alphanumeric characters and 17 bytes fit in version 1 at level L
+        assertEquals(1, encoder.encode("12345678901234567890123456789012345678901").getVersion());
+        assertEquals(1, encoder.encode("HTTPS://EXAMPLE.COM/ABC12").getVersion());
+        assertEquals(2, encoder.encode("HTTPS://EXAMPLE.COM/ABC123").getVersion());
+        assertEquals(1, encoder.encode("upi://pay?pa=a@b").getVersion());
+        assertEquals(2, encoder.encode("upi://pay?pa=ab@cd").getVersion());
+        assertEquals("12345678901234567890123456789012345678901",
+                decode(encoder.encode("12345678901234567890123456789012345678901")));
+        assertEquals("HTTPS://EXAMPLE.COM/ABC12",
+                decode(encoder.encode("HTTPS://EXAMPLE.COM/ABC12")));
+    }
+
+    @Test
+    public void encode_raisesErrorCorrectionWhenItFits() {
+        QrCode qrCode = new QrEncoder(QrCode.ERROR_CORRECTION_LOW).encode("1");
+
+        assertEquals(1, qrCode.getVersion());
+        assertEquals(QrCode.ERROR_CORRECTION_HIGH, qrCode.getErrorCorrection());
+    }
+
+    @Test
+    public void encode_encodesNonAsciiTextWithUtf8() throws Exception {
+        String text = "upi://pay?pa=a@b&pn=\u0928\u092E\u0938\u094D\u0924\u0947";
+
+        assertEquals(text, decode(new QrEncoder().encode(text)));
+    }
+
+    @Test
+    public void encode_encodesPayloads() throws Exception {
+        UpiPayload payload = UpiPayload.builder("Sharma General Store", "store@ybl")
+                .merchantCode("5411")
+                .transactionReferenceId("ORD-2017-42")
+                .payeeAmount(149950)
+                .build();
+
+        assertEquals(URI, decode(new QrEncoder().encode(payload, null)));
+    }
+
+    @Test
+    public void toPixels_drawsModulesAndQuietZone() {
+        QrCode qrCode = new QrEncoder().encode(URI);
+        int width = qrCode.getPixelSize(3, 4);
+        int[] pixels = new int[width * width];
+
+        qrCode.toPixels(pixels, 3, 4, 0xFF000000, 0xFFFFFFFF);
+
+        assertEquals((qrCode.getSize() + 8) * 3, width);
+        assertEquals(0xFFFFFFFF, pixels[0]);
+        assertEquals(0xFFFFFFFF, pixels[width * width - 1]);
+        for (int y = 0; y < qrCode.getSize(); y++) {
+            for (int x = 0; x < qrCode.getSize(); x++) {
+                int color = qrCode.isDark(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+                assertEquals(color, pixels[(12 + y * 3 + 2) * width + 12 + x * 3 + 1]);
+            }
+        }
+        assertTrue(qrCode.isDark(0, 0));
+        assertFalse(qrCode.isDark(7, 7));
+    }
+
+    private static String decode(QrCode qrCode) throws Exception {
+        int size = qrCode.getSize();
+        BitMatrix matrix = new BitMatrix(size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (qrCode.isDark(x, y)) {
+                    matrix.set(x, y);
+                }
+            }
+        }
+        DecoderResult result = new Decoder().decode(matrix);
+        return result.getText();
+    }
+
+}
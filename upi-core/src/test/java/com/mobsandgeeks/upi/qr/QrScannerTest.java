@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.qr;
+
+import com.mobsandgeeks.upi.UpiResult;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QrScannerTest {
+
+    private static final String URI = "upi://pay?pa=store@ybl&pn=Sharma%20General%20Store"
+            + "&mc=5411&tr=ORD-2017-42&am=1499.50&cu=INR";
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private final QrScanner scanner = new QrScanner();
+
+    @Test
+    public void scan_parsesUpiQrCodes() {
+        byte[] frame = render(new QrEncoder().encode(URI), 0, 0);
+
+        UpiResult result = scanner.scan(frame, WIDTH, HEIGHT);
+
+        assertNotNull(result);
+        assertTrue(result.isSuccess());
+        assertEquals("store@ybl", result.getPayload().getPayeeAddress());
+        assertEquals("Sharma General Store", result.getPayload().getPayeeName());
+    }
+
+    @Test
+    public void scan_readsRotatedAndNoisyFrames() {
+        QrEncoder encoder = new QrEncoder();
+        Random random = new Random(42);
+        for (int i = 0; i < 20; i++) {
+            String text = URI + "&tn=" + Long.toString(random.nextLong(), 36);
+            byte[] frame = render(encoder.encode(text), random.nextDouble() * Math.PI * 2, 12);
+
+            assertEquals(text, scanner.scanText(frame, WIDTH, 0, 0, WIDTH, HEIGHT));
+        }
+    }
+
+    @Test
+    public void scan_correctsDamagedModules() {
+        QrCode qrCode = new QrEncoder(QrCode.ERROR_CORRECTION_MEDIUM).encode(URI);
+        byte[] frame = render(qrCode, 0, 0);
+        // An ink blot over a few data modules, well within what level M can correct
+        for (int y = HEIGHT / 2 + 20; y < HEIGHT / 2 + 40; y++) {
+            for (int x = WIDTH / 2 + 20; x < WIDTH / 2 + 40; x++) {
+                frame[y * WIDTH + x] = 40;
+            }
+        }
+
+        assertEquals(URI, scanner.scanText(frame, WIDTH, 0, 0, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void scan_ignoresQrCodesThatAreNotUpiUris() {
+        byte[] frame = render(new QrEncoder().encode("https://example.com/pay"), 0, 0);
+
+        assertNull(scanner.scan(frame, WIDTH, HEIGHT));
+        assertEquals("https://example.com/pay", scanner.scanText(frame, WIDTH, 0, 0, WIDTH,
+                HEIGHT));
+    }
+
+    @Test
+    public void scan_returnsNullForFramesWithoutQrCodes() {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        Random random = new Random(42);
+        random.nextBytes(frame);
+
+        assertNull(scanner.scan(frame, WIDTH, HEIGHT));
+        assertNull(scanner.scan(new byte[WIDTH * HEIGHT], WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void scan_scansRegions() {
+        byte[] frame = render(new QrEncoder().encode(URI), 0, 0);
+
+        assertEquals(URI, scanner.scanText(frame, WIDTH, 160, 80, 320, 320));
+        assertNull(scanner.scanText(frame, WIDTH, 0, 0, 100, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void scan_rejectsRegionsOutsideTheFrame() {
+        scanner.scan(new byte[WIDTH * HEIGHT], WIDTH, 320, 240, 320, 241);
+    }
+
+    /**
+     * Draws a QR code at the center of a frame, with a lighting gradient and random noise.
+     */
+    private static byte[] render(QrCode qrCode, double angle, int noise) {
+        byte[] frame = new byte[WIDTH * HEIGHT];
+        Random random = new Random(7);
+        int size = qrCode.getSize();
+        double moduleSize = HEIGHT * 0.6 / (size + 8);
+        double cos = Math.cos(angle);
+        double sin = Math.sin(angle);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double dx = x - WIDTH / 2;
+                double dy = y - HEIGHT / 2;
+                int u = (int) Math.floor((cos * dx + sin * dy) / moduleSize + size / 2.0);
+                int v = (int) Math.floor((cos * dy - sin * dx) / moduleSize + size / 2.0);
+                boolean dark = u >= 0 && v >= 0 && u < size && v < size && qrCode.isDark(u, v);
+                int luminance = (dark ? 40 : 200) + 30 * x / WIDTH
+                        + (noise > 0 ? random.nextInt(noise * 2 + 1) - noise : 0);
+                frame[y * WIDTH + x] = (byte) luminance;
+            }
+        }
+        return frame;
+    }
+
+}
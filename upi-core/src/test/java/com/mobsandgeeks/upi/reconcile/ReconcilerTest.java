@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 Ragunath Jawahar
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.mobsandgeeks.upi.reconcile;
+
+import com.mobsandgeeks.upi.UpiPayload;
+import com.mobsandgeeks.upi.UpiResponseParser;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReconcilerTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private final List<String> results = new ArrayList<String>();
+    private final ReconciliationListener listener = new ReconciliationListener() {
+        @Override
+        public void onResult(int result, CharSequence transactionReferenceId,
+                long requestedAmountPaise, long respondedAmountPaise) {
+            results.add(result + " " + transactionReferenceId + " " + requestedAmountPaise + " "
+                    + respondedAmountPaise);
+        }
+    };
+
+    @Test
+    public void addResponse_matchesRequestsAndAmounts() {
+        Reconciler reconciler = new Reconciler(16, 30, TimeUnit.MINUTES, listener);
+        reconciler.addRequest(UpiPayload.builder("Store", "store@ybl")
+                .transactionReferenceId("ORD-1").payeeAmount(14950).build(), 0);
+        reconciler.addRequest("ORD-2", 500, MINUTE);
+        reconciler.addRequest("ORD-3", UpiPayload.NO_AMOUNT, MINUTE);
+
+        reconciler.addResponse(UpiResponseParser.parse("txnRef=ORD-1&Status=SUCCESS"), 14950,
+                2 * MINUTE);
+        reconciler.addResponse(new StringBuilder("ORD-2"), 50, 2 * MINUTE);
+        reconciler.addResponse("ORD-3", 999, 2 * MINUTE);
+        reconciler.addResponse("ORD-4", 100, 2 * MINUTE);
+
+        assertEquals(Arrays.asList(
+                Reconciler.RESULT_MATCHED + " ORD-1 14950 14950",
+                Reconciler.RESULT_AMOUNT_MISMATCH + " ORD-2 500 50",
+                Reconciler.RESULT_MATCHED + " ORD-3 -1 999",
+                Reconciler.RESULT_UNKNOWN_RESPONSE + " ORD-4 -1 100"), results);
+    }
+
+    @Test
+    public void addResponse_reportsDuplicates() {
+        Reconciler reconciler = new Reconciler(16, 30, TimeUnit.MINUTES, listener);
+        reconciler.addRequest("ORD-1", 100, 0);
+        reconciler.addRequest("ORD-1", 200, 0);
+        reconciler.addResponse("ORD-1", 100, MINUTE);
+        reconciler.addResponse("ORD-1", 100, 20 * MINUTE);
+
+        assertEquals(Arrays.asList(
+                Reconciler.RESULT_DUPLICATE_REQUEST + " ORD-1 200 -1",
+                Reconciler.RESULT_MATCHED + " ORD-1 100 100",
+                Reconciler.RESULT_DUPLICATE_RESPONSE + " ORD-1 100 100"), results);
+    }
+
+    @Test
+    public void advanceTo_expiresRequestsWithoutResponses() {
+        Reconciler reconciler = new Reconciler(16, 30, TimeUnit.MINUTES, listener);
+        reconciler.addRequest("ORD-1", 100, 0);
+        reconciler.addRequest("ORD-2", 200, 10 * MINUTE);
+        reconciler.addResponse("ORD-2", 200, 11 * MINUTE);
+
+        reconciler.advanceTo(29 * MINUTE);
+        assertEquals(1, results.size());
+        reconciler.advanceTo(31 * MINUTE);
+        assertEquals(Reconciler.RESULT_MISSING_RESPONSE + " ORD-1 100 -1", results.get(1));
+        assertEquals(1, reconciler.size());
+
+        // Matched requests are forgotten silently, a window after their response
+        reconciler.advanceTo(42 * MINUTE);
+        assertEquals(2, results.size());
+        assertEquals(0, reconciler.size());
+        reconciler.addResponse("ORD-2", 200, 43 * MINUTE);
+        assertEquals(Reconciler.RESULT_UNKNOWN_RESPONSE + " ORD-2 -1 200", results.get(2));
+    }
+
+    @Test
+    public void addRequest_keepsMemoryBounded() {
+        Reconciler reconciler = new Reconciler(1000, 1, TimeUnit.HOURS, listener);
+        int missing = 0;
+        for (int i = 0; i < 100000; i++) {
+            long time = i * MINUTE / 10;
+            assertTrue(reconciler.addRequest("ORD-" + i, i, time));
+            if (i % 10 != 0) {
+                reconciler.addResponse("ORD-" + i, i, time + 1);
+            } else {
+                missing++;
+            }
+        }
+        reconciler.expireAll();
+
+        assertEquals(0, reconciler.size());
+        int missingReported = 0;
+        for (String result : results) {
+            assertFalse(result, result.startsWith(Reconciler.RESULT_AMOUNT_MISMATCH + " "));
+            if (result.startsWith(Reconciler.RESULT_MISSING_RESPONSE + " ")) {
+                missingReported++;
+            }
+        }
+        assertEquals(missing, missingReported);
+        assertEquals(100000 - missing, results.size() - missingReported);
+    }
+
+    @Test
+    public void addRequest_failsWhenFull() {
+        Reconciler reconciler = new Reconciler(2, 1, TimeUnit.HOURS, listener);
+
+        assertTrue(reconciler.addRequest("ORD-1", 100, 0));
+        assertTrue(reconciler.addRequest("ORD-2", 100, 0));
+        assertFalse(reconciler.addRequest("ORD-3", 100, 0));
+        assertTrue(reconciler.addRequest("ORD-3", 100, 2 * 60 * MINUTE));
+    }
+
+}